@@ -0,0 +1,925 @@
+package com.example.disastermanagement.api;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Disk-backed queue of requests that have to reach the server even if the
+ * phone is offline or the app is killed in the meantime.
+ *
+ * Requests are appended to a single file. enqueue() only encodes the
+ * records; a writer thread appends and syncs whatever has built up since
+ * its last sync, so callers, often on the main thread, never wait for the
+ * disk, and a request reaches the file a sync after enqueue() returns.
+ * Each record carries its length, a CRC32 and a record number, as in
+ * OperationLog; on start the file is replayed and a torn tail from a crash
+ * is cut off. A delivered request is marked done by appending another
+ * record, and the file is rewritten with only the live records once most of
+ * it is dead.
+ *
+ * One thread sends the requests strictly in the order they were queued. A
+ * network error or server error keeps the request at the head and retries
+ * it with exponential backoff and jitter; wake() retries at once, e.g. when
+ * connectivity returns. Client errors, and exceptions other than an
+ * IOException from the transport, are permanent and drop the request.
+ * Delivery is at least once: a request can be sent again if the app dies
+ * between the server's answer and the done record.
+ *
+ * A request with a coalesce key that is queued right behind a waiting
+ * request with the same key replaces it, so a backlog of superseded updates
+ * drains as one request. A coalescer can merge the two bodies instead of
+ * keeping only the newer one.
+ *
+ * A request may save a field of its JSON response as a variable. Later
+ * endpoints can refer to it as {name}, so a request can be queued before
+ * the id it targets exists, e.g. updates to an SOS session created offline.
+ */
+public class OutboundQueue {
+    private static final String TAG = "OutboundQueue";
+    private static final String FILE_NAME = "outbound_queue.log";
+
+    // Length, checksum and record number before each payload
+    private static final int HEADER_BYTES = 16;
+    // Larger records are treated as corruption
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    private static final int RECORD_REQUEST = 1;
+    private static final int RECORD_DONE = 2;
+    private static final int RECORD_VARIABLE = 3;
+
+    private static final long MIN_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 5 * 60_000;
+    // Merged bodies stop growing past this so one request stays cheap to retry
+    private static final int MAX_COALESCED_BYTES = 64 * 1024;
+    // Rewrite the file once this much of it is dead and the dead part outweighs the live one
+    private static final long COMPACT_MIN_DEAD_BYTES = 64 * 1024;
+    // Oldest variables are forgotten past this
+    private static final int MAX_VARIABLES = 64;
+
+    private static OutboundQueue instance;
+
+    /**
+     * A queued HTTP request
+     */
+    public static final class Request {
+        private final String method;
+        private final String endpoint;
+        private final String contentType;
+        private final byte[] body;
+        private String coalesceKey;
+        private Coalescer coalescer;
+        private String captureField;
+        private String captureVariable;
+        private String tag;
+        private long sequence;
+
+        /**
+         * @param method HTTP method
+         * @param endpoint Path relative to the API base URL; {name} is replaced by a saved variable
+         * @param contentType Content type of the body, or null if there is none
+         * @param body Request body, or null
+         */
+        public Request(String method, String endpoint, String contentType, byte[] body) {
+            this.method = method;
+            this.endpoint = endpoint;
+            this.contentType = contentType;
+            this.body = body != null ? body : new byte[0];
+        }
+
+        /**
+         * Lets a later request with the same key replace this one while it is waiting
+         * @param key Coalesce key
+         * @param coalescer Merges the bodies, or null to keep only the newer body
+         * @return This request
+         */
+        public Request coalesce(String key, Coalescer coalescer) {
+            this.coalesceKey = key;
+            this.coalescer = coalescer;
+            return this;
+        }
+
+        /**
+         * Saves a field of the JSON response once the request is delivered
+         * @param field Response field
+         * @param variable Name later endpoints use for it
+         * @return This request
+         */
+        public Request captureResponseField(String field, String variable) {
+            this.captureField = field;
+            this.captureVariable = variable;
+            return this;
+        }
+
+        /**
+         * @param tag Label passed back to listeners
+         * @return This request
+         */
+        public Request tag(String tag) {
+            this.tag = tag;
+            return this;
+        }
+
+        public String getMethod() { return method; }
+        public String getEndpoint() { return endpoint; }
+        public String getContentType() { return contentType; }
+        public byte[] getBody() { return body; }
+        public String getCoalesceKey() { return coalesceKey; }
+        public String getTag() { return tag; }
+        public long getSequence() { return sequence; }
+    }
+
+    public interface Coalescer {
+        /**
+         * @param older Body of the waiting request
+         * @param newer Body of the request replacing it
+         * @return Body covering both, or null if they cannot be merged
+         */
+        byte[] merge(byte[] older, byte[] newer);
+    }
+
+    /**
+     * Sends one request
+     */
+    public interface Transport {
+        /**
+         * @param method HTTP method
+         * @param endpoint Path relative to the API base URL, variables already filled in
+         * @param contentType Content type of the body, or null
+         * @param body Request body
+         * @return The server's answer
+         * @throws IOException if the request did not get an answer
+         */
+        Reply send(String method, String endpoint, String contentType, byte[] body) throws IOException;
+    }
+
+    /**
+     * Status and body of a server answer
+     */
+    public static final class Reply {
+        private final int code;
+        private final String body;
+
+        public Reply(int code, String body) {
+            this.code = code;
+            this.body = body;
+        }
+
+        public int getCode() { return code; }
+        public String getBody() { return body; }
+    }
+
+    public interface Listener {
+        /**
+         * Called on the queue's thread once the server accepted a request
+         * @param request The request
+         * @param reply The server's answer
+         */
+        void onDelivered(Request request, Reply reply);
+
+        /**
+         * Called on the queue's thread when a request is given up
+         * @param request The request
+         * @param reply The server's answer, or null if the endpoint refers to an unknown variable
+         */
+        void onDropped(Request request, Reply reply);
+    }
+
+    private final File file;
+    private final Transport transport;
+    private final Random random = new Random();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Waiting requests in order; the head is the one being sent
+    private final ArrayDeque<Request> pending = new ArrayDeque<>();
+    private final Map<String, String> variables = new LinkedHashMap<>();
+    private Request inFlight;
+    private long lastSequence;
+    private int failures;
+    private long nextAttemptMillis;
+    private boolean closed;
+    // Records not yet handed to the writer thread
+    private ByteArrayOutputStream unwritten = new ByteArrayOutputStream();
+    private boolean writerStopped;
+
+    // Only the writer thread touches these once the queue is open
+    private FileOutputStream out;
+    private long fileBytes;
+    // File size at which to next look at how much of it is dead
+    private long compactCheckBytes = COMPACT_MIN_DEAD_BYTES;
+
+    private Thread sender;
+    private Thread writer;
+
+    private long delivered;
+    private long dropped;
+    private long coalesced;
+    private long retries;
+
+    /**
+     * @param context Any context
+     * @return The app's queue, replayed from disk and sending over the API client
+     */
+    public static synchronized OutboundQueue getInstance(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext();
+            OutboundQueue queue = new OutboundQueue(new File(app.getFilesDir(), FILE_NAME), new HttpTransport());
+            try {
+                queue.open();
+            } catch (IOException e) {
+                // Still usable in memory; requests just won't survive a restart
+                Log.e(TAG, "Failed to open outbound queue", e);
+            }
+            ConnectivityManager connectivityManager =
+                    (ConnectivityManager) app.getSystemService(Context.CONNECTIVITY_SERVICE);
+            if (connectivityManager != null) {
+                connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                    @Override
+                    public void onAvailable(Network network) {
+                        queue.wake();
+                    }
+                });
+            }
+            queue.start();
+            instance = queue;
+        }
+        return instance;
+    }
+
+    /**
+     * @param file File holding the queue
+     * @param transport Sends the requests
+     */
+    public OutboundQueue(File file, Transport transport) {
+        this.file = file;
+        this.transport = transport;
+    }
+
+    /**
+     * Restores the waiting requests and saved variables from disk and starts
+     * writing new records
+     * @throws IOException if the file cannot be read or opened for writing
+     */
+    public synchronized void open() throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create queue directory " + directory);
+        }
+        if (file.exists()) {
+            replay();
+        }
+        out = new FileOutputStream(file, true);
+        writer = new Thread(this::writeLoop, "outbound-queue-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Starts sending
+     */
+    public synchronized void start() {
+        if (sender != null) {
+            return;
+        }
+        sender = new Thread(this::sendLoop, "outbound-queue");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Queues a request for sending and for the writer thread to persist
+     * @param request The request
+     * @return The request's record number
+     */
+    public long enqueue(Request request) {
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Outbound queue is closed");
+            }
+            request.sequence = ++lastSequence;
+            Request replaced = coalesceTarget(request);
+            if (replaced != null) {
+                byte[] merged = merge(replaced, request);
+                if (merged != null) {
+                    request = copyWithBody(request, merged);
+                } else {
+                    replaced = null;
+                }
+            }
+
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            writeRecord(records, request.sequence, encodeRequest(request));
+            if (replaced != null) {
+                // After the merged request, so a torn write can only duplicate fixes, never lose them
+                writeRecord(records, ++lastSequence, encodeDone(replaced.sequence));
+                pending.pollLast();
+                coalesced++;
+            }
+            pending.addLast(request);
+            notifyAll();
+            append(records);
+            return request.sequence;
+        }
+    }
+
+    /**
+     * Retries the head request now instead of waiting out the backoff
+     */
+    public synchronized void wake() {
+        failures = 0;
+        nextAttemptMillis = 0;
+        notifyAll();
+    }
+
+    /**
+     * @param listener Told about delivered and dropped requests
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @param name Variable name
+     * @return The saved value, or null if it is not known yet
+     */
+    public synchronized String getVariable(String name) {
+        return variables.get(name);
+    }
+
+    /**
+     * Stops sending and writes out the records still waiting; waiting
+     * requests stay on disk
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+            thread = sender;
+        }
+        join(thread, true);
+        // The sender may have finished a request on its way out; stop the writer only after it
+        synchronized (this) {
+            writerStopped = true;
+            notifyAll();
+            thread = writer;
+        }
+        join(thread, false);
+    }
+
+    private static void join(Thread thread, boolean interrupt) {
+        if (thread == null) {
+            return;
+        }
+        if (interrupt) {
+            thread.interrupt();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized int getPendingCount() { return pending.size(); }
+    public synchronized long getDelivered() { return delivered; }
+    public synchronized long getDropped() { return dropped; }
+    public synchronized long getCoalesced() { return coalesced; }
+    public synchronized long getRetries() { return retries; }
+
+    private void sendLoop() {
+        while (true) {
+            Request head;
+            synchronized (this) {
+                try {
+                    while (!closed && (pending.isEmpty() || System.currentTimeMillis() < nextAttemptMillis)) {
+                        if (pending.isEmpty()) {
+                            wait();
+                        } else {
+                            wait(Math.max(1, nextAttemptMillis - System.currentTimeMillis()));
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed) {
+                    return;
+                }
+                head = pending.peekFirst();
+                inFlight = head;
+            }
+
+            String endpoint = resolve(head.endpoint);
+            if (endpoint == null) {
+                Log.w(TAG, "Dropping request " + head.sequence + ": unknown variable in " + head.endpoint);
+                finish(head, null, false);
+                continue;
+            }
+
+            Reply reply;
+            try {
+                reply = transport.send(head.method, endpoint, head.contentType, head.body);
+            } catch (IOException e) {
+                Log.w(TAG, "Sending request " + head.sequence + " failed: " + e.getMessage());
+                backOff();
+                continue;
+            } catch (RuntimeException e) {
+                // A bad endpoint or a broken client fails the same way every time
+                Log.e(TAG, "Dropping request " + head.sequence + " to " + endpoint, e);
+                finish(head, null, false);
+                continue;
+            }
+
+            int code = reply.getCode();
+            if (code >= 200 && code < 300) {
+                finish(head, reply, true);
+            } else if (code >= 400 && code < 500 && code != 408 && code != 429) {
+                Log.e(TAG, "Server rejected request " + head.sequence + " to " + endpoint + ": " + code);
+                finish(head, reply, false);
+            } else {
+                Log.w(TAG, "Server error " + code + " for request " + head.sequence + "; retrying later");
+                backOff();
+            }
+        }
+    }
+
+    /**
+     * Marks the head request done on disk and tells the listeners
+     */
+    private void finish(Request request, Reply reply, boolean accepted) {
+        synchronized (this) {
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            if (accepted && request.captureVariable != null) {
+                String value = capture(request, reply);
+                if (value != null) {
+                    putVariable(request.captureVariable, value);
+                    writeRecord(records, ++lastSequence, encodeVariable(request.captureVariable, value));
+                }
+            }
+            writeRecord(records, ++lastSequence, encodeDone(request.sequence));
+            pending.pollFirst();
+            inFlight = null;
+            failures = 0;
+            nextAttemptMillis = 0;
+            if (accepted) {
+                delivered++;
+            } else {
+                dropped++;
+            }
+            append(records);
+        }
+
+        for (Listener listener : listeners) {
+            try {
+                if (accepted) {
+                    listener.onDelivered(request, reply);
+                } else {
+                    listener.onDropped(request, reply);
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Outbound queue listener failed", e);
+            }
+        }
+    }
+
+    private synchronized void backOff() {
+        inFlight = null;
+        retries++;
+        nextAttemptMillis = System.currentTimeMillis() + backoffMillis(failures, random.nextDouble());
+        failures++;
+    }
+
+    /**
+     * @param failures Failed attempts before this one
+     * @param jitter Random number from 0 to 1
+     * @return How long to wait before the next attempt
+     */
+    static long backoffMillis(int failures, double jitter) {
+        long delay = Math.min(MAX_BACKOFF_MILLIS, MIN_BACKOFF_MILLIS << Math.min(failures, 20));
+        // Random spread in the upper half so many phones don't retry in lockstep
+        return delay / 2 + (long) (jitter * (delay / 2));
+    }
+
+    /**
+     * @return The waiting request the new one replaces, or null
+     */
+    private Request coalesceTarget(Request request) {
+        Request tail = pending.peekLast();
+        if (request.coalesceKey == null || tail == null || tail == inFlight
+                || !request.coalesceKey.equals(tail.coalesceKey)
+                || !request.method.equals(tail.method) || !request.endpoint.equals(tail.endpoint)) {
+            return null;
+        }
+        return tail;
+    }
+
+    private static byte[] merge(Request older, Request newer) {
+        if (newer.coalescer == null) {
+            return newer.body;
+        }
+        try {
+            byte[] merged = newer.coalescer.merge(older.body, newer.body);
+            return merged != null && merged.length <= MAX_COALESCED_BYTES ? merged : null;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Could not merge request " + older.sequence, e);
+            return null;
+        }
+    }
+
+    private static Request copyWithBody(Request request, byte[] body) {
+        Request copy = new Request(request.method, request.endpoint, request.contentType, body);
+        copy.coalesceKey = request.coalesceKey;
+        copy.coalescer = request.coalescer;
+        copy.captureField = request.captureField;
+        copy.captureVariable = request.captureVariable;
+        copy.tag = request.tag;
+        copy.sequence = request.sequence;
+        return copy;
+    }
+
+    /**
+     * @return The endpoint with its variables filled in, or null if one is not known
+     */
+    private synchronized String resolve(String endpoint) {
+        StringBuilder resolved = new StringBuilder(endpoint.length() + 16);
+        int position = 0;
+        while (true) {
+            int open = endpoint.indexOf('{', position);
+            if (open < 0) {
+                break;
+            }
+            int close = endpoint.indexOf('}', open);
+            if (close < 0) {
+                break;
+            }
+            String value = variables.get(endpoint.substring(open + 1, close));
+            if (value == null) {
+                return null;
+            }
+            resolved.append(endpoint, position, open).append(value);
+            position = close + 1;
+        }
+        return resolved.append(endpoint, position, endpoint.length()).toString();
+    }
+
+    private static String capture(Request request, Reply reply) {
+        try {
+            JSONObject response = new JSONObject(reply.getBody());
+            return response.has(request.captureField) ? response.getString(request.captureField) : null;
+        } catch (JSONException e) {
+            Log.w(TAG, "Response to request " + request.sequence + " is not JSON", e);
+            return null;
+        }
+    }
+
+    private void putVariable(String name, String value) {
+        variables.remove(name);
+        variables.put(name, value);
+        if (variables.size() > MAX_VARIABLES) {
+            Iterator<String> oldest = variables.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    /**
+     * Hands records to the writer thread; callers hold the monitor
+     */
+    private void append(ByteArrayOutputStream records) {
+        if (writer == null) {
+            // Not backed by a file; the requests only live in memory
+            return;
+        }
+        byte[] bytes = records.toByteArray();
+        unwritten.write(bytes, 0, bytes.length);
+        notifyAll();
+    }
+
+    /**
+     * Writes and syncs the records as they build up, outside the monitor.
+     * If a write fails the requests are still sent while the app stays
+     * alive, and the next compaction writes them out again.
+     */
+    private void writeLoop() {
+        while (true) {
+            ByteArrayOutputStream records;
+            synchronized (this) {
+                while (unwritten.size() == 0 && !writerStopped) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Only close() stops the writer, once the sender is done
+                    }
+                }
+                if (unwritten.size() == 0) {
+                    break;
+                }
+                records = unwritten;
+                unwritten = new ByteArrayOutputStream();
+            }
+
+            if (out != null) {
+                try {
+                    records.writeTo(out);
+                    out.getFD().sync();
+                    fileBytes += records.size();
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to write outbound queue", e);
+                }
+            }
+            if (fileBytes >= compactCheckBytes) {
+                maybeCompact();
+            }
+        }
+
+        try {
+            if (out != null) {
+                out.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to close outbound queue", e);
+        }
+    }
+
+    private void maybeCompact() {
+        ByteArrayOutputStream live;
+        synchronized (this) {
+            long liveBytes = liveBytes();
+            if (fileBytes - liveBytes < COMPACT_MIN_DEAD_BYTES || fileBytes - liveBytes <= liveBytes) {
+                // Merged requests rewrite their whole body, so look again once the file has grown by as much
+                compactCheckBytes = fileBytes + Math.max(COMPACT_MIN_DEAD_BYTES, liveBytes);
+                return;
+            }
+            live = liveRecords();
+        }
+        // Records queued since are appended after the compacted ones; replaying them again is harmless
+        compact(live);
+    }
+
+    /**
+     * @return Approximate size of the records a compaction would keep
+     */
+    private long liveBytes() {
+        long bytes = 0;
+        for (Request request : pending) {
+            bytes += HEADER_BYTES + 64 + request.body.length;
+        }
+        for (Map.Entry<String, String> variable : variables.entrySet()) {
+            bytes += HEADER_BYTES + 8 + variable.getKey().length() + variable.getValue().length();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return Records for the saved variables and waiting requests; callers hold the monitor
+     */
+    private ByteArrayOutputStream liveRecords() {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        for (Map.Entry<String, String> variable : variables.entrySet()) {
+            writeRecord(records, ++lastSequence, encodeVariable(variable.getKey(), variable.getValue()));
+        }
+        for (Request request : pending) {
+            writeRecord(records, request.sequence, encodeRequest(request));
+        }
+        return records;
+    }
+
+    /**
+     * Replaces the file with the given records
+     */
+    private void compact(ByteArrayOutputStream records) {
+        File temporary = new File(file.getPath() + ".tmp");
+        try (FileOutputStream compacted = new FileOutputStream(temporary)) {
+            records.writeTo(compacted);
+            compacted.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to compact outbound queue", e);
+            return;
+        }
+        try {
+            if (out != null) {
+                out.close();
+            }
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Cannot replace " + file);
+            }
+            fileBytes = records.size();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to compact outbound queue", e);
+        }
+        try {
+            out = new FileOutputStream(file, true);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to reopen outbound queue", e);
+            out = null;
+        }
+        compactCheckBytes = fileBytes + Math.max(COMPACT_MIN_DEAD_BYTES, fileBytes);
+    }
+
+    private void replay() throws IOException {
+        Map<Long, Request> live = new LinkedHashMap<>();
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            long[] recordSequence = new long[1];
+            while (true) {
+                byte[] payload = readRecord(in, recordSequence);
+                if (payload == null) {
+                    break;
+                }
+                lastSequence = Math.max(lastSequence, recordSequence[0]);
+                try {
+                    applyRecord(recordSequence[0], payload, live);
+                } catch (IOException e) {
+                    Log.w(TAG, "Unreadable record " + recordSequence[0], e);
+                    break;
+                }
+                validLength += HEADER_BYTES + payload.length;
+            }
+        }
+        if (validLength < file.length()) {
+            // A crash mid-write leaves a torn tail; drop it so appends continue cleanly
+            Log.w(TAG, "Truncating " + (file.length() - validLength) + " bytes from " + file.getName());
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        fileBytes = validLength;
+        pending.addAll(live.values());
+        Log.d(TAG, "Restored " + pending.size() + " waiting requests");
+    }
+
+    private void applyRecord(long sequence, byte[] payload, Map<Long, Request> live) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        switch (in.readUnsignedByte()) {
+            case RECORD_REQUEST:
+                Request request = new Request(in.readUTF(), in.readUTF(), emptyToNull(in.readUTF()), readBytes(in));
+                request.coalesceKey = emptyToNull(in.readUTF());
+                request.captureField = emptyToNull(in.readUTF());
+                request.captureVariable = emptyToNull(in.readUTF());
+                request.tag = emptyToNull(in.readUTF());
+                request.sequence = sequence;
+                live.put(sequence, request);
+                break;
+            case RECORD_DONE:
+                live.remove(in.readLong());
+                break;
+            case RECORD_VARIABLE:
+                putVariable(in.readUTF(), in.readUTF());
+                break;
+            default:
+                throw new IOException("Unknown record type");
+        }
+    }
+
+    private static byte[] encodeRequest(Request request) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + request.body.length);
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeByte(RECORD_REQUEST);
+            data.writeUTF(request.method);
+            data.writeUTF(request.endpoint);
+            data.writeUTF(nullToEmpty(request.contentType));
+            data.writeInt(request.body.length);
+            data.write(request.body);
+            data.writeUTF(nullToEmpty(request.coalesceKey));
+            data.writeUTF(nullToEmpty(request.captureField));
+            data.writeUTF(nullToEmpty(request.captureVariable));
+            data.writeUTF(nullToEmpty(request.tag));
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot encode request", e);
+        }
+    }
+
+    private static byte[] encodeDone(long sequence) {
+        byte[] payload = new byte[9];
+        payload[0] = RECORD_DONE;
+        for (int i = 0; i < 8; i++) {
+            payload[1 + i] = (byte) (sequence >>> (56 - 8 * i));
+        }
+        return payload;
+    }
+
+    private static byte[] encodeVariable(String name, String value) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeByte(RECORD_VARIABLE);
+            data.writeUTF(name);
+            data.writeUTF(value);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot encode variable " + name, e);
+        }
+    }
+
+    private static void writeRecord(ByteArrayOutputStream records, long sequence, byte[] payload) {
+        int checksum = checksum(sequence, payload);
+        writeInt(records, payload.length);
+        writeInt(records, checksum);
+        writeInt(records, (int) (sequence >>> 32));
+        writeInt(records, (int) sequence);
+        records.write(payload, 0, payload.length);
+    }
+
+    private static void writeInt(ByteArrayOutputStream records, int value) {
+        records.write(value >>> 24);
+        records.write(value >>> 16);
+        records.write(value >>> 8);
+        records.write(value);
+    }
+
+    /**
+     * @param sequence Receives the record's number
+     * @return The record payload, or null at the end of the file or at a damaged record
+     */
+    private static byte[] readRecord(DataInputStream in, long[] sequence) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            sequence[0] = in.readLong();
+            if (length <= 0 || length > MAX_RECORD_BYTES) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            return checksum(sequence[0], payload) == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static int checksum(long sequence, byte[] payload) {
+        CRC32 crc = new CRC32();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (sequence >>> shift));
+        }
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_RECORD_BYTES) {
+            throw new IOException("Bad body length");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Sends requests with the shared OkHttp client
+     */
+    private static final class HttpTransport implements Transport {
+        @Override
+        public Reply send(String method, String endpoint, String contentType, byte[] body) throws IOException {
+            RequestBody requestBody = RequestBody.create(
+                    contentType != null ? MediaType.parse(contentType) : null, body);
+            okhttp3.Request request = ApiClient.buildRequest(endpoint, method, requestBody);
+            try (Response response = ApiClient.getClient().newCall(request).execute()) {
+                return new Reply(response.code(), response.body() != null ? response.body().string() : "");
+            }
+        }
+    }
+}
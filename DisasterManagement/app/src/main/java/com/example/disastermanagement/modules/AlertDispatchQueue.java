@@ -0,0 +1,333 @@
+package com.example.disastermanagement.modules;
+
+import com.example.disastermanagement.utils.StreamingStats;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue that hands raised alerts to their consumers (UI,
+ * notifications, upstream API) in priority order.
+ *
+ * Alerts wait in one FIFO lane per priority and consumers always drain
+ * HIGH before MEDIUM before LOW. The total number of queued alerts is
+ * capped so a slow consumer can't grow memory. Producers that must not
+ * stall (e.g. on the UI thread) use the non-blocking offer, which makes
+ * room for an alert by dropping the oldest alert of a lower priority, or
+ * rejects it if there is none. Producers that may wait block in the timed
+ * offer until a consumer makes room. Queue depth and enqueue-to-delivery
+ * latency are tracked for the dashboard.
+ */
+public class AlertDispatchQueue {
+    private static final int LANE_HIGH = 0;
+    private static final int LANE_MEDIUM = 1;
+    private static final int LANE_LOW = 2;
+    private static final int LANE_COUNT = 3;
+    private static final int LATENCY_WINDOW = 256;
+
+    private final int capacity;
+    private final Lane[] lanes = new Lane[LANE_COUNT];
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private int depth;
+    private boolean closed;
+
+    private final StreamingStats latencyMillis = new StreamingStats(LATENCY_WINDOW, 0.2);
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong displaced = new AtomicLong();
+    private final AtomicLong producerWaits = new AtomicLong();
+
+    /**
+     * @param capacity Maximum number of alerts waiting across all priorities
+     */
+    public AlertDispatchQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        for (int i = 0; i < LANE_COUNT; i++) {
+            // Any single lane may hold the whole capacity
+            lanes[i] = new Lane(capacity);
+        }
+    }
+
+    /**
+     * Queues an alert for delivery without waiting. If the queue is full, the
+     * oldest queued alert of the lowest priority below this alert's is dropped
+     * to make room.
+     * @param alert Alert to deliver
+     * @return true if the alert was queued, false if the queue is full of
+     *         alerts of the same or higher priority, or closed
+     */
+    public boolean offer(MonitoringDashboard.Alert alert) {
+        int laneIndex = laneOf(alert.getPriority());
+        lock.lock();
+        try {
+            if (closed) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (depth == capacity) {
+                int victim = -1;
+                for (int i = LANE_COUNT - 1; i > laneIndex; i--) {
+                    if (lanes[i].size > 0) {
+                        victim = i;
+                        break;
+                    }
+                }
+                if (victim < 0) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+                lanes[victim].pop();
+                depth--;
+                displaced.incrementAndGet();
+            }
+            lanes[laneIndex].push(alert, System.nanoTime());
+            depth++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues an alert for delivery, waiting for space if the queue is full
+     * @param alert Alert to deliver
+     * @param timeout Longest time to wait for space
+     * @param unit Unit of the timeout
+     * @return true if the alert was queued, false if it timed out or the queue is closed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean offer(MonitoringDashboard.Alert alert, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            if (depth == capacity && !closed) {
+                producerWaits.incrementAndGet();
+            }
+            while (depth == capacity && !closed) {
+                if (remaining <= 0) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+                remaining = notFull.awaitNanos(remaining);
+            }
+            if (closed) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            lanes[laneOf(alert.getPriority())].push(alert, System.nanoTime());
+            depth++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next alert in priority order, waiting until one is queued
+     * @param timeout Longest time to wait
+     * @param unit Unit of the timeout
+     * @return The alert, or null if none arrived in time or the queue is closed and empty
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public MonitoringDashboard.Alert poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        long enqueuedAt;
+        MonitoringDashboard.Alert alert;
+
+        lock.lockInterruptibly();
+        try {
+            while (depth == 0) {
+                if (closed || remaining <= 0) {
+                    return null;
+                }
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            Lane lane = firstNonEmpty();
+            enqueuedAt = lane.headTime();
+            alert = lane.pop();
+            depth--;
+            notFull.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        recordDelivery(enqueuedAt, System.nanoTime());
+        return alert;
+    }
+
+    /**
+     * Moves up to maxAlerts queued alerts into a collection without waiting
+     * @param out Collection receiving the alerts in priority order
+     * @param maxAlerts Maximum number of alerts to move
+     * @return Number of alerts moved
+     */
+    public int drainTo(Collection<? super MonitoringDashboard.Alert> out, int maxAlerts) {
+        long[] enqueuedAt;
+        int moved = 0;
+
+        lock.lock();
+        try {
+            int n = Math.min(depth, maxAlerts);
+            enqueuedAt = new long[n];
+            while (moved < n) {
+                Lane lane = firstNonEmpty();
+                enqueuedAt[moved++] = lane.headTime();
+                out.add(lane.pop());
+            }
+            depth -= moved;
+            if (moved > 0) {
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long now = System.nanoTime();
+        for (int i = 0; i < moved; i++) {
+            recordDelivery(enqueuedAt[i], now);
+        }
+        return moved;
+    }
+
+    /**
+     * Stops accepting alerts and wakes all waiting producers and consumers.
+     * Alerts already queued can still be drained.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of alerts waiting for delivery
+     */
+    public int getDepth() {
+        lock.lock();
+        try {
+            return depth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param priority Alert priority (HIGH, MEDIUM or LOW)
+     * @return Number of alerts of that priority waiting for delivery
+     */
+    public int getDepth(String priority) {
+        lock.lock();
+        try {
+            return lanes[laneOf(priority)].size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true once close has been called
+     */
+    public boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() { return capacity; }
+    public long getDeliveredCount() { return delivered.get(); }
+    public long getRejectedCount() { return rejected.get(); }
+    public long getDisplacedCount() { return displaced.get(); }
+    public long getProducerWaitCount() { return producerWaits.get(); }
+
+    /**
+     * @param q Quantile between 0 and 1
+     * @return Estimated enqueue-to-delivery latency in milliseconds, NaN before any delivery
+     */
+    public double getLatencyMillis(double q) {
+        return latencyMillis.getQuantile(q);
+    }
+
+    /**
+     * @return Mean enqueue-to-delivery latency of recent deliveries in milliseconds
+     */
+    public double getRecentMeanLatencyMillis() {
+        return latencyMillis.getRollingMean();
+    }
+
+    private void recordDelivery(long enqueuedAt, long now) {
+        delivered.incrementAndGet();
+        latencyMillis.add((now - enqueuedAt) / 1_000_000.0, System.currentTimeMillis());
+    }
+
+    private Lane firstNonEmpty() {
+        for (Lane lane : lanes) {
+            if (lane.size > 0) {
+                return lane;
+            }
+        }
+        throw new IllegalStateException("Queue depth does not match its lanes");
+    }
+
+    private static int laneOf(String priority) {
+        if ("HIGH".equals(priority)) {
+            return LANE_HIGH;
+        }
+        if ("MEDIUM".equals(priority)) {
+            return LANE_MEDIUM;
+        }
+        return LANE_LOW;
+    }
+
+    /**
+     * Ring buffer of alerts with their enqueue times, guarded by the queue lock
+     */
+    private static final class Lane {
+        private final MonitoringDashboard.Alert[] alerts;
+        private final long[] enqueuedAt;
+        private int head;
+        private int size;
+
+        Lane(int capacity) {
+            this.alerts = new MonitoringDashboard.Alert[capacity];
+            this.enqueuedAt = new long[capacity];
+        }
+
+        void push(MonitoringDashboard.Alert alert, long time) {
+            int tail = (head + size) % alerts.length;
+            alerts[tail] = alert;
+            enqueuedAt[tail] = time;
+            size++;
+        }
+
+        long headTime() {
+            return enqueuedAt[head];
+        }
+
+        MonitoringDashboard.Alert pop() {
+            MonitoringDashboard.Alert alert = alerts[head];
+            alerts[head] = null;
+            head = (head + 1) % alerts.length;
+            size--;
+            return alert;
+        }
+    }
+}
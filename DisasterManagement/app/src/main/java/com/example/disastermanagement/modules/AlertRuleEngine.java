@@ -0,0 +1,223 @@
+package com.example.disastermanagement.modules;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates sensor readings against the monitoring alert rules.
+ *
+ * Rules are compiled into an array indexed by sensor type, with each rule
+ * bound to the current value of its threshold, so a reading only runs the
+ * rules registered for its own sensor. Changing a threshold or adding a
+ * rule builds a new compiled table and publishes it with a single volatile
+ * write; ingest threads keep using the table they already read and never
+ * wait for a reload.
+ */
+public class AlertRuleEngine {
+
+    /**
+     * A predicate over typed sensor readings that raises an alert on match
+     */
+    public interface AlertRule {
+        /** Sensor type code this rule applies to */
+        int getSensorType();
+
+        /** Name of the threshold this rule is bound to */
+        String getThresholdName();
+
+        boolean test(double value, double threshold);
+
+        MonitoringDashboard.Alert createAlert(String region, double value, double threshold,
+                                              LocalDateTime readingTime);
+    }
+
+    /**
+     * Rule that fires when a reading exceeds its threshold. Readings more than
+     * 50% over the threshold are raised as HIGH priority, others as MEDIUM.
+     */
+    public static class ThresholdRule implements AlertRule {
+        private final int sensorType;
+        private final String thresholdName;
+        private final String alertType;
+        private final String message;
+
+        public ThresholdRule(int sensorType, String thresholdName, String alertType, String message) {
+            this.sensorType = sensorType;
+            this.thresholdName = thresholdName;
+            this.alertType = alertType;
+            this.message = message;
+        }
+
+        @Override
+        public int getSensorType() { return sensorType; }
+
+        @Override
+        public String getThresholdName() { return thresholdName; }
+
+        @Override
+        public boolean test(double value, double threshold) {
+            return value > threshold;
+        }
+
+        @Override
+        public MonitoringDashboard.Alert createAlert(String region, double value, double threshold,
+                                                     LocalDateTime readingTime) {
+            Map<String, Object> details = new HashMap<>();
+            details.put("current_level", value);
+            details.put("threshold", threshold);
+            details.put("excess", value - threshold);
+
+            return new MonitoringDashboard.Alert(
+                alertType,
+                message,
+                value > threshold * 1.5 ? "HIGH" : "MEDIUM",
+                region,
+                details,
+                readingTime
+            );
+        }
+    }
+
+    /**
+     * A rule bound to the threshold value it was compiled with
+     */
+    public static final class CompiledRule {
+        private final AlertRule rule;
+        private final double threshold;
+
+        CompiledRule(AlertRule rule, double threshold) {
+            this.rule = rule;
+            this.threshold = threshold;
+        }
+
+        public boolean matches(double value) {
+            return rule.test(value, threshold);
+        }
+
+        public MonitoringDashboard.Alert createAlert(String region, double value, LocalDateTime readingTime) {
+            return rule.createAlert(region, value, threshold, readingTime);
+        }
+
+        public AlertRule getRule() { return rule; }
+        public double getThreshold() { return threshold; }
+    }
+
+    private static final CompiledRule[] NO_RULES = new CompiledRule[0];
+
+    private final int sensorTypeCount;
+    private final Map<String, Double> thresholds = new HashMap<>();
+    private final List<AlertRule> rules = new ArrayList<>();
+    private volatile CompiledRule[][] compiled;
+
+    /**
+     * @param sensorTypeCount Number of sensor type codes, codes run from 0 to count - 1
+     */
+    public AlertRuleEngine(int sensorTypeCount) {
+        this.sensorTypeCount = sensorTypeCount;
+        this.compiled = new CompiledRule[sensorTypeCount][];
+        for (int i = 0; i < sensorTypeCount; i++) {
+            compiled[i] = NO_RULES;
+        }
+    }
+
+    /**
+     * Registers a rule and recompiles the rule table
+     * @param rule Rule to add
+     */
+    public synchronized void addRule(AlertRule rule) {
+        if (rule.getSensorType() < 0 || rule.getSensorType() >= sensorTypeCount) {
+            throw new IllegalArgumentException("Unknown sensor type: " + rule.getSensorType());
+        }
+        rules.add(rule);
+        recompile();
+    }
+
+    /**
+     * Defines a threshold, creating it if needed, and recompiles the rule table
+     * @param thresholdName Name of the threshold
+     * @param value Threshold value
+     */
+    public synchronized void setThreshold(String thresholdName, double value) {
+        thresholds.put(thresholdName, value);
+        recompile();
+    }
+
+    /**
+     * Changes an existing threshold and hot-swaps the compiled rules
+     * @param thresholdName Name of the threshold
+     * @param value New threshold value
+     * @return false if no threshold with that name exists
+     */
+    public synchronized boolean updateThreshold(String thresholdName, double value) {
+        if (!thresholds.containsKey(thresholdName)) {
+            return false;
+        }
+        thresholds.put(thresholdName, value);
+        recompile();
+        return true;
+    }
+
+    /**
+     * Gets a copy of the current threshold values
+     * @return Map of threshold name to value
+     */
+    public synchronized Map<String, Double> getThresholds() {
+        return new HashMap<>(thresholds);
+    }
+
+    /**
+     * Gets the compiled rule table. Callers evaluating many readings should
+     * read it once and reuse it so they see a single rule version.
+     * @return Compiled rules indexed by sensor type
+     */
+    public CompiledRule[][] snapshot() {
+        return compiled;
+    }
+
+    /**
+     * Runs the rules for one reading and collects the alerts they raise
+     * @param region Region the reading belongs to
+     * @param sensorType Sensor type code of the reading
+     * @param value Reading value
+     * @param readingTime Time of the reading
+     * @param out List that receives the new alerts
+     * @return Number of alerts added to out
+     */
+    public int evaluate(String region, int sensorType, double value, LocalDateTime readingTime,
+                        List<MonitoringDashboard.Alert> out) {
+        CompiledRule[] candidates = compiled[sensorType];
+        int raised = 0;
+        for (CompiledRule rule : candidates) {
+            if (rule.matches(value)) {
+                out.add(rule.createAlert(region, value, readingTime));
+                raised++;
+            }
+        }
+        return raised;
+    }
+
+    private void recompile() {
+        List<List<CompiledRule>> bySensor = new ArrayList<>(sensorTypeCount);
+        for (int i = 0; i < sensorTypeCount; i++) {
+            bySensor.add(new ArrayList<>());
+        }
+
+        for (AlertRule rule : rules) {
+            Double threshold = thresholds.get(rule.getThresholdName());
+            // Rules stay dormant until their threshold has been defined
+            if (threshold != null) {
+                bySensor.get(rule.getSensorType()).add(new CompiledRule(rule, threshold));
+            }
+        }
+
+        CompiledRule[][] table = new CompiledRule[sensorTypeCount][];
+        for (int i = 0; i < sensorTypeCount; i++) {
+            List<CompiledRule> sensorRules = bySensor.get(i);
+            table[i] = sensorRules.isEmpty() ? NO_RULES : sensorRules.toArray(new CompiledRule[0]);
+        }
+        this.compiled = table;
+    }
+}
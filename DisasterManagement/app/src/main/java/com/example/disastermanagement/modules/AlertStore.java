@@ -0,0 +1,484 @@
+package com.example.disastermanagement.modules;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Concurrent store for the alerts shown on the monitoring dashboard.
+ * Alerts are partitioned by region and each region keeps an append-only
+ * log made of fixed-size segments, so many sensor threads can add alerts
+ * at the same time without taking a global lock.
+ *
+ * Active alert counts per priority and per region are maintained as alerts
+ * are added and resolved, so summaries never have to walk the logs.
+ *
+ * Retention is bounded in time and memory. Each region log is a ring of
+ * time buckets covering the retention window; a bucket that falls out of
+ * the window, or is the oldest one when the memory cap is exceeded, is
+ * dropped as a whole block together with its counts.
+ */
+public class AlertStore {
+    private static final int SEGMENT_SIZE = 64;
+
+    // Rough heap cost of an alert, its strings and a small details map
+    private static final long ALERT_BASE_BYTES = 320;
+    private static final long DETAIL_ENTRY_BYTES = 64;
+
+    private final long bucketMillis;
+    private final int windowBuckets;
+    private final int ringSize;
+    private final long maxResidentBytes;
+
+    private final ConcurrentHashMap<String, RegionLog> regions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicInteger> activeByPriority = new ConcurrentHashMap<>();
+    private final AtomicInteger activeTotal = new AtomicInteger();
+
+    private final AtomicLong residentBytes = new AtomicLong();
+    private final AtomicLong evictedAlerts = new AtomicLong();
+    private final AtomicLong evictedBuckets = new AtomicLong();
+    private final AtomicLong futureAlerts = new AtomicLong();
+    private final AtomicLong lastExpiredEpoch = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param windowMillis How long alerts are retained
+     * @param bucketMillis Width of one retention bucket
+     * @param maxResidentBytes Estimated memory cap for stored alerts
+     */
+    public AlertStore(long windowMillis, long bucketMillis, long maxResidentBytes) {
+        if (bucketMillis <= 0 || windowMillis < bucketMillis) {
+            throw new IllegalArgumentException("Retention window must cover at least one bucket");
+        }
+        this.bucketMillis = bucketMillis;
+        this.windowBuckets = (int) ((windowMillis + bucketMillis - 1) / bucketMillis);
+        // One extra slot holds the bucket that is currently filling
+        this.ringSize = windowBuckets + 1;
+        this.maxResidentBytes = maxResidentBytes;
+    }
+
+    /**
+     * Appends an alert to the log of its region
+     * @param alert Alert to store
+     * @return false if the alert was already stored or is older than the retention window
+     */
+    public boolean add(MonitoringDashboard.Alert alert) {
+        long epoch = bucketEpoch(alert);
+        long now = currentEpoch();
+        if (epoch > now) {
+            // A sensor clock running ahead would otherwise take over the ring
+            // slot of a bucket that is still inside the window
+            futureAlerts.incrementAndGet();
+            epoch = now;
+        }
+        long minEpoch = now - windowBuckets;
+        if (epoch < minEpoch) {
+            evictedAlerts.incrementAndGet();
+            return false;
+        }
+
+        RegionLog log = regionLog(alert.getRegion());
+        long bytes = estimateBytes(alert);
+
+        while (true) {
+            Bucket bucket = log.bucketFor(epoch);
+            if (bucket == null) {
+                // The slot has already moved on to newer data
+                evictedAlerts.incrementAndGet();
+                return false;
+            }
+
+            bucket.lock.readLock().lock();
+            try {
+                if (bucket.evicted) {
+                    continue;
+                }
+                if (!alert.markActive()) {
+                    return false;
+                }
+
+                alert.setStoreBucket(bucket);
+                bucket.append(alert);
+                bucket.counter(alert.getPriority()).incrementAndGet();
+                bucket.bytes.addAndGet(bytes);
+
+                log.active.incrementAndGet();
+                priorityCounter(alert.getPriority()).incrementAndGet();
+                activeTotal.incrementAndGet();
+            } finally {
+                bucket.lock.readLock().unlock();
+            }
+            break;
+        }
+
+        if (residentBytes.addAndGet(bytes) > maxResidentBytes) {
+            enforceMemoryCap();
+        }
+        return true;
+    }
+
+    /**
+     * Marks a stored alert as resolved and removes it from the active counts
+     * @param alert Alert to resolve
+     * @return false if the alert is not active in this store
+     */
+    public boolean resolve(MonitoringDashboard.Alert alert) {
+        RegionLog log = regions.get(alert.getRegion());
+        Bucket bucket = alert.getStoreBucket();
+        if (log == null || bucket == null) {
+            return false;
+        }
+
+        bucket.lock.readLock().lock();
+        try {
+            // Alerts in a dropped bucket were already removed from the counts
+            if (bucket.evicted || !alert.markResolved()) {
+                return false;
+            }
+
+            bucket.counter(alert.getPriority()).decrementAndGet();
+            log.active.decrementAndGet();
+            priorityCounter(alert.getPriority()).decrementAndGet();
+            activeTotal.decrementAndGet();
+            return true;
+        } finally {
+            bucket.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether an alert is still active and retained by this store
+     * @param alert Alert to check
+     * @return true if the alert is unresolved and its bucket has not been dropped
+     */
+    public boolean isStored(MonitoringDashboard.Alert alert) {
+        Bucket bucket = alert.getStoreBucket();
+        return bucket != null && !bucket.evicted && !alert.isResolved();
+    }
+
+    /**
+     * Drops every bucket that has fallen out of the retention window. Runs
+     * at most once per bucket interval, so it is cheap to call on each update.
+     */
+    public void expire() {
+        long minEpoch = currentEpoch() - windowBuckets;
+        long last = lastExpiredEpoch.get();
+        if (minEpoch <= last || !lastExpiredEpoch.compareAndSet(last, minEpoch)) {
+            return;
+        }
+
+        for (RegionLog log : regions.values()) {
+            for (int slot = 0; slot < ringSize; slot++) {
+                Bucket bucket = log.ring.get(slot);
+                if (bucket != null && bucket.epoch < minEpoch && log.ring.compareAndSet(slot, bucket, null)) {
+                    evict(log, bucket);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets a snapshot of the unresolved alerts stored for a region
+     * @param region Name of the region
+     * @return List of alerts, oldest bucket first, empty if the region is unknown
+     */
+    public List<MonitoringDashboard.Alert> getAlerts(String region) {
+        RegionLog log = regions.get(region);
+        if (log == null) {
+            return new ArrayList<>();
+        }
+        return log.snapshot();
+    }
+
+    /**
+     * Gets the number of unresolved alerts for a region
+     * @param region Name of the region
+     * @return Active alert count, 0 if the region is unknown
+     */
+    public int getActiveCount(String region) {
+        RegionLog log = regions.get(region);
+        return log == null ? 0 : log.active.get();
+    }
+
+    /**
+     * Gets the number of unresolved alerts for each priority
+     * @return Map of priority to active alert count
+     */
+    public Map<String, Integer> getActiveCountsByPriority() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, AtomicInteger> entry : activeByPriority.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the regions that currently have an alert log
+     * @return Unmodifiable view of the region names
+     */
+    public Set<String> getRegions() {
+        return Collections.unmodifiableSet(regions.keySet());
+    }
+
+    /**
+     * Gets the number of unresolved alerts across every region
+     * @return Total active alert count
+     */
+    public int size() {
+        return activeTotal.get();
+    }
+
+    /**
+     * @return Estimated heap bytes held by stored alerts
+     */
+    public long getResidentBytes() {
+        return residentBytes.get();
+    }
+
+    /**
+     * @return Number of alerts dropped by retention, including late arrivals
+     */
+    public long getEvictedAlertCount() {
+        return evictedAlerts.get();
+    }
+
+    /**
+     * @return Number of whole buckets dropped by retention
+     */
+    public long getEvictedBucketCount() {
+        return evictedBuckets.get();
+    }
+
+    /**
+     * @return Number of alerts stamped later than now, stored in the current bucket
+     */
+    public long getFutureAlertCount() {
+        return futureAlerts.get();
+    }
+
+    private void enforceMemoryCap() {
+        while (residentBytes.get() > maxResidentBytes) {
+            RegionLog oldestLog = null;
+            int oldestSlot = -1;
+            Bucket oldest = null;
+
+            for (RegionLog log : regions.values()) {
+                for (int slot = 0; slot < ringSize; slot++) {
+                    Bucket bucket = log.ring.get(slot);
+                    if (bucket != null && (oldest == null || bucket.epoch < oldest.epoch)) {
+                        oldestLog = log;
+                        oldestSlot = slot;
+                        oldest = bucket;
+                    }
+                }
+            }
+
+            if (oldest == null) {
+                return;
+            }
+            if (oldestLog.ring.compareAndSet(oldestSlot, oldest, null)) {
+                evict(oldestLog, oldest);
+            }
+        }
+    }
+
+    private void evict(RegionLog log, Bucket bucket) {
+        bucket.lock.writeLock().lock();
+        try {
+            if (bucket.evicted) {
+                return;
+            }
+            bucket.evicted = true;
+
+            int dropped = 0;
+            for (Map.Entry<String, AtomicInteger> entry : bucket.activeByPriority.entrySet()) {
+                int count = entry.getValue().get();
+                priorityCounter(entry.getKey()).addAndGet(-count);
+                dropped += count;
+            }
+            log.active.addAndGet(-dropped);
+            activeTotal.addAndGet(-dropped);
+
+            residentBytes.addAndGet(-bucket.bytes.get());
+            evictedAlerts.addAndGet(bucket.claimed.get());
+            evictedBuckets.incrementAndGet();
+        } finally {
+            bucket.lock.writeLock().unlock();
+        }
+    }
+
+    private long bucketEpoch(MonitoringDashboard.Alert alert) {
+        long millis = alert.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return Math.floorDiv(millis, bucketMillis);
+    }
+
+    private long currentEpoch() {
+        return Math.floorDiv(System.currentTimeMillis(), bucketMillis);
+    }
+
+    private static long estimateBytes(MonitoringDashboard.Alert alert) {
+        Map<String, Object> details = alert.getDetails();
+        return ALERT_BASE_BYTES + (details == null ? 0 : details.size() * DETAIL_ENTRY_BYTES);
+    }
+
+    private RegionLog regionLog(String region) {
+        RegionLog log = regions.get(region);
+        if (log == null) {
+            RegionLog created = new RegionLog();
+            log = regions.putIfAbsent(region, created);
+            if (log == null) {
+                log = created;
+            }
+        }
+        return log;
+    }
+
+    private AtomicInteger priorityCounter(String priority) {
+        return counterFor(activeByPriority, priority);
+    }
+
+    private static AtomicInteger counterFor(ConcurrentHashMap<String, AtomicInteger> counters, String key) {
+        AtomicInteger counter = counters.get(key);
+        if (counter == null) {
+            AtomicInteger created = new AtomicInteger();
+            counter = counters.putIfAbsent(key, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Alert log for a single region: a ring of time buckets indexed by
+     * bucket epoch modulo the ring size.
+     */
+    final class RegionLog {
+        final AtomicReferenceArray<Bucket> ring = new AtomicReferenceArray<>(ringSize);
+        final AtomicInteger active = new AtomicInteger();
+
+        int slot(long epoch) {
+            return (int) Math.floorMod(epoch, (long) ringSize);
+        }
+
+        Bucket bucketFor(long epoch) {
+            int slot = slot(epoch);
+            while (true) {
+                Bucket current = ring.get(slot);
+                if (current != null && current.epoch == epoch) {
+                    return current;
+                }
+                if (current != null && current.epoch > epoch) {
+                    return null;
+                }
+
+                // The slot is empty or holds an expired bucket: take it over
+                Bucket fresh = new Bucket(epoch);
+                if (ring.compareAndSet(slot, current, fresh)) {
+                    if (current != null) {
+                        evict(this, current);
+                    }
+                    return fresh;
+                }
+            }
+        }
+
+        List<MonitoringDashboard.Alert> snapshot() {
+            List<Bucket> buckets = new ArrayList<>(ringSize);
+            for (int slot = 0; slot < ringSize; slot++) {
+                Bucket bucket = ring.get(slot);
+                if (bucket != null) {
+                    buckets.add(bucket);
+                }
+            }
+            Collections.sort(buckets, (b1, b2) -> Long.compare(b1.epoch, b2.epoch));
+
+            List<MonitoringDashboard.Alert> result = new ArrayList<>();
+            for (Bucket bucket : buckets) {
+                bucket.collect(result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Alerts whose timestamps fall into one bucket interval. A producer claims
+     * a slot with one atomic increment and then publishes the alert into the
+     * segment that owns that slot, adding segments with CAS when needed.
+     */
+    static final class Bucket {
+        final long epoch;
+        final Segment head = new Segment(0);
+        final AtomicReference<Segment> tail = new AtomicReference<>(head);
+        final AtomicInteger claimed = new AtomicInteger();
+        final AtomicLong bytes = new AtomicLong();
+        final ConcurrentHashMap<String, AtomicInteger> activeByPriority = new ConcurrentHashMap<>();
+
+        // Adds and resolves share the bucket; eviction takes it exclusively
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        volatile boolean evicted;
+
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+
+        AtomicInteger counter(String priority) {
+            return counterFor(activeByPriority, priority);
+        }
+
+        void append(MonitoringDashboard.Alert alert) {
+            // Read the tail before claiming so it can never be past our slot
+            Segment segment = tail.get();
+            int slot = claimed.getAndIncrement();
+
+            while (slot >= segment.base + SEGMENT_SIZE) {
+                Segment next = segment.next.get();
+                if (next == null) {
+                    segment.next.compareAndSet(null, new Segment(segment.base + SEGMENT_SIZE));
+                    next = segment.next.get();
+                }
+                segment = next;
+            }
+
+            Segment currentTail = tail.get();
+            while (currentTail.base < segment.base && !tail.compareAndSet(currentTail, segment)) {
+                currentTail = tail.get();
+            }
+
+            segment.slots.set(slot - segment.base, alert);
+        }
+
+        void collect(List<MonitoringDashboard.Alert> result) {
+            int limit = claimed.get();
+            for (Segment segment = head; segment != null && segment.base < limit; segment = segment.next.get()) {
+                int end = Math.min(SEGMENT_SIZE, limit - segment.base);
+                for (int i = 0; i < end; i++) {
+                    MonitoringDashboard.Alert alert = segment.slots.get(i);
+                    // Slots claimed by producers that have not published yet are skipped
+                    if (alert != null && !alert.isResolved()) {
+                        result.add(alert);
+                    }
+                }
+            }
+        }
+    }
+
+    static final class Segment {
+        final int base;
+        final AtomicReferenceArray<MonitoringDashboard.Alert> slots = new AtomicReferenceArray<>(SEGMENT_SIZE);
+        final AtomicReference<Segment> next = new AtomicReference<>();
+
+        Segment(int base) {
+            this.base = base;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.disastermanagement.modules;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * De-duplicates alerts before they reach the alert store.
+ *
+ * The most recent open alert is remembered for every (region, type,
+ * priority) key. A repeat that arrives within the hysteresis window of
+ * the last occurrence is folded into that alert, bumping its occurrence
+ * count and last-seen time, instead of raising a new one. A new alert is
+ * only raised once the key has been quiet for a full window or the open
+ * alert has been resolved or dropped by retention.
+ *
+ * A key is forgotten as soon as its alert is resolved through resolve, and
+ * prune drops keys whose alert went quiet for a window or left the store,
+ * so the map only ever holds alerts that can still absorb repeats.
+ */
+public class AlertSuppressor {
+    private final AlertStore store;
+    private final Duration window;
+    private final ConcurrentHashMap<Key, MonitoringDashboard.Alert> openAlerts = new ConcurrentHashMap<>();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong nextPruneMillis = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param store Store that admitted alerts are added to
+     * @param windowMillis Hysteresis window measured from the last occurrence
+     */
+    public AlertSuppressor(AlertStore store, long windowMillis) {
+        this.store = store;
+        this.window = Duration.ofMillis(windowMillis);
+    }
+
+    /**
+     * Stores the alert unless it repeats an open alert for the same key
+     * @param alert Newly raised alert
+     * @return true if the alert was stored, false if it was coalesced or rejected
+     */
+    public boolean admit(MonitoringDashboard.Alert alert) {
+        Key key = keyOf(alert);
+
+        // compute only locks this key's bin, so the check and the add are atomic per key
+        MonitoringDashboard.Alert winner = openAlerts.compute(key, (k, open) -> {
+            if (open != null && store.isStored(open) &&
+                    !alert.getTimestamp().isAfter(open.getLastSeen().plus(window))) {
+                open.recordOccurrence(alert.getTimestamp());
+                suppressed.incrementAndGet();
+                return open;
+            }
+            return store.add(alert) ? alert : open;
+        });
+
+        return winner == alert;
+    }
+
+    /**
+     * Resolves an alert in the store and forgets it as the open alert of its key
+     * @param alert Alert to resolve
+     * @return false if the alert is not active in the store
+     */
+    public boolean resolve(MonitoringDashboard.Alert alert) {
+        boolean resolved = store.resolve(alert);
+        openAlerts.remove(keyOf(alert), alert);
+        return resolved;
+    }
+
+    /**
+     * Forgets open alerts that can no longer absorb repeats: resolved, dropped
+     * by the store, or quiet for a full window. Walks every key, so it runs at
+     * most once per window however often it is called.
+     * @param now Current time
+     */
+    public void prune(LocalDateTime now) {
+        long nowMillis = now.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long next = nextPruneMillis.get();
+        if (nowMillis < next || !nextPruneMillis.compareAndSet(next, nowMillis + window.toMillis())) {
+            return;
+        }
+        LocalDateTime quietSince = now.minus(window);
+        for (Key key : openAlerts.keySet()) {
+            // Checked under the key's lock, so a repeat folded in meanwhile keeps it
+            openAlerts.computeIfPresent(key, (k, open) ->
+                    store.isStored(open) && !open.getLastSeen().isBefore(quietSince) ? open : null);
+        }
+    }
+
+    /**
+     * @return Number of keys with a remembered open alert
+     */
+    public int getOpenCount() {
+        return openAlerts.size();
+    }
+
+    /**
+     * @return Number of repeats folded into an existing alert
+     */
+    public long getSuppressedCount() {
+        return suppressed.get();
+    }
+
+    private static Key keyOf(MonitoringDashboard.Alert alert) {
+        return new Key(alert.getRegion(), alert.getType(), alert.getPriority());
+    }
+
+    static final class Key {
+        private final String region;
+        private final String type;
+        private final String priority;
+        private final int hash;
+
+        Key(String region, String type, String priority) {
+            this.region = region;
+            this.type = type;
+            this.priority = priority;
+            int h = region == null ? 0 : region.hashCode();
+            h = 31 * h + (type == null ? 0 : type.hashCode());
+            h = 31 * h + (priority == null ? 0 : priority.hashCode());
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash &&
+                    equalsNullable(region, other.region) &&
+                    equalsNullable(type, other.type) &&
+                    equalsNullable(priority, other.priority);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        private static boolean equalsNullable(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.disastermanagement.modules;
+
+import com.example.disastermanagement.utils.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary and inverted index for team capabilities.
+ *
+ * Each distinct capability name is interned to a small int id. A team's
+ * capabilities are stored as a bitset of those ids packed into longs, so
+ * checking what a team lacks is a few AND-NOT and bit-count operations
+ * instead of string comparisons. For every capability a compressed bitmap
+ * lists the team slots that have it, so "teams with SWIFT_WATER and
+ * MEDICAL" is an intersection of two bitmaps.
+ *
+ * Not thread safe; TeamDispatcher guards it with its own lock.
+ */
+public class CapabilityIndex {
+    private static final long[] NO_CAPABILITIES = new long[0];
+
+    private final Map<String, Integer> idsByName = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<RoaringBitmap> slotsByCapability = new ArrayList<>();
+    private final List<long[]> capabilitiesBySlot = new ArrayList<>();
+
+    /**
+     * Interns a team's capabilities and indexes the team under each of them
+     * @param slot Dense team slot, one past the last added slot
+     * @param capabilities Capability names of the team, may be null
+     * @return The team's capabilities as a bitset of ids
+     */
+    public long[] add(int slot, Collection<String> capabilities) {
+        if (slot != capabilitiesBySlot.size()) {
+            throw new IllegalArgumentException("Slots must be added in order, expected " + capabilitiesBySlot.size());
+        }
+
+        long[] bits = NO_CAPABILITIES;
+        if (capabilities != null) {
+            for (String capability : capabilities) {
+                int id = intern(capability);
+                if (id >>> 6 >= bits.length) {
+                    bits = Arrays.copyOf(bits, (id >>> 6) + 1);
+                }
+                bits[id >>> 6] |= 1L << id;
+                slotsByCapability.get(id).add(slot);
+            }
+        }
+        capabilitiesBySlot.add(bits);
+        return bits;
+    }
+
+    /**
+     * @param capability Capability name
+     * @return Id of the capability, or -1 if no team has it
+     */
+    public int idOf(String capability) {
+        Integer id = idsByName.get(capability);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id Capability id
+     * @return Name of the capability
+     */
+    public String nameOf(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * @return Number of distinct capabilities
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * @param slot Team slot
+     * @return The team's capabilities as a bitset of ids
+     */
+    public long[] getCapabilities(int slot) {
+        return capabilitiesBySlot.get(slot);
+    }
+
+    /**
+     * Converts capability names to a bitset of ids, skipping unknown names
+     * @param capabilities Capability names
+     * @return Bitset of the known capabilities
+     */
+    public long[] encode(Collection<String> capabilities) {
+        long[] bits = NO_CAPABILITIES;
+        for (String capability : capabilities) {
+            int id = idOf(capability);
+            if (id >= 0) {
+                if (id >>> 6 >= bits.length) {
+                    bits = Arrays.copyOf(bits, (id >>> 6) + 1);
+                }
+                bits[id >>> 6] |= 1L << id;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Finds the teams that have every listed capability
+     * @param capabilities Capability names
+     * @return New bitmap of team slots; every slot if the list is empty
+     */
+    public RoaringBitmap withAll(Collection<String> capabilities) {
+        List<RoaringBitmap> lists = new ArrayList<>(capabilities.size());
+        for (String capability : capabilities) {
+            int id = idOf(capability);
+            if (id < 0) {
+                return new RoaringBitmap(); // Nobody has it
+            }
+            lists.add(slotsByCapability.get(id));
+        }
+        if (lists.isEmpty()) {
+            return allSlots();
+        }
+
+        // Start from the rarest capability so intermediate results stay small
+        RoaringBitmap rarest = lists.get(0);
+        for (RoaringBitmap list : lists) {
+            if (list.cardinality() < rarest.cardinality()) {
+                rarest = list;
+            }
+        }
+        RoaringBitmap result = new RoaringBitmap(rarest);
+        for (RoaringBitmap list : lists) {
+            if (list != rarest) {
+                result.and(list);
+                if (result.isEmpty()) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the teams that have at least one listed capability
+     * @param capabilities Capability names
+     * @return New bitmap of team slots
+     */
+    public RoaringBitmap withAny(Collection<String> capabilities) {
+        RoaringBitmap result = new RoaringBitmap();
+        for (String capability : capabilities) {
+            int id = idOf(capability);
+            if (id >= 0) {
+                result.or(slotsByCapability.get(id));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the capabilities in one bitset that are missing from another
+     * @param required Bitset of wanted capability ids
+     * @param present Bitset of capability ids a team has
+     * @return Number of wanted capabilities the team lacks
+     */
+    public static int countMissing(long[] required, long[] present) {
+        int missing = 0;
+        for (int w = 0; w < required.length; w++) {
+            long have = w < present.length ? present[w] : 0;
+            missing += Long.bitCount(required[w] & ~have);
+        }
+        return missing;
+    }
+
+    /**
+     * @param bits Bitset of capability ids
+     * @return Number of capabilities in the bitset
+     */
+    public static int count(long[] bits) {
+        int total = 0;
+        for (long word : bits) {
+            total += Long.bitCount(word);
+        }
+        return total;
+    }
+
+    private int intern(String capability) {
+        Integer id = idsByName.get(capability);
+        if (id == null) {
+            id = names.size();
+            idsByName.put(capability, id);
+            names.add(capability);
+            slotsByCapability.add(new RoaringBitmap());
+        }
+        return id;
+    }
+
+    private RoaringBitmap allSlots() {
+        RoaringBitmap all = new RoaringBitmap();
+        for (int slot = 0; slot < capabilitiesBySlot.size(); slot++) {
+            all.add(slot);
+        }
+        return all;
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.disastermanagement.modules;
+
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only archive of resolved disaster events on local storage.
+ *
+ * Events are written as compact binary records to a data file, each framed
+ * by its length and a CRC32 of its payload. Every BLOCK_RECORDS records form
+ * a block, and a small index file keeps the offset and resolution-time range
+ * of each completed block. A range query checks those ranges in memory and
+ * reads only the blocks that overlap the requested interval, one block at a
+ * time. Records after the last indexed block are checked on open; recovery
+ * stops at the first torn or corrupt record and cuts the file there. Every
+ * record's checksum is checked again when a query reads it, so damage that
+ * happens after recovery is caught too; the rest of a damaged block is
+ * skipped and the query carries on with the other blocks.
+ *
+ * Strings are stored as a presence flag followed by length-prefixed UTF-8,
+ * so nulls and long texts survive. Detail maps are stored with their values
+ * converted to strings.
+ */
+public class DisasterArchive implements Closeable {
+    private static final String TAG = "DisasterArchive";
+    private static final int DATA_MAGIC = 0x44415243; // "DARC"
+    private static final int FORMAT_VERSION = 3;
+    private static final int HEADER_BYTES = 8;
+    // Length and checksum before each payload
+    private static final int RECORD_HEADER_BYTES = 8;
+    // Every payload starts with the resolution time; larger ones are treated as corruption
+    private static final int MIN_RECORD_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 1024 * 1024;
+    private static final int BLOCK_RECORDS = 64;
+
+    private final RandomAccessFile data;
+    private final RandomAccessFile index;
+    private final List<BlockRange> blocks = new ArrayList<>();
+
+    // The block currently being filled; it is not in the index file yet
+    private BlockRange openBlock;
+    // End of the last complete record; a failed append can leave bytes past it
+    private long dataEnd;
+
+    /**
+     * Opens the archive in the given directory, creating it if needed and
+     * recovering any records written after the last indexed block
+     * @param directory Directory holding the archive files
+     * @throws IOException if the files cannot be opened or are not an archive
+     */
+    public DisasterArchive(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create archive directory " + directory);
+        }
+        this.data = new RandomAccessFile(new File(directory, "disasters.dat"), "rw");
+        this.index = new RandomAccessFile(new File(directory, "disasters.idx"), "rw");
+
+        if (data.length() == 0) {
+            data.writeInt(DATA_MAGIC);
+            data.writeInt(FORMAT_VERSION);
+        } else if (data.readInt() != DATA_MAGIC || data.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unrecognized disaster archive format");
+        }
+
+        loadIndex();
+        recoverOpenBlock();
+    }
+
+    /**
+     * Appends a resolved event to the archive
+     * @param event Resolved disaster event
+     * @throws IOException if the record cannot be written or is too large
+     */
+    public synchronized void append(MonitoringDashboard.DisasterEvent event) throws IOException {
+        long resolvedAt = toMillis(event.getResolutionTime());
+        byte[] record = encode(event);
+        if (record.length > MAX_RECORD_BYTES) {
+            // Recovery would take it for corruption and cut it off with everything after it
+            throw new IOException("Disaster " + event.getId() + " is too large to archive: "
+                    + record.length + " bytes");
+        }
+
+        ByteArrayOutputStream framed = new ByteArrayOutputStream(RECORD_HEADER_BYTES + record.length);
+        DataOutputStream out = new DataOutputStream(framed);
+        out.writeInt(record.length);
+        out.writeInt(checksum(record));
+        out.write(record);
+
+        long offset = dataEnd;
+        if (data.length() != offset) {
+            // Cut off what an earlier failed append left, or recovery would stop there
+            Log.w(TAG, "Truncating " + (data.length() - offset) + " bytes of a failed append");
+            data.setLength(offset);
+        }
+        data.seek(offset);
+        data.write(framed.toByteArray());
+        dataEnd = offset + framed.size();
+
+        if (openBlock == null) {
+            openBlock = new BlockRange(offset);
+        }
+        openBlock.include(resolvedAt);
+        openBlock.end = dataEnd;
+        openBlock.count++;
+
+        if (openBlock.count == BLOCK_RECORDS) {
+            BlockRange block = openBlock;
+            blocks.add(block);
+            openBlock = null;
+            // A missing or torn entry is rebuilt from the data file on the next open
+            writeIndexEntry(blocks.size() - 1, block);
+        }
+    }
+
+    /**
+     * Reads the events resolved within a time range
+     * @param from Start of the range, inclusive
+     * @param to End of the range, inclusive
+     * @return Matching events in archive order
+     * @throws IOException if a block cannot be read
+     */
+    public synchronized List<MonitoringDashboard.DisasterEvent> query(LocalDateTime from, LocalDateTime to)
+            throws IOException {
+        long fromMillis = toMillis(from);
+        long toMillis = toMillis(to);
+        List<MonitoringDashboard.DisasterEvent> result = new ArrayList<>();
+
+        for (BlockRange block : blocks) {
+            if (block.overlaps(fromMillis, toMillis)) {
+                readBlock(block, fromMillis, toMillis, result);
+            }
+        }
+        if (openBlock != null && openBlock.overlaps(fromMillis, toMillis)) {
+            readBlock(openBlock, fromMillis, toMillis, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return Number of events in the archive
+     */
+    public synchronized int size() {
+        return blocks.size() * BLOCK_RECORDS + (openBlock == null ? 0 : openBlock.count);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    private void readBlock(BlockRange block, long fromMillis, long toMillis,
+                           List<MonitoringDashboard.DisasterEvent> out) throws IOException {
+        byte[] bytes = new byte[(int) (block.end - block.start)];
+        data.seek(block.start);
+        data.readFully(bytes);
+
+        int position = 0;
+        for (int i = 0; i < block.count; i++) {
+            int length = position + RECORD_HEADER_BYTES <= bytes.length ? readInt(bytes, position) : -1;
+            if (length < MIN_RECORD_BYTES || length > bytes.length - position - RECORD_HEADER_BYTES
+                    || checksum(bytes, position + RECORD_HEADER_BYTES, length) != readInt(bytes, position + 4)) {
+                // The framing can't be trusted past a damaged record
+                Log.e(TAG, "Corrupt record at offset " + (block.start + position) + ", skipping "
+                        + (block.count - i) + " records of its block");
+                return;
+            }
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(bytes, position + RECORD_HEADER_BYTES, length));
+            position += RECORD_HEADER_BYTES + length;
+            // Resolution time leads each record, so non-matching ones are not decoded
+            long resolvedAt = in.readLong();
+            if (resolvedAt >= fromMillis && resolvedAt <= toMillis) {
+                out.add(decode(resolvedAt, in));
+            }
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        long entries = index.length() / BlockRange.ENTRY_BYTES;
+        long dataLength = data.length();
+        long expectedStart = HEADER_BYTES;
+        index.seek(0);
+        for (long i = 0; i < entries; i++) {
+            BlockRange block = new BlockRange(index.readLong());
+            block.end = index.readLong();
+            block.minTime = index.readLong();
+            block.maxTime = index.readLong();
+            block.count = index.readInt();
+            // Blocks must follow each other within the data file; the records of
+            // a bad entry and everything after it are recovered from the data file
+            if (block.start != expectedStart || block.end > dataLength || block.count != BLOCK_RECORDS) {
+                entries = i;
+                break;
+            }
+            blocks.add(block);
+            expectedStart = block.end;
+        }
+        // Drop a torn or bad trailing part of the index
+        index.setLength(entries * BlockRange.ENTRY_BYTES);
+    }
+
+    private void recoverOpenBlock() throws IOException {
+        long offset = blocks.isEmpty() ? HEADER_BYTES : blocks.get(blocks.size() - 1).end;
+        long length = data.length();
+
+        while (offset < length) {
+            data.seek(offset);
+            byte[] record;
+            try {
+                int recordLength = data.readInt();
+                int checksum = data.readInt();
+                if (recordLength < MIN_RECORD_BYTES || recordLength > MAX_RECORD_BYTES
+                        || offset + RECORD_HEADER_BYTES + recordLength > length) {
+                    break;
+                }
+                record = new byte[recordLength];
+                data.readFully(record);
+                if (checksum(record) != checksum) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+            long resolvedAt = new DataInputStream(new ByteArrayInputStream(record)).readLong();
+
+            if (openBlock == null) {
+                openBlock = new BlockRange(offset);
+            }
+            offset += RECORD_HEADER_BYTES + record.length;
+            openBlock.include(resolvedAt);
+            openBlock.end = offset;
+            openBlock.count++;
+
+            if (openBlock.count == BLOCK_RECORDS) {
+                blocks.add(openBlock);
+                writeIndexEntry(blocks.size() - 1, openBlock);
+                openBlock = null;
+            }
+        }
+        dataEnd = offset;
+
+        // Cut off a record that was only partly written before a crash, or
+        // damaged later, together with everything after it
+        if (offset < length) {
+            Log.w(TAG, "Truncating " + (length - offset) + " bytes of damaged records from the archive");
+            data.setLength(offset);
+        }
+    }
+
+    private void writeIndexEntry(int position, BlockRange block) throws IOException {
+        // Each entry goes in its own slot, so it can't land behind a torn one
+        index.seek((long) position * BlockRange.ENTRY_BYTES);
+        index.writeLong(block.start);
+        index.writeLong(block.end);
+        index.writeLong(block.minTime);
+        index.writeLong(block.maxTime);
+        index.writeInt(block.count);
+    }
+
+    private static int checksum(byte[] record) {
+        return checksum(record, 0, record.length);
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static byte[] encode(MonitoringDashboard.DisasterEvent event) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeLong(toMillis(event.getResolutionTime()));
+        out.writeLong(toMillis(event.getDeclarationTime()));
+        out.writeByte(event.getSeverity());
+        writeString(out, event.getId());
+        writeString(out, event.getType());
+        writeString(out, event.getRegion());
+        writeDetails(out, event.getDetails());
+        writeDetails(out, event.getResolutionDetails());
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    private static MonitoringDashboard.DisasterEvent decode(long resolvedAt, DataInputStream in) throws IOException {
+        LocalDateTime declaredAt = toDateTime(in.readLong());
+        int severity = in.readByte();
+        String id = readString(in);
+        String type = readString(in);
+        String region = readString(in);
+        Map<String, Object> details = readDetails(in);
+        Map<String, Object> resolutionDetails = readDetails(in);
+
+        MonitoringDashboard.DisasterEvent event = new MonitoringDashboard.DisasterEvent(
+                id, type, region, severity, declaredAt, details);
+        event.setResolved(true);
+        event.setResolutionTime(toDateTime(resolvedAt));
+        event.setResolutionDetails(resolutionDetails);
+        return event;
+    }
+
+    private static void writeDetails(DataOutputStream out, Map<String, Object> details) throws IOException {
+        if (details == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(details.size());
+        for (Map.Entry<String, Object> entry : details.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue() == null ? null : String.valueOf(entry.getValue()));
+        }
+    }
+
+    private static Map<String, Object> readDetails(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Negative detail count " + count);
+        }
+        Map<String, Object> details = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            details.put(readString(in), readString(in));
+        }
+        return details;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int length = in.readInt();
+        if (length < 0 || length > MAX_RECORD_BYTES) {
+            throw new IOException("Impossible string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    /**
+     * File offsets and resolution-time range of one block of records
+     */
+    private static final class BlockRange {
+        static final int ENTRY_BYTES = 8 * 4 + 4;
+
+        final long start;
+        long end;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        int count;
+
+        BlockRange(long start) {
+            this.start = start;
+            this.end = start;
+        }
+
+        void include(long time) {
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+        }
+
+        boolean overlaps(long from, long to) {
+            return count > 0 && minTime <= to && maxTime >= from;
+        }
+    }
+}
@@ -29,6 +29,7 @@ import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
 import com.example.disastermanagement.api.ApiClient;
 import com.example.disastermanagement.api.ApiService;
+import com.example.disastermanagement.api.OutboundQueue;
 import com.google.gson.JsonObject;
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -41,6 +42,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import android.util.Log;
 
 public class DisasterReporting extends AppCompatActivity {
@@ -242,7 +244,8 @@ public class DisasterReporting extends AppCompatActivity {
                     if (progressOverlay != null) {
                         progressOverlay.setVisibility(View.GONE);
                     }
-                    Toast.makeText(DisasterReporting.this, "Network error: " + t.getMessage(), Toast.LENGTH_LONG).show();
+                    Log.e("DisasterReporting", "Network error, queueing report", t);
+                    queueReport(reportJson);
                 }
             });
             
@@ -254,6 +257,27 @@ public class DisasterReporting extends AppCompatActivity {
         }
     }
     
+    /**
+     * Saves the report in the outbound queue, which sends it once the phone is back online
+     * @param reportJson Report as it would have been submitted
+     */
+    private void queueReport(JsonObject reportJson) {
+        // The picked media may not be readable later, so only the report itself is queued
+        boolean hadMedia = reportJson.has("has_image") || reportJson.has("has_video");
+        reportJson.remove("has_image");
+        reportJson.remove("has_video");
+
+        OutboundQueue.getInstance(this).enqueue(new OutboundQueue.Request("POST", "api/reporting/report",
+                "application/json", reportJson.toString().getBytes(StandardCharsets.UTF_8))
+                .tag("report"));
+
+        Toast.makeText(this, hadMedia
+                        ? "No connection. Report saved and will be sent automatically; please add the photo or video again later."
+                        : "No connection. Report saved and will be sent automatically.",
+                Toast.LENGTH_LONG).show();
+        finish();
+    }
+
     private void uploadMedia(String reportId) {
         // Show progress
         View progressOverlay = findViewById(R.id.progress_overlay);
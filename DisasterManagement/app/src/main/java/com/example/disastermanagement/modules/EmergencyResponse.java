@@ -16,16 +16,27 @@ import androidx.core.content.ContextCompat;
 
 import com.example.disastermanagement.R;
 import com.example.disastermanagement.api.ApiClient;
+import com.example.disastermanagement.utils.GeoKdTree;
+import com.example.disastermanagement.utils.UsageHistory;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.time.LocalDateTime;
 import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -38,13 +49,57 @@ import okhttp3.Response;
  * during disaster situations.
  */
 public class EmergencyResponse extends AppCompatActivity {
+    private static final String TAG = "EmergencyResponse";
     private static final int LOCATION_PERMISSION_REQUEST_CODE = 1;
-
+    private static final String OPERATION_LOG_DIRECTORY = "operation_log";
+    // Events between state snapshots; bounds how much replay work a restart does
+    private static final int SNAPSHOT_INTERVAL = 1000;
+
+    // Event types in the operation log
+    private static final String EVENT_TEAM_REGISTERED = "TEAM_REGISTERED";
+    private static final String EVENT_TEAM_DEPLOYED = "TEAM_DEPLOYED";
+    private static final String EVENT_OPERATION_COMPLETED = "OPERATION_COMPLETED";
+    private static final String EVENT_RESOURCE_ADDED = "RESOURCE_ADDED";
+    private static final String EVENT_RESOURCES_ALLOCATED = "RESOURCES_ALLOCATED";
+    private static final String EVENT_CENTER_REGISTERED = "CENTER_REGISTERED";
+    private static final String EVENT_OCCUPANCY_SET = "OCCUPANCY_SET";
+
+    // Consumption history kept per resource and per resource type for burn-rate forecasts
+    private static final int USAGE_HISTORY_SIZE = 256;
+    private static final long USAGE_HISTORY_MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(6);
+    private static final long DEFAULT_DEPLETION_HORIZON_MILLIS = TimeUnit.HOURS.toMillis(24);
+    // Too few allocations give a burn rate that is mostly noise
+    private static final int MIN_SAMPLES_FOR_FORECAST = 3;
+    // A type at risk is cleared only once its forecast is this far past the horizon, to avoid flapping
+    private static final double DEPLETION_RECOVERY_FACTOR = 1.25;
+
+    // Every registered team, deployed or not
+    private Map<String, EmergencyTeam> teams;
     private Map<String, EmergencyTeam> availableTeams;
     private Map<String, EmergencyTeam> deployedTeams;
     private Map<String, Resource> resources;
+    private Map<String, ResourceTypeTotals> totalsByType;
+    private Map<DepletionListener, Executor> depletionListeners;
     private Map<String, EvacuationCenter> evacuationCenters;
+    // Center coordinates, capacity and occupancy; centersByIndex holds the views by dense
+    // index and, like the store, is guarded by the store's lock
+    private EvacuationCenterStore evacuationCenterStore;
+    private List<EvacuationCenter> centersByIndex;
+    private EvacuationAssigner evacuationAssigner;
+    // Occupancy change stream and standing nearest-free-center queries
+    private OccupancyMonitor occupancyMonitor;
     private Map<String, EmergencyOperation> activeOperations;
+    private Map<String, EmergencyOperation> completedOperations;
+    // Type and capability index over all registered teams
+    private TeamDispatcher teamDispatcher;
+
+    // State changes hold the read side while they apply and log an event;
+    // snapshots take the write side so they line up with one log position
+    private ReentrantReadWriteLock stateLock;
+    private AtomicBoolean snapshotInProgress;
+    // The state above belongs to the process, not to this instance; see SharedState
+    private SharedState shared;
+    private static SharedState processState;
 
     private CardView cardSosLocation;
     private FusedLocationProviderClient fusedLocationClient;
@@ -54,11 +109,7 @@ public class EmergencyResponse extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_emergency_response);
 
-        this.availableTeams = new HashMap<>();
-        this.deployedTeams = new HashMap<>();
-        this.resources = new HashMap<>();
-        this.evacuationCenters = new HashMap<>();
-        this.activeOperations = new HashMap<>();
+        attachState();
 
         // Initialize the location client
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
@@ -67,6 +118,118 @@ public class EmergencyResponse extends AppCompatActivity {
         initializeUI();
     }
 
+    /**
+     * Picks up the process's state, creating it and starting its restore the
+     * first time. Later instances, such as the one created after a
+     * configuration change, share the same state and operation log.
+     */
+    private void attachState() {
+        boolean created = false;
+        synchronized (EmergencyResponse.class) {
+            if (processState == null) {
+                processState = new SharedState();
+                created = true;
+            }
+            useState(processState);
+        }
+        if (created) {
+            File directory = new File(getFilesDir(), OPERATION_LOG_DIRECTORY);
+            Thread restore = new Thread(() -> restoreState(directory), "emergency-state-restore");
+            restore.setDaemon(true);
+            restore.start();
+        }
+    }
+
+    /**
+     * Creates an instance over fresh in-memory state that has nothing to
+     * restore and no operation log, so the state methods can run outside an
+     * activity lifecycle
+     */
+    static EmergencyResponse detached() {
+        EmergencyResponse response = new EmergencyResponse();
+        SharedState state = new SharedState();
+        state.restored.countDown();
+        response.useState(state);
+        return response;
+    }
+
+    private void useState(SharedState state) {
+        this.shared = state;
+        this.teams = state.teams;
+        this.availableTeams = state.availableTeams;
+        this.deployedTeams = state.deployedTeams;
+        this.resources = state.resources;
+        this.totalsByType = state.totalsByType;
+        this.depletionListeners = state.depletionListeners;
+        this.evacuationCenters = state.evacuationCenters;
+        this.evacuationCenterStore = state.evacuationCenterStore;
+        this.centersByIndex = state.centersByIndex;
+        this.evacuationAssigner = state.evacuationAssigner;
+        this.occupancyMonitor = state.occupancyMonitor;
+        this.activeOperations = state.activeOperations;
+        this.completedOperations = state.completedOperations;
+        this.teamDispatcher = state.teamDispatcher;
+        this.stateLock = state.stateLock;
+        this.snapshotInProgress = state.snapshotInProgress;
+    }
+
+    /**
+     * Rebuilds the state from the latest snapshot and the events logged after it,
+     * then keeps logging new events to the same directory. Runs on its own
+     * thread; state changes wait for it in lockForUpdate.
+     * @param directory Directory of the operation log
+     */
+    private void restoreState(File directory) {
+        long started = System.nanoTime();
+        OperationLog log = new OperationLog(directory, SNAPSHOT_INTERVAL);
+        try {
+            log.open(new OperationLog.Replayer() {
+                @Override
+                public void restoreSnapshot(JSONObject state) throws JSONException {
+                    EmergencyResponse.this.restoreSnapshot(state);
+                }
+
+                @Override
+                public void apply(String type, JSONObject data) throws JSONException {
+                    applyEvent(type, data);
+                }
+            });
+            shared.operationLog = log;
+            Log.i(TAG, "Restored state: snapshot " + log.getSnapshotLoadMillis() + " ms, "
+                    + log.getReplayedEvents() + " events replayed in " + log.getReplayMillis() + " ms");
+        } catch (IOException e) {
+            // Keep running in memory only rather than refuse to start
+            Log.e(TAG, "Failed to open operation log", e);
+        } catch (RuntimeException e) {
+            // A bad snapshot must not leave state changes waiting on the restore forever
+            Log.e(TAG, "Failed to restore state", e);
+        } finally {
+            shared.startupMillis = (System.nanoTime() - started) / 1_000_000;
+            shared.restored.countDown();
+        }
+    }
+
+    /**
+     * Takes the read side of the state lock for a state change. Waits for the
+     * restore first, so no change lands before or inside the replayed history
+     * and every change is logged.
+     */
+    private void lockForUpdate() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                shared.restored.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        stateLock.readLock().lock();
+    }
+
     /**
      * Initialize UI components and set up click listeners
      */
@@ -391,12 +554,33 @@ public class EmergencyResponse extends AppCompatActivity {
      * @return boolean indicating success
      */
     public boolean registerTeam(String teamId, String teamName, String teamType, int members, List<String> capabilities) {
-        if (availableTeams.containsKey(teamId)) {
-            return false;
-        }
+        return registerTeam(teamId, teamName, teamType, members, capabilities, null);
+    }
 
-        EmergencyTeam team = new EmergencyTeam(teamId, teamName, teamType, members, capabilities);
-        availableTeams.put(teamId, team);
+    /**
+     * Registers a new emergency response team stationed at a base
+     * @param teamId Unique team identifier
+     * @param teamName Team name
+     * @param teamType Type of team (MEDICAL, RESCUE, FIRE, etc.)
+     * @param members Number of team members
+     * @param capabilities List of team capabilities
+     * @param baseLocation Map containing the base coordinates, or null if unknown
+     * @return boolean indicating success
+     */
+    public boolean registerTeam(String teamId, String teamName, String teamType, int members,
+                                List<String> capabilities, Map<String, Double> baseLocation) {
+        EmergencyTeam team = new EmergencyTeam(teamId, teamName, teamType, members, capabilities, baseLocation);
+        lockForUpdate();
+        try {
+            if (teams.putIfAbsent(teamId, team) != null) {
+                return false;
+            }
+            record(EVENT_TEAM_REGISTERED, teamToJson(team));
+            publishTeam(team);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        snapshotIfDue();
         return true;
     }
 
@@ -410,22 +594,92 @@ public class EmergencyResponse extends AppCompatActivity {
      */
     public String deployTeam(String teamId, String disasterId, Map<String, Double> location,
                              Map<String, Object> missionDetails) {
-        if (!availableTeams.containsKey(teamId)) {
-            return null; // Team not available
+        String operationId = UUID.randomUUID().toString();
+        lockForUpdate();
+        try {
+            // Removing first means a team can only be deployed once
+            EmergencyTeam team = availableTeams.remove(teamId);
+            if (team == null) {
+                return null; // Team not available
+            }
+            teamDispatcher.setAvailable(teamId, false);
+
+            EmergencyOperation operation = new EmergencyOperation(
+                    operationId, disasterId, team, location, LocalDateTime.now(), missionDetails
+            );
+
+            // Logged before the operation is visible, so no later event can refer to it first
+            record(EVENT_TEAM_DEPLOYED, operationToJson(operation));
+            deployedTeams.put(teamId, team);
+            activeOperations.put(operationId, operation);
+        } finally {
+            stateLock.readLock().unlock();
         }
+        snapshotIfDue();
 
-        EmergencyTeam team = availableTeams.get(teamId);
-        availableTeams.remove(teamId);
+        return operationId;
+    }
 
-        String operationId = UUID.randomUUID().toString();
-        EmergencyOperation operation = new EmergencyOperation(
-                operationId, disasterId, team, location, LocalDateTime.now(), missionDetails
-        );
+    /**
+     * Deploys the best available team for an incident, weighing capability
+     * match, team size and distance from the team's base
+     * @param disasterId ID of the disaster
+     * @param location Map containing location coordinates
+     * @param teamType Required team type, or null for any type
+     * @param requiredCapabilities Capabilities the team should have
+     * @param minMembers Smallest team size that can handle the incident
+     * @param missionDetails Additional mission details
+     * @return String operation ID if successful, null if no team is available
+     */
+    public String dispatchTeam(String disasterId, Map<String, Double> location, String teamType,
+                               List<String> requiredCapabilities, int minMembers,
+                               Map<String, Object> missionDetails) {
+        TeamDispatcher.Request request = new TeamDispatcher.Request(location.get("latitude"),
+                location.get("longitude"), teamType, requiredCapabilities, minMembers);
+
+        while (true) {
+            EmergencyTeam team = teamDispatcher.select(request);
+            if (team == null) {
+                return null;
+            }
+            String operationId = deployTeam(team.getId(), disasterId, location, missionDetails);
+            if (operationId != null) {
+                return operationId;
+            }
+            // Deployed by another caller in the meantime; resync the index and pick again
+            teamDispatcher.setAvailable(team.getId(), availableTeams.containsKey(team.getId()));
+        }
+    }
 
-        activeOperations.put(operationId, operation);
-        deployedTeams.put(teamId, team);
+    /**
+     * Deploys teams to several incidents at once. Teams are chosen jointly to
+     * minimize the total cost of the batch rather than incident by incident.
+     * @param disasterId ID of the disaster
+     * @param requests Incidents to staff
+     * @param missionDetails Additional mission details shared by the operations
+     * @return Operation ID for each request in order, null where no team was available
+     */
+    public List<String> dispatchTeams(String disasterId, List<TeamDispatcher.Request> requests,
+                                      Map<String, Object> missionDetails) {
+        EmergencyTeam[] chosen = teamDispatcher.selectAll(requests);
+        List<String> operationIds = new ArrayList<>(requests.size());
+
+        for (int i = 0; i < chosen.length; i++) {
+            TeamDispatcher.Request request = requests.get(i);
+            Map<String, Double> location = toLocationMap(request.getLatitude(), request.getLongitude());
+            String operationId = null;
+            if (chosen[i] != null) {
+                operationId = deployTeam(chosen[i].getId(), disasterId, location, missionDetails);
+            }
+            if (operationId == null && chosen[i] != null) {
+                // The planned team was taken concurrently; fall back to the best remaining one
+                operationId = dispatchTeam(disasterId, location, request.getTeamType(),
+                        request.getRequiredCapabilities(), request.getMinMembers(), missionDetails);
+            }
+            operationIds.add(operationId);
+        }
 
-        return operationId;
+        return operationIds;
     }
 
     /**
@@ -435,89 +689,184 @@ public class EmergencyResponse extends AppCompatActivity {
      * @return boolean indicating success
      */
     public boolean completeOperation(String operationId, Map<String, Object> operationReport) {
-        if (!activeOperations.containsKey(operationId)) {
-            return false;
-        }
-
-        EmergencyOperation operation = activeOperations.get(operationId);
-        EmergencyTeam team = operation.getTeam();
-
-        // Update operation status
-        operation.setCompletionTime(LocalDateTime.now());
-        operation.setOperationReport(operationReport);
+        lockForUpdate();
+        try {
+            EmergencyOperation operation = activeOperations.remove(operationId);
+            if (operation == null) {
+                return false;
+            }
 
-        // Move team back to available
-        deployedTeams.remove(team.getId());
-        availableTeams.put(team.getId(), team);
+            // Update operation status
+            operation.setCompletionTime(LocalDateTime.now());
+            operation.setOperationReport(operationReport);
 
-        // Move operation to completed (in a real implementation)
-        activeOperations.remove(operationId);
+            JSONObject event = new JSONObject();
+            event.put("operationId", operationId);
+            event.put("completionTime", operation.getCompletionTime().toString());
+            if (operationReport != null) {
+                event.put("report", new JSONObject(operationReport));
+            }
+            record(EVENT_OPERATION_COMPLETED, event);
+            finishOperation(operation);
+        } catch (JSONException e) {
+            throw new IllegalStateException("Cannot encode operation " + operationId, e);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        snapshotIfDue();
 
         return true;
     }
 
     /**
-     * Allocates resources to an emergency operation
+     * Allocates resources to an emergency operation. Either every requested
+     * quantity is reserved or none is; concurrent calls never over-allocate
+     * a resource.
      * @param operationId ID of the operation
      * @param resourceAllocations Map of resource IDs to quantities
      * @return boolean indicating success
      */
     public boolean allocateResources(String operationId, Map<String, Integer> resourceAllocations) {
-        if (!activeOperations.containsKey(operationId)) {
-            return false;
+        lockForUpdate();
+        try {
+            if (!reserveResources(operationId, resourceAllocations)) {
+                return false;
+            }
+        } finally {
+            stateLock.readLock().unlock();
         }
+        snapshotIfDue();
 
+        Set<String> types = new HashSet<>();
+        for (String resourceId : resourceAllocations.keySet()) {
+            // Every ID was checked by the reservation, and resources are never removed
+            types.add(resources.get(resourceId).getType());
+        }
+        for (String type : types) {
+            checkDepletion(type);
+        }
+        return true;
+    }
+
+    private boolean reserveResources(String operationId, Map<String, Integer> resourceAllocations) {
         EmergencyOperation operation = activeOperations.get(operationId);
+        if (operation == null) {
+            return false;
+        }
 
-        // Check if resources are available in sufficient quantities
-        for (Map.Entry<String, Integer> entry : resourceAllocations.entrySet()) {
-            String resourceId = entry.getKey();
-            int quantity = entry.getValue();
+        Reservation reservation = reserve(resources, resourceAllocations);
+        if (reservation == null) {
+            return false;
+        }
+        Resource[] reserved = reservation.resources;
+        int[] quantities = reservation.quantities;
 
-            if (!resources.containsKey(resourceId) ||
-                    resources.get(resourceId).getAvailableQuantity() < quantity) {
-                return false; // Not enough resources
+        boolean logged = false;
+        try {
+            JSONObject allocations = new JSONObject();
+            for (int i = 0; i < reserved.length; i++) {
+                allocations.put(reserved[i].getId(), quantities[i]);
+            }
+            JSONObject event = new JSONObject();
+            event.put("operationId", operationId);
+            event.put("allocations", allocations);
+            record(EVENT_RESOURCES_ALLOCATED, event);
+            logged = true;
+        } catch (JSONException e) {
+            throw new IllegalStateException("Cannot encode allocation for " + operationId, e);
+        } finally {
+            if (!logged) {
+                reservation.cancel();
             }
         }
+        // Only an allocation that made it into the log counts towards the burn rate
+        reservation.commit();
 
-        // Allocate resources
-        for (Map.Entry<String, Integer> entry : resourceAllocations.entrySet()) {
-            String resourceId = entry.getKey();
-            int quantity = entry.getValue();
-
-            Resource resource = resources.get(resourceId);
-            resource.allocate(quantity);
-            operation.addResource(resourceId, quantity);
+        for (int i = 0; i < reserved.length; i++) {
+            operation.addResource(reserved[i].getId(), quantities[i]);
         }
 
         return true;
     }
 
+    /**
+     * Reserves every requested quantity or none. All entries are checked
+     * before anything is reserved, so a bad entry cannot leave part of the
+     * request reserved or fail halfway through it. Nothing is counted as
+     * consumption until the reservation is committed.
+     * @param resources Inventory by resource ID
+     * @param requested Quantities to reserve by resource ID
+     * @return The reservation, or null if an entry is invalid or a resource is short
+     */
+    static Reservation reserve(Map<String, Resource> resources, Map<String, Integer> requested) {
+        List<String> resourceIds = new ArrayList<>(requested.size());
+        for (Map.Entry<String, Integer> entry : requested.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null || entry.getValue() < 0
+                    || !resources.containsKey(entry.getKey())) {
+                return null;
+            }
+            resourceIds.add(entry.getKey());
+        }
+
+        // Reserve in a fixed order so competing requests meet on the same resource first
+        Collections.sort(resourceIds);
+        Resource[] reserved = new Resource[resourceIds.size()];
+        int[] quantities = new int[resourceIds.size()];
+        for (int i = 0; i < reserved.length; i++) {
+            reserved[i] = resources.get(resourceIds.get(i));
+            quantities[i] = requested.get(resourceIds.get(i));
+        }
+
+        for (int i = 0; i < reserved.length; i++) {
+            if (!reserved[i].tryReserve(quantities[i])) {
+                // Not enough resources; give back what this request already reserved
+                for (int j = 0; j < i; j++) {
+                    reserved[j].release(quantities[j]);
+                }
+                return null;
+            }
+        }
+        return new Reservation(reserved, quantities);
+    }
+
     /**
      * Adds a new resource to inventory
      * @param resourceId Resource identifier
      * @param name Resource name
      * @param type Resource type
-     * @param quantity Available quantity
+     * @param quantity Available quantity, added to an existing resource's total
      * @param unit Unit of measurement
      * @return boolean indicating success
+     * @throws IllegalArgumentException if the quantity is not positive
      */
     public boolean addResource(String resourceId, String name, String type,
                                int quantity, String unit) {
-        if (resources.containsKey(resourceId)) {
-            // Update existing resource quantity
-            Resource resource = resources.get(resourceId);
-            resource.addQuantity(quantity);
-            return true;
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Resource quantity must be positive: " + quantity);
         }
-
-        // Create new resource
-        Resource resource = new Resource(resourceId, name, type, quantity, unit);
-        resources.put(resourceId, resource);
-
+        Resource resource;
+        lockForUpdate();
+        try {
+            // Logged before the resource is published, so its event precedes any use of it
+            record(EVENT_RESOURCE_ADDED, resourceAddedToJson(resourceId, name, type, quantity, unit));
+            resource = resources.compute(resourceId,
+                    (id, existing) -> addQuantity(existing, id, name, type, quantity, unit));
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        snapshotIfDue();
+        checkDepletion(resource.getType());
         return true;
     }
 
+    /**
+     * @param resourceId Resource identifier
+     * @return The resource, or null if none was added under that ID
+     */
+    public Resource getResource(String resourceId) {
+        return resources.get(resourceId);
+    }
+
     /**
      * Registers a new evacuation center
      * @param centerId Center identifier
@@ -529,14 +878,35 @@ public class EmergencyResponse extends AppCompatActivity {
      */
     public boolean registerEvacuationCenter(String centerId, String name, Map<String, Double> location,
                                             int capacity, List<String> facilities) {
-        if (evacuationCenters.containsKey(centerId)) {
-            return false; // Center already exists
-        }
-
-        EvacuationCenter center = new EvacuationCenter(centerId, name, location, capacity, facilities);
-        evacuationCenters.put(centerId, center);
+        // Checking for an existing center and adding it must not interleave with another registration
+        synchronized (evacuationCenters) {
+            lockForUpdate();
+            try {
+                if (evacuationCenters.containsKey(centerId)) {
+                    return false; // Center already exists
+                }
+
+                // Coordinates leave the map representation here and live in the store
+                double latitude = location.get("latitude");
+                double longitude = location.get("longitude");
+                JSONObject event = new JSONObject();
+                event.put("id", centerId);
+                event.put("name", name);
+                event.put("latitude", latitude);
+                event.put("longitude", longitude);
+                event.put("capacity", capacity);
+                event.put("facilities", new JSONArray(facilities != null ? facilities : new ArrayList<String>()));
+                record(EVENT_CENTER_REGISTERED, event);
+                addCenter(centerId, name, latitude, longitude, capacity, facilities);
+            } catch (JSONException e) {
+                throw new IllegalStateException("Cannot encode evacuation center " + centerId, e);
+            } finally {
+                stateLock.readLock().unlock();
+            }
+            snapshotIfDue();
 
-        return true;
+            return true;
+        }
     }
 
     /**
@@ -546,17 +916,61 @@ public class EmergencyResponse extends AppCompatActivity {
      * @return boolean indicating success
      */
     public boolean updateEvacuationCenterOccupancy(String centerId, int currentOccupancy) {
-        if (!evacuationCenters.containsKey(centerId)) {
+        EvacuationCenter center = evacuationCenters.get(centerId);
+        if (center == null) {
             return false;
         }
 
-        EvacuationCenter center = evacuationCenters.get(centerId);
-        if (currentOccupancy > center.getCapacity()) {
-            return false; // Exceeds capacity
+        boolean updated;
+        lockForUpdate();
+        try {
+            // Logged under the store lock so the log order matches the order of updates
+            synchronized (evacuationCenterStore) {
+                // Rejects occupancy above capacity
+                updated = center.setCurrentOccupancy(currentOccupancy);
+                if (updated) {
+                    recordOccupancy(Collections.singletonList(center));
+                }
+            }
+        } finally {
+            stateLock.readLock().unlock();
         }
+        snapshotIfDue();
+        return updated;
+    }
 
-        center.setCurrentOccupancy(currentOccupancy);
-        return true;
+    /**
+     * Assigns a batch of evacuees to nearby evacuation centers with free capacity,
+     * keeping total travel distance low, and updates the centers' occupancy
+     * @param latitudes Evacuee latitudes
+     * @param longitudes Evacuee longitudes
+     * @return Assigned center for each evacuee; evacuees are unassigned when capacity runs out
+     */
+    public EvacuationAssigner.Result assignEvacuees(double[] latitudes, double[] longitudes) {
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("Latitude and longitude counts differ");
+        }
+        EvacuationAssigner.Result result;
+        lockForUpdate();
+        try {
+            synchronized (evacuationCenterStore) {
+                result = evacuationAssigner.assign(latitudes, longitudes, latitudes.length);
+
+                Set<EvacuationCenter> changed = new LinkedHashSet<>();
+                for (int i = 0; i < result.getEvacueeCount(); i++) {
+                    if (result.getCenterIndex(i) >= 0) {
+                        changed.add(centersByIndex.get(result.getCenterIndex(i)));
+                    }
+                }
+                if (!changed.isEmpty()) {
+                    recordOccupancy(changed);
+                }
+            }
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        snapshotIfDue();
+        return result;
     }
 
     /**
@@ -565,15 +979,18 @@ public class EmergencyResponse extends AppCompatActivity {
      * @return List of available emergency teams
      */
     public List<EmergencyTeam> getAvailableTeams(String teamType) {
-        List<EmergencyTeam> result = new ArrayList<>();
-
-        for (EmergencyTeam team : availableTeams.values()) {
-            if (teamType == null || team.getType().equals(teamType)) {
-                result.add(team);
-            }
-        }
+        // Served from the type index instead of filtering every team
+        return teamDispatcher.getAvailable(teamType);
+    }
 
-        return result;
+    /**
+     * Finds teams that have all of the given capabilities
+     * @param capabilities Capabilities every returned team must have
+     * @param availableOnly Whether to leave out deployed teams
+     * @return List of matching emergency teams
+     */
+    public List<EmergencyTeam> findTeamsWithCapabilities(List<String> capabilities, boolean availableOnly) {
+        return teamDispatcher.findWithCapabilities(capabilities, availableOnly);
     }
 
     /**
@@ -584,35 +1001,51 @@ public class EmergencyResponse extends AppCompatActivity {
      * @return List of evacuation centers within the specified distance
      */
     public List<EvacuationCenter> getNearbyEvacuationCenters(double latitude, double longitude, double maxDistance) {
-        List<EvacuationCenter> nearbyCenters = new ArrayList<>();
-
-        for (EvacuationCenter center : evacuationCenters.values()) {
-            Map<String, Double> centerLocation = center.getLocation();
-            double centerLat = centerLocation.get("latitude");
-            double centerLong = centerLocation.get("longitude");
-
-            // Calculate distance using Haversine formula (simplified here)
-            double distance = calculateDistance(latitude, longitude, centerLat, centerLong);
-
-            if (distance <= maxDistance) {
-                nearbyCenters.add(center);
-            }
-        }
-
-        // Sort by distance
-        nearbyCenters.sort((c1, c2) -> {
-            Map<String, Double> loc1 = c1.getLocation();
-            Map<String, Double> loc2 = c2.getLocation();
+        // Sorted by distance; each center's distance is computed at most once
+        GeoKdTree.Neighbors neighbors = new GeoKdTree.Neighbors();
+        evacuationCenterStore.findWithinRadius(latitude, longitude, maxDistance, neighbors);
+        return toCenters(neighbors);
+    }
 
-            double dist1 = calculateDistance(latitude, longitude,
-                    loc1.get("latitude"), loc1.get("longitude"));
-            double dist2 = calculateDistance(latitude, longitude,
-                    loc2.get("latitude"), loc2.get("longitude"));
+    /**
+     * Gets the evacuation centers closest to a location
+     * @param latitude Location latitude
+     * @param longitude Location longitude
+     * @param count Maximum number of centers to return
+     * @return Up to count evacuation centers, nearest first
+     */
+    public List<EvacuationCenter> getNearestEvacuationCenters(double latitude, double longitude, int count) {
+        GeoKdTree.Neighbors neighbors = new GeoKdTree.Neighbors();
+        evacuationCenterStore.findNearest(latitude, longitude, count, neighbors);
+        return toCenters(neighbors);
+    }
 
-            return Double.compare(dist1, dist2);
-        });
+    /**
+     * Streams evacuation center occupancy changes, including those made by
+     * batch evacuee assignment
+     * @param listener Called with each change
+     * @param executor Runs the listener calls, e.g. the main thread's executor
+     * @return Handle to cancel the subscription
+     */
+    public OccupancyMonitor.Subscription subscribeToOccupancy(OccupancyMonitor.OccupancyListener listener,
+                                                              Executor executor) {
+        return occupancyMonitor.subscribe(listener, executor);
+    }
 
-        return nearbyCenters;
+    /**
+     * Keeps track of the nearest evacuation center with enough free beds,
+     * updating the answer as occupancy changes instead of polling
+     * @param location Map containing location coordinates
+     * @param minFreeBeds Free beds the center must have
+     * @param listener Called with the current answer and every later change
+     * @param executor Runs the listener calls, e.g. the main thread's executor
+     * @return The standing query; cancel it when no longer needed
+     */
+    public OccupancyMonitor.StandingQuery watchNearestFreeCenter(Map<String, Double> location, int minFreeBeds,
+                                                                 OccupancyMonitor.NearestCenterListener listener,
+                                                                 Executor executor) {
+        return occupancyMonitor.watchNearestFree(location.get("latitude"), location.get("longitude"),
+                minFreeBeds, listener, executor);
     }
 
     /**
@@ -626,15 +1059,12 @@ public class EmergencyResponse extends AppCompatActivity {
         report.put("availableTeams", availableTeams.size());
         report.put("deployedTeams", deployedTeams.size());
         report.put("activeOperations", activeOperations.size());
+        report.put("completedOperations", completedOperations.size());
         report.put("evacuationCenters", evacuationCenters.size());
 
         // Calculate total evacuation capacity and current occupancy
-        int totalCapacity = 0;
-        int totalOccupancy = 0;
-        for (EvacuationCenter center : evacuationCenters.values()) {
-            totalCapacity += center.getCapacity();
-            totalOccupancy += center.getCurrentOccupancy();
-        }
+        long totalCapacity = evacuationCenterStore.getTotalCapacity();
+        long totalOccupancy = evacuationCenterStore.getTotalOccupancy();
 
         report.put("totalEvacuationCapacity", totalCapacity);
         report.put("currentEvacuationOccupancy", totalOccupancy);
@@ -642,34 +1072,573 @@ public class EmergencyResponse extends AppCompatActivity {
                 totalCapacity > 0 ? (totalOccupancy * 100.0 / totalCapacity) : 0);
 
         // Resource summary
+        long now = System.currentTimeMillis();
         Map<String, Integer> resourcesByType = new HashMap<>();
-        for (Resource resource : resources.values()) {
-            String type = resource.getType();
-            int quantity = resource.getAvailableQuantity();
-
-            resourcesByType.put(type, resourcesByType.getOrDefault(type, 0) + quantity);
+        Map<String, Double> burnRatePerHourByType = new HashMap<>();
+        Map<String, Double> hoursToDepletionByType = new HashMap<>();
+        List<String> depletionRiskTypes = new ArrayList<>();
+        for (ResourceTypeTotals totals : totalsByType.values()) {
+            int available = totals.available.get();
+            double burnRate = totals.usage.getRatePerHour(now);
+            long remaining = UsageHistory.timeToDepletionMillis(available, burnRate);
+            resourcesByType.put(totals.type, available);
+            burnRatePerHourByType.put(totals.type, burnRate);
+            if (remaining != Long.MAX_VALUE) {
+                hoursToDepletionByType.put(totals.type, remaining / 3_600_000.0);
+            }
+            // Usage samples age out without any allocation, so the flag may be
+            // stale; report the fresh forecast but leave alerting to the changes
+            Boolean atRisk = assessDepletionRisk(totals, remaining, now);
+            if (atRisk != null ? atRisk : totals.atRisk.get()) {
+                depletionRiskTypes.add(totals.type);
+            }
         }
         report.put("resourcesByType", resourcesByType);
+        report.put("burnRatePerHourByType", burnRatePerHourByType);
+        report.put("hoursToDepletionByType", hoursToDepletionByType);
+        report.put("depletionRiskTypes", depletionRiskTypes);
+
+        // Startup and persistence timings
+        report.put("restored", shared.restored.getCount() == 0);
+        report.put("startupMillis", shared.startupMillis);
+        OperationLog log = shared.operationLog;
+        if (log != null) {
+            report.put("snapshotLoadMillis", log.getSnapshotLoadMillis());
+            report.put("replayMillis", log.getReplayMillis());
+            report.put("replayedEvents", log.getReplayedEvents());
+            report.put("loggedEvents", log.getLastSequence());
+            report.put("logCommits", log.getCommitCount());
+            report.put("logAverageBatchSize", log.getAverageBatchSize());
+        }
 
         return report;
     }
 
+    /**
+     * Sets how far ahead a resource type must be predicted to run out before
+     * listeners are alerted
+     * @param horizon Forecast horizon
+     * @param unit Unit of the horizon
+     */
+    public void setDepletionHorizon(long horizon, TimeUnit unit) {
+        shared.depletionHorizonMillis = unit.toMillis(horizon);
+    }
+
+    /**
+     * Registers for alerts when a resource type is predicted to run out
+     * within the horizon, and when that prediction clears
+     * @param listener Called with each change of forecast
+     * @param executor Runs the listener calls
+     */
+    public void addDepletionListener(DepletionListener listener, Executor executor) {
+        depletionListeners.put(listener, executor);
+    }
+
+    /**
+     * @param listener Listener to stop alerting
+     */
+    public void removeDepletionListener(DepletionListener listener) {
+        depletionListeners.remove(listener);
+    }
+
     // Private helper methods
 
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        // Simplified Haversine formula
-        final int EARTH_RADIUS = 6371; // km
+    private List<EvacuationCenter> toCenters(GeoKdTree.Neighbors neighbors) {
+        List<EvacuationCenter> centers = new ArrayList<>(neighbors.size());
+        // Any index the tree returned was added, view included, under this lock
+        synchronized (evacuationCenterStore) {
+            for (int i = 0; i < neighbors.size(); i++) {
+                centers.add(centersByIndex.get(neighbors.getId(i)));
+            }
+        }
+        return centers;
+    }
 
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
+    private static Map<String, Double> toLocationMap(double latitude, double longitude) {
+        Map<String, Double> location = new HashMap<>();
+        location.put("latitude", latitude);
+        location.put("longitude", longitude);
+        return location;
+    }
 
-        double a = Math.sin(dLat/2) * Math.sin(dLat/2) +
-                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                        Math.sin(dLon/2) * Math.sin(dLon/2);
+    // State changes shared by the live methods and replay
 
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
+    private void publishTeam(EmergencyTeam team) {
+        availableTeams.put(team.getId(), team);
+        teamDispatcher.register(team);
+    }
 
-        return EARTH_RADIUS * c;
+    private void publishDeployment(EmergencyOperation operation) {
+        EmergencyTeam team = operation.getTeam();
+        availableTeams.remove(team.getId());
+        teamDispatcher.setAvailable(team.getId(), false);
+        deployedTeams.put(team.getId(), team);
+        activeOperations.put(operation.getId(), operation);
+    }
+
+    private void finishOperation(EmergencyOperation operation) {
+        EmergencyTeam team = operation.getTeam();
+        completedOperations.put(operation.getId(), operation);
+
+        // Move team back to available
+        deployedTeams.remove(team.getId());
+        availableTeams.put(team.getId(), team);
+        teamDispatcher.setAvailable(team.getId(), true);
+    }
+
+    private Resource addQuantity(Resource existing, String resourceId, String name, String type,
+                                 int quantity, String unit) {
+        if (existing == null) {
+            // Create new resource
+            return trackAvailable(new Resource(resourceId, name, type, quantity, unit));
+        }
+        // Update existing resource quantity
+        existing.addQuantity(quantity);
+        return existing;
+    }
+
+    /**
+     * Counts a new resource's available quantity and consumption in its type's totals
+     */
+    private Resource trackAvailable(Resource resource) {
+        resource.setTypeTotals(totalsByType.computeIfAbsent(resource.getType(), ResourceTypeTotals::new));
+        return resource;
+    }
+
+    /**
+     * Re-forecasts a resource type and tells the listeners if it starts or
+     * stops being at risk of running out within the horizon. O(1) amortized,
+     * so it runs after every change to the type's resources.
+     */
+    private void checkDepletion(String type) {
+        ResourceTypeTotals totals = totalsByType.get(type);
+        if (totals == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int available = totals.available.get();
+        double burnRate = totals.usage.getRatePerHour(now);
+        long remaining = UsageHistory.timeToDepletionMillis(available, burnRate);
+
+        Boolean atRisk = assessDepletionRisk(totals, remaining, now);
+        if (atRisk == null) {
+            return;
+        }
+        if (totals.atRisk.compareAndSet(!atRisk, atRisk)) {
+            DepletionForecast forecast = new DepletionForecast(type, available, burnRate, remaining, atRisk);
+            if (atRisk) {
+                Log.w(TAG, "Resource type " + type + " predicted to run out in " + (remaining / 60_000) + " min");
+            }
+            for (Map.Entry<DepletionListener, Executor> entry : depletionListeners.entrySet()) {
+                DepletionListener listener = entry.getKey();
+                entry.getValue().execute(() -> listener.onDepletionForecastChanged(forecast));
+            }
+        }
+    }
+
+    /**
+     * @param remaining Predicted milliseconds until the type runs out
+     * @return Whether the type is at risk, or null if there is not enough
+     *         evidence or the forecast is inside the hysteresis band
+     */
+    private Boolean assessDepletionRisk(ResourceTypeTotals totals, long remaining, long now) {
+        long horizon = shared.depletionHorizonMillis;
+        if (remaining < horizon && totals.usage.size(now) >= MIN_SAMPLES_FOR_FORECAST) {
+            return true;
+        }
+        if (remaining > horizon * DEPLETION_RECOVERY_FACTOR) {
+            return false;
+        }
+        return null;
+    }
+
+    private EvacuationCenter addCenter(String centerId, String name, double latitude, double longitude,
+                                       int capacity, List<String> facilities) {
+        EvacuationCenter center;
+        // The store publishes the index to its k-d tree, so the view must be
+        // in place before anyone can take the lock and look the index up
+        synchronized (evacuationCenterStore) {
+            int index = evacuationCenterStore.add(centerId, latitude, longitude, capacity);
+            center = new EvacuationCenter(evacuationCenterStore, index, name, facilities);
+            centersByIndex.add(center);
+        }
+        evacuationCenters.put(centerId, center);
+        return center;
+    }
+
+    // Operation log
+
+    /**
+     * Queues an event in the operation log. The event reaches disk with the
+     * writer's next group commit, shortly after this returns.
+     */
+    private void record(String type, JSONObject data) {
+        OperationLog log = shared.operationLog;
+        if (log == null) {
+            return;
+        }
+        try {
+            log.append(type, data);
+        } catch (IllegalStateException e) {
+            if (!log.isFailed()) {
+                throw e;
+            }
+            // Keep running in memory only, as when the log cannot be opened
+            shared.operationLog = null;
+            Log.e(TAG, "Operation log failed; changes are no longer persisted", e);
+        }
+    }
+
+    private void recordOccupancy(Collection<EvacuationCenter> centers) {
+        try {
+            JSONObject occupancies = new JSONObject();
+            for (EvacuationCenter center : centers) {
+                occupancies.put(center.getId(), center.getCurrentOccupancy());
+            }
+            JSONObject event = new JSONObject();
+            event.put("occupancies", occupancies);
+            record(EVENT_OCCUPANCY_SET, event);
+        } catch (JSONException e) {
+            throw new IllegalStateException("Cannot encode occupancy", e);
+        }
+    }
+
+    /**
+     * Writes a snapshot once enough events have been logged since the last one
+     */
+    private void snapshotIfDue() {
+        OperationLog log = shared.operationLog;
+        if (log == null || !log.isSnapshotDue() || !snapshotInProgress.compareAndSet(false, true)) {
+            return;
+        }
+        stateLock.writeLock().lock();
+        try {
+            log.writeSnapshot(captureState());
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to capture state snapshot", e);
+        } finally {
+            stateLock.writeLock().unlock();
+            snapshotInProgress.set(false);
+        }
+    }
+
+    private JSONObject captureState() throws JSONException {
+        JSONObject state = new JSONObject();
+
+        JSONArray teamList = new JSONArray();
+        for (EmergencyTeam team : teams.values()) {
+            teamList.put(teamToJson(team));
+        }
+        state.put("teams", teamList);
+
+        JSONArray resourceList = new JSONArray();
+        for (Resource resource : resources.values()) {
+            JSONObject item = resourceAddedToJson(resource.getId(), resource.getName(), resource.getType(),
+                    resource.getTotalQuantity(), resource.getUnit());
+            item.put("allocated", resource.getAllocatedQuantity());
+            resourceList.put(item);
+        }
+        state.put("resources", resourceList);
+
+        // In store order so restored centers get the same indexes
+        JSONArray centerList = new JSONArray();
+        synchronized (evacuationCenterStore) {
+            for (EvacuationCenter center : centersByIndex) {
+                JSONObject item = new JSONObject();
+                item.put("id", center.getId());
+                item.put("name", center.getName());
+                item.put("latitude", center.getLatitude());
+                item.put("longitude", center.getLongitude());
+                item.put("capacity", center.getCapacity());
+                item.put("occupancy", center.getCurrentOccupancy());
+                item.put("facilities", new JSONArray(
+                        center.getFacilities() != null ? center.getFacilities() : new ArrayList<String>()));
+                centerList.put(item);
+            }
+        }
+        state.put("centers", centerList);
+
+        JSONArray active = new JSONArray();
+        for (EmergencyOperation operation : activeOperations.values()) {
+            active.put(operationToJson(operation));
+        }
+        state.put("activeOperations", active);
+
+        JSONArray completed = new JSONArray();
+        for (EmergencyOperation operation : completedOperations.values()) {
+            completed.put(operationToJson(operation));
+        }
+        state.put("completedOperations", completed);
+
+        return state;
+    }
+
+    private void restoreSnapshot(JSONObject state) throws JSONException {
+        JSONArray teamList = state.getJSONArray("teams");
+        for (int i = 0; i < teamList.length(); i++) {
+            EmergencyTeam team = teamFromJson(teamList.getJSONObject(i));
+            teams.put(team.getId(), team);
+            publishTeam(team);
+        }
+
+        JSONArray resourceList = state.getJSONArray("resources");
+        for (int i = 0; i < resourceList.length(); i++) {
+            JSONObject item = resourceList.getJSONObject(i);
+            Resource resource = trackAvailable(new Resource(item.getString("id"), item.getString("name"),
+                    item.getString("type"), item.getInt("quantity"), item.getString("unit")));
+            resource.restoreAllocated(item.getInt("allocated"));
+            resources.put(resource.getId(), resource);
+        }
+
+        JSONArray centerList = state.getJSONArray("centers");
+        for (int i = 0; i < centerList.length(); i++) {
+            JSONObject item = centerList.getJSONObject(i);
+            EvacuationCenter center = addCenter(item.getString("id"), item.getString("name"),
+                    item.getDouble("latitude"), item.getDouble("longitude"), item.getInt("capacity"),
+                    toStringList(item.getJSONArray("facilities")));
+            center.setCurrentOccupancy(item.getInt("occupancy"));
+        }
+
+        JSONArray active = state.getJSONArray("activeOperations");
+        for (int i = 0; i < active.length(); i++) {
+            EmergencyOperation operation = operationFromJson(active.getJSONObject(i));
+            if (operation != null) {
+                publishDeployment(operation);
+            }
+        }
+
+        JSONArray completed = state.getJSONArray("completedOperations");
+        for (int i = 0; i < completed.length(); i++) {
+            EmergencyOperation operation = operationFromJson(completed.getJSONObject(i));
+            if (operation != null) {
+                completedOperations.put(operation.getId(), operation);
+            }
+        }
+    }
+
+    /**
+     * Re-applies one logged event during replay
+     */
+    private void applyEvent(String type, JSONObject data) throws JSONException {
+        switch (type) {
+            case EVENT_TEAM_REGISTERED: {
+                EmergencyTeam team = teamFromJson(data);
+                if (teams.putIfAbsent(team.getId(), team) == null) {
+                    publishTeam(team);
+                }
+                break;
+            }
+            case EVENT_TEAM_DEPLOYED: {
+                EmergencyOperation operation = operationFromJson(data);
+                if (operation != null) {
+                    publishDeployment(operation);
+                }
+                break;
+            }
+            case EVENT_OPERATION_COMPLETED: {
+                EmergencyOperation operation = activeOperations.remove(data.getString("operationId"));
+                if (operation == null) {
+                    Log.w(TAG, "Completion of unknown operation " + data.getString("operationId"));
+                    break;
+                }
+                operation.setCompletionTime(LocalDateTime.parse(data.getString("completionTime")));
+                JSONObject report = data.optJSONObject("report");
+                operation.setOperationReport(report != null ? toMap(report) : null);
+                finishOperation(operation);
+                break;
+            }
+            case EVENT_RESOURCE_ADDED: {
+                String resourceId = data.getString("id");
+                String name = data.getString("name");
+                String resourceType = data.getString("type");
+                int quantity = data.getInt("quantity");
+                String unit = data.getString("unit");
+                resources.compute(resourceId,
+                        (id, existing) -> addQuantity(existing, id, name, resourceType, quantity, unit));
+                break;
+            }
+            case EVENT_RESOURCES_ALLOCATED: {
+                String operationId = data.getString("operationId");
+                EmergencyOperation operation = activeOperations.get(operationId);
+                if (operation == null) {
+                    operation = completedOperations.get(operationId);
+                }
+                JSONObject allocations = data.getJSONObject("allocations");
+                Iterator<String> resourceIds = allocations.keys();
+                while (resourceIds.hasNext()) {
+                    String resourceId = resourceIds.next();
+                    Resource resource = resources.get(resourceId);
+                    if (resource == null) {
+                        Log.w(TAG, "Allocation of unknown resource " + resourceId);
+                        continue;
+                    }
+                    // Logged reservations already passed the availability check
+                    resource.restoreAllocated(allocations.getInt(resourceId));
+                    if (operation != null) {
+                        operation.addResource(resourceId, allocations.getInt(resourceId));
+                    }
+                }
+                break;
+            }
+            case EVENT_CENTER_REGISTERED: {
+                if (!evacuationCenters.containsKey(data.getString("id"))) {
+                    addCenter(data.getString("id"), data.getString("name"), data.getDouble("latitude"),
+                            data.getDouble("longitude"), data.getInt("capacity"),
+                            toStringList(data.getJSONArray("facilities")));
+                }
+                break;
+            }
+            case EVENT_OCCUPANCY_SET: {
+                JSONObject occupancies = data.getJSONObject("occupancies");
+                Iterator<String> centerIds = occupancies.keys();
+                while (centerIds.hasNext()) {
+                    String centerId = centerIds.next();
+                    EvacuationCenter center = evacuationCenters.get(centerId);
+                    if (center == null || !center.setCurrentOccupancy(occupancies.getInt(centerId))) {
+                        Log.w(TAG, "Cannot restore occupancy of center " + centerId);
+                    }
+                }
+                break;
+            }
+            default:
+                Log.w(TAG, "Skipping unknown event type " + type);
+        }
+    }
+
+    private static JSONObject teamToJson(EmergencyTeam team) {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("id", team.getId());
+            json.put("name", team.getName());
+            json.put("type", team.getType());
+            json.put("members", team.getMembers());
+            json.put("capabilities", new JSONArray(
+                    team.getCapabilities() != null ? team.getCapabilities() : new ArrayList<String>()));
+            if (!Double.isNaN(team.getBaseLatitude()) && !Double.isNaN(team.getBaseLongitude())) {
+                json.put("baseLatitude", team.getBaseLatitude());
+                json.put("baseLongitude", team.getBaseLongitude());
+            }
+            return json;
+        } catch (JSONException e) {
+            throw new IllegalStateException("Cannot encode team " + team.getId(), e);
+        }
+    }
+
+    private static EmergencyTeam teamFromJson(JSONObject json) throws JSONException {
+        Map<String, Double> base = json.has("baseLatitude")
+                ? toLocationMap(json.getDouble("baseLatitude"), json.getDouble("baseLongitude"))
+                : null;
+        return new EmergencyTeam(json.getString("id"), json.getString("name"), json.getString("type"),
+                json.getInt("members"), toStringList(json.getJSONArray("capabilities")), base);
+    }
+
+    private static JSONObject resourceAddedToJson(String resourceId, String name, String type,
+                                                  int quantity, String unit) {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("id", resourceId);
+            json.put("name", name);
+            json.put("type", type);
+            json.put("quantity", quantity);
+            json.put("unit", unit);
+            return json;
+        } catch (JSONException e) {
+            throw new IllegalStateException("Cannot encode resource " + resourceId, e);
+        }
+    }
+
+    private static JSONObject operationToJson(EmergencyOperation operation) {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("id", operation.getId());
+            json.put("disasterId", operation.getDisasterId());
+            json.put("teamId", operation.getTeam().getId());
+            if (!Double.isNaN(operation.getLatitude()) && !Double.isNaN(operation.getLongitude())) {
+                json.put("latitude", operation.getLatitude());
+                json.put("longitude", operation.getLongitude());
+            }
+            json.put("startTime", operation.getStartTime().toString());
+            if (operation.getMissionDetails() != null) {
+                json.put("missionDetails", new JSONObject(operation.getMissionDetails()));
+            }
+            json.put("allocations", new JSONObject(operation.getAllocatedResources()));
+            if (operation.getCompletionTime() != null) {
+                json.put("completionTime", operation.getCompletionTime().toString());
+            }
+            if (operation.getOperationReport() != null) {
+                json.put("report", new JSONObject(operation.getOperationReport()));
+            }
+            return json;
+        } catch (JSONException e) {
+            throw new IllegalStateException("Cannot encode operation " + operation.getId(), e);
+        }
+    }
+
+    /**
+     * @return The operation, or null if its team is unknown
+     */
+    private EmergencyOperation operationFromJson(JSONObject json) throws JSONException {
+        EmergencyTeam team = teams.get(json.getString("teamId"));
+        if (team == null) {
+            Log.w(TAG, "Operation " + json.getString("id") + " refers to unknown team " + json.getString("teamId"));
+            return null;
+        }
+
+        Map<String, Double> location = json.has("latitude")
+                ? toLocationMap(json.getDouble("latitude"), json.getDouble("longitude"))
+                : null;
+        JSONObject details = json.optJSONObject("missionDetails");
+        EmergencyOperation operation = new EmergencyOperation(json.getString("id"), json.getString("disasterId"),
+                team, location, LocalDateTime.parse(json.getString("startTime")),
+                details != null ? toMap(details) : null);
+
+        JSONObject allocations = json.getJSONObject("allocations");
+        Iterator<String> resourceIds = allocations.keys();
+        while (resourceIds.hasNext()) {
+            String resourceId = resourceIds.next();
+            operation.addResource(resourceId, allocations.getInt(resourceId));
+        }
+        if (json.has("completionTime")) {
+            operation.setCompletionTime(LocalDateTime.parse(json.getString("completionTime")));
+        }
+        JSONObject report = json.optJSONObject("report");
+        if (report != null) {
+            operation.setOperationReport(toMap(report));
+        }
+        return operation;
+    }
+
+    private static Map<String, Object> toMap(JSONObject json) throws JSONException {
+        Map<String, Object> map = new HashMap<>();
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            map.put(key, fromJson(json.get(key)));
+        }
+        return map;
+    }
+
+    private static Object fromJson(Object value) throws JSONException {
+        if (value instanceof JSONObject) {
+            return toMap((JSONObject) value);
+        }
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            List<Object> list = new ArrayList<>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                list.add(fromJson(array.get(i)));
+            }
+            return list;
+        }
+        return value == JSONObject.NULL ? null : value;
+    }
+
+    private static List<String> toStringList(JSONArray array) throws JSONException {
+        List<String> list = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            list.add(array.getString(i));
+        }
+        return list;
     }
 
     // Inner classes for data structures
@@ -680,13 +1649,24 @@ public class EmergencyResponse extends AppCompatActivity {
         private String type;
         private int members;
         private List<String> capabilities;
+        private double baseLatitude;
+        private double baseLongitude;
+        // Interned capability ids, set when the team is registered
+        private long[] capabilityBits = new long[0];
 
         public EmergencyTeam(String id, String name, String type, int members, List<String> capabilities) {
+            this(id, name, type, members, capabilities, null);
+        }
+
+        public EmergencyTeam(String id, String name, String type, int members, List<String> capabilities,
+                             Map<String, Double> baseLocation) {
             this.id = id;
             this.name = name;
             this.type = type;
             this.members = members;
             this.capabilities = capabilities;
+            this.baseLatitude = baseLocation != null ? baseLocation.get("latitude") : Double.NaN;
+            this.baseLongitude = baseLocation != null ? baseLocation.get("longitude") : Double.NaN;
         }
 
         public String getId() { return id; }
@@ -694,84 +1674,308 @@ public class EmergencyResponse extends AppCompatActivity {
         public String getType() { return type; }
         public int getMembers() { return members; }
         public List<String> getCapabilities() { return capabilities; }
+        public double getBaseLatitude() { return baseLatitude; }
+        public double getBaseLongitude() { return baseLongitude; }
+        public long[] getCapabilityBits() { return capabilityBits; }
+        void setCapabilityBits(long[] bits) { this.capabilityBits = bits; }
     }
 
+    /**
+     * Inventory item. Quantities are atomic so reservations can be made with
+     * compare-and-set instead of a lock; the total only ever grows, so the
+     * allocated quantity never exceeds it.
+     */
     public static class Resource {
         private String id;
         private String name;
         private String type;
-        private int totalQuantity;
-        private int allocatedQuantity;
+        private AtomicInteger totalQuantity;
+        private AtomicInteger allocatedQuantity;
         private String unit;
+        private UsageHistory usage;
+        private ResourceTypeTotals typeTotals;
 
         public Resource(String id, String name, String type, int quantity, String unit) {
             this.id = id;
             this.name = name;
             this.type = type;
-            this.totalQuantity = quantity;
-            this.allocatedQuantity = 0;
+            this.totalQuantity = new AtomicInteger(quantity);
+            this.allocatedQuantity = new AtomicInteger();
             this.unit = unit;
+            this.usage = new UsageHistory(USAGE_HISTORY_SIZE, USAGE_HISTORY_MAX_AGE_MILLIS);
+        }
+
+        /**
+         * Reserves a quantity if enough is available
+         * @param quantity Quantity to reserve
+         * @return false if less than the quantity is available
+         */
+        public boolean tryAllocate(int quantity) {
+            if (!tryReserve(quantity)) {
+                return false;
+            }
+            recordUsage(quantity);
+            return true;
         }
 
         public void allocate(int quantity) {
-            if (quantity > getAvailableQuantity()) {
+            if (!tryAllocate(quantity)) {
                 throw new IllegalArgumentException("Not enough resources available");
             }
-            allocatedQuantity += quantity;
         }
 
         public void deallocate(int quantity) {
-            allocatedQuantity = Math.max(0, allocatedQuantity - quantity);
+            recordUsage(-release(quantity));
+        }
+
+        /**
+         * Reserves a quantity like tryAllocate, without counting it as consumption
+         * @param quantity Quantity to reserve
+         * @return false if less than the quantity is available
+         */
+        boolean tryReserve(int quantity) {
+            while (true) {
+                int allocated = allocatedQuantity.get();
+                if (quantity > totalQuantity.get() - allocated) {
+                    return false;
+                }
+                if (allocatedQuantity.compareAndSet(allocated, allocated + quantity)) {
+                    changeAvailableOfType(-quantity);
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Gives back a reserved quantity without counting it as returned stock
+         * @param quantity Quantity to release
+         * @return Quantity actually released, at most what was allocated
+         */
+        int release(int quantity) {
+            int previous = allocatedQuantity.getAndUpdate(allocated -> Math.max(0, allocated - quantity));
+            int released = previous - Math.max(0, previous - quantity);
+            changeAvailableOfType(released);
+            return released;
         }
 
         public void addQuantity(int quantity) {
-            totalQuantity += quantity;
+            totalQuantity.addAndGet(quantity);
+            changeAvailableOfType(quantity);
+        }
+
+        /**
+         * Re-applies a reservation from the operation log without checking availability
+         */
+        void restoreAllocated(int quantity) {
+            allocatedQuantity.addAndGet(quantity);
+            changeAvailableOfType(-quantity);
+        }
+
+        /**
+         * Net consumption per hour over recent allocations and returns
+         * @return Burn rate in units per hour
+         */
+        public double getBurnRatePerHour() {
+            return usage.getRatePerHour(System.currentTimeMillis());
+        }
+
+        /**
+         * @return Predicted milliseconds until the available quantity runs out
+         *         at the current burn rate, or Long.MAX_VALUE if it is not being consumed
+         */
+        public long getTimeToDepletionMillis() {
+            return UsageHistory.timeToDepletionMillis(getAvailableQuantity(), getBurnRatePerHour());
+        }
+
+        /**
+         * Attaches the totals of its type; every later change to the available
+         * quantity and every allocation is applied to them as well
+         * @param totals Totals of all resources of this type
+         */
+        void setTypeTotals(ResourceTypeTotals totals) {
+            typeTotals = totals;
+            totals.available.addAndGet(getAvailableQuantity());
+        }
+
+        private void changeAvailableOfType(int delta) {
+            if (typeTotals != null && delta != 0) {
+                typeTotals.available.addAndGet(delta);
+            }
+        }
+
+        private void recordUsage(int quantity) {
+            if (quantity == 0) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            usage.record(quantity, now);
+            if (typeTotals != null) {
+                typeTotals.usage.record(quantity, now);
+            }
         }
 
         public String getId() { return id; }
         public String getName() { return name; }
         public String getType() { return type; }
-        public int getTotalQuantity() { return totalQuantity; }
-        public int getAllocatedQuantity() { return allocatedQuantity; }
-        public int getAvailableQuantity() { return totalQuantity - allocatedQuantity; }
+        public int getTotalQuantity() { return totalQuantity.get(); }
+        public int getAllocatedQuantity() { return allocatedQuantity.get(); }
+        public int getAvailableQuantity() { return totalQuantity.get() - allocatedQuantity.get(); }
         public String getUnit() { return unit; }
     }
 
+    /**
+     * Emergency response state of the process. It is created and restored from
+     * the operation log once, and outlives any one activity instance, so a
+     * configuration change neither replays the log again nor closes it.
+     */
+    private static final class SharedState {
+        final Map<String, EmergencyTeam> teams = new ConcurrentHashMap<>();
+        final Map<String, EmergencyTeam> availableTeams = new ConcurrentHashMap<>();
+        final Map<String, EmergencyTeam> deployedTeams = new ConcurrentHashMap<>();
+        final Map<String, Resource> resources = new ConcurrentHashMap<>();
+        final Map<String, ResourceTypeTotals> totalsByType = new ConcurrentHashMap<>();
+        final Map<DepletionListener, Executor> depletionListeners = new ConcurrentHashMap<>();
+        final Map<String, EvacuationCenter> evacuationCenters = new ConcurrentHashMap<>();
+        final EvacuationCenterStore evacuationCenterStore = new EvacuationCenterStore();
+        final List<EvacuationCenter> centersByIndex = new ArrayList<>();
+        final EvacuationAssigner evacuationAssigner = new EvacuationAssigner(evacuationCenterStore);
+        final OccupancyMonitor occupancyMonitor = new OccupancyMonitor(evacuationCenterStore);
+        final Map<String, EmergencyOperation> activeOperations = new ConcurrentHashMap<>();
+        final Map<String, EmergencyOperation> completedOperations = new ConcurrentHashMap<>();
+        final TeamDispatcher teamDispatcher = new TeamDispatcher();
+        final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+        final AtomicBoolean snapshotInProgress = new AtomicBoolean();
+        // Released once the log has been replayed, or has failed to open
+        final CountDownLatch restored = new CountDownLatch(1);
+        // Cleared if the log fails, after which changes are kept in memory only
+        volatile OperationLog operationLog;
+        volatile long depletionHorizonMillis = DEFAULT_DEPLETION_HORIZON_MILLIS;
+        volatile long startupMillis;
+
+        SharedState() {
+            evacuationCenterStore.setChangeListener(occupancyMonitor);
+        }
+    }
+
+    /**
+     * Quantities held by one successful reserve call, in resource ID order
+     */
+    static final class Reservation {
+        final Resource[] resources;
+        final int[] quantities;
+
+        Reservation(Resource[] resources, int[] quantities) {
+            this.resources = resources;
+            this.quantities = quantities;
+        }
+
+        /**
+         * Counts the reserved quantities as consumption
+         */
+        void commit() {
+            for (int i = 0; i < resources.length; i++) {
+                resources[i].recordUsage(quantities[i]);
+            }
+        }
+
+        /**
+         * Gives the reserved quantities back as if they had never been reserved
+         */
+        void cancel() {
+            for (int i = 0; i < resources.length; i++) {
+                resources[i].release(quantities[i]);
+            }
+        }
+    }
+
+    /**
+     * Running totals of all resources of one type
+     */
+    static final class ResourceTypeTotals {
+        final String type;
+        final AtomicInteger available = new AtomicInteger();
+        final UsageHistory usage = new UsageHistory(USAGE_HISTORY_SIZE, USAGE_HISTORY_MAX_AGE_MILLIS);
+        final AtomicBoolean atRisk = new AtomicBoolean();
+
+        ResourceTypeTotals(String type) {
+            this.type = type;
+        }
+    }
+
+    public interface DepletionListener {
+        /**
+         * @param forecast Forecast of a resource type that started or stopped being at risk
+         */
+        void onDepletionForecastChanged(DepletionForecast forecast);
+    }
+
+    /**
+     * Predicted depletion of one resource type
+     */
+    public static class DepletionForecast {
+        private final String type;
+        private final int available;
+        private final double burnRatePerHour;
+        private final long timeToDepletionMillis;
+        private final boolean atRisk;
+
+        public DepletionForecast(String type, int available, double burnRatePerHour,
+                                 long timeToDepletionMillis, boolean atRisk) {
+            this.type = type;
+            this.available = available;
+            this.burnRatePerHour = burnRatePerHour;
+            this.timeToDepletionMillis = timeToDepletionMillis;
+            this.atRisk = atRisk;
+        }
+
+        public String getType() { return type; }
+        public int getAvailable() { return available; }
+        public double getBurnRatePerHour() { return burnRatePerHour; }
+        public long getTimeToDepletionMillis() { return timeToDepletionMillis; }
+        public boolean isAtRisk() { return atRisk; }
+    }
+
+    /**
+     * View of one evacuation center; coordinates, capacity and occupancy are
+     * read from the center store
+     */
     public static class EvacuationCenter {
-        private String id;
+        private EvacuationCenterStore store;
+        private int index;
         private String name;
-        private Map<String, Double> location;
-        private int capacity;
-        private int currentOccupancy;
         private List<String> facilities;
 
-        public EvacuationCenter(String id, String name, Map<String, Double> location,
-                                int capacity, List<String> facilities) {
-            this.id = id;
+        public EvacuationCenter(EvacuationCenterStore store, int index, String name,
+                                List<String> facilities) {
+            this.store = store;
+            this.index = index;
             this.name = name;
-            this.location = location;
-            this.capacity = capacity;
-            this.currentOccupancy = 0;
             this.facilities = facilities;
         }
 
-        public void setCurrentOccupancy(int occupancy) {
-            this.currentOccupancy = occupancy;
+        public boolean setCurrentOccupancy(int occupancy) {
+            return store.setOccupancy(index, occupancy);
         }
 
-        public String getId() { return id; }
+        public String getId() { return store.getId(index); }
         public String getName() { return name; }
-        public Map<String, Double> getLocation() { return location; }
-        public int getCapacity() { return capacity; }
-        public int getCurrentOccupancy() { return currentOccupancy; }
+        public Map<String, Double> getLocation() {
+            return toLocationMap(store.getLatitude(index), store.getLongitude(index));
+        }
+        public double getLatitude() { return store.getLatitude(index); }
+        public double getLongitude() { return store.getLongitude(index); }
+        public int getCapacity() { return store.getCapacity(index); }
+        public int getCurrentOccupancy() { return store.getOccupancy(index); }
         public List<String> getFacilities() { return facilities; }
+        public int getStoreIndex() { return index; }
     }
 
     public static class EmergencyOperation {
         private String id;
         private String disasterId;
         private EmergencyTeam team;
-        private Map<String, Double> location;
+        private double latitude;
+        private double longitude;
         private LocalDateTime startTime;
         private LocalDateTime completionTime;
         private Map<String, Object> missionDetails;
@@ -784,22 +1988,27 @@ public class EmergencyResponse extends AppCompatActivity {
             this.id = id;
             this.disasterId = disasterId;
             this.team = team;
-            this.location = location;
+            this.latitude = location != null ? location.get("latitude") : Double.NaN;
+            this.longitude = location != null ? location.get("longitude") : Double.NaN;
             this.startTime = startTime;
             this.missionDetails = missionDetails;
-            this.allocatedResources = new HashMap<>();
+            this.allocatedResources = new ConcurrentHashMap<>();
         }
 
         public void setCompletionTime(LocalDateTime time) { this.completionTime = time; }
         public void setOperationReport(Map<String, Object> report) { this.operationReport = report; }
         public void addResource(String resourceId, int quantity) {
-            allocatedResources.put(resourceId, allocatedResources.getOrDefault(resourceId, 0) + quantity);
+            allocatedResources.merge(resourceId, quantity, Integer::sum);
         }
 
         public String getId() { return id; }
         public String getDisasterId() { return disasterId; }
         public EmergencyTeam getTeam() { return team; }
-        public Map<String, Double> getLocation() { return location; }
+        public Map<String, Double> getLocation() {
+            return Double.isNaN(latitude) ? null : toLocationMap(latitude, longitude);
+        }
+        public double getLatitude() { return latitude; }
+        public double getLongitude() { return longitude; }
         public LocalDateTime getStartTime() { return startTime; }
         public LocalDateTime getCompletionTime() { return completionTime; }
         public Duration getDuration() {
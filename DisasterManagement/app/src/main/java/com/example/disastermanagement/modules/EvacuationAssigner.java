@@ -0,0 +1,194 @@
+package com.example.disastermanagement.modules;
+
+import com.example.disastermanagement.utils.GeoKdTree;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Batch assignment of evacuees to evacuation centers with free capacity.
+ *
+ * Assignment is greedy over (evacuee, center) pairs in order of distance:
+ * the closest remaining pair is always taken next, as long as the center
+ * still has room. Instead of enumerating every pair, each center with room
+ * fetches a short list of its nearest unplaced evacuees and only the head
+ * of each list sits in a priority queue. Placed evacuees are deactivated
+ * in a k-d tree over the batch, so a center whose list runs out refills it
+ * with one nearest-neighbour query. Evacuees only ever leave the tree, so
+ * a fetched list stays a correct prefix of the center's nearest unplaced
+ * evacuees. This keeps total travel distance low without a full
+ * min-cost-flow solve.
+ *
+ * The whole batch runs while holding the center store's lock, so the
+ * occupancy it plans against cannot change underneath it and all
+ * occupancy increments become visible at once.
+ */
+public class EvacuationAssigner {
+    // Nearest evacuees fetched per center at a time
+    private static final int CANDIDATES_PER_FETCH = 64;
+
+    private final EvacuationCenterStore store;
+
+    public EvacuationAssigner(EvacuationCenterStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Assigns a batch of evacuees and adds them to the centers' occupancy
+     * @param latitudes Evacuee latitudes in degrees
+     * @param longitudes Evacuee longitudes in degrees
+     * @param count Number of evacuees to assign from the start of the arrays
+     * @return Center chosen for each evacuee
+     */
+    public Result assign(double[] latitudes, double[] longitudes, int count) {
+        if (count < 0 || latitudes.length < count || longitudes.length < count) {
+            throw new IllegalArgumentException("Evacuee columns are shorter than count " + count);
+        }
+
+        synchronized (store) {
+            int centerCount = store.size();
+            int[] free = new int[centerCount];
+            for (int c = 0; c < centerCount; c++) {
+                free[c] = Math.max(0, store.getCapacity(c) - store.getOccupancy(c));
+            }
+
+            int[] assigned = new int[count];
+            double[] distances = new double[count];
+            Arrays.fill(assigned, -1);
+            int placed = 0;
+
+            GeoKdTree unplaced = new GeoKdTree();
+            unplaced.addAll(latitudes, longitudes, count);
+            GeoKdTree.Neighbors[] candidates = new GeoKdTree.Neighbors[centerCount];
+            int[] cursor = new int[centerCount];
+            PriorityQueue<Candidate> queue = new PriorityQueue<>(Math.max(1, centerCount));
+            for (int c = 0; c < centerCount; c++) {
+                if (free[c] > 0) {
+                    candidates[c] = new GeoKdTree.Neighbors();
+                    offerNext(c, free[c], assigned, unplaced, candidates[c], cursor, queue);
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                Candidate candidate = queue.poll();
+                int center = candidate.center;
+                if (assigned[candidate.evacuee] < 0) {
+                    assigned[candidate.evacuee] = center;
+                    distances[candidate.evacuee] = candidate.distanceKm;
+                    unplaced.setActive(candidate.evacuee, false);
+                    placed++;
+                    free[center]--;
+                }
+                // Otherwise another center took this evacuee first
+                if (free[center] > 0) {
+                    offerNext(center, free[center], assigned, unplaced, candidates[center], cursor, queue);
+                }
+            }
+
+            // Publish the new occupancies together while still holding the lock
+            for (int c = 0; c < centerCount; c++) {
+                int added = Math.max(0, store.getCapacity(c) - store.getOccupancy(c)) - free[c];
+                if (added > 0) {
+                    store.setOccupancy(c, store.getOccupancy(c) + added);
+                }
+            }
+
+            String[] centerIds = new String[count];
+            double totalDistance = 0;
+            for (int i = 0; i < count; i++) {
+                if (assigned[i] >= 0) {
+                    centerIds[i] = store.getId(assigned[i]);
+                    totalDistance += distances[i];
+                }
+            }
+            return new Result(assigned, centerIds, distances, placed, totalDistance);
+        }
+    }
+
+    /**
+     * Queues the center's next unplaced evacuee, refilling its candidate list when it runs out
+     */
+    private void offerNext(int center, int free, int[] assigned, GeoKdTree unplaced,
+                           GeoKdTree.Neighbors list, int[] cursor, PriorityQueue<Candidate> queue) {
+        while (true) {
+            while (cursor[center] < list.size()) {
+                int i = cursor[center]++;
+                if (assigned[list.getId(i)] < 0) {
+                    queue.add(new Candidate(center, list.getId(i), list.getDistanceKm(i)));
+                    return;
+                }
+            }
+            unplaced.nearest(store.getLatitude(center), store.getLongitude(center),
+                    Math.min(free, CANDIDATES_PER_FETCH), list);
+            cursor[center] = 0;
+            if (list.size() == 0) {
+                return; // Everyone is placed
+            }
+        }
+    }
+
+    /**
+     * A center paired with its nearest evacuee that was unplaced when queued
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+        final int center;
+        final int evacuee;
+        final double distanceKm;
+
+        Candidate(int center, int evacuee, double distanceKm) {
+            this.center = center;
+            this.evacuee = evacuee;
+            this.distanceKm = distanceKm;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int byDistance = Double.compare(distanceKm, other.distanceKm);
+            if (byDistance != 0) {
+                return byDistance;
+            }
+            return center != other.center ? Integer.compare(center, other.center)
+                    : Integer.compare(evacuee, other.evacuee);
+        }
+    }
+
+    /**
+     * Outcome of one batch; evacuees are identified by their position in the input
+     */
+    public static class Result {
+        private final int[] centerIndexes;
+        private final String[] centerIds;
+        private final double[] distances;
+        private final int assignedCount;
+        private final double totalDistanceKm;
+
+        Result(int[] centerIndexes, String[] centerIds, double[] distances,
+               int assignedCount, double totalDistanceKm) {
+            this.centerIndexes = centerIndexes;
+            this.centerIds = centerIds;
+            this.distances = distances;
+            this.assignedCount = assignedCount;
+            this.totalDistanceKm = totalDistanceKm;
+        }
+
+        /**
+         * @return Id of the evacuee's center, or null if no center had room
+         */
+        public String getCenterId(int evacuee) { return centerIds[evacuee]; }
+
+        /**
+         * @return Store index of the evacuee's center, or -1 if unassigned
+         */
+        public int getCenterIndex(int evacuee) { return centerIndexes[evacuee]; }
+
+        /**
+         * @return Distance from the evacuee to its center in kilometers, 0 if unassigned
+         */
+        public double getDistanceKm(int evacuee) { return distances[evacuee]; }
+
+        public int getEvacueeCount() { return centerIndexes.length; }
+        public int getAssignedCount() { return assignedCount; }
+        public int getUnassignedCount() { return centerIndexes.length - assignedCount; }
+        public double getTotalDistanceKm() { return totalDistanceKm; }
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.disastermanagement.modules;
+
+import com.example.disastermanagement.utils.GeoKdTree;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Struct-of-arrays storage for evacuation center coordinates, capacity
+ * and occupancy.
+ *
+ * Each center gets a dense index on registration and its fields live in
+ * parallel primitive arrays at that index, so proximity and capacity scans
+ * read flat memory with no boxing or map lookups. A k-d tree over the same
+ * coordinates answers radius and nearest-center queries. Capacity and
+ * occupancy totals are kept up to date on every change so reading them
+ * does not scan the centers. All methods are synchronized on the store.
+ */
+public class EvacuationCenterStore {
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Told about every change to the store, while the store's lock is held
+     */
+    public interface ChangeListener {
+        /**
+         * @param index Dense index of the new center
+         */
+        void centerAdded(int index);
+
+        /**
+         * @param index Dense index of the center
+         * @param previous Occupancy before the change
+         * @param occupancy Occupancy after the change
+         */
+        void occupancyChanged(int index, int previous, int occupancy);
+
+        /**
+         * @param index Dense index of the center
+         * @param previous Capacity before the change
+         * @param capacity Capacity after the change
+         */
+        void capacityChanged(int index, int previous, int capacity);
+    }
+
+    private final Map<String, Integer> indexById = new HashMap<>();
+    private final GeoKdTree spatialIndex = new GeoKdTree();
+
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private double[] latitudes = new double[INITIAL_CAPACITY];
+    private double[] longitudes = new double[INITIAL_CAPACITY];
+    private int[] capacities = new int[INITIAL_CAPACITY];
+    private int[] occupancies = new int[INITIAL_CAPACITY];
+    private int size;
+    private long totalCapacity;
+    private long totalOccupancy;
+    private ChangeListener changeListener;
+
+    /**
+     * @param listener Listener for changes, or null for none
+     */
+    public synchronized void setChangeListener(ChangeListener listener) {
+        this.changeListener = listener;
+    }
+
+    /**
+     * Registers a center
+     * @param centerId Center identifier
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @param capacity Maximum capacity
+     * @return Dense index of the new center, or -1 if the id is already registered
+     */
+    public synchronized int add(String centerId, double latitude, double longitude, int capacity) {
+        if (indexById.containsKey(centerId)) {
+            return -1;
+        }
+        if (size == ids.length) {
+            int grown = size * 2;
+            ids = Arrays.copyOf(ids, grown);
+            latitudes = Arrays.copyOf(latitudes, grown);
+            longitudes = Arrays.copyOf(longitudes, grown);
+            capacities = Arrays.copyOf(capacities, grown);
+            occupancies = Arrays.copyOf(occupancies, grown);
+        }
+
+        int index = size++;
+        ids[index] = centerId;
+        latitudes[index] = latitude;
+        longitudes[index] = longitude;
+        capacities[index] = capacity;
+        totalCapacity += capacity;
+        indexById.put(centerId, index);
+
+        // The tree assigns ids in insertion order, matching the dense index
+        spatialIndex.add(latitude, longitude);
+        if (changeListener != null) {
+            changeListener.centerAdded(index);
+        }
+        return index;
+    }
+
+    /**
+     * @param centerId Center identifier
+     * @return Dense index of the center, or -1 if not registered
+     */
+    public synchronized int indexOf(String centerId) {
+        Integer index = indexById.get(centerId);
+        return index == null ? -1 : index;
+    }
+
+    public synchronized int size() { return size; }
+    public synchronized String getId(int index) { return ids[checkIndex(index)]; }
+    public synchronized double getLatitude(int index) { return latitudes[checkIndex(index)]; }
+    public synchronized double getLongitude(int index) { return longitudes[checkIndex(index)]; }
+    public synchronized int getCapacity(int index) { return capacities[checkIndex(index)]; }
+    public synchronized int getOccupancy(int index) { return occupancies[checkIndex(index)]; }
+
+    /**
+     * Sets the occupancy of a center
+     * @param index Dense index of the center
+     * @param occupancy New number of occupants
+     * @return false if the occupancy is negative or exceeds the capacity
+     */
+    public synchronized boolean setOccupancy(int index, int occupancy) {
+        checkIndex(index);
+        if (occupancy < 0 || occupancy > capacities[index]) {
+            return false;
+        }
+        int previous = occupancies[index];
+        totalOccupancy += occupancy - previous;
+        occupancies[index] = occupancy;
+        if (changeListener != null && occupancy != previous) {
+            changeListener.occupancyChanged(index, previous, occupancy);
+        }
+        return true;
+    }
+
+    /**
+     * Sets the capacity of a center
+     * @param index Dense index of the center
+     * @param capacity New maximum capacity
+     * @return false if the capacity is below the current occupancy
+     */
+    public synchronized boolean setCapacity(int index, int capacity) {
+        checkIndex(index);
+        if (capacity < occupancies[index]) {
+            return false;
+        }
+        int previous = capacities[index];
+        totalCapacity += capacity - previous;
+        capacities[index] = capacity;
+        if (changeListener != null && capacity != previous) {
+            changeListener.capacityChanged(index, previous, capacity);
+        }
+        return true;
+    }
+
+    /**
+     * @return Sum of the capacities of all centers
+     */
+    public synchronized long getTotalCapacity() {
+        return totalCapacity;
+    }
+
+    /**
+     * @return Sum of the occupancies of all centers
+     */
+    public synchronized long getTotalOccupancy() {
+        return totalOccupancy;
+    }
+
+    /**
+     * Finds the centers within a distance
+     * @param latitude Query latitude in degrees
+     * @param longitude Query longitude in degrees
+     * @param radiusKm Maximum distance in kilometers
+     * @param result Reusable result, filled with center indexes ordered by distance
+     */
+    public void findWithinRadius(double latitude, double longitude, double radiusKm,
+                                 GeoKdTree.Neighbors result) {
+        spatialIndex.withinRadius(latitude, longitude, radiusKm, result);
+    }
+
+    /**
+     * Finds the centers closest to a location
+     * @param latitude Query latitude in degrees
+     * @param longitude Query longitude in degrees
+     * @param count Maximum number of centers
+     * @param result Reusable result, filled with center indexes ordered by distance
+     */
+    public void findNearest(double latitude, double longitude, int count, GeoKdTree.Neighbors result) {
+        spatialIndex.nearest(latitude, longitude, count, result);
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("No evacuation center at index " + index);
+        }
+        return index;
+    }
+}
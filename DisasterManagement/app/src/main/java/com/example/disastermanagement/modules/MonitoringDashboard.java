@@ -1,12 +1,33 @@
 package com.example.disastermanagement.modules;
 
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Bundle;
+import android.util.Log;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.app.ActivityCompat;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
 
 import com.example.disastermanagement.R;
+import com.example.disastermanagement.utils.GeoGridIndex;
+import com.example.disastermanagement.utils.StreamingStats;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
 /**
@@ -14,93 +35,383 @@ import java.time.format.DateTimeFormatter;
  * that displays real-time disaster data, alerts, and status updates.
  */
 public class MonitoringDashboard extends AppCompatActivity {
-    private Map<String, List<Alert>> activeAlerts;
+    private static final String TAG = "MonitoringDashboard";
+    
+    // Sensor type codes used by the alert rules and the batch ingest path
+    public static final int SENSOR_WATER_LEVEL = 0;
+    public static final int SENSOR_EARTHQUAKE_MAGNITUDE = 1;
+    public static final int SENSOR_WIND_SPEED = 2;
+    public static final int SENSOR_WAVE_HEIGHT = 3;
+    
+    private static final int SENSOR_TYPE_COUNT = 4;
+    
+    // Alert retention: 24 hours in 15 minute buckets, capped at ~8 MB
+    private static final long ALERT_RETENTION_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long ALERT_BUCKET_MILLIS = 15 * 60 * 1000L;
+    private static final long ALERT_MEMORY_CAP_BYTES = 8 * 1024 * 1024L;
+    
+    // Alerts waiting for the delivery thread, and how many it hands over at once
+    private static final int ALERT_DISPATCH_CAPACITY = 1024;
+    private static final int ALERT_DELIVERY_BATCH = 64;
+    private static final long ALERT_DELIVERY_POLL_MILLIS = 1000;
+    // Longest a background producer waits for room before dropping an alert
+    private static final long ALERT_PRODUCER_WAIT_MILLIS = 5000;
+    private static final String ALERT_CHANNEL_ID = "disaster_alerts";
+    private static final int NOTIFICATION_PERMISSION_REQUEST_CODE = 1001;
+    
+    // Default streaming aggregate settings for monitored regions
+    private static final int DEFAULT_ROLLING_WINDOW = 60; // readings
+    private static final double DEFAULT_EWMA_ALPHA = 0.2;
+    
+    // Radius assumed for regions given only a center point
+    private static final double DEFAULT_REGION_RADIUS_KM = 25.0;
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    
+    // Repeats of an open alert within this window are coalesced into it
+    private static final long ALERT_SUPPRESSION_MILLIS = 10 * 60 * 1000L;
+    
+    // Keys used for each sensor type in updateDashboard sensor data maps
+    private static final String[] SENSOR_DATA_KEYS = {
+        "water_level", "magnitude", "wind_speed", "wave_height"
+    };
+    
+    private AlertStore activeAlerts;
+    private AlertSuppressor alertSuppressor;
+    private AlertDispatchQueue alertDispatchQueue;
+    private Thread alertDeliveryThread;
+    private final CopyOnWriteArrayList<AlertListener> alertListeners = new CopyOnWriteArrayList<>();
     private Map<String, DisasterEvent> ongoingDisasters;
-    private Map<String, Double> thresholds;
-    private List<String> monitoredRegions;
-    private LocalDateTime lastUpdated;
+    private DisasterArchive disasterArchive;
+    private AlertRuleEngine ruleEngine;
+    private CopyOnWriteArrayList<MonitoredRegion> monitoredRegions;
+    private Map<String, MonitoredRegion> regionsByName;
+    private GeoGridIndex regionIndex;
+    private volatile LocalDateTime lastUpdated;
+    private final AtomicLong rejectedReadings = new AtomicLong();
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_monitoring_dashboard);
         
-        this.activeAlerts = new HashMap<>();
-        this.ongoingDisasters = new HashMap<>();
-        this.thresholds = new HashMap<>();
-        this.monitoredRegions = new ArrayList<>();
+        this.activeAlerts = new AlertStore(ALERT_RETENTION_MILLIS, ALERT_BUCKET_MILLIS, ALERT_MEMORY_CAP_BYTES);
+        this.alertSuppressor = new AlertSuppressor(activeAlerts, ALERT_SUPPRESSION_MILLIS);
+        this.alertDispatchQueue = new AlertDispatchQueue(ALERT_DISPATCH_CAPACITY);
+        this.ongoingDisasters = new ConcurrentHashMap<>();
+        this.ruleEngine = new AlertRuleEngine(SENSOR_TYPE_COUNT);
+        this.monitoredRegions = new CopyOnWriteArrayList<>();
+        this.regionsByName = new ConcurrentHashMap<>();
+        this.regionIndex = new GeoGridIndex();
         this.lastUpdated = LocalDateTime.now();
         
+        // New alerts reach listeners and notifications from their own thread
+        createAlertChannel();
+        requestNotificationPermission();
+        this.alertDeliveryThread = new Thread(this::deliverAlerts, "alert-delivery");
+        this.alertDeliveryThread.setDaemon(true);
+        this.alertDeliveryThread.start();
+        
+        try {
+            this.disasterArchive = new DisasterArchive(new File(getFilesDir(), "disaster_archive"));
+        } catch (IOException e) {
+            Log.e(TAG, "Could not open disaster archive", e);
+        }
+        
         // Initialize default thresholds
-        thresholds.put("flood_water_level", 5.0); // meters
-        thresholds.put("earthquake_magnitude", 4.5); // Richter scale
-        thresholds.put("cyclone_wind_speed", 120.0); // km/h
-        thresholds.put("tsunami_wave_height", 2.0); // meters
+        ruleEngine.setThreshold("flood_water_level", 5.0); // meters
+        ruleEngine.setThreshold("earthquake_magnitude", 4.5); // Richter scale
+        ruleEngine.setThreshold("cyclone_wind_speed", 120.0); // km/h
+        ruleEngine.setThreshold("tsunami_wave_height", 2.0); // meters
+        
+        // Initialize default rules
+        ruleEngine.addRule(new AlertRuleEngine.ThresholdRule(SENSOR_WATER_LEVEL, "flood_water_level",
+                "WATER_LEVEL_EXCEEDED", "Water level has exceeded the threshold"));
+        ruleEngine.addRule(new AlertRuleEngine.ThresholdRule(SENSOR_EARTHQUAKE_MAGNITUDE, "earthquake_magnitude",
+                "EARTHQUAKE_MAGNITUDE_EXCEEDED", "Earthquake magnitude has exceeded the threshold"));
+        ruleEngine.addRule(new AlertRuleEngine.ThresholdRule(SENSOR_WIND_SPEED, "cyclone_wind_speed",
+                "WIND_SPEED_EXCEEDED", "Wind speed has exceeded the threshold"));
+        ruleEngine.addRule(new AlertRuleEngine.ThresholdRule(SENSOR_WAVE_HEIGHT, "tsunami_wave_height",
+                "WAVE_HEIGHT_EXCEEDED", "Wave height has exceeded the threshold"));
+    }
+    
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        alertDispatchQueue.close();
+        alertDeliveryThread.interrupt();
+        if (disasterArchive != null) {
+            try {
+                disasterArchive.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing disaster archive", e);
+            }
+        }
     }
     
     /**
      * Updates the dashboard with new sensor data
      * @param sensorData Map containing the latest sensor readings
-     * @return List of new alerts generated from the sensor data
+     * @return List of new alerts generated from the sensor data; repeats of
+     *         an open alert are coalesced into it and not returned. New alerts
+     *         are also queued for delivery on the alert dispatch queue.
      */
     public List<Alert> updateDashboard(Map<String, Object> sensorData) {
-        List<Alert> newAlerts = processIncomingSensorData(sensorData);
+        List<Alert> raisedAlerts = processIncomingSensorData(sensorData);
         this.lastUpdated = LocalDateTime.now();
+        activeAlerts.expire();
+        alertSuppressor.prune(LocalDateTime.now());
         
         // Add new alerts to the active alerts list
-        for (Alert alert : newAlerts) {
-            String region = alert.getRegion();
-            if (!activeAlerts.containsKey(region)) {
-                activeAlerts.put(region, new ArrayList<>());
+        List<Alert> newAlerts = new ArrayList<>(raisedAlerts.size());
+        for (Alert alert : raisedAlerts) {
+            if (alertSuppressor.admit(alert)) {
+                newAlerts.add(alert);
+                dispatchAlert(alert);
             }
-            activeAlerts.get(region).add(alert);
         }
         
         return newAlerts;
     }
     
+    /**
+     * Ingests a burst of sensor readings stored as parallel columns. All
+     * rules are checked in a single pass over the primitive arrays and only
+     * readings that crossed a threshold raise alerts. Readings with an unknown
+     * region id or sensor type, or a NaN value, are skipped and counted so one
+     * bad row doesn't stop the rest of the batch. Call from a background
+     * thread: when the dispatch queue is full this waits for the consumers to
+     * catch up instead of displacing queued alerts.
+     * @param regionIds Region id of each reading (see getRegionId)
+     * @param sensorTypes Sensor type code of each reading (SENSOR_* constants)
+     * @param values Reading values
+     * @param timestamps Reading times in epoch milliseconds
+     * @param count Number of readings to process from the start of the arrays
+     * @return Indices of the readings that crossed a threshold, in input order
+     */
+    public int[] ingestSensorBatch(int[] regionIds, int[] sensorTypes, double[] values,
+                                   long[] timestamps, int count) {
+        if (count < 0 || regionIds.length < count || sensorTypes.length < count ||
+                values.length < count || timestamps.length < count) {
+            throw new IllegalArgumentException("Batch columns are shorter than count " + count);
+        }
+        
+        activeAlerts.expire();
+        alertSuppressor.prune(LocalDateTime.now());
+        
+        // Read the rule table once so the whole batch sees one version
+        AlertRuleEngine.CompiledRule[][] rules = ruleEngine.snapshot();
+        // Regions are only ever appended, so ids below this stay valid for the batch
+        int regionCount = monitoredRegions.size();
+        int[] crossed = new int[count];
+        int crossedCount = 0;
+        int rejected = 0;
+        
+        for (int i = 0; i < count; i++) {
+            int regionId = regionIds[i];
+            int sensorType = sensorTypes[i];
+            if (regionId < 0 || regionId >= regionCount || sensorType < 0 || sensorType >= rules.length
+                    || Double.isNaN(values[i])) {
+                rejected++;
+                continue;
+            }
+            monitoredRegions.get(regionId).recordReading(sensorType, values[i], timestamps[i]);
+            for (AlertRuleEngine.CompiledRule rule : rules[sensorType]) {
+                if (rule.matches(values[i])) {
+                    crossed[crossedCount++] = i;
+                    break;
+                }
+            }
+        }
+        
+        for (int c = 0; c < crossedCount; c++) {
+            int i = crossed[c];
+            String region = getRegion(regionIds[i]).getName();
+            LocalDateTime readingTime = LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(timestamps[i]), ZoneId.systemDefault());
+            for (AlertRuleEngine.CompiledRule rule : rules[sensorTypes[i]]) {
+                if (rule.matches(values[i])) {
+                    Alert alert = rule.createAlert(region, values[i], readingTime);
+                    if (alertSuppressor.admit(alert)) {
+                        dispatchAlertWaiting(alert);
+                    }
+                }
+            }
+        }
+        if (rejected > 0) {
+            rejectedReadings.addAndGet(rejected);
+            Log.w(TAG, "Skipped " + rejected + " of " + count + " readings with an unknown region, sensor type or value");
+        }
+        this.lastUpdated = LocalDateTime.now();
+        
+        return Arrays.copyOf(crossed, crossedCount);
+    }
+    
+    /**
+     * Gets the numeric id of a monitored region for use with ingestSensorBatch
+     * @param regionName Name of the region
+     * @return Region id, or -1 if the region is not monitored
+     */
+    public int getRegionId(String regionName) {
+        MonitoredRegion region = regionsByName.get(regionName);
+        return region == null ? -1 : region.getId();
+    }
+    
+    /**
+     * Finds the monitored regions containing a location
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return Ids of the containing regions in ascending order
+     */
+    public int[] getRegionIdsAt(double latitude, double longitude) {
+        int[] candidates = regionIndex.query(latitude, longitude);
+        // A region being added is indexed before it is in the list; leave it out until it is
+        int published = monitoredRegions.size();
+        int count = 0;
+        for (int id : candidates) {
+            // The index matches bounding boxes; radius regions need the exact check
+            if (id < published && monitoredRegions.get(id).contains(latitude, longitude)) {
+                candidates[count++] = id;
+            }
+        }
+        return count == candidates.length ? candidates : Arrays.copyOf(candidates, count);
+    }
+    
+    /**
+     * Finds the names of the monitored regions containing a location
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return Names of the containing regions
+     */
+    public List<String> getRegionsAt(double latitude, double longitude) {
+        List<String> names = new ArrayList<>();
+        for (int id : getRegionIdsAt(latitude, longitude)) {
+            names.add(monitoredRegions.get(id).getName());
+        }
+        return names;
+    }
+    
     /**
      * Adds a new region to be monitored
      * @param regionName Name of the region
-     * @param coordinates Map containing latitude and longitude
+     * @param coordinates Map containing latitude and longitude with an optional radius_km,
+     *                    or the bounds min_latitude, max_latitude, min_longitude, max_longitude
      * @param parameters Map of monitoring parameters specific to this region
      * @return boolean indicating success
      */
-    public boolean addMonitoredRegion(String regionName, Map<String, Double> coordinates, 
+    public synchronized boolean addMonitoredRegion(String regionName, Map<String, Double> coordinates, 
                                      Map<String, Object> parameters) {
-        if (monitoredRegions.contains(regionName)) {
+        if (regionsByName.containsKey(regionName)) {
             return false; // Region already exists
         }
         
-        monitoredRegions.add(regionName);
-        // In a real implementation, would store the coordinates and parameters
-        // for this region in a database or appropriate data structure
+        MonitoredRegion region = new MonitoredRegion(monitoredRegions.size(), regionName,
+                coordinates, parameters);
+        // Index first: bad bounds are rejected before the region is visible
+        // anywhere, so a failure can't leave its id taken in the list
+        if (region.hasBounds()) {
+            regionIndex.add(region.getId(), region.getMinLatitude(), region.getMaxLatitude(),
+                    region.getMinLongitude(), region.getMaxLongitude());
+        }
+        monitoredRegions.add(region);
+        regionsByName.put(regionName, region);
         
         return true;
     }
     
+    /**
+     * Gets streaming trend aggregates for each sensor type in a region
+     * @param regionName Name of the region
+     * @return Map of sensor key to its aggregates, empty if the region is not monitored
+     */
+    public Map<String, Map<String, Object>> getRegionTrends(String regionName) {
+        Map<String, Map<String, Object>> trends = new HashMap<>();
+        MonitoredRegion region = regionsByName.get(regionName);
+        if (region == null) {
+            return trends;
+        }
+        
+        for (int sensorType = 0; sensorType < SENSOR_TYPE_COUNT; sensorType++) {
+            StreamingStats stats = region.getSensorStats(sensorType);
+            if (stats.getCount() == 0) {
+                continue;
+            }
+            
+            Map<String, Object> sensorTrend = new HashMap<>();
+            sensorTrend.put("count", stats.getCount());
+            sensorTrend.put("latest", stats.getLastValue());
+            sensorTrend.put("rollingMean", stats.getRollingMean());
+            sensorTrend.put("ewma", stats.getEwma());
+            sensorTrend.put("p50", stats.getQuantile(0.50));
+            sensorTrend.put("p95", stats.getQuantile(0.95));
+            sensorTrend.put("p99", stats.getQuantile(0.99));
+            sensorTrend.put("ratePerSecond", stats.getRateOfChange());
+            trends.put(SENSOR_DATA_KEYS[sensorType], sensorTrend);
+        }
+        
+        return trends;
+    }
+    
+    /**
+     * Merges the aggregates of several regions, e.g. into a state-level view
+     * @param regionNames Regions to combine; unknown names are ignored
+     * @param sensorType Sensor type code (SENSOR_* constants)
+     * @return Combined aggregates for the sensor type
+     */
+    public StreamingStats getCombinedSensorStats(Collection<String> regionNames, int sensorType) {
+        StreamingStats combined = new StreamingStats(DEFAULT_ROLLING_WINDOW, DEFAULT_EWMA_ALPHA);
+        for (String regionName : regionNames) {
+            MonitoredRegion region = regionsByName.get(regionName);
+            if (region != null) {
+                combined.merge(region.getSensorStats(sensorType));
+            }
+        }
+        return combined;
+    }
+    
     /**
      * Gets all active alerts for a specific region
      * @param regionName Name of the region to get alerts for
      * @return List of active alerts for the specified region
      */
     public List<Alert> getActiveAlertsForRegion(String regionName) {
-        return activeAlerts.getOrDefault(regionName, new ArrayList<>());
+        return activeAlerts.getAlerts(regionName);
+    }
+    
+    /**
+     * Resolves an active alert so it no longer counts towards the dashboard
+     * @param alert Alert to resolve
+     * @return boolean indicating success
+     */
+    public boolean resolveAlert(Alert alert) {
+        return alertSuppressor.resolve(alert);
     }
     
     /**
-     * Updates a monitoring threshold
+     * Gets the number of active alerts for a specific region
+     * @param regionName Name of the region
+     * @return Number of unresolved alerts in the region
+     */
+    public int getActiveAlertCountForRegion(String regionName) {
+        return activeAlerts.getActiveCount(regionName);
+    }
+    
+    /**
+     * Updates a monitoring threshold. The new value takes effect for the next
+     * reading without pausing ingest.
      * @param thresholdName Name of the threshold to update
      * @param newValue New threshold value
      * @return boolean indicating success
      */
     public boolean updateThreshold(String thresholdName, double newValue) {
-        if (!thresholds.containsKey(thresholdName)) {
-            return false;
-        }
-        
-        thresholds.put(thresholdName, newValue);
-        return true;
+        return ruleEngine.updateThreshold(thresholdName, newValue);
+    }
+    
+    /**
+     * Registers an additional alert rule
+     * @param rule Rule to evaluate against incoming readings
+     */
+    public void addAlertRule(AlertRuleEngine.AlertRule rule) {
+        ruleEngine.addRule(rule);
     }
     
     /**
@@ -128,10 +439,9 @@ public class MonitoringDashboard extends AppCompatActivity {
             details
         );
         
-        if (!activeAlerts.containsKey(region)) {
-            activeAlerts.put(region, new ArrayList<>());
+        if (activeAlerts.add(newDisasterAlert)) {
+            dispatchAlert(newDisasterAlert);
         }
-        activeAlerts.get(region).add(newDisasterAlert);
         
         return disasterId;
     }
@@ -140,24 +450,57 @@ public class MonitoringDashboard extends AppCompatActivity {
      * Marks a disaster event as resolved
      * @param disasterId ID of the disaster to resolve
      * @param resolutionDetails Details about the resolution
-     * @return boolean indicating success
+     * @return true if the event was resolved; false if it is unknown, or if it
+     *         could not be archived, in which case it stays ongoing
      */
     public boolean resolveDisasterEvent(String disasterId, Map<String, Object> resolutionDetails) {
-        if (!ongoingDisasters.containsKey(disasterId)) {
+        // Removing first means only one caller can resolve a given event
+        DisasterEvent event = ongoingDisasters.remove(disasterId);
+        if (event == null) {
             return false;
         }
         
-        DisasterEvent event = ongoingDisasters.get(disasterId);
         event.setResolved(true);
         event.setResolutionTime(LocalDateTime.now());
         event.setResolutionDetails(resolutionDetails);
         
-        // Move from ongoing to historical (in a real implementation)
-        ongoingDisasters.remove(disasterId);
+        // Move from ongoing to historical
+        if (disasterArchive != null) {
+            try {
+                disasterArchive.append(event);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Failed to archive disaster " + disasterId + ", keeping it ongoing", e);
+                // Put it back rather than lose it from both places
+                event.setResolved(false);
+                event.setResolutionTime(null);
+                event.setResolutionDetails(null);
+                ongoingDisasters.put(disasterId, event);
+                return false;
+            }
+        }
         
         return true;
     }
     
+    /**
+     * Gets resolved disaster events from the historical archive
+     * @param from Start of the resolution time range, inclusive
+     * @param to End of the resolution time range, inclusive
+     * @return List of resolved events in the range, empty if the archive is unavailable
+     */
+    public List<DisasterEvent> getHistoricalDisasters(LocalDateTime from, LocalDateTime to) {
+        if (disasterArchive == null) {
+            return new ArrayList<>();
+        }
+        
+        try {
+            return disasterArchive.query(from, to);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read disaster archive", e);
+            return new ArrayList<>();
+        }
+    }
+    
     /**
      * Get a dashboard summary
      * @return Map containing summary of the dashboard state
@@ -175,79 +518,246 @@ public class MonitoringDashboard extends AppCompatActivity {
         alertsByPriority.put("HIGH", 0);
         alertsByPriority.put("MEDIUM", 0);
         alertsByPriority.put("LOW", 0);
-        
-        for (List<Alert> regionAlerts : activeAlerts.values()) {
-            for (Alert alert : regionAlerts) {
-                String priority = alert.getPriority();
-                alertsByPriority.put(priority, alertsByPriority.get(priority) + 1);
-            }
-        }
+        alertsByPriority.putAll(activeAlerts.getActiveCountsByPriority());
         summary.put("alertsByPriority", alertsByPriority);
         
+        // Alert retention statistics
+        summary.put("residentAlertBytes", activeAlerts.getResidentBytes());
+        summary.put("evictedAlertsCount", activeAlerts.getEvictedAlertCount());
+        summary.put("evictedAlertBucketsCount", activeAlerts.getEvictedBucketCount());
+        summary.put("futureAlertsCount", activeAlerts.getFutureAlertCount());
+        summary.put("suppressedAlertsCount", alertSuppressor.getSuppressedCount());
+        summary.put("rejectedReadingsCount", rejectedReadings.get());
+        
+        // Alert delivery statistics
+        summary.put("dispatchQueueDepth", alertDispatchQueue.getDepth());
+        summary.put("dispatchedAlertsCount", alertDispatchQueue.getDeliveredCount());
+        summary.put("dispatchRejectedCount", alertDispatchQueue.getRejectedCount());
+        summary.put("dispatchDisplacedCount", alertDispatchQueue.getDisplacedCount());
+        summary.put("dispatchLatencyP50Millis", alertDispatchQueue.getLatencyMillis(0.50));
+        summary.put("dispatchLatencyP95Millis", alertDispatchQueue.getLatencyMillis(0.95));
+        
         return summary;
     }
     
+    /**
+     * Gets the queue new alerts wait in before the delivery thread hands them to listeners
+     * @return Alert dispatch queue
+     */
+    public AlertDispatchQueue getAlertDispatchQueue() {
+        return alertDispatchQueue;
+    }
+    
+    /**
+     * Registers a listener for new alerts
+     * @param listener Called on the main thread with each batch of alerts, highest priority first
+     */
+    public void addAlertListener(AlertListener listener) {
+        alertListeners.add(listener);
+    }
+    
+    public void removeAlertListener(AlertListener listener) {
+        alertListeners.remove(listener);
+    }
+    
     // Private helper methods
     
+    private void dispatchAlert(Alert alert) {
+        // Never waits: callers may be on the UI thread
+        if (!alertDispatchQueue.offer(alert)) {
+            Log.w(TAG, "Alert dispatch queue full, dropped " + alert.getType() + " alert for " + alert.getRegion());
+        }
+    }
+    
+    /**
+     * Queues an alert from a background producer, waiting for room so a burst
+     * is slowed down rather than allowed to displace alerts already queued
+     */
+    private void dispatchAlertWaiting(Alert alert) {
+        try {
+            if (!alertDispatchQueue.offer(alert, ALERT_PRODUCER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Alert dispatch queue stayed full, dropped " + alert.getType() + " alert for " + alert.getRegion());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.w(TAG, "Interrupted while queueing " + alert.getType() + " alert for " + alert.getRegion());
+        }
+    }
+    
+    /**
+     * Delivery thread: takes alerts off the dispatch queue in priority order
+     * and hands them to the main thread in batches
+     */
+    private void deliverAlerts() {
+        try {
+            while (true) {
+                Alert first = alertDispatchQueue.poll(ALERT_DELIVERY_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (alertDispatchQueue.isClosed()) {
+                        return;
+                    }
+                    continue;
+                }
+                List<Alert> batch = new ArrayList<>(ALERT_DELIVERY_BATCH);
+                batch.add(first);
+                alertDispatchQueue.drainTo(batch, ALERT_DELIVERY_BATCH - 1);
+                runOnUiThread(() -> showAlerts(batch));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void showAlerts(List<Alert> alerts) {
+        if (isDestroyed()) {
+            return;
+        }
+        for (AlertListener listener : alertListeners) {
+            try {
+                listener.onAlerts(alerts);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Alert listener failed", e);
+            }
+        }
+        for (Alert alert : alerts) {
+            if ("HIGH".equals(alert.getPriority())) {
+                notifyAlert(alert);
+            }
+        }
+    }
+    
+    private void notifyAlert(Alert alert) {
+        NotificationManagerCompat notificationManager = NotificationManagerCompat.from(this);
+        if (!notificationManager.areNotificationsEnabled()) {
+            return;
+        }
+        Notification notification = new NotificationCompat.Builder(this, ALERT_CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.ic_dialog_alert)
+                .setContentTitle(alert.getRegion() != null ? alert.getRegion() + ": " + alert.getType() : alert.getType())
+                .setContentText(alert.getMessage())
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setAutoCancel(true)
+                .build();
+        try {
+            notificationManager.notify((alert.getType() + alert.getRegion()).hashCode(), notification);
+        } catch (SecurityException e) {
+            Log.w(TAG, "Not allowed to post alert notifications", e);
+        }
+    }
+    
+    private void createAlertChannel() {
+        NotificationChannel channel = new NotificationChannel(ALERT_CHANNEL_ID, "Disaster alerts",
+                NotificationManager.IMPORTANCE_HIGH);
+        NotificationManager notificationManager = getSystemService(NotificationManager.class);
+        if (notificationManager != null) {
+            notificationManager.createNotificationChannel(channel);
+        }
+    }
+    
+    private void requestNotificationPermission() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU &&
+                ActivityCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                        != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.POST_NOTIFICATIONS},
+                    NOTIFICATION_PERMISSION_REQUEST_CODE);
+        }
+    }
+    
     private List<Alert> processIncomingSensorData(Map<String, Object> sensorData) {
         List<Alert> newAlerts = new ArrayList<>();
         
-        // Process sensor data and generate alerts based on thresholds
-        // This is a simplified implementation
+        // Process sensor data and generate alerts based on the rules
+        // registered for each sensor type present in the reading
+        String region = (String) sensorData.get("region");
+        LocalDateTime readingTime = LocalDateTime.now();
+        long readingMillis = System.currentTimeMillis();
         
-        if (sensorData.containsKey("water_level")) {
-            double waterLevel = (double) sensorData.get("water_level");
-            double threshold = thresholds.get("flood_water_level");
-            
-            if (waterLevel > threshold) {
-                Map<String, Object> details = new HashMap<>();
-                details.put("current_level", waterLevel);
-                details.put("threshold", threshold);
-                details.put("excess", waterLevel - threshold);
-                
-                Alert alert = new Alert(
-                    "WATER_LEVEL_EXCEEDED",
-                    "Water level has exceeded the threshold",
-                    waterLevel > threshold * 1.5 ? "HIGH" : "MEDIUM",
-                    (String) sensorData.get("region"),
-                    details
-                );
-                
-                newAlerts.add(alert);
+        if (region != null) {
+            evaluateReading(region, regionsByName.get(region), sensorData,
+                    readingTime, readingMillis, newAlerts);
+        } else if (sensorData.get("latitude") instanceof Number &&
+                sensorData.get("longitude") instanceof Number) {
+            // Readings without a region name apply to every region covering their location
+            double latitude = ((Number) sensorData.get("latitude")).doubleValue();
+            double longitude = ((Number) sensorData.get("longitude")).doubleValue();
+            for (int regionId : getRegionIdsAt(latitude, longitude)) {
+                MonitoredRegion monitoredRegion = monitoredRegions.get(regionId);
+                evaluateReading(monitoredRegion.getName(), monitoredRegion, sensorData,
+                        readingTime, readingMillis, newAlerts);
             }
         }
         
-        // Similar processing for other sensor types would go here
-        
         return newAlerts;
     }
     
-    private int countTotalAlerts() {
-        int total = 0;
-        for (List<Alert> alerts : activeAlerts.values()) {
-            total += alerts.size();
+    private void evaluateReading(String region, MonitoredRegion monitoredRegion,
+                                 Map<String, Object> sensorData, LocalDateTime readingTime,
+                                 long readingMillis, List<Alert> newAlerts) {
+        for (int sensorType = 0; sensorType < SENSOR_TYPE_COUNT; sensorType++) {
+            Object value = sensorData.get(SENSOR_DATA_KEYS[sensorType]);
+            if (value instanceof Number) {
+                double reading = ((Number) value).doubleValue();
+                if (monitoredRegion != null) {
+                    monitoredRegion.recordReading(sensorType, reading, readingMillis);
+                }
+                ruleEngine.evaluate(region, sensorType, reading, readingTime, newAlerts);
+            }
         }
-        return total;
+    }
+    
+    private MonitoredRegion getRegion(int regionId) {
+        if (regionId < 0 || regionId >= monitoredRegions.size()) {
+            throw new IllegalArgumentException("Unknown region id: " + regionId);
+        }
+        return monitoredRegions.get(regionId);
+    }
+    
+    private int countTotalAlerts() {
+        return activeAlerts.size();
     }
     
     // Inner classes for data structures
     
+    /**
+     * Receives new alerts from the delivery thread
+     */
+    public interface AlertListener {
+        /**
+         * @param alerts New alerts, highest priority first; called on the main thread
+         */
+        void onAlerts(List<Alert> alerts);
+    }
+    
     public static class Alert {
+        private static final int STATE_NEW = 0;
+        private static final int STATE_ACTIVE = 1;
+        private static final int STATE_RESOLVED = 2;
+        
         private String type;
         private String message;
         private String priority;
         private String region;
         private Map<String, Object> details;
         private LocalDateTime timestamp;
+        private final AtomicInteger state = new AtomicInteger(STATE_NEW);
+        private volatile AlertStore.Bucket storeBucket;
+        private final AtomicInteger occurrences = new AtomicInteger(1);
+        private volatile LocalDateTime lastSeen;
         
         public Alert(String type, String message, String priority, String region, 
                     Map<String, Object> details) {
+            this(type, message, priority, region, details, LocalDateTime.now());
+        }
+        
+        public Alert(String type, String message, String priority, String region,
+                    Map<String, Object> details, LocalDateTime timestamp) {
             this.type = type;
             this.message = message;
             this.priority = priority;
             this.region = region;
             this.details = details;
-            this.timestamp = LocalDateTime.now();
+            this.timestamp = timestamp;
+            this.lastSeen = timestamp;
         }
         
         public String getType() { return type; }
@@ -256,6 +766,147 @@ public class MonitoringDashboard extends AppCompatActivity {
         public String getRegion() { return region; }
         public Map<String, Object> getDetails() { return details; }
         public LocalDateTime getTimestamp() { return timestamp; }
+        public boolean isResolved() { return state.get() == STATE_RESOLVED; }
+        public int getOccurrenceCount() { return occurrences.get(); }
+        public LocalDateTime getLastSeen() { return lastSeen; }
+        
+        boolean markActive() { return state.compareAndSet(STATE_NEW, STATE_ACTIVE); }
+        boolean markResolved() { return state.compareAndSet(STATE_ACTIVE, STATE_RESOLVED); }
+        AlertStore.Bucket getStoreBucket() { return storeBucket; }
+        void setStoreBucket(AlertStore.Bucket bucket) { this.storeBucket = bucket; }
+        
+        synchronized void recordOccurrence(LocalDateTime seenAt) {
+            occurrences.incrementAndGet();
+            if (seenAt.isAfter(lastSeen)) {
+                lastSeen = seenAt;
+            }
+        }
+    }
+    
+    public static class MonitoredRegion {
+        private int id;
+        private String name;
+        private Map<String, Double> coordinates;
+        private Map<String, Object> parameters;
+        private StreamingStats[] sensorStats;
+        
+        // Bounding box, plus center and radius for regions given as a circle
+        private double minLatitude = Double.NaN;
+        private double maxLatitude = Double.NaN;
+        private double minLongitude = Double.NaN;
+        private double maxLongitude = Double.NaN;
+        private double centerLatitude;
+        private double centerLongitude;
+        private double radiusKm;
+        
+        public MonitoredRegion(int id, String name, Map<String, Double> coordinates,
+                              Map<String, Object> parameters) {
+            this.id = id;
+            this.name = name;
+            this.coordinates = coordinates;
+            this.parameters = parameters;
+            
+            // Optional per-region overrides for the streaming aggregates
+            int windowSize = DEFAULT_ROLLING_WINDOW;
+            double alpha = DEFAULT_EWMA_ALPHA;
+            if (parameters != null && parameters.get("rolling_window") instanceof Number) {
+                windowSize = ((Number) parameters.get("rolling_window")).intValue();
+            }
+            if (parameters != null && parameters.get("ewma_alpha") instanceof Number) {
+                alpha = ((Number) parameters.get("ewma_alpha")).doubleValue();
+            }
+            
+            this.sensorStats = new StreamingStats[SENSOR_TYPE_COUNT];
+            for (int i = 0; i < SENSOR_TYPE_COUNT; i++) {
+                sensorStats[i] = new StreamingStats(windowSize, alpha);
+            }
+            
+            if (coordinates != null) {
+                initBounds(coordinates);
+            }
+        }
+        
+        private void initBounds(Map<String, Double> coordinates) {
+            if (coordinates.containsKey("min_latitude") && coordinates.containsKey("max_latitude") &&
+                    coordinates.containsKey("min_longitude") && coordinates.containsKey("max_longitude")) {
+                minLatitude = coordinates.get("min_latitude");
+                maxLatitude = coordinates.get("max_latitude");
+                minLongitude = coordinates.get("min_longitude");
+                maxLongitude = coordinates.get("max_longitude");
+            } else if (coordinates.containsKey("latitude") && coordinates.containsKey("longitude")) {
+                centerLatitude = coordinates.get("latitude");
+                centerLongitude = coordinates.get("longitude");
+                radiusKm = coordinates.containsKey("radius_km")
+                        ? coordinates.get("radius_km") : DEFAULT_REGION_RADIUS_KM;
+                
+                double latDelta = Math.toDegrees(radiusKm / EARTH_RADIUS_KM);
+                minLatitude = Math.max(-90.0, centerLatitude - latDelta);
+                maxLatitude = Math.min(90.0, centerLatitude + latDelta);
+                double cosLat = Math.cos(Math.toRadians(centerLatitude));
+                if (maxLatitude == 90.0 || minLatitude == -90.0 || latDelta / cosLat >= 180.0) {
+                    // The circle reaches a pole, so it covers every longitude
+                    minLongitude = -180.0;
+                    maxLongitude = 180.0;
+                } else {
+                    double lonDelta = Math.toDegrees(Math.asin(
+                            Math.min(1.0, Math.sin(radiusKm / EARTH_RADIUS_KM) / cosLat)));
+                    minLongitude = wrapLongitude(centerLongitude - lonDelta);
+                    maxLongitude = wrapLongitude(centerLongitude + lonDelta);
+                }
+            }
+        }
+        
+        /**
+         * Checks whether a location lies inside the region
+         * @param latitude Latitude in degrees
+         * @param longitude Longitude in degrees
+         * @return true if the location is inside the region's bounds
+         */
+        public boolean contains(double latitude, double longitude) {
+            if (!hasBounds() || latitude < minLatitude || latitude > maxLatitude) {
+                return false;
+            }
+            boolean inLongitude = minLongitude <= maxLongitude
+                    ? longitude >= minLongitude && longitude <= maxLongitude
+                    : longitude >= minLongitude || longitude <= maxLongitude;
+            if (!inLongitude) {
+                return false;
+            }
+            return radiusKm <= 0 ||
+                    distanceKm(centerLatitude, centerLongitude, latitude, longitude) <= radiusKm;
+        }
+        
+        public boolean hasBounds() { return !Double.isNaN(minLatitude); }
+        public double getMinLatitude() { return minLatitude; }
+        public double getMaxLatitude() { return maxLatitude; }
+        public double getMinLongitude() { return minLongitude; }
+        public double getMaxLongitude() { return maxLongitude; }
+        
+        private static double wrapLongitude(double longitude) {
+            if (longitude < -180.0) return longitude + 360.0;
+            if (longitude > 180.0) return longitude - 360.0;
+            return longitude;
+        }
+        
+        private static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+            // Haversine formula
+            double dLat = Math.toRadians(lat2 - lat1);
+            double dLon = Math.toRadians(lon2 - lon1);
+            double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                    Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                    Math.sin(dLon / 2) * Math.sin(dLon / 2);
+            return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        }
+        
+        public void recordReading(int sensorType, double value, long timestampMillis) {
+            sensorStats[sensorType].add(value, timestampMillis);
+        }
+        
+        public int getId() { return id; }
+        public String getName() { return name; }
+        public Map<String, Double> getCoordinates() { return coordinates; }
+        public Map<String, Object> getParameters() { return parameters; }
+        public StreamingStats getSensorStats(int sensorType) { return sensorStats[sensorType]; }
     }
     
     public static class DisasterEvent {
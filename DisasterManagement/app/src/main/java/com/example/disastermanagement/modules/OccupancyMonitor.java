@@ -0,0 +1,373 @@
+package com.example.disastermanagement.modules;
+
+import com.example.disastermanagement.utils.GeoKdTree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Streams evacuation center occupancy changes to subscribers and keeps
+ * standing "nearest center with at least N free beds" queries up to date.
+ *
+ * For every free-bed threshold in use there is a k-d tree over all centers
+ * in which only the centers with enough free beds are active. An occupancy
+ * change flips a center in each tree at most once. A standing query is only
+ * looked at when a center crosses its threshold: a newly eligible center
+ * replaces the answer if it is closer, and the tree is searched again only
+ * when the current answer stops being eligible.
+ *
+ * All state is guarded by the store's lock, which the store already holds
+ * when it reports a change. Listeners are called through the executor they
+ * were registered with; a serial executor sees events in the order they
+ * happened.
+ */
+public class OccupancyMonitor implements EvacuationCenterStore.ChangeListener {
+    private final EvacuationCenterStore store;
+    private final List<OccupancySubscription> subscriptions = new ArrayList<>();
+    private final Map<Integer, Threshold> thresholds = new HashMap<>();
+
+    // Counters for how much work standing queries cause
+    private long eligibilityFlips;
+    private long answerChanges;
+    private long searches;
+
+    /**
+     * Occupancy change of one center
+     */
+    public static class OccupancyChange {
+        private final String centerId;
+        private final int previous;
+        private final int occupancy;
+        private final int capacity;
+
+        public OccupancyChange(String centerId, int previous, int occupancy, int capacity) {
+            this.centerId = centerId;
+            this.previous = previous;
+            this.occupancy = occupancy;
+            this.capacity = capacity;
+        }
+
+        public String getCenterId() { return centerId; }
+        public int getPreviousOccupancy() { return previous; }
+        public int getOccupancy() { return occupancy; }
+        public int getCapacity() { return capacity; }
+        public int getDelta() { return occupancy - previous; }
+        public int getFreeBeds() { return capacity - occupancy; }
+    }
+
+    public interface OccupancyListener {
+        /**
+         * @param change The change; new centers are reported as a change from zero
+         */
+        void onOccupancyChanged(OccupancyChange change);
+    }
+
+    public interface NearestCenterListener {
+        /**
+         * @param centerId Nearest center with enough free beds, or null if there is none
+         * @param distanceKm Distance to that center, or NaN if there is none
+         */
+        void onNearestCenterChanged(String centerId, double distanceKm);
+    }
+
+    /**
+     * Handle for a registered listener
+     */
+    public abstract static class Subscription {
+        private final Executor executor;
+        private boolean cancelled;
+
+        Subscription(Executor executor) {
+            this.executor = executor;
+        }
+
+        /**
+         * Stops delivering events; events already handed to the executor may still arrive
+         */
+        public abstract void cancel();
+
+        boolean isCancelled() { return cancelled; }
+        void markCancelled() { cancelled = true; }
+        void deliver(Runnable event) { executor.execute(event); }
+    }
+
+    private final class OccupancySubscription extends Subscription {
+        private final OccupancyListener listener;
+
+        OccupancySubscription(OccupancyListener listener, Executor executor) {
+            super(executor);
+            this.listener = listener;
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (store) {
+                if (!isCancelled()) {
+                    markCancelled();
+                    subscriptions.remove(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * A standing nearest-free-center query
+     */
+    public final class StandingQuery extends Subscription {
+        private final double latitude;
+        private final double longitude;
+        private final int minFreeBeds;
+        private final NearestCenterListener listener;
+        private int centerIndex = -1;
+        private double distanceKm = Double.NaN;
+
+        StandingQuery(double latitude, double longitude, int minFreeBeds,
+                      NearestCenterListener listener, Executor executor) {
+            super(executor);
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.minFreeBeds = minFreeBeds;
+            this.listener = listener;
+        }
+
+        /**
+         * @return Current answer, or null if no center has enough free beds
+         */
+        public String getCenterId() {
+            synchronized (store) {
+                return centerIndex < 0 ? null : store.getId(centerIndex);
+            }
+        }
+
+        /**
+         * @return Distance to the current answer, or NaN if there is none
+         */
+        public double getDistanceKm() {
+            synchronized (store) {
+                return distanceKm;
+            }
+        }
+
+        public double getLatitude() { return latitude; }
+        public double getLongitude() { return longitude; }
+        public int getMinFreeBeds() { return minFreeBeds; }
+
+        @Override
+        public void cancel() {
+            synchronized (store) {
+                if (isCancelled()) {
+                    return;
+                }
+                markCancelled();
+                Threshold threshold = thresholds.get(minFreeBeds);
+                threshold.queries.remove(this);
+                if (threshold.queries.isEmpty()) {
+                    thresholds.remove(minFreeBeds);
+                }
+            }
+        }
+
+        /**
+         * Replaces the answer and tells the listener
+         */
+        private void answer(int index, double distance) {
+            centerIndex = index;
+            distanceKm = distance;
+            answerChanges++;
+            final String centerId = index < 0 ? null : store.getId(index);
+            deliver(() -> listener.onNearestCenterChanged(centerId, distance));
+        }
+
+        /**
+         * Searches the threshold's tree for the answer
+         */
+        private void search(GeoKdTree eligible) {
+            searches++;
+            GeoKdTree.Neighbors nearest = eligible.nearest(latitude, longitude, 1);
+            if (nearest.size() == 0) {
+                answer(-1, Double.NaN);
+            } else {
+                answer(nearest.getId(0), nearest.getDistanceKm(0));
+            }
+        }
+    }
+
+    /**
+     * Centers with at least a number of free beds, shared by the queries with that minimum
+     */
+    private static final class Threshold {
+        final GeoKdTree eligible = new GeoKdTree();
+        final List<StandingQuery> queries = new ArrayList<>();
+    }
+
+    public OccupancyMonitor(EvacuationCenterStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Streams every occupancy change from now on
+     * @param listener Called for each change
+     * @param executor Runs the listener calls
+     * @return Handle to cancel the subscription
+     */
+    public Subscription subscribe(OccupancyListener listener, Executor executor) {
+        OccupancySubscription subscription = new OccupancySubscription(listener, executor);
+        synchronized (store) {
+            subscriptions.add(subscription);
+        }
+        return subscription;
+    }
+
+    /**
+     * Keeps track of the nearest center with at least a number of free beds.
+     * The listener is called once with the current answer and again whenever
+     * the answer changes.
+     * @param latitude Query latitude in degrees
+     * @param longitude Query longitude in degrees
+     * @param minFreeBeds Free beds the center must have
+     * @param listener Called with each new answer
+     * @param executor Runs the listener calls
+     * @return The standing query, which also holds the latest answer
+     */
+    public StandingQuery watchNearestFree(double latitude, double longitude, int minFreeBeds,
+                                          NearestCenterListener listener, Executor executor) {
+        StandingQuery query = new StandingQuery(latitude, longitude, minFreeBeds, listener, executor);
+        synchronized (store) {
+            Threshold threshold = thresholds.get(minFreeBeds);
+            if (threshold == null) {
+                threshold = newThreshold(minFreeBeds);
+                thresholds.put(minFreeBeds, threshold);
+            }
+            threshold.queries.add(query);
+            query.search(threshold.eligible);
+        }
+        return query;
+    }
+
+    @Override
+    public void centerAdded(int index) {
+        // Called under the store lock
+        int capacity = store.getCapacity(index);
+        for (Map.Entry<Integer, Threshold> entry : thresholds.entrySet()) {
+            Threshold threshold = entry.getValue();
+            threshold.eligible.add(store.getLatitude(index), store.getLongitude(index));
+            boolean eligible = capacity >= entry.getKey();
+            threshold.eligible.setActive(index, eligible);
+            if (eligible) {
+                becameEligible(threshold, index);
+            }
+        }
+        if (!subscriptions.isEmpty()) {
+            publish(new OccupancyChange(store.getId(index), 0, 0, capacity));
+        }
+    }
+
+    @Override
+    public void occupancyChanged(int index, int previous, int occupancy) {
+        // Called under the store lock
+        int capacity = store.getCapacity(index);
+        freeBedsChanged(index, capacity - previous, capacity - occupancy);
+        if (!subscriptions.isEmpty()) {
+            publish(new OccupancyChange(store.getId(index), previous, occupancy, capacity));
+        }
+    }
+
+    @Override
+    public void capacityChanged(int index, int previous, int capacity) {
+        // Called under the store lock
+        int occupancy = store.getOccupancy(index);
+        freeBedsChanged(index, previous - occupancy, capacity - occupancy);
+        if (!subscriptions.isEmpty()) {
+            publish(new OccupancyChange(store.getId(index), occupancy, occupancy, capacity));
+        }
+    }
+
+    public long getEligibilityFlips() {
+        synchronized (store) {
+            return eligibilityFlips;
+        }
+    }
+
+    public long getAnswerChanges() {
+        synchronized (store) {
+            return answerChanges;
+        }
+    }
+
+    public long getSearches() {
+        synchronized (store) {
+            return searches;
+        }
+    }
+
+    /**
+     * Flips the center in every threshold whose minimum it now meets or no longer meets
+     */
+    private void freeBedsChanged(int index, int before, int after) {
+        for (Map.Entry<Integer, Threshold> entry : thresholds.entrySet()) {
+            int minFreeBeds = entry.getKey();
+            boolean was = before >= minFreeBeds;
+            boolean now = after >= minFreeBeds;
+            if (was == now) {
+                continue;
+            }
+            Threshold threshold = entry.getValue();
+            threshold.eligible.setActive(index, now);
+            if (now) {
+                becameEligible(threshold, index);
+            } else {
+                becameIneligible(threshold, index);
+            }
+        }
+    }
+
+    private void becameEligible(Threshold threshold, int index) {
+        eligibilityFlips++;
+        double latitude = store.getLatitude(index);
+        double longitude = store.getLongitude(index);
+        for (StandingQuery query : threshold.queries) {
+            double distance = GeoKdTree.haversine(query.latitude, query.longitude, latitude, longitude);
+            // Ties go to the lower index, as in the tree's own ordering
+            if (query.centerIndex < 0 || distance < query.distanceKm
+                    || (distance == query.distanceKm && index < query.centerIndex)) {
+                query.answer(index, distance);
+            }
+        }
+    }
+
+    private void becameIneligible(Threshold threshold, int index) {
+        eligibilityFlips++;
+        for (StandingQuery query : threshold.queries) {
+            if (query.centerIndex == index) {
+                query.search(threshold.eligible);
+            }
+        }
+    }
+
+    private Threshold newThreshold(int minFreeBeds) {
+        Threshold threshold = new Threshold();
+        int count = store.size();
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = store.getLatitude(i);
+            longitudes[i] = store.getLongitude(i);
+        }
+        threshold.eligible.addAll(latitudes, longitudes, count);
+        for (int i = 0; i < count; i++) {
+            if (store.getCapacity(i) - store.getOccupancy(i) < minFreeBeds) {
+                threshold.eligible.setActive(i, false);
+            }
+        }
+        return threshold;
+    }
+
+    private void publish(OccupancyChange change) {
+        for (OccupancySubscription subscription : subscriptions) {
+            subscription.deliver(() -> subscription.listener.onOccupancyChanged(change));
+        }
+    }
+}
@@ -0,0 +1,582 @@
+package com.example.disastermanagement.modules;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local log of state change events with periodic snapshots.
+ *
+ * Events are numbered in the order they are appended and written by a
+ * single writer thread. Everything queued while the previous batch was
+ * being written goes out in the next write with one fsync (group commit),
+ * so many small events share the cost of a sync. Appenders only encode
+ * their event and take a sequence number; framing and checksums happen on
+ * the writer thread. Each record carries its length, a CRC32 and its
+ * sequence number; replay stops at the first torn or corrupt record and
+ * cuts the log there.
+ *
+ * append only queues its event and returns; nobody waits for the sync.
+ * The writer wakes as soon as anything is queued, takes the whole queue,
+ * writes it and syncs once, and whatever arrives meanwhile becomes the next
+ * batch. Batches therefore grow with the append rate instead of a timer,
+ * and a crash loses at most the batch in flight plus what was queued
+ * behind it. getDurableSequence reports how far the syncs have got. After
+ * a write error nothing more is written: the queued events are dropped and
+ * later appends throw.
+ *
+ * A snapshot holds the complete state as of one event number. Writing one
+ * starts a new log segment and removes the segments and snapshot it
+ * replaces, so replay only ever reads the latest snapshot plus the events
+ * after it.
+ */
+public class OperationLog {
+    private static final String TAG = "OperationLog";
+    private static final String SNAPSHOT_FILE = "snapshot.json";
+    private static final String SEGMENT_PREFIX = "operations-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    // Length, checksum and sequence number before each payload
+    private static final int HEADER_BYTES = 16;
+    // Larger records are treated as corruption
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Receives the persisted state during replay
+     */
+    public interface Replayer {
+        /**
+         * @param state Snapshot contents as passed to writeSnapshot
+         */
+        void restoreSnapshot(JSONObject state) throws JSONException;
+
+        /**
+         * @param type Event type as passed to append
+         * @param data Event payload
+         */
+        void apply(String type, JSONObject data) throws JSONException;
+    }
+
+    private final File directory;
+    private final int snapshotInterval;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+    // Pending events and snapshots, in sequence order
+    private List<Object> queue = new ArrayList<>();
+    private long lastSequence;
+    private long durableSequence;
+    private long snapshotSequence;
+    private boolean closed;
+    private IOException failure;
+
+    private Thread writer;
+    private FileOutputStream segment;
+
+    private long commitCount;
+    private long committedEvents;
+    private int largestBatch;
+    private long replayedEvents;
+    private long snapshotLoadMillis;
+    private long replayMillis;
+
+    /**
+     * @param directory Directory holding the log segments and snapshot
+     * @param snapshotInterval Events between snapshots
+     */
+    public OperationLog(File directory, int snapshotInterval) {
+        if (snapshotInterval <= 0) {
+            throw new IllegalArgumentException("Snapshot interval must be positive");
+        }
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Restores the persisted state and starts accepting events
+     * @param replayer Receives the snapshot and then every later event in order
+     * @throws IOException if the log cannot be read or opened for writing
+     */
+    public void open(Replayer replayer) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create log directory " + directory);
+        }
+
+        long started = System.nanoTime();
+        long sequence = loadSnapshot(replayer);
+        snapshotLoadMillis = (System.nanoTime() - started) / 1_000_000;
+
+        started = System.nanoTime();
+        long[] segments = listSegments();
+        for (int i = 0; i < segments.length; i++) {
+            sequence = replaySegment(segmentFile(segments[i]), sequence, replayer, i == segments.length - 1);
+        }
+        replayMillis = (System.nanoTime() - started) / 1_000_000;
+
+        lastSequence = sequence;
+        durableSequence = sequence;
+        segment = new FileOutputStream(openSegmentFor(segments, sequence + 1), true);
+
+        writer = new Thread(this::writeLoop, "operation-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues an event for the next group commit
+     * @param type Event type
+     * @param data Event payload
+     * @return Sequence number of the event
+     * @throws IllegalStateException if the log is closed or a write has failed
+     */
+    public long append(String type, JSONObject data) {
+        byte[] payload = encode(type, data);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Operation log is closed");
+            }
+            if (failure != null) {
+                throw new IllegalStateException("Operation log stopped after a write error", failure);
+            }
+            long sequence = ++lastSequence;
+            queue.add(new Event(sequence, payload));
+            workAvailable.signal();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true once enough events have been appended since the last snapshot
+     */
+    public boolean isSnapshotDue() {
+        lock.lock();
+        try {
+            return lastSequence - snapshotSequence >= snapshotInterval;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a snapshot of the state as of the last appended event. The caller
+     * must make sure no event is appended while the state is being captured.
+     * @param state Complete state
+     */
+    public void writeSnapshot(JSONObject state) {
+        lock.lock();
+        try {
+            if (closed || failure != null) {
+                return;
+            }
+            snapshotSequence = lastSequence;
+            queue.add(new Snapshot(lastSequence, state));
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until an event has been synced to disk
+     * @param sequence Sequence number returned by append
+     * @param timeout Longest time to wait
+     * @param unit Unit of the timeout
+     * @return true if the event is durable
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitDurable(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (durableSequence < sequence) {
+                if (failure != null || remaining <= 0) {
+                    return false;
+                }
+                remaining = committed.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes out everything queued and stops the writer
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public long getLastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true once a write has failed and the log stopped accepting events
+     */
+    public boolean isFailed() {
+        lock.lock();
+        try {
+            return failure != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDurableSequence() {
+        lock.lock();
+        try {
+            return durableSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCommitCount() {
+        lock.lock();
+        try {
+            return commitCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Mean number of events written per fsync
+     */
+    public double getAverageBatchSize() {
+        lock.lock();
+        try {
+            return commitCount > 0 ? (double) committedEvents / commitCount : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLargestBatch() {
+        lock.lock();
+        try {
+            return largestBatch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getReplayedEvents() { return replayedEvents; }
+    public long getSnapshotLoadMillis() { return snapshotLoadMillis; }
+    public long getReplayMillis() { return replayMillis; }
+
+    private void writeLoop() {
+        while (true) {
+            List<Object> batch;
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !closed) {
+                    workAvailable.awaitUninterruptibly();
+                }
+                if (queue.isEmpty()) {
+                    break;
+                }
+                batch = queue;
+                queue = new ArrayList<>();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                commit(batch);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write operation log", e);
+                lock.lock();
+                try {
+                    failure = e;
+                    // Nothing will write these; don't let them pile up
+                    queue = new ArrayList<>();
+                    committed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                break;
+            }
+        }
+
+        try {
+            segment.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to close operation log", e);
+        }
+    }
+
+    /**
+     * Writes a batch with one sync, handling snapshots at their place in the sequence
+     */
+    private void commit(List<Object> batch) throws IOException {
+        ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(pending);
+        int events = 0;
+        for (Object item : batch) {
+            if (item instanceof Event) {
+                Event event = (Event) item;
+                out.writeInt(event.payload.length);
+                out.writeInt(checksum(event.sequence, event.payload));
+                out.writeLong(event.sequence);
+                out.write(event.payload);
+                events++;
+            } else {
+                flush(pending);
+                pending.reset();
+                rotate((Snapshot) item);
+            }
+        }
+        flush(pending);
+
+        lock.lock();
+        try {
+            durableSequence += events;
+            commitCount++;
+            committedEvents += events;
+            largestBatch = Math.max(largestBatch, events);
+            committed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flush(ByteArrayOutputStream pending) throws IOException {
+        if (pending.size() > 0) {
+            pending.writeTo(segment);
+            segment.getFD().sync();
+        }
+    }
+
+    /**
+     * Persists a snapshot, then moves appends to a new segment and deletes what it replaces
+     */
+    private void rotate(Snapshot snapshot) throws IOException {
+        File temporary = new File(directory, SNAPSHOT_FILE + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporary)) {
+            JSONObject wrapper = new JSONObject();
+            wrapper.put("sequence", snapshot.sequence);
+            wrapper.put("state", snapshot.state);
+            out.write(wrapper.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (JSONException e) {
+            throw new IOException("Cannot encode snapshot", e);
+        }
+        if (!temporary.renameTo(new File(directory, SNAPSHOT_FILE))) {
+            throw new IOException("Cannot replace snapshot");
+        }
+
+        segment.close();
+        segment = new FileOutputStream(segmentFile(snapshot.sequence + 1), true);
+        for (long first : listSegments()) {
+            if (first <= snapshot.sequence) {
+                if (!segmentFile(first).delete()) {
+                    Log.w(TAG, "Could not delete replaced log segment " + first);
+                }
+            }
+        }
+    }
+
+    private long loadSnapshot(Replayer replayer) throws IOException {
+        File file = new File(directory, SNAPSHOT_FILE);
+        if (!file.exists()) {
+            return 0;
+        }
+        byte[] bytes = new byte[(int) file.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(bytes);
+        }
+        try {
+            JSONObject wrapper = new JSONObject(new String(bytes, StandardCharsets.UTF_8));
+            replayer.restoreSnapshot(wrapper.getJSONObject("state"));
+            snapshotSequence = wrapper.getLong("sequence");
+            return snapshotSequence;
+        } catch (JSONException e) {
+            throw new IOException("Corrupt snapshot", e);
+        }
+    }
+
+    /**
+     * Applies the events of one segment that come after the given sequence
+     * @return Sequence of the last event applied
+     */
+    private long replaySegment(File file, long sequence, Replayer replayer, boolean last) throws IOException {
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            long[] recordSequence = new long[1];
+            while (true) {
+                byte[] payload = readRecord(in, recordSequence);
+                if (payload == null) {
+                    break;
+                }
+                JSONObject record;
+                try {
+                    record = new JSONObject(new String(payload, StandardCharsets.UTF_8));
+                } catch (JSONException e) {
+                    Log.w(TAG, "Unreadable event in " + file.getName(), e);
+                    break;
+                }
+                validLength += HEADER_BYTES + payload.length;
+                if (recordSequence[0] <= sequence) {
+                    continue; // Already covered by the snapshot
+                }
+                try {
+                    replayer.apply(record.getString("type"), record.getJSONObject("data"));
+                } catch (JSONException | RuntimeException e) {
+                    // Skip the event rather than lose everything after it
+                    Log.e(TAG, "Failed to apply event " + recordSequence[0], e);
+                }
+                sequence = recordSequence[0];
+                replayedEvents++;
+            }
+        }
+
+        if (validLength < file.length()) {
+            if (last) {
+                // A crash mid-write leaves a torn tail; drop it so appends continue cleanly
+                Log.w(TAG, "Truncating " + (file.length() - validLength) + " bytes from " + file.getName());
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(validLength);
+                }
+            } else {
+                Log.e(TAG, "Corrupt record in the middle of " + file.getName());
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * @param sequence Receives the record's sequence number
+     * @return The record payload, or null at the end of the log or at a damaged record
+     */
+    private static byte[] readRecord(DataInputStream in, long[] sequence) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            sequence[0] = in.readLong();
+            if (length < 0 || length > MAX_RECORD_BYTES) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            return checksum(sequence[0], payload) == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static int checksum(long sequence, byte[] payload) {
+        CRC32 crc = new CRC32();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (sequence >>> shift));
+        }
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(String type, JSONObject data) {
+        try {
+            JSONObject record = new JSONObject();
+            record.put("type", type);
+            record.put("time", System.currentTimeMillis());
+            record.put("data", data);
+            return record.toString().getBytes(StandardCharsets.UTF_8);
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Cannot encode event " + type, e);
+        }
+    }
+
+    private File openSegmentFor(long[] segments, long nextSequence) {
+        // Keep appending to the newest segment; start one if there is none
+        return segments.length > 0 ? segmentFile(segments[segments.length - 1]) : segmentFile(nextSequence);
+    }
+
+    private long[] listSegments() {
+        String[] names = directory.list();
+        if (names == null) {
+            return new long[0];
+        }
+        long[] firsts = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    long first = Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    firsts[count++] = first;
+                } catch (NumberFormatException e) {
+                    Log.w(TAG, "Ignoring unexpected file " + name);
+                }
+            }
+        }
+        firsts = Arrays.copyOf(firsts, count);
+        Arrays.sort(firsts);
+        return firsts;
+    }
+
+    private File segmentFile(long firstSequence) {
+        return new File(directory, SEGMENT_PREFIX + firstSequence + SEGMENT_SUFFIX);
+    }
+
+    private static final class Event {
+        final long sequence;
+        final byte[] payload;
+
+        Event(long sequence, byte[] payload) {
+            this.sequence = sequence;
+            this.payload = payload;
+        }
+    }
+
+    private static final class Snapshot {
+        final long sequence;
+        final JSONObject state;
+
+        Snapshot(long sequence, JSONObject state) {
+            this.sequence = sequence;
+            this.state = state;
+        }
+    }
+}
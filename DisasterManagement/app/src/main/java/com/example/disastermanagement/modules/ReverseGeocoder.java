@@ -0,0 +1,295 @@
+package com.example.disastermanagement.modules;
+
+import android.content.Context;
+import android.location.Address;
+import android.location.Geocoder;
+import android.util.Log;
+
+import com.example.disastermanagement.utils.GeoHash;
+import com.example.disastermanagement.utils.GeoKdTree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Turns locations into street addresses without blocking the caller.
+ *
+ * Addresses are cached per geohash cell in an LRU map, so fixes that land
+ * in the same cell reuse the address looked up for the first one. A fix a
+ * few meters from the last looked-up point also reuses its address, so a
+ * user standing on a cell edge doesn't cause a lookup per fix. Cache misses
+ * go to the lookup on a background executor; concurrent requests for the
+ * same cell share one lookup. "No address" answers are cached too, errors
+ * are not.
+ *
+ * Only the newest address matters to a moving user, so a queued lookup that
+ * a later miss has overtaken before it started is skipped and its callbacks
+ * are not called. This keeps a slow geocoder from building a backlog when
+ * every fix lands in a new cell.
+ *
+ * Callbacks run on the callback executor, or right away on the calling
+ * thread when the address is cached. Thread-safe.
+ */
+public class ReverseGeocoder {
+    private static final String TAG = "ReverseGeocoder";
+
+    // 8 characters is a cell of about 38 x 19 m
+    public static final int DEFAULT_PRECISION = 8;
+    public static final int DEFAULT_CAPACITY = 256;
+    // Fixes this close to the last looked-up point reuse its address
+    private static final double REUSE_METERS = 25;
+
+    // Cached "no address for this cell"
+    private static final String NOT_FOUND = "";
+
+    /**
+     * Looks up an address; called on the background executor
+     */
+    public interface Lookup {
+        /**
+         * @param latitude Latitude in degrees
+         * @param longitude Longitude in degrees
+         * @return The address, or null if there is none
+         * @throws IOException if the lookup failed, e.g. without network
+         */
+        String lookup(double latitude, double longitude) throws IOException;
+    }
+
+    public interface Callback {
+        /**
+         * @param address Address of the location, or null if there is none
+         */
+        void onAddress(String address);
+
+        /**
+         * @param e Why the lookup failed
+         */
+        void onError(IOException e);
+    }
+
+    private final Lookup lookup;
+    private final Executor background;
+    private final Executor callbacks;
+    private final int precision;
+    private final int capacity;
+
+    // Cell bits to address, least recently used first
+    private final LinkedHashMap<Long, String> cache;
+    // Callbacks waiting for a lookup already running, by cell
+    private final Map<Long, List<Callback>> waiting = new HashMap<>();
+
+    // Number of the latest miss; older queued lookups are skipped
+    private long latestMiss;
+
+    private double lastLatitude = Double.NaN;
+    private double lastLongitude = Double.NaN;
+    private String lastAddress;
+
+    private long hits;
+    private long misses;
+    private long lookups;
+    private long failures;
+    private long skipped;
+    private long lookupNanos;
+    private long blockNanos;
+    private long maxBlockNanos;
+    private long requests;
+
+    /**
+     * @param lookup Looks up addresses
+     * @param background Runs the lookups
+     * @param callbacks Runs the callbacks for lookups, e.g. the main thread
+     * @param precision Geohash characters per cache cell, 1 to GeoHash.MAX_PRECISION
+     * @param capacity Number of cells kept
+     */
+    public ReverseGeocoder(Lookup lookup, Executor background, Executor callbacks, int precision, int capacity) {
+        if (precision < 1 || precision > GeoHash.MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between 1 and " + GeoHash.MAX_PRECISION);
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.lookup = lookup;
+        this.background = background;
+        this.callbacks = callbacks;
+        this.precision = precision;
+        this.capacity = capacity;
+        this.cache = new LinkedHashMap<Long, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > ReverseGeocoder.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Finds the address of a location
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @param callback Receives the address
+     */
+    public void resolve(double latitude, double longitude, Callback callback) {
+        long started = System.nanoTime();
+        long cell = GeoHash.encodeBits(latitude, longitude, precision * 5);
+        String cached;
+        long miss = 0;
+        synchronized (this) {
+            requests++;
+            cached = cache.get(cell);
+            if (cached == null && lastAddress != null
+                    && GeoKdTree.haversine(latitude, longitude, lastLatitude, lastLongitude) * 1000 <= REUSE_METERS) {
+                cached = lastAddress;
+            }
+            if (cached != null) {
+                hits++;
+            } else {
+                misses++;
+                List<Callback> pending = waiting.get(cell);
+                if (pending == null) {
+                    pending = new ArrayList<>();
+                    waiting.put(cell, pending);
+                    miss = ++latestMiss;
+                }
+                pending.add(callback);
+            }
+        }
+
+        if (miss != 0) {
+            final long number = miss;
+            background.execute(() -> lookUp(cell, latitude, longitude, number));
+        }
+        recordBlock(System.nanoTime() - started);
+        if (cached != null) {
+            callback.onAddress(cached.equals(NOT_FOUND) ? null : cached);
+        }
+    }
+
+    /**
+     * @return Share of requests answered from the cache, 0 if there were none
+     */
+    public synchronized double getHitRate() {
+        return requests > 0 ? (double) hits / requests : 0;
+    }
+
+    /**
+     * @return Mean time resolve() kept its caller busy, in microseconds
+     */
+    public synchronized double getMeanBlockMicros() {
+        return requests > 0 ? blockNanos / 1000.0 / requests : 0;
+    }
+
+    public synchronized double getMaxBlockMicros() {
+        return maxBlockNanos / 1000.0;
+    }
+
+    /**
+     * @return Mean time of a lookup on the background executor, in milliseconds
+     */
+    public synchronized double getMeanLookupMillis() {
+        return lookups > 0 ? lookupNanos / 1e6 / lookups : 0;
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getLookups() { return lookups; }
+    public synchronized long getFailures() { return failures; }
+    public synchronized long getSkipped() { return skipped; }
+    public synchronized int getCachedCells() { return cache.size(); }
+
+    /**
+     * @return One-line summary of the counters, for logging
+     */
+    public synchronized String getStats() {
+        return String.format(Locale.US, "%d requests, %.1f%% cache hits, %d lookups (%.0f ms mean), %d skipped,"
+                        + " %d failed, caller blocked %.1f us mean / %.1f us max",
+                requests, getHitRate() * 100, lookups, getMeanLookupMillis(), skipped, failures,
+                getMeanBlockMicros(), getMaxBlockMicros());
+    }
+
+    private void lookUp(long cell, double latitude, double longitude, long miss) {
+        synchronized (this) {
+            if (miss != latestMiss) {
+                waiting.remove(cell);
+                skipped++;
+                return;
+            }
+        }
+
+        long started = System.nanoTime();
+        String address = null;
+        IOException error = null;
+        try {
+            address = lookup.lookup(latitude, longitude);
+        } catch (IOException e) {
+            error = e;
+        }
+
+        List<Callback> pending;
+        synchronized (this) {
+            lookups++;
+            lookupNanos += System.nanoTime() - started;
+            pending = waiting.remove(cell);
+            if (error == null) {
+                String value = address != null ? address : NOT_FOUND;
+                cache.put(cell, value);
+                lastLatitude = latitude;
+                lastLongitude = longitude;
+                lastAddress = value;
+            } else {
+                failures++;
+            }
+        }
+
+        final String result = address;
+        final IOException failure = error;
+        if (failure != null) {
+            Log.e(TAG, "Error getting address", failure);
+        }
+        callbacks.execute(() -> {
+            for (Callback callback : pending) {
+                if (failure != null) {
+                    callback.onError(failure);
+                } else {
+                    callback.onAddress(result);
+                }
+            }
+        });
+    }
+
+    private synchronized void recordBlock(long nanos) {
+        blockNanos += nanos;
+        maxBlockNanos = Math.max(maxBlockNanos, nanos);
+    }
+
+    /**
+     * Looks addresses up with the platform geocoder and joins the address lines
+     */
+    public static class GeocoderLookup implements Lookup {
+        private final Geocoder geocoder;
+
+        public GeocoderLookup(Context context) {
+            this.geocoder = new Geocoder(context, Locale.getDefault());
+        }
+
+        @Override
+        public String lookup(double latitude, double longitude) throws IOException {
+            List<Address> addresses = geocoder.getFromLocation(latitude, longitude, 1);
+            if (addresses == null || addresses.isEmpty()) {
+                return null;
+            }
+            Address address = addresses.get(0);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i <= address.getMaxAddressLineIndex(); i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(address.getAddressLine(i));
+            }
+            return sb.toString();
+        }
+    }
+}
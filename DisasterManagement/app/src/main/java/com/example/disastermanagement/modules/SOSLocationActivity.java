@@ -2,9 +2,8 @@ package com.example.disastermanagement.modules;
 
 import android.Manifest;
 import android.content.pm.PackageManager;
-import android.location.Address;
-import android.location.Geocoder;
 import android.location.Location;
+import android.os.BatteryManager;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -24,6 +23,10 @@ import androidx.core.content.ContextCompat;
 
 import com.example.disastermanagement.R;
 import com.example.disastermanagement.api.ApiClient;
+import com.example.disastermanagement.api.OutboundQueue;
+import com.example.disastermanagement.utils.AdaptiveSamplingPolicy;
+import com.example.disastermanagement.utils.SamplingPolicy;
+import com.example.disastermanagement.utils.TrackCodec;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
@@ -34,23 +37,21 @@ import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.BitmapDescriptor;
-import com.google.android.gms.maps.model.BitmapDescriptorFactory;
-import com.google.android.gms.maps.model.CircleOptions;
 import com.google.android.gms.maps.model.LatLng;
-import com.google.android.gms.maps.model.MarkerOptions;
-import android.graphics.Color;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.Call;
@@ -73,8 +74,11 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
     private static final String TAG = "SOSLocationActivity";
     private static final int LOCATION_PERMISSION_REQUEST_CODE = 1;
     private static final long LOCATION_UPDATE_INTERVAL = 60000; // 1 minute
+    private static final String SOS_TRACK_TAG = "sos-track";
 
     private GoogleMap mMap;
+    // SOS marker, accuracy circle and trail, updated in place
+    private SosMapOverlay mapOverlay;
     private FusedLocationProviderClient fusedLocationClient;
     private LocationCallback locationCallback;
     private LocationRequest locationRequest;
@@ -93,6 +97,25 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
     private Handler timerHandler = new Handler(Looper.getMainLooper());
     private Runnable timerRunnable;
 
+    // Fixes waiting to be sent to the server in one batch
+    private SosUplinkBuffer uplinkBuffer;
+    private Runnable uplinkFlushRunnable;
+
+    // Address lookups, off the main thread
+    private ExecutorService geocoderExecutor;
+    private ReverseGeocoder reverseGeocoder;
+
+    // How often and how precisely the SOS updates ask for fixes
+    private SamplingPolicy samplingPolicy;
+    private SamplingPolicy.Decision samplingDecision;
+    private LocationCallback sosLocationCallback;
+
+    // Requests that must reach the server even if we are offline or get killed
+    private OutboundQueue outboundQueue;
+    private OutboundQueue.Listener outboundListener;
+    // Queue variable that will hold the location id of an SOS created while offline
+    private String queuedSessionVariable;
+
     private boolean isFinishing = false;
     private AlertDialog activeDialog = null;
 
@@ -120,6 +143,14 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
             // Initialize UI components
             initializeUI();
 
+            // Address lookups run in the background and are cached per geohash cell
+            geocoderExecutor = Executors.newSingleThreadExecutor();
+            reverseGeocoder = new ReverseGeocoder(new ReverseGeocoder.GeocoderLookup(this), geocoderExecutor,
+                    timerHandler::post, ReverseGeocoder.DEFAULT_PRECISION, ReverseGeocoder.DEFAULT_CAPACITY);
+
+            // SOS fixes follow movement and battery instead of a fixed 5 second request
+            samplingPolicy = new AdaptiveSamplingPolicy();
+
             // Initialize location services
             initializeLocationServices();
 
@@ -130,6 +161,37 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
             startTimeMillis = System.currentTimeMillis();
             initializeTimer();
 
+            // Location updates go to the server in batches
+            uplinkBuffer = new SosUplinkBuffer();
+            uplinkFlushRunnable = () -> {
+                if (hasSession()) {
+                    updateLocationOnServer();
+                }
+            };
+
+            outboundQueue = OutboundQueue.getInstance(this);
+            outboundListener = new OutboundQueue.Listener() {
+                @Override
+                public void onDelivered(OutboundQueue.Request request, OutboundQueue.Reply reply) {
+                    runOnUiThread(() -> {
+                        String tag = request.getTag();
+                        if (tag != null && tag.equals(queuedSessionVariable) && locationId == null) {
+                            locationId = outboundQueue.getVariable(tag);
+                            Log.d(TAG, "Queued SOS delivered, location_id: " + locationId);
+                            Toast.makeText(SOSLocationActivity.this, "SOS location shared successfully", Toast.LENGTH_SHORT).show();
+                        }
+                    });
+                }
+
+                @Override
+                public void onDropped(OutboundQueue.Request request, OutboundQueue.Reply reply) {
+                    if (SOS_TRACK_TAG.equals(request.getTag()) && reply != null && reply.getCode() == 404) {
+                        runOnUiThread(() -> restartExpiredSession());
+                    }
+                }
+            };
+            outboundQueue.addListener(outboundListener);
+
             // Set default location immediately (this doesn't show dialogs)
             setDefaultLocation();
 
@@ -296,9 +358,9 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
                     currentLocation = location;
                     updateLocationUI();
 
-                    // If already sharing, update the location on server
-                    if (isSharing && locationId != null) {
-                        updateLocationOnServer();
+                    // If already sharing, queue the location for the server
+                    if (hasSession()) {
+                        queueLocationUpdate(location);
                     }
                 }
             }
@@ -326,6 +388,7 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
         try {
             Log.d(TAG, "Map is ready");
             mMap = googleMap;
+            mapOverlay = new SosMapOverlay(mMap);
 
             // Basic map settings - keep these simple
             mMap.getUiSettings().setZoomControlsEnabled(true);
@@ -333,10 +396,7 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
             // IMPORTANT: Create and show a default location marker IMMEDIATELY
             // to ensure something appears on the map
             LatLng defaultLocation = new LatLng(19.0760, 72.8777); // Mumbai
-            mMap.addMarker(new MarkerOptions()
-                    .position(defaultLocation)
-                    .title("Default Location")
-                    .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED)));
+            mapOverlay.showPlaceholder(defaultLocation, "Default Location");
             mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(defaultLocation, 15f));
 
             Log.d(TAG, "Map initialized with default marker");
@@ -444,18 +504,14 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
                                             Toast.makeText(SOSLocationActivity.this,
                                                     "Cannot connect to server. Using SMS fallback.",
                                                     Toast.LENGTH_SHORT).show();
-                                            sendLocationViaSMS();
-                                            // Still mark as sharing for UI purposes
-                                            isSharing = true;
+                                            shareLocationOffline();
                                         });
                                     } else {
                                         // No network, use SMS fallback
                                         Toast.makeText(SOSLocationActivity.this,
                                                 "No network connection. Using SMS fallback.",
                                                 Toast.LENGTH_SHORT).show();
-                                        sendLocationViaSMS();
-                                        // Still mark as sharing for UI purposes
-                                        isSharing = true;
+                                        shareLocationOffline();
                                     }
                                 }
                             } else {
@@ -501,15 +557,13 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
                                         Toast.makeText(SOSLocationActivity.this,
                                                 "Cannot connect to server. Using SMS fallback.",
                                                 Toast.LENGTH_SHORT).show();
-                                        sendLocationViaSMS();
-                                        isSharing = true;
+                                        shareLocationOffline();
                                     });
                                 } else {
                                     Toast.makeText(SOSLocationActivity.this,
                                             "No network connection. Using SMS fallback.",
                                             Toast.LENGTH_SHORT).show();
-                                    sendLocationViaSMS();
-                                    isSharing = true;
+                                    shareLocationOffline();
                                 }
                             }
                         } else {
@@ -624,29 +678,20 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
     }
 
     private void getAddressFromLocation(Location location) {
-        Geocoder geocoder = new Geocoder(this, Locale.getDefault());
-        try {
-            List<Address> addresses = geocoder.getFromLocation(
-                    location.getLatitude(), location.getLongitude(), 1);
-
-            if (addresses != null && !addresses.isEmpty()) {
-                Address address = addresses.get(0);
-                StringBuilder sb = new StringBuilder();
-
-                // Get address lines
-                for (int i = 0; i <= address.getMaxAddressLineIndex(); i++) {
-                    if (i > 0) sb.append(", ");
-                    sb.append(address.getAddressLine(i));
-                }
+        // Looked up in the background; nearby fixes reuse the cached address
+        reverseGeocoder.resolve(location.getLatitude(), location.getLongitude(), new ReverseGeocoder.Callback() {
+            @Override
+            public void onAddress(String address) {
+                if (isDestroyed()) return;
+                locationText.setText(address != null ? address : "Address not found");
+            }
 
-                locationText.setText(sb.toString());
-            } else {
-                locationText.setText("Address not found");
+            @Override
+            public void onError(IOException e) {
+                if (isDestroyed()) return;
+                locationText.setText("Unable to get address");
             }
-        } catch (IOException e) {
-            Log.e(TAG, "Error getting address", e);
-            locationText.setText("Unable to get address");
-        }
+        });
     }
 
     private void shareLocationWithServer() {
@@ -656,25 +701,14 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
         }
 
         try {
-            // If we already have a location ID, update instead of creating
-            if (isSharing && locationId != null) {
+            // If we already have a session, send what we have now instead of creating
+            if (hasSession()) {
+                queueLocationUpdate(currentLocation);
                 updateLocationOnServer();
                 return;
             }
 
-            JSONObject requestBody = new JSONObject();
-            requestBody.put("user_id", "user123"); // In a real app, use the actual user ID
-            requestBody.put("latitude", currentLocation.getLatitude());
-            requestBody.put("longitude", currentLocation.getLongitude());
-            requestBody.put("disaster_type", "sos");
-            requestBody.put("message", "Emergency SOS - Need assistance");
-
-            // Get address if available
-            if (!locationText.getText().toString().equals("Fetching your location...") &&
-                    !locationText.getText().toString().equals("Address not found") &&
-                    !locationText.getText().toString().equals("Unable to get address")) {
-                requestBody.put("address", locationText.getText().toString());
-            }
+            JSONObject requestBody = buildSessionRequest();
 
             // Send the request
             RequestBody body = RequestBody.create(
@@ -701,6 +735,7 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
                                     Log.e(TAG, "Failed to share location", e);
                                     // Still continue with SMS as backup
                                     sendLocationViaSMS();
+                                    queueSessionCreation(requestBody);
                                 });
                             }
 
@@ -737,6 +772,7 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
                                                 Toast.makeText(SOSLocationActivity.this, "Failed to share location", Toast.LENGTH_SHORT).show();
                                                 // Try SMS as backup
                                                 sendLocationViaSMS();
+                                                queueSessionCreation(requestBody);
                                             });
                                         }
                                     } catch (JSONException e) {
@@ -752,6 +788,7 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
                                         Toast.makeText(SOSLocationActivity.this, "Server error: " + response.code(), Toast.LENGTH_SHORT).show();
                                         // Try SMS as backup
                                         sendLocationViaSMS();
+                                        queueSessionCreation(requestBody);
                                     });
                                 }
                             }
@@ -759,9 +796,7 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
             } else {
                 progressDialog.dismiss();
                 sendLocationViaSMS();
-
-                // Still set sharing to true for UI updates
-                isSharing = true;
+                queueSessionCreation(requestBody);
             }
         } catch (JSONException e) {
             Log.e(TAG, "Error creating JSON", e);
@@ -771,6 +806,73 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
         }
     }
 
+    /**
+     * Builds the body of the request that creates the SOS session
+     * @return Request body for the current location
+     * @throws JSONException If the body cannot be built
+     */
+    private JSONObject buildSessionRequest() throws JSONException {
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("user_id", "user123"); // In a real app, use the actual user ID
+        requestBody.put("latitude", currentLocation.getLatitude());
+        requestBody.put("longitude", currentLocation.getLongitude());
+        requestBody.put("disaster_type", "sos");
+        requestBody.put("message", "Emergency SOS - Need assistance");
+
+        // Get address if available
+        if (!locationText.getText().toString().equals("Fetching your location...") &&
+                !locationText.getText().toString().equals("Address not found") &&
+                !locationText.getText().toString().equals("Unable to get address")) {
+            requestBody.put("address", locationText.getText().toString());
+        }
+        return requestBody;
+    }
+
+    /**
+     * Sends the SOS by SMS and queues the session creation, so fixes are
+     * buffered against it until the server can be reached
+     */
+    private void shareLocationOffline() {
+        sendLocationViaSMS();
+        try {
+            queueSessionCreation(buildSessionRequest());
+        } catch (JSONException e) {
+            Log.e(TAG, "Error creating JSON", e);
+            // Still mark as sharing for UI purposes
+            isSharing = true;
+        }
+    }
+
+    /**
+     * Queues the SOS so it reaches the server once there is a connection, and
+     * starts sharing against the session it will create
+     * @param requestBody Body of the SOS creation request
+     */
+    private void queueSessionCreation(JSONObject requestBody) {
+        String variable = "sos-location-" + System.currentTimeMillis();
+        outboundQueue.enqueue(new OutboundQueue.Request("POST", "api/emergency/sos/location", "application/json",
+                requestBody.toString().getBytes(StandardCharsets.UTF_8))
+                .captureResponseField("location_id", variable)
+                .tag(variable));
+        queuedSessionVariable = variable;
+        isSharing = true;
+        Toast.makeText(this, "SOS saved; it will be sent as soon as you are online", Toast.LENGTH_LONG).show();
+    }
+
+    /**
+     * @return true if fixes can be sent, possibly to a session the server has not created yet
+     */
+    private boolean hasSession() {
+        return isSharing && (locationId != null || queuedSessionVariable != null);
+    }
+
+    /**
+     * @return Endpoint of the current session; a queue variable if its id is not known yet
+     */
+    private String sessionEndpoint() {
+        return "api/emergency/sos/location/" + (locationId != null ? locationId : "{" + queuedSessionVariable + "}");
+    }
+
     private boolean isNetworkAvailable() {
         ConnectivityManager connectivityManager = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
         NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
@@ -792,76 +894,216 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
             Log.e(TAG, "SMS sending failed", e);
         }
     }
-    private void updateLocationOnServer() {
-        if (locationId == null || currentLocation == null) {
-            Log.e(TAG, "Cannot update location: locationId or currentLocation is null");
-            if (locationId == null) {
-                Log.e(TAG, "locationId is null");
-            }
-            if (currentLocation == null) {
-                Log.e(TAG, "currentLocation is null");
-            }
+    /**
+     * Adds a fix to the uplink buffer and sends the buffer if the flush policy
+     * says so, otherwise makes sure a flush is scheduled for its deadline
+     * @param location New location fix
+     */
+    private void queueLocationUpdate(Location location) {
+        if (location == null) {
             return;
         }
+        uplinkBuffer.setAddress(getSharableAddress());
+        updateBatteryState();
 
-        try {
-            JSONObject requestBody = new JSONObject();
-            requestBody.put("latitude", currentLocation.getLatitude());
-            requestBody.put("longitude", currentLocation.getLongitude());
-
-            // Get address if available
-            if (!locationText.getText().toString().equals("Fetching your location...") &&
-                    !locationText.getText().toString().equals("Address not found") &&
-                    !locationText.getText().toString().equals("Unable to get address")) {
-                requestBody.put("address", locationText.getText().toString());
-            }
-
-            Log.d(TAG, "Updating location on server for ID: " + locationId);
-            Log.d(TAG, "Update data: " + requestBody.toString());
-
-            // Send the request
-            RequestBody body = RequestBody.create(
-                    MediaType.parse("application/json"), requestBody.toString());
+        if (uplinkBuffer.add(location.getTime(), location.getLatitude(), location.getLongitude(),
+                location.getAccuracy())) {
+            updateLocationOnServer();
+        } else {
+            scheduleUplinkFlush(0);
+        }
+    }
 
-            String endpoint = "api/emergency/sos/location/" + locationId;
-            Log.d(TAG, "Calling endpoint: " + endpoint);
+    /**
+     * Sends the buffered fixes as one delta-encoded batch
+     */
+    private void updateLocationOnServer() {
+        if (!hasSession()) {
+            Log.e(TAG, "Cannot update location: no sharing session");
+            return;
+        }
 
-            ApiClient.getClient().newCall(ApiClient.buildRequest(endpoint, "PUT", body))
-                    .enqueue(new Callback() {
-                        @Override
-                        public void onFailure(Call call, IOException e) {
-                            Log.e(TAG, "Failed to update location: " + e.getMessage(), e);
-                            // Not showing a UI error for updates to avoid flooding the user
-                        }
+        SosUplinkBuffer.Batch batch = uplinkBuffer.take();
+        if (batch == null) {
+            return; // Nothing waiting, or the previous batch is still in flight
+        }
+        timerHandler.removeCallbacks(uplinkFlushRunnable);
 
-                        @Override
-                        public void onResponse(Call call, Response response) throws IOException {
-                            String responseBody = response.body().string();
-                            if (response.isSuccessful()) {
-                                Log.d(TAG, "Location updated successfully: " + responseBody);
-                            } else {
-                                Log.e(TAG, "Server error during location update: " + response.code() + " - " + responseBody);
+        // While anything waits in the outbound queue, batches go behind it so the server sees them in order
+        if (locationId == null || !isNetworkAvailable() || outboundQueue.getPendingCount() > 0) {
+            persistBatch(batch);
+            scheduleUplinkFlush(0);
+            return;
+        }
 
-                                // If we get a 404 Not Found, it means the location tracking session
-                                // may have expired or been deleted - reset the state
-                                if (response.code() == 404) {
-                                    isSharing = false;
-                                    locationId = null;
+        RequestBody body = RequestBody.create(
+                MediaType.parse("application/octet-stream"), batch.getPayload());
+        String endpoint = sessionEndpoint() + "/batch";
+        Log.d(TAG, "Sending " + batch.getFixCount() + " fixes (" + batch.getPayload().length + " bytes) to " + endpoint);
+
+        ApiClient.getClient().newCall(ApiClient.buildRequest(endpoint, "POST", body))
+                .enqueue(new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        Log.e(TAG, "Failed to update location: " + e.getMessage(), e);
+                        // Not showing a UI error for updates to avoid flooding the user
+                        persistBatch(batch);
+                        runOnUiThread(() -> scheduleUplinkFlush(0));
+                    }
 
-                                    // Try to start a new sharing session
-                                    runOnUiThread(() -> {
-                                        Toast.makeText(SOSLocationActivity.this,
-                                                "Location tracking session expired. Restarting...",
-                                                Toast.LENGTH_SHORT).show();
-                                        shareLocationWithServer();
-                                    });
+                    @Override
+                    public void onResponse(Call call, Response response) throws IOException {
+                        String responseBody = response.body().string();
+                        if (response.isSuccessful()) {
+                            uplinkBuffer.finish(batch, true);
+                            Log.d(TAG, "Location updated successfully: " + responseBody);
+                            runOnUiThread(() -> {
+                                // Fixes that arrived meanwhile may already be due
+                                if (uplinkBuffer.isFlushDue(System.currentTimeMillis())) {
+                                    updateLocationOnServer();
+                                } else {
+                                    scheduleUplinkFlush(0);
                                 }
+                            });
+                        } else {
+                            Log.e(TAG, "Server error during location update: " + response.code() + " - " + responseBody);
+
+                            // If we get a 404 Not Found, it means the location tracking session
+                            // may have expired or been deleted - reset the state
+                            int code = response.code();
+                            if (code == 404) {
+                                uplinkBuffer.finish(batch, false);
+                                runOnUiThread(() -> restartExpiredSession());
+                            } else if (code >= 500 || code == 408 || code == 429) {
+                                // The outbound queue retries with backoff
+                                persistBatch(batch);
+                                runOnUiThread(() -> scheduleUplinkFlush(0));
+                            } else {
+                                // Any other client error will fail the same way every time, as in OutboundQueue
+                                Log.e(TAG, "Dropping " + batch.getFixCount() + " fixes rejected with " + code);
+                                uplinkBuffer.discard(batch);
+                                runOnUiThread(() -> scheduleUplinkFlush(0));
                             }
                         }
-                    });
-        } catch (JSONException e) {
-            Log.e(TAG, "Error creating JSON for location update", e);
+                    }
+                });
+    }
+
+    /**
+     * Hands a batch to the outbound queue, which sends it after everything queued
+     * before it and merges it with a batch still waiting there
+     * @param batch Batch taken from the uplink buffer
+     */
+    private void persistBatch(SosUplinkBuffer.Batch batch) {
+        outboundQueue.enqueue(new OutboundQueue.Request("POST", sessionEndpoint() + "/batch",
+                "application/octet-stream", batch.getPayload())
+                .coalesce(SOS_TRACK_TAG, TrackCodec::concat)
+                .tag(SOS_TRACK_TAG));
+        uplinkBuffer.finish(batch, true);
+    }
+
+    /**
+     * Starts a new session after the server no longer knows the current one
+     */
+    private void restartExpiredSession() {
+        isSharing = false;
+        locationId = null;
+        queuedSessionVariable = null;
+        uplinkBuffer.clear();
+
+        Toast.makeText(SOSLocationActivity.this,
+                "Location tracking session expired. Restarting...",
+                Toast.LENGTH_SHORT).show();
+        shareLocationWithServer();
+    }
+
+    /**
+     * Schedules the next flush for when the oldest buffered fix reaches its maximum latency
+     * @param minDelayMillis Wait at least this long, e.g. before retrying a failed batch
+     */
+    private void scheduleUplinkFlush(long minDelayMillis) {
+        timerHandler.removeCallbacks(uplinkFlushRunnable);
+        long deadline = uplinkBuffer.getFlushDeadline();
+        if (deadline == Long.MAX_VALUE) {
+            return;
         }
+        long delay = Math.max(deadline - System.currentTimeMillis(), minDelayMillis);
+        timerHandler.postDelayed(uplinkFlushRunnable, delay);
+    }
+
+    /**
+     * Lets the uplink flush and the location sampling slow down when the battery is low
+     */
+    private void updateBatteryState() {
+        BatteryManager batteryManager = (BatteryManager) getSystemService(Context.BATTERY_SERVICE);
+        if (batteryManager != null) {
+            int percent = batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+            boolean charging = batteryManager.isCharging();
+            uplinkBuffer.setBatteryState(percent, charging);
+            samplingPolicy.setBatteryState(percent, charging);
+        }
+    }
+
+    /**
+     * Maps a sampling decision onto a fused location request
+     * @param decision What the sampling policy asks for
+     * @return The location request
+     */
+    private static LocationRequest buildLocationRequest(SamplingPolicy.Decision decision) {
+        int priority;
+        switch (decision.getPriority()) {
+            case HIGH_ACCURACY:
+                priority = LocationRequest.PRIORITY_HIGH_ACCURACY;
+                break;
+            case BALANCED:
+                priority = LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY;
+                break;
+            default:
+                priority = LocationRequest.PRIORITY_LOW_POWER;
+                break;
+        }
+        return LocationRequest.create()
+                .setPriority(priority)
+                .setInterval(decision.getIntervalMillis())
+                .setFastestInterval(decision.getFastestIntervalMillis())
+                .setMaxWaitTime(decision.getIntervalMillis() * 2);
+    }
+
+    /**
+     * Re-requests SOS updates if the sampling policy changed its mind
+     * @param decision The policy's current decision
+     */
+    private void applySamplingDecision(SamplingPolicy.Decision decision) {
+        if (decision == samplingDecision || sosLocationCallback == null) {
+            return;
+        }
+        samplingDecision = decision;
+        Log.d(TAG, "SOS: Sampling changed to " + decision);
+        try {
+            // Same callback, so this replaces the running request
+            fusedLocationClient.requestLocationUpdates(buildLocationRequest(decision), sosLocationCallback,
+                    Looper.getMainLooper());
+        } catch (SecurityException e) {
+            Log.e(TAG, "Security exception when changing location sampling", e);
+        }
+    }
+
+    private static SamplingPolicy.Fix toFix(Location location) {
+        return new SamplingPolicy.Fix(location.getTime(), location.getLatitude(), location.getLongitude(),
+                location.getAccuracy(), location.hasSpeed() ? location.getSpeed() : Float.NaN);
+    }
+
+    /**
+     * @return The address shown to the user, or null while it is not known
+     */
+    private String getSharableAddress() {
+        String address = locationText.getText().toString();
+        if (address.equals("Fetching your location...") ||
+                address.equals("Address not found") ||
+                address.equals("Unable to get address")) {
+            return null;
+        }
+        return address;
     }
 
     private void stopLocationSharing() {
@@ -895,12 +1137,27 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
     }
 
     private void performStopSharing() {
-        if (!isSharing || locationId == null) {
+        if (!hasSession()) {
             finish();
             return;
         }
 
         try {
+            // Send the fixes still waiting before closing the session
+            updateLocationOnServer();
+            timerHandler.removeCallbacks(uplinkFlushRunnable);
+            Log.i(TAG, "SOS uplink: " + uplinkBuffer.getFixesAdded() + " fixes in " + uplinkBuffer.getBatchesSent()
+                    + " batches, " + uplinkBuffer.getBytesSent() + " bytes, " + uplinkBuffer.getBatchesFailed() + " failed, "
+                    + uplinkBuffer.getBatchesRejected() + " rejected");
+
+            if (locationId == null || outboundQueue.getPendingCount() > 0) {
+                // Close the session after the updates still waiting for a connection
+                outboundQueue.enqueue(new OutboundQueue.Request("PUT", sessionEndpoint() + "/end", null, null));
+                isSharing = false;
+                finish();
+                return;
+            }
+
             ApiClient.getClient().newCall(ApiClient.buildRequest("api/emergency/sos/location/" + locationId + "/end", "PUT", null))
                     .enqueue(new Callback() {
                         @Override
@@ -991,6 +1248,20 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
         try {
             Log.d(TAG, "onDestroy called - stopping location updates");
             stopLocationUpdates();
+            if (sosLocationCallback != null) {
+                fusedLocationClient.removeLocationUpdates(sosLocationCallback);
+            }
+            timerHandler.removeCallbacks(uplinkFlushRunnable);
+            if (outboundQueue != null) {
+                outboundQueue.removeListener(outboundListener);
+            }
+            if (geocoderExecutor != null) {
+                geocoderExecutor.shutdownNow();
+                Log.i(TAG, "Geocoder: " + reverseGeocoder.getStats());
+            }
+            if (mapOverlay != null) {
+                Log.i(TAG, "Map overlay: " + mapOverlay.getStats());
+            }
         } catch (Exception e) {
             Log.e(TAG, "Error in onDestroy", e);
         }
@@ -1125,35 +1396,15 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
         }
 
         try {
-            // Clear previous markers
-            mMap.clear();
-
             // Create the SOS location point
             LatLng sosPosition = new LatLng(latitude, longitude);
 
-            // Add the SOS marker to the map - simplified to avoid potential crashes
-            mMap.addMarker(new MarkerOptions()
-                    .position(sosPosition)
-                    .title("SOS Emergency")
-                    .snippet("Lat: " + latitude + ", Lng: " + longitude)
-                    .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED)));
+            // Move the SOS marker and a 200 meter circle to the point
+            mapOverlay.showPosition(sosPosition, 200, "Lat: " + latitude + ", Lng: " + longitude);
 
             // Move camera to the SOS location with zoom
             mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(sosPosition, 15f));
 
-            // Add a circle around the SOS point
-            try {
-                mMap.addCircle(new CircleOptions()
-                        .center(sosPosition)
-                        .radius(200) // 200 meters radius
-                        .strokeColor(Color.RED)
-                        .strokeWidth(2)
-                        .fillColor(Color.argb(40, 255, 0, 0))); // Semi-transparent red
-            } catch (Exception e) {
-                Log.e(TAG, "Could not add circle to map", e);
-                // Continue without the circle if it fails
-            }
-
             Log.d(TAG, "Marked SOS location at: " + latitude + ", " + longitude);
         } catch (Exception e) {
             Log.e(TAG, "Error marking SOS location", e);
@@ -1184,12 +1435,9 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
                 mMap.getUiSettings().setMyLocationButtonEnabled(true);
             }
 
-            // Create a high-accuracy, fast-update location request for emergency situations
-            LocationRequest sosLocationRequest = LocationRequest.create()
-                    .setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY)
-                    .setInterval(5000)         // 5 seconds between updates
-                    .setFastestInterval(3000)  // Fastest update interval is 3 seconds
-                    .setMaxWaitTime(10000);    // Max wait time of 10 seconds
+            // Start with what the sampling policy wants now; it adapts as fixes come in
+            samplingDecision = samplingPolicy.getDecision();
+            LocationRequest sosLocationRequest = buildLocationRequest(samplingDecision);
 
             // Create a one-time callback for initial position
             fusedLocationClient.getCurrentLocation(LocationRequest.PRIORITY_HIGH_ACCURACY, null)
@@ -1205,24 +1453,11 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
                             // Update UI with location
                             LatLng userLocation = new LatLng(location.getLatitude(), location.getLongitude());
                             
-                            // Clear previous markers
+                            // Move the SOS marker and accuracy circle, and start the trail
                             if (mMap != null) {
-                                mMap.clear();
-                                
-                                // Add SOS marker
-                                mMap.addMarker(new MarkerOptions()
-                                        .position(userLocation)
-                                        .title("SOS EMERGENCY")
-                                        .snippet("Accuracy: " + Math.round(location.getAccuracy()) + "m")
-                                        .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED)));
-                                
-                                // Add accuracy circle
-                                mMap.addCircle(new CircleOptions()
-                                        .center(userLocation)
-                                        .radius(location.getAccuracy())
-                                        .strokeColor(Color.RED)
-                                        .strokeWidth(2)
-                                        .fillColor(Color.argb(40, 255, 0, 0)));
+                                mapOverlay.showPosition(userLocation, location.getAccuracy(),
+                                        "Accuracy: " + Math.round(location.getAccuracy()) + "m");
+                                mapOverlay.addTrailPoint(userLocation);
                                 
                                 // Zoom level based on accuracy - closer for more accurate readings
                                 float zoomLevel = calculateZoomLevel(location.getAccuracy());
@@ -1239,9 +1474,9 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
                             // Get address for the location text
                             getAddressFromLocation(location);
                             
-                            // Update server with this location if sharing
-                            if (isSharing && isNetworkAvailable()) {
-                                updateLocationOnServer();
+                            // Queue this location for the server if sharing
+                            if (hasSession()) {
+                                queueLocationUpdate(location);
                             }
                         } else {
                             Log.e(TAG, "SOS: Failed to get initial location");
@@ -1264,7 +1499,10 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
                     });
                     
             // Set up ongoing location updates
-            LocationCallback sosLocationCallback = new LocationCallback() {
+            if (sosLocationCallback != null) {
+                fusedLocationClient.removeLocationUpdates(sosLocationCallback);
+            }
+            sosLocationCallback = new LocationCallback() {
                 @Override
                 public void onLocationResult(LocationResult locationResult) {
                     if (locationResult == null || locationResult.getLocations().isEmpty()) {
@@ -1279,58 +1517,47 @@ public class SOSLocationActivity extends AppCompatActivity implements OnMapReady
                     Log.d(TAG, "SOS: Location update: " + 
                           location.getLatitude() + ", " + location.getLongitude() + 
                           " (accuracy: " + location.getAccuracy() + "m)");
+
+                    // Drop fixes that are out of order, too coarse or jump impossibly far
+                    SamplingPolicy.Fix fix = toFix(location);
+                    if (!samplingPolicy.accept(fix)) {
+                        Log.d(TAG, "SOS: Ignoring implausible fix");
+                        return;
+                    }
+                    updateBatteryState();
+                    applySamplingDecision(samplingPolicy.update(fix));
+
+                    // Every accepted fix goes into the track; the uplink buffer decides when to send
+                    if (hasSession()) {
+                        queueLocationUpdate(location);
+                    }
                     
-                    // Check if the new location is significantly better than our current one
-                    if (currentLocation == null || 
-                            location.getAccuracy() < currentLocation.getAccuracy() - 20 || // Significantly more accurate
-                            location.getTime() - currentLocation.getTime() > 60000) {      // At least a minute newer
-                        
-                        // Update our reference location
-                        currentLocation = location;
-                        
-                        // Update UI with this better location
-                        LatLng updatedLocation = new LatLng(location.getLatitude(), location.getLongitude());
-                        
-                        if (mMap != null) {
-                            // Clear previous markers and add new ones
-                            mMap.clear();
-                            
-                            // Add SOS marker
-                            mMap.addMarker(new MarkerOptions()
-                                    .position(updatedLocation)
-                                    .title("SOS EMERGENCY")
-                                    .snippet("Accuracy: " + Math.round(location.getAccuracy()) + "m")
-                                    .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED)));
-                            
-                            // Add accuracy circle
-                            mMap.addCircle(new CircleOptions()
-                                    .center(updatedLocation)
-                                    .radius(location.getAccuracy())
-                                    .strokeColor(Color.RED)
-                                    .strokeWidth(2)
-                                    .fillColor(Color.argb(40, 255, 0, 0)));
-                                    
-                            // Smoothly move camera only if accuracy is good
-                            if (location.getAccuracy() < 50) {
-                                mMap.animateCamera(CameraUpdateFactory.newLatLng(updatedLocation));
-                            }
-                        }
-                        
-                        // Update UI elements
-                        if (coordinatesText != null) {
-                            coordinatesText.setText(String.format(Locale.US, "Lat: %.6f, Lng: %.6f (±%dm)",
-                                    location.getLatitude(), location.getLongitude(), 
-                                    Math.round(location.getAccuracy())));
-                        }
-                        
-                        // Get address information only if significantly different
-                        getAddressFromLocation(location);
-                        
-                        // Update server with this location if sharing
-                        if (isSharing && isNetworkAvailable()) {
-                            updateLocationOnServer();
+                    // Update our reference location
+                    currentLocation = location;
+                    
+                    // Moving the overlay is cheap, so every accepted fix is shown
+                    LatLng updatedLocation = new LatLng(location.getLatitude(), location.getLongitude());
+                    
+                    if (mMap != null) {
+                        mapOverlay.showPosition(updatedLocation, location.getAccuracy(),
+                                "Accuracy: " + Math.round(location.getAccuracy()) + "m");
+                        mapOverlay.addTrailPoint(updatedLocation);
+                                
+                        // Smoothly move camera only if accuracy is good
+                        if (location.getAccuracy() < 50) {
+                            mMap.animateCamera(CameraUpdateFactory.newLatLng(updatedLocation));
                         }
                     }
+                    
+                    // Update UI elements
+                    if (coordinatesText != null) {
+                        coordinatesText.setText(String.format(Locale.US, "Lat: %.6f, Lng: %.6f (±%dm)",
+                                location.getLatitude(), location.getLongitude(), 
+                                Math.round(location.getAccuracy())));
+                    }
+                    
+                    // Addresses are cached per cell, so nearby fixes don't cause lookups
+                    getAddressFromLocation(location);
                 }
             };
             
@@ -0,0 +1,154 @@
+package com.example.disastermanagement.modules;
+
+import android.graphics.Color;
+import android.util.Log;
+
+import com.example.disastermanagement.utils.TrackSimplifier;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.Circle;
+import com.google.android.gms.maps.model.CircleOptions;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The SOS marker, its accuracy circle and the breadcrumb trail on the map.
+ *
+ * Each map object is added once and then moved or resized, instead of
+ * clearing the map and adding everything again on every fix. The trail is
+ * drawn through a TrackSimplifier, so it stays under about a thousand points however
+ * long the user keeps sharing. Call from the main thread.
+ */
+public class SosMapOverlay {
+    private static final String TAG = "SosMapOverlay";
+
+    public static final String SOS_TITLE = "SOS EMERGENCY";
+    // Trail points closer than this to the drawn line are dropped
+    private static final double TRAIL_TOLERANCE_METERS = 10;
+    private static final int TRAIL_TAIL_POINTS = 64;
+    private static final int TRAIL_MAX_POINTS = 1000;
+
+    private final GoogleMap map;
+    private final TrackSimplifier trail = new TrackSimplifier(TRAIL_TOLERANCE_METERS, TRAIL_TAIL_POINTS,
+            TRAIL_MAX_POINTS);
+    private final List<LatLng> trailPoints = new ArrayList<>();
+
+    private Marker placeholder;
+    private Marker marker;
+    private Circle circle;
+    private Polyline trailLine;
+
+    private long updates;
+    private long objectsAdded;
+
+    /**
+     * @param map The map to draw on
+     */
+    public SosMapOverlay(GoogleMap map) {
+        this.map = map;
+    }
+
+    /**
+     * Shows a marker until the first real position arrives
+     * @param position Where to put it
+     * @param title Marker title
+     */
+    public void showPlaceholder(LatLng position, String title) {
+        if (placeholder == null) {
+            placeholder = map.addMarker(new MarkerOptions()
+                    .position(position)
+                    .title(title)
+                    .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED)));
+            objectsAdded++;
+        } else {
+            placeholder.setPosition(position);
+            placeholder.setTitle(title);
+        }
+    }
+
+    /**
+     * Moves the SOS marker and accuracy circle, adding them the first time
+     * @param position The user's position
+     * @param radiusMeters Radius of the circle around it
+     * @param snippet Marker snippet
+     */
+    public void showPosition(LatLng position, double radiusMeters, String snippet) {
+        updates++;
+        if (placeholder != null) {
+            placeholder.remove();
+            placeholder = null;
+        }
+        if (marker == null) {
+            marker = map.addMarker(new MarkerOptions()
+                    .position(position)
+                    .title(SOS_TITLE)
+                    .snippet(snippet)
+                    .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED)));
+            objectsAdded++;
+        } else {
+            marker.setPosition(position);
+            marker.setSnippet(snippet);
+        }
+
+        try {
+            if (circle == null) {
+                circle = map.addCircle(new CircleOptions()
+                        .center(position)
+                        .radius(radiusMeters)
+                        .strokeColor(Color.RED)
+                        .strokeWidth(2)
+                        .fillColor(Color.argb(40, 255, 0, 0)));
+                objectsAdded++;
+            } else {
+                circle.setCenter(position);
+                circle.setRadius(radiusMeters);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Could not show accuracy circle", e);
+        }
+    }
+
+    /**
+     * Adds a point to the breadcrumb trail and redraws it if the simplified trail changed
+     * @param position The user's position
+     */
+    public void addTrailPoint(LatLng position) {
+        if (!trail.add(position.latitude, position.longitude)) {
+            return;
+        }
+        trailPoints.clear();
+        for (int i = 0; i < trail.size(); i++) {
+            trailPoints.add(new LatLng(trail.getLatitude(i), trail.getLongitude(i)));
+        }
+        if (trailLine == null) {
+            trailLine = map.addPolyline(new PolylineOptions()
+                    .addAll(trailPoints)
+                    .width(6)
+                    .color(Color.argb(160, 255, 0, 0)));
+            objectsAdded++;
+        } else {
+            trailLine.setPoints(trailPoints);
+        }
+    }
+
+    /**
+     * @return Number of points drawn in the trail
+     */
+    public int getTrailPointCount() {
+        return trail.size();
+    }
+
+    /**
+     * @return One-line summary for logging
+     */
+    public String getStats() {
+        return updates + " position updates, " + objectsAdded + " map objects added, trail "
+                + trail.getAdded() + " points drawn as " + trail.size();
+    }
+}
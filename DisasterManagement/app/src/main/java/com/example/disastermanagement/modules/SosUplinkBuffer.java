@@ -0,0 +1,325 @@
+package com.example.disastermanagement.modules;
+
+import com.example.disastermanagement.utils.GeoKdTree;
+import com.example.disastermanagement.utils.TrackCodec;
+
+import java.util.Arrays;
+
+/**
+ * Collects SOS location fixes and decides when to send them as one batch.
+ *
+ * Fixes are kept in parallel primitive arrays and encoded with TrackCodec
+ * when a batch is taken. A flush is due when:
+ * <ul>
+ * <li>nothing has been sent yet, so responders get a first position at once</li>
+ * <li>the newest fix is far enough from the last one sent, and the last
+ * batch is not too recent, so a moving vehicle doesn't flush on every fix</li>
+ * <li>the oldest unsent fix has waited for the maximum latency</li>
+ * <li>a batch's worth of fixes has piled up</li>
+ * </ul>
+ * The distance and latency limits depend on the battery: tight while
+ * charging, loose when the battery is low, to save radio wake-ups.
+ *
+ * Only one batch is in flight at a time so the server sees fixes in order;
+ * a failed batch goes back to the front of the buffer. Thread-safe.
+ */
+public class SosUplinkBuffer {
+    private static final int MAX_BATCH_FIXES = 120;
+    // Oldest fixes are dropped past this, about 2.5 hours at one fix every 5 seconds
+    private static final int MAX_PENDING_FIXES = 2000;
+
+    private static final int LOW_BATTERY_PERCENT = 20;
+    private static final int CRITICAL_BATTERY_PERCENT = 5;
+
+    private static final long CHARGING_MAX_LATENCY_MILLIS = 10_000;
+    private static final long NORMAL_MAX_LATENCY_MILLIS = 60_000;
+    private static final long LOW_BATTERY_MAX_LATENCY_MILLIS = 180_000;
+    private static final long CRITICAL_BATTERY_MAX_LATENCY_MILLIS = 300_000;
+
+    private static final double NORMAL_MOVEMENT_METERS = 100;
+    private static final double LOW_BATTERY_MOVEMENT_METERS = 250;
+
+    private static final long CHARGING_MIN_INTERVAL_MILLIS = 5_000;
+    private static final long NORMAL_MIN_INTERVAL_MILLIS = 45_000;
+    private static final long LOW_BATTERY_MIN_INTERVAL_MILLIS = 90_000;
+
+    private long[] times = new long[64];
+    private int[] latitudesE6 = new int[64];
+    private int[] longitudesE6 = new int[64];
+    private int[] accuracies = new int[64];
+    private int start;
+    private int size;
+
+    private String address;
+    private String sentAddress;
+    private boolean anySent;
+    private double sentLatitude = Double.NaN;
+    private double sentLongitude = Double.NaN;
+    private long sentTime;
+
+    private long maxLatencyMillis = NORMAL_MAX_LATENCY_MILLIS;
+    private double movementMeters = NORMAL_MOVEMENT_METERS;
+    private long minIntervalMillis = NORMAL_MIN_INTERVAL_MILLIS;
+
+    private Batch inFlight;
+    // Fixes of the in-flight batch still at the front of the buffer
+    private int inFlightCount;
+
+    // Counters for measuring the uplink
+    private long fixesAdded;
+    private long fixesDropped;
+    private long batchesSent;
+    private long batchesFailed;
+    private long batchesRejected;
+    private long bytesSent;
+
+    /**
+     * Fixes taken from the buffer for one request
+     */
+    public static final class Batch {
+        private final byte[] payload;
+        private final int fixCount;
+        private final String address;
+        private final double lastLatitude;
+        private final double lastLongitude;
+        private final long lastTime;
+
+        Batch(byte[] payload, int fixCount, String address, double lastLatitude, double lastLongitude,
+              long lastTime) {
+            this.payload = payload;
+            this.fixCount = fixCount;
+            this.address = address;
+            this.lastLatitude = lastLatitude;
+            this.lastLongitude = lastLongitude;
+            this.lastTime = lastTime;
+        }
+
+        public byte[] getPayload() { return payload; }
+        public int getFixCount() { return fixCount; }
+    }
+
+    /**
+     * Adds a fix
+     * @param timeMillis Fix time in epoch milliseconds
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @param accuracyMeters Accuracy radius in meters
+     * @return true if a flush is now due
+     */
+    public synchronized boolean add(long timeMillis, double latitude, double longitude, float accuracyMeters) {
+        if (size > 0 && timeMillis < times[index(size - 1)]) {
+            return false; // Out of order; the newer fix already covers it
+        }
+        if (size == MAX_PENDING_FIXES) {
+            // Offline for a long time; keep the recent trail
+            start = index(1);
+            size--;
+            fixesDropped++;
+            if (inFlightCount > 0) {
+                inFlightCount--;
+            }
+        }
+        ensureCapacity(size + 1);
+        int i = index(size);
+        times[i] = timeMillis;
+        latitudesE6[i] = TrackCodec.toE6(latitude);
+        longitudesE6[i] = TrackCodec.toE6(longitude);
+        accuracies[i] = Math.round(accuracyMeters);
+        size++;
+        fixesAdded++;
+        return isFlushDue(timeMillis);
+    }
+
+    /**
+     * @param address Latest address of the user; sent with the next batch if it changed
+     */
+    public synchronized void setAddress(String address) {
+        this.address = address;
+    }
+
+    /**
+     * Adapts the flush limits to the battery
+     * @param percent Battery level from 0 to 100
+     * @param charging Whether the phone is charging
+     */
+    public synchronized void setBatteryState(int percent, boolean charging) {
+        if (charging) {
+            maxLatencyMillis = CHARGING_MAX_LATENCY_MILLIS;
+            movementMeters = NORMAL_MOVEMENT_METERS;
+            minIntervalMillis = CHARGING_MIN_INTERVAL_MILLIS;
+        } else if (percent <= CRITICAL_BATTERY_PERCENT) {
+            maxLatencyMillis = CRITICAL_BATTERY_MAX_LATENCY_MILLIS;
+            movementMeters = LOW_BATTERY_MOVEMENT_METERS;
+            minIntervalMillis = LOW_BATTERY_MIN_INTERVAL_MILLIS;
+        } else if (percent <= LOW_BATTERY_PERCENT) {
+            maxLatencyMillis = LOW_BATTERY_MAX_LATENCY_MILLIS;
+            movementMeters = LOW_BATTERY_MOVEMENT_METERS;
+            minIntervalMillis = LOW_BATTERY_MIN_INTERVAL_MILLIS;
+        } else {
+            maxLatencyMillis = NORMAL_MAX_LATENCY_MILLIS;
+            movementMeters = NORMAL_MOVEMENT_METERS;
+            minIntervalMillis = NORMAL_MIN_INTERVAL_MILLIS;
+        }
+    }
+
+    /**
+     * @param nowMillis Current time in epoch milliseconds
+     * @return true if the buffered fixes should be sent now
+     */
+    public synchronized boolean isFlushDue(long nowMillis) {
+        if (size == 0 || inFlight != null) {
+            return false;
+        }
+        if (!anySent || size >= MAX_BATCH_FIXES || nowMillis >= getFlushDeadline()) {
+            return true;
+        }
+        if (nowMillis - sentTime < minIntervalMillis) {
+            return false;
+        }
+        int last = index(size - 1);
+        double moved = GeoKdTree.haversine(sentLatitude, sentLongitude,
+                latitudesE6[last] / 1e6, longitudesE6[last] / 1e6) * 1000;
+        return moved >= movementMeters;
+    }
+
+    /**
+     * @return When the oldest unsent fix reaches the maximum latency, or
+     *         Long.MAX_VALUE if nothing is waiting
+     */
+    public synchronized long getFlushDeadline() {
+        return size == 0 ? Long.MAX_VALUE : times[start] + maxLatencyMillis;
+    }
+
+    /**
+     * Takes the oldest fixes for sending. Call finish() with the result
+     * before taking the next batch.
+     * @return The batch, or null if nothing is waiting or a batch is still in flight
+     */
+    public synchronized Batch take() {
+        if (size == 0 || inFlight != null) {
+            return null;
+        }
+        compact();
+        int count = Math.min(size, MAX_BATCH_FIXES);
+        String newAddress = address != null && !address.equals(sentAddress) ? address : null;
+        byte[] payload = TrackCodec.encode(times, latitudesE6, longitudesE6, accuracies, 0, count, newAddress);
+        inFlight = new Batch(payload, count, newAddress,
+                latitudesE6[count - 1] / 1e6, longitudesE6[count - 1] / 1e6, times[count - 1]);
+        inFlightCount = count;
+        return inFlight;
+    }
+
+    /**
+     * Reports the outcome of sending a batch
+     * @param batch The batch from take()
+     * @param delivered true if the server accepted it; otherwise its fixes are sent again later
+     */
+    public synchronized void finish(Batch batch, boolean delivered) {
+        if (batch != inFlight) {
+            return; // Discarded by clear() in the meantime
+        }
+        inFlight = null;
+        if (!delivered) {
+            inFlightCount = 0;
+            batchesFailed++;
+            return; // Fixes are still at the front of the buffer
+        }
+        start = index(inFlightCount);
+        size -= inFlightCount;
+        inFlightCount = 0;
+        anySent = true;
+        sentLatitude = batch.lastLatitude;
+        sentLongitude = batch.lastLongitude;
+        sentTime = batch.lastTime;
+        if (batch.address != null) {
+            sentAddress = batch.address;
+        }
+        batchesSent++;
+        bytesSent += batch.payload.length;
+    }
+
+    /**
+     * Drops the fixes of a batch the server will never accept, so they are
+     * not sent again
+     * @param batch The batch from take()
+     */
+    public synchronized void discard(Batch batch) {
+        if (batch != inFlight) {
+            return; // Discarded by clear() in the meantime
+        }
+        inFlight = null;
+        start = index(inFlightCount);
+        size -= inFlightCount;
+        fixesDropped += inFlightCount;
+        inFlightCount = 0;
+        batchesRejected++;
+    }
+
+    /**
+     * Drops all unsent fixes and forgets what was sent, e.g. when the sharing session ends
+     */
+    public synchronized void clear() {
+        start = 0;
+        size = 0;
+        inFlight = null;
+        inFlightCount = 0;
+        anySent = false;
+        sentAddress = null;
+        sentLatitude = Double.NaN;
+        sentLongitude = Double.NaN;
+        sentTime = 0;
+    }
+
+    public synchronized int getPendingCount() { return size; }
+    public synchronized long getFixesAdded() { return fixesAdded; }
+    public synchronized long getFixesDropped() { return fixesDropped; }
+    public synchronized long getBatchesSent() { return batchesSent; }
+    public synchronized long getBatchesFailed() { return batchesFailed; }
+    public synchronized long getBatchesRejected() { return batchesRejected; }
+    public synchronized long getBytesSent() { return bytesSent; }
+
+    private int index(int offset) {
+        return (start + offset) % times.length;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > times.length) {
+            compact();
+            int grown = Math.min(Math.max(needed, times.length * 2), MAX_PENDING_FIXES);
+            times = Arrays.copyOf(times, grown);
+            latitudesE6 = Arrays.copyOf(latitudesE6, grown);
+            longitudesE6 = Arrays.copyOf(longitudesE6, grown);
+            accuracies = Arrays.copyOf(accuracies, grown);
+        }
+    }
+
+    /**
+     * Moves the pending fixes to the start of the arrays so they can be encoded as one run
+     */
+    private void compact() {
+        if (start == 0) {
+            return;
+        }
+        times = rotate(times);
+        latitudesE6 = rotate(latitudesE6);
+        longitudesE6 = rotate(longitudesE6);
+        accuracies = rotate(accuracies);
+        start = 0;
+    }
+
+    private long[] rotate(long[] values) {
+        long[] rotated = new long[values.length];
+        for (int i = 0; i < size; i++) {
+            rotated[i] = values[index(i)];
+        }
+        return rotated;
+    }
+
+    private int[] rotate(int[] values) {
+        int[] rotated = new int[values.length];
+        for (int i = 0; i < size; i++) {
+            rotated[i] = values[index(i)];
+        }
+        return rotated;
+    }
+}
@@ -0,0 +1,525 @@
+package com.example.disastermanagement.modules;
+
+import com.example.disastermanagement.utils.GeoKdTree;
+import com.example.disastermanagement.utils.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses which available emergency team to send to an incident.
+ *
+ * Every registered team gets a dense slot. Slots are indexed by team type
+ * and, through a CapabilityIndex, by capability, each as a compressed
+ * bitmap, so the candidates for a request are found by combining bitmaps
+ * instead of scanning every team. Each
+ * candidate is scored by a cost in kilometer-equivalents: the distance
+ * from its base plus penalties for missing capabilities and for being
+ * smaller or larger than the incident needs.
+ *
+ * A batch of incidents is solved jointly. Each incident keeps its cheapest
+ * few candidates and a min-cost bipartite matching over those pairs picks
+ * one team per incident, so one incident's nearest team is not used up
+ * when another incident has no alternative. All methods are synchronized
+ * on the dispatcher.
+ */
+public class TeamDispatcher {
+    // Cheapest teams kept per incident for the joint solve
+    private static final int CANDIDATES_PER_REQUEST = 16;
+
+    private static final double MISSING_CAPABILITY_KM = 1000;
+    private static final double MISSING_MEMBER_KM = 100;
+    private static final double EXTRA_MEMBER_KM = 2;
+    // Assumed distance for teams without a known base
+    private static final double UNKNOWN_BASE_KM = 500;
+    // Cost of leaving an incident without a team; higher than any team
+    private static final double UNASSIGNED_KM = 1e7;
+
+    private final Map<String, Integer> slotById = new HashMap<>();
+    private final List<EmergencyResponse.EmergencyTeam> teams = new ArrayList<>();
+    private final CapabilityIndex capabilityIndex = new CapabilityIndex();
+    private final Map<String, RoaringBitmap> slotsByType = new HashMap<>();
+    private final RoaringBitmap available = new RoaringBitmap();
+
+    /**
+     * Adds a team and marks it available
+     * @param team Team to add
+     * @return false if a team with the same id is already registered
+     */
+    public synchronized boolean register(EmergencyResponse.EmergencyTeam team) {
+        if (slotById.containsKey(team.getId())) {
+            return false;
+        }
+
+        int slot = teams.size();
+        slotById.put(team.getId(), slot);
+        teams.add(team);
+
+        team.setCapabilityBits(capabilityIndex.add(slot, team.getCapabilities()));
+
+        RoaringBitmap ofType = slotsByType.get(team.getType());
+        if (ofType == null) {
+            ofType = new RoaringBitmap();
+            slotsByType.put(team.getType(), ofType);
+        }
+        ofType.add(slot);
+        available.add(slot);
+        return true;
+    }
+
+    /**
+     * Marks a team as available for dispatch or not
+     * @param teamId ID of the team
+     * @param isAvailable Whether the team can be dispatched
+     */
+    public synchronized void setAvailable(String teamId, boolean isAvailable) {
+        Integer slot = slotById.get(teamId);
+        if (slot != null) {
+            available.set(slot, isAvailable);
+        }
+    }
+
+    /**
+     * @param teamType Team type to filter by, or null for all types
+     * @return Available teams of the type in registration order
+     */
+    public synchronized List<EmergencyResponse.EmergencyTeam> getAvailable(String teamType) {
+        return toTeams(availableOfType(teamType));
+    }
+
+    /**
+     * Finds the teams that have every listed capability
+     * @param capabilities Capability names
+     * @param availableOnly Whether to leave out deployed teams
+     * @return Matching teams in registration order
+     */
+    public synchronized List<EmergencyResponse.EmergencyTeam> findWithCapabilities(List<String> capabilities,
+                                                                                boolean availableOnly) {
+        RoaringBitmap slots = capabilityIndex.withAll(capabilities);
+        if (availableOnly) {
+            slots.and(available);
+        }
+        return toTeams(slots);
+    }
+
+    /**
+     * Picks the best available team for one incident
+     * @param request Incident location and needs
+     * @return The cheapest team, or null if no team of the requested type is available
+     */
+    public synchronized EmergencyResponse.EmergencyTeam select(Request request) {
+        Candidates candidates = findCandidates(request, new RoaringBitmap());
+        return candidates.size == 0 ? null : teams.get(candidates.slots[0]);
+    }
+
+    /**
+     * Picks one distinct available team per incident, minimizing the total cost of the batch
+     * @param requests Incidents to staff
+     * @return Team for each request in order, null where none could be assigned
+     */
+    public synchronized EmergencyResponse.EmergencyTeam[] selectAll(List<Request> requests) {
+        EmergencyResponse.EmergencyTeam[] result = new EmergencyResponse.EmergencyTeam[requests.size()];
+        RoaringBitmap taken = new RoaringBitmap();
+        int[] pending = new int[requests.size()];
+        for (int r = 0; r < pending.length; r++) {
+            pending[r] = r;
+        }
+        int pendingCount = pending.length;
+
+        // Incidents whose short lists were all taken by others get fresh lists
+        // from the remaining teams in another round
+        while (pendingCount > 0) {
+            int[][] slots = new int[pendingCount][];
+            double[][] costs = new double[pendingCount][];
+            for (int p = 0; p < pendingCount; p++) {
+                Candidates candidates = findCandidates(requests.get(pending[p]), taken);
+                slots[p] = Arrays.copyOf(candidates.slots, candidates.size);
+                costs[p] = Arrays.copyOf(candidates.costs, candidates.size);
+            }
+
+            int[] matched = new Matching(slots, costs, teams.size()).solve();
+            int stillPending = 0;
+            for (int p = 0; p < pendingCount; p++) {
+                if (matched[p] >= 0) {
+                    result[pending[p]] = teams.get(matched[p]);
+                    taken.add(matched[p]);
+                } else if (slots[p].length > 0) {
+                    pending[stillPending++] = pending[p];
+                }
+            }
+            if (stillPending == pendingCount) {
+                break;
+            }
+            pendingCount = stillPending;
+        }
+        return result;
+    }
+
+    /**
+     * Cost of sending a team to an incident
+     * @param team Candidate team
+     * @param request Incident location and needs
+     * @return Cost in kilometer-equivalents, lower is better
+     */
+    public synchronized double cost(EmergencyResponse.EmergencyTeam team, Request request) {
+        Integer slot = slotById.get(team.getId());
+        if (slot == null) {
+            throw new IllegalArgumentException("Team " + team.getId() + " is not registered");
+        }
+        long[] required = capabilityIndex.encode(request.getRequiredCapabilities());
+        return penalty(slot, request, required, unknownCapabilities(request, required))
+                + distance(slot, request);
+    }
+
+    /**
+     * Distance from the team's base to the incident in kilometers
+     */
+    private double distance(int slot, Request request) {
+        EmergencyResponse.EmergencyTeam team = teams.get(slot);
+        if (Double.isNaN(team.getBaseLatitude()) || Double.isNaN(team.getBaseLongitude())) {
+            return UNKNOWN_BASE_KM;
+        }
+        return GeoKdTree.haversine(team.getBaseLatitude(), team.getBaseLongitude(),
+                request.getLatitude(), request.getLongitude());
+    }
+
+    /**
+     * Cheap lower bound of distance: no route is shorter than the latitude difference
+     */
+    private double distanceLowerBound(int slot, Request request) {
+        EmergencyResponse.EmergencyTeam team = teams.get(slot);
+        if (Double.isNaN(team.getBaseLatitude()) || Double.isNaN(team.getBaseLongitude())) {
+            return UNKNOWN_BASE_KM;
+        }
+        return Math.toRadians(Math.abs(team.getBaseLatitude() - request.getLatitude()))
+                * GeoKdTree.EARTH_RADIUS_KM;
+    }
+
+    /**
+     * Capability and size part of the cost
+     */
+    private double penalty(int slot, Request request, long[] required, int unknownCapabilities) {
+        EmergencyResponse.EmergencyTeam team = teams.get(slot);
+
+        // Capabilities never seen on any team are missing for every team alike
+        int missingCount = unknownCapabilities
+                + CapabilityIndex.countMissing(required, team.getCapabilityBits());
+
+        int memberGap = team.getMembers() - request.getMinMembers();
+        double sizeCost = memberGap < 0 ? -memberGap * MISSING_MEMBER_KM : memberGap * EXTRA_MEMBER_KM;
+
+        return missingCount * MISSING_CAPABILITY_KM + sizeCost;
+    }
+
+    /**
+     * Scores the available teams of the requested type that share at least one
+     * required capability (or all of them if none do) and keeps the cheapest
+     */
+    private Candidates findCandidates(Request request, RoaringBitmap taken) {
+        RoaringBitmap pool = availableOfType(request.getTeamType());
+        pool.andNot(taken);
+        long[] required = capabilityIndex.encode(request.getRequiredCapabilities());
+        int unknownCapabilities = unknownCapabilities(request, required);
+
+        if (CapabilityIndex.count(required) > 0) {
+            RoaringBitmap capable = capabilityIndex.withAny(request.getRequiredCapabilities());
+            capable.and(pool);
+            if (!capable.isEmpty()) {
+                pool = capable;
+            }
+        }
+
+        Candidates candidates = new Candidates(CANDIDATES_PER_REQUEST);
+        for (int slot = pool.nextSetBit(0); slot >= 0; slot = pool.nextSetBit(slot + 1)) {
+            double penalty = penalty(slot, request, required, unknownCapabilities);
+            // Skip the haversine for teams that cannot beat the current short list
+            if (penalty + distanceLowerBound(slot, request) < candidates.worstKept()) {
+                candidates.offer(slot, penalty + distance(slot, request));
+            }
+        }
+        return candidates;
+    }
+
+    private RoaringBitmap availableOfType(String teamType) {
+        if (teamType == null) {
+            return new RoaringBitmap(available);
+        }
+        RoaringBitmap ofType = slotsByType.get(teamType);
+        if (ofType == null) {
+            return new RoaringBitmap();
+        }
+        RoaringBitmap slots = new RoaringBitmap(ofType);
+        slots.and(available);
+        return slots;
+    }
+
+    private List<EmergencyResponse.EmergencyTeam> toTeams(RoaringBitmap slots) {
+        List<EmergencyResponse.EmergencyTeam> result = new ArrayList<>(slots.cardinality());
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            result.add(teams.get(slot));
+        }
+        return result;
+    }
+
+    private static int unknownCapabilities(Request request, long[] required) {
+        // Distinct names, so a capability listed twice is only missed once
+        return new HashSet<>(request.getRequiredCapabilities()).size() - CapabilityIndex.count(required);
+    }
+
+    /**
+     * The cheapest slots seen so far, kept sorted by cost then slot
+     */
+    private static final class Candidates {
+        final int[] slots;
+        final double[] costs;
+        int size;
+
+        Candidates(int limit) {
+            this.slots = new int[limit];
+            this.costs = new double[limit];
+        }
+
+        double worstKept() {
+            return size == slots.length ? costs[size - 1] : Double.POSITIVE_INFINITY;
+        }
+
+        void offer(int slot, double cost) {
+            // Slots arrive in ascending order, so equal costs keep the earlier slot first
+            if (size == slots.length && cost >= costs[size - 1]) {
+                return;
+            }
+            int i = size < slots.length ? size++ : size - 1;
+            while (i > 0 && costs[i - 1] > cost) {
+                slots[i] = slots[i - 1];
+                costs[i] = costs[i - 1];
+                i--;
+            }
+            slots[i] = slot;
+            costs[i] = cost;
+        }
+    }
+
+    /**
+     * Min-cost bipartite matching of requests to team slots over sparse
+     * candidate edges. Every request also has a private fallback node at
+     * UNASSIGNED_KM so a complete matching always exists. Requests are
+     * added one at a time along shortest augmenting paths found with
+     * Dijkstra on reduced costs, which keeps the matching optimal after
+     * each step.
+     */
+    private static final class Matching {
+        private final int[][] slots;
+        private final double[][] costs;
+        private final int teamCount;
+        private final int nodeCount;
+
+        // Potentials of requests and of right-hand nodes (team slots, then fallbacks)
+        private final double[] requestPotential;
+        private final double[] nodePotential;
+        private final int[] requestOf;
+        private final int[] nodeOf;
+
+        private final double[] distance;
+        private final int[] reachedFrom;
+        private final int[] visitStamp;
+        private final boolean[] settled;
+        private final int[] settledNodes;
+        private final double[] requestDistance;
+        private int stamp;
+
+        private double[] heapKeys = new double[16];
+        private int[] heapNodes = new int[16];
+        private int heapSize;
+
+        Matching(int[][] slots, double[][] costs, int teamCount) {
+            this.slots = slots;
+            this.costs = costs;
+            this.teamCount = teamCount;
+            int requestCount = slots.length;
+            this.nodeCount = teamCount + requestCount;
+            this.requestPotential = new double[requestCount];
+            this.nodePotential = new double[nodeCount];
+            this.requestOf = new int[nodeCount];
+            this.nodeOf = new int[requestCount];
+            this.distance = new double[nodeCount];
+            this.reachedFrom = new int[nodeCount];
+            this.visitStamp = new int[nodeCount];
+            this.settled = new boolean[nodeCount];
+            this.settledNodes = new int[nodeCount];
+            this.requestDistance = new double[requestCount];
+            Arrays.fill(requestOf, -1);
+            Arrays.fill(nodeOf, -1);
+        }
+
+        /**
+         * @return Team slot matched to each request, or -1 for the fallback
+         */
+        int[] solve() {
+            for (int r = 0; r < slots.length; r++) {
+                augment(r);
+            }
+            int[] result = new int[slots.length];
+            for (int r = 0; r < slots.length; r++) {
+                result[r] = nodeOf[r] < teamCount ? nodeOf[r] : -1;
+            }
+            return result;
+        }
+
+        private void augment(int source) {
+            stamp++;
+            heapSize = 0;
+            int settledCount = 0;
+            requestDistance[source] = 0;
+            relaxFrom(source);
+
+            int end = -1;
+            while (heapSize > 0) {
+                double d = heapKeys[0];
+                int node = popMin();
+                if (settled[node] || d > distance[node]) {
+                    continue;
+                }
+                settled[node] = true;
+                settledNodes[settledCount++] = node;
+                if (requestOf[node] < 0) {
+                    end = node;
+                    break;
+                }
+                // Matched edges have zero reduced cost
+                int request = requestOf[node];
+                requestDistance[request] = d;
+                relaxFrom(request);
+            }
+
+            // Shift potentials so reduced costs stay non-negative
+            double endDistance = distance[end];
+            requestPotential[source] += endDistance;
+            for (int i = 0; i < settledCount; i++) {
+                int node = settledNodes[i];
+                settled[node] = false;
+                if (node != end) {
+                    nodePotential[node] -= endDistance - distance[node];
+                    requestPotential[requestOf[node]] += endDistance - distance[node];
+                }
+            }
+
+            // Flip the matching along the path
+            int node = end;
+            while (true) {
+                int request = reachedFrom[node];
+                int previous = nodeOf[request];
+                nodeOf[request] = node;
+                requestOf[node] = request;
+                if (request == source) {
+                    break;
+                }
+                node = previous;
+            }
+        }
+
+        private void relaxFrom(int request) {
+            double base = requestDistance[request] - requestPotential[request];
+            int[] edges = slots[request];
+            for (int e = 0; e < edges.length; e++) {
+                relax(request, edges[e], base + costs[request][e]);
+            }
+            relax(request, teamCount + request, base + UNASSIGNED_KM);
+        }
+
+        private void relax(int request, int node, double reducedPlusBase) {
+            if (settled[node]) {
+                // Rounding can make a reduced cost slightly negative; settled paths stay fixed
+                return;
+            }
+            double d = reducedPlusBase - nodePotential[node];
+            if (visitStamp[node] != stamp || d < distance[node]) {
+                visitStamp[node] = stamp;
+                distance[node] = d;
+                reachedFrom[node] = request;
+                push(d, node);
+            }
+        }
+
+        private void push(double key, int node) {
+            if (heapSize == heapKeys.length) {
+                heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+                heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapKeys[parent] <= key) {
+                    break;
+                }
+                heapKeys[i] = heapKeys[parent];
+                heapNodes[i] = heapNodes[parent];
+                i = parent;
+            }
+            heapKeys[i] = key;
+            heapNodes[i] = node;
+        }
+
+        private int popMin() {
+            int top = heapNodes[0];
+            double key = heapKeys[--heapSize];
+            int node = heapNodes[heapSize];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+                    child++;
+                }
+                if (heapKeys[child] >= key) {
+                    break;
+                }
+                heapKeys[i] = heapKeys[child];
+                heapNodes[i] = heapNodes[child];
+                i = child;
+            }
+            heapKeys[i] = key;
+            heapNodes[i] = node;
+            return top;
+        }
+    }
+
+    /**
+     * An incident that needs a team
+     */
+    public static class Request {
+        private final double latitude;
+        private final double longitude;
+        private final String teamType;
+        private final List<String> requiredCapabilities;
+        private final int minMembers;
+
+        /**
+         * @param latitude Incident latitude
+         * @param longitude Incident longitude
+         * @param teamType Required team type, or null for any type
+         * @param requiredCapabilities Capabilities the team should have, may be null
+         * @param minMembers Smallest team size that can handle the incident
+         */
+        public Request(double latitude, double longitude, String teamType,
+                       List<String> requiredCapabilities, int minMembers) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.teamType = teamType;
+            this.requiredCapabilities = requiredCapabilities != null
+                    ? requiredCapabilities : new ArrayList<String>();
+            this.minMembers = minMembers;
+        }
+
+        public double getLatitude() { return latitude; }
+        public double getLongitude() { return longitude; }
+        public String getTeamType() { return teamType; }
+        public List<String> getRequiredCapabilities() { return requiredCapabilities; }
+        public int getMinMembers() { return minMembers; }
+    }
+}
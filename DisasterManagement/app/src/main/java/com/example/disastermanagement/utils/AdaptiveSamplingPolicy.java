@@ -0,0 +1,185 @@
+package com.example.disastermanagement.utils;
+
+/**
+ * Sampling policy that follows what the user is doing.
+ *
+ * <ul>
+ * <li>Until a few good fixes are in, it asks for high accuracy every few
+ * seconds so responders get a usable position quickly.</li>
+ * <li>While moving, it spaces fixes by distance rather than time: the
+ * interval is the target spacing divided by the smoothed speed, so a car
+ * is sampled often and a walker rarely.</li>
+ * <li>Once the user has stayed within a small radius for a while, it asks
+ * for a fix only every minute or two. Those stay high accuracy, since a
+ * sheltering user's exact position is what responders need. The first fix
+ * that leaves the radius switches back.</li>
+ * <li>A low battery widens the spacing and intervals; a critical one also
+ * gives up high accuracy. Charging tightens everything.</li>
+ * </ul>
+ * A new request costs the provider a restart, so a decision only changes
+ * when the priority changes or the interval moves by more than a quarter.
+ *
+ * Fixes are rejected if they are out of order, much coarser than usual
+ * while a recent fix exists, or imply an impossible jump. Not thread-safe;
+ * call it from one thread.
+ */
+public class AdaptiveSamplingPolicy implements SamplingPolicy {
+    private static final int LOW_BATTERY_PERCENT = 20;
+    private static final int CRITICAL_BATTERY_PERCENT = 5;
+
+    private static final long ACQUIRE_INTERVAL_MILLIS = 5_000;
+    private static final int ACQUIRE_GOOD_FIXES = 3;
+    private static final float GOOD_ACCURACY_METERS = 30;
+
+    private static final long MIN_INTERVAL_MILLIS = 3_000;
+    private static final long MAX_MOVING_INTERVAL_MILLIS = 30_000;
+    private static final long LOW_BATTERY_MAX_MOVING_INTERVAL_MILLIS = 60_000;
+    private static final double CHARGING_SPACING_METERS = 40;
+    private static final double NORMAL_SPACING_METERS = 75;
+    private static final double LOW_BATTERY_SPACING_METERS = 150;
+
+    private static final long STILL_AFTER_MILLIS = 120_000;
+    private static final double STILL_RADIUS_METERS = 15;
+    private static final double STILL_SPEED_METERS_PER_SECOND = 0.5;
+    private static final long CHARGING_STILL_INTERVAL_MILLIS = 15_000;
+    private static final long STILL_INTERVAL_MILLIS = 60_000;
+    private static final long LOW_BATTERY_STILL_INTERVAL_MILLIS = 120_000;
+
+    // Fixes coarser than this are dropped while a recent fix exists
+    private static final float MAX_ACCEPTED_ACCURACY_METERS = 150;
+    private static final long STALE_AFTER_MILLIS = 60_000;
+    // Faster than this beyond the accuracy radii is a bad fix, not travel
+    private static final double MAX_PLAUSIBLE_SPEED_METERS_PER_SECOND = 90;
+
+    private static final double SPEED_SMOOTHING = 0.5;
+    private static final double CHANGE_TOLERANCE = 0.25;
+
+    private int batteryPercent = 100;
+    private boolean charging;
+
+    private Fix last;
+    private int goodFixes;
+    private double speed;
+    private double anchorLatitude = Double.NaN;
+    private double anchorLongitude = Double.NaN;
+    private long anchorTime;
+
+    private Decision decision = new Decision(ACQUIRE_INTERVAL_MILLIS, MIN_INTERVAL_MILLIS, Priority.HIGH_ACCURACY);
+
+    private long accepted;
+    private long rejected;
+    private long decisionChanges;
+
+    @Override
+    public boolean accept(Fix fix) {
+        if (last == null) {
+            accepted++;
+            return true;
+        }
+        long age = fix.getTimeMillis() - last.getTimeMillis();
+        boolean ok = age > 0;
+        if (ok && fix.getAccuracyMeters() > MAX_ACCEPTED_ACCURACY_METERS && age < STALE_AFTER_MILLIS) {
+            ok = false;
+        }
+        if (ok) {
+            double excess = distanceMeters(last, fix.getLatitude(), fix.getLongitude())
+                    - fix.getAccuracyMeters() - last.getAccuracyMeters();
+            ok = excess <= 0 || excess / (age / 1000.0) <= MAX_PLAUSIBLE_SPEED_METERS_PER_SECOND;
+        }
+        if (ok) {
+            accepted++;
+        } else {
+            rejected++;
+        }
+        return ok;
+    }
+
+    @Override
+    public Decision update(Fix fix) {
+        if (last != null && fix.getTimeMillis() > last.getTimeMillis()) {
+            double sample;
+            if (fix.hasSpeed()) {
+                sample = fix.getSpeedMetersPerSecond();
+            } else {
+                // Movement inside the accuracy radii is noise
+                double moved = distanceMeters(last, fix.getLatitude(), fix.getLongitude())
+                        - (fix.getAccuracyMeters() + last.getAccuracyMeters()) / 2;
+                sample = Math.max(0, moved) / ((fix.getTimeMillis() - last.getTimeMillis()) / 1000.0);
+            }
+            speed = SPEED_SMOOTHING * sample + (1 - SPEED_SMOOTHING) * speed;
+        }
+        if (fix.getAccuracyMeters() <= GOOD_ACCURACY_METERS) {
+            goodFixes++;
+        }
+        if (Double.isNaN(anchorLatitude) || GeoKdTree.haversine(anchorLatitude, anchorLongitude,
+                fix.getLatitude(), fix.getLongitude()) * 1000 > STILL_RADIUS_METERS + fix.getAccuracyMeters()) {
+            anchorLatitude = fix.getLatitude();
+            anchorLongitude = fix.getLongitude();
+            anchorTime = fix.getTimeMillis();
+        }
+        last = fix;
+        return choose(isStill());
+    }
+
+    @Override
+    public void setBatteryState(int percent, boolean charging) {
+        this.batteryPercent = percent;
+        this.charging = charging;
+    }
+
+    @Override
+    public Decision getDecision() {
+        return decision;
+    }
+
+    /**
+     * @return true if the user has stayed put for a while
+     */
+    public boolean isStill() {
+        return last != null && last.getTimeMillis() - anchorTime >= STILL_AFTER_MILLIS
+                && speed < STILL_SPEED_METERS_PER_SECOND;
+    }
+
+    /**
+     * @return Smoothed speed in meters per second
+     */
+    public double getSpeed() { return speed; }
+    public long getAccepted() { return accepted; }
+    public long getRejected() { return rejected; }
+    public long getDecisionChanges() { return decisionChanges; }
+
+    private Decision choose(boolean still) {
+        boolean low = !charging && batteryPercent <= LOW_BATTERY_PERCENT;
+        boolean critical = !charging && batteryPercent <= CRITICAL_BATTERY_PERCENT;
+
+        long interval;
+        Priority priority = Priority.HIGH_ACCURACY;
+        if (goodFixes < ACQUIRE_GOOD_FIXES) {
+            interval = ACQUIRE_INTERVAL_MILLIS;
+        } else if (still) {
+            interval = charging ? CHARGING_STILL_INTERVAL_MILLIS
+                    : low ? LOW_BATTERY_STILL_INTERVAL_MILLIS : STILL_INTERVAL_MILLIS;
+        } else {
+            double spacing = charging ? CHARGING_SPACING_METERS
+                    : low ? LOW_BATTERY_SPACING_METERS : NORMAL_SPACING_METERS;
+            long maxInterval = low ? LOW_BATTERY_MAX_MOVING_INTERVAL_MILLIS : MAX_MOVING_INTERVAL_MILLIS;
+            interval = speed > 0 ? (long) (spacing / speed * 1000) : maxInterval;
+            interval = Math.max(MIN_INTERVAL_MILLIS, Math.min(maxInterval, interval));
+        }
+        if (critical && goodFixes >= ACQUIRE_GOOD_FIXES) {
+            priority = Priority.BALANCED;
+        }
+
+        boolean samePriority = priority == decision.getPriority();
+        double change = Math.abs(interval - decision.getIntervalMillis()) / (double) decision.getIntervalMillis();
+        if (!samePriority || change > CHANGE_TOLERANCE) {
+            decision = new Decision(interval, Math.max(MIN_INTERVAL_MILLIS, interval / 2), priority);
+            decisionChanges++;
+        }
+        return decision;
+    }
+
+    private static double distanceMeters(Fix from, double latitude, double longitude) {
+        return GeoKdTree.haversine(from.getLatitude(), from.getLongitude(), latitude, longitude) * 1000;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.disastermanagement.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Point-in-rectangle index over bounding boxes using a multi-level geohash grid.
+ *
+ * Each box is registered in the cells of the finest geohash level at which
+ * it covers no more than MAX_CELLS_PER_BOX cells, so small and very large
+ * boxes both take a handful of cells. A point lookup hashes the point once
+ * per level in use and checks only the boxes registered in those cells,
+ * which keeps lookups independent of the number of boxes.
+ *
+ * Boxes are identified by the int id passed to add. Boxes whose minimum
+ * longitude is greater than their maximum are treated as crossing the
+ * antimeridian. A single writer may add boxes while other threads query.
+ */
+public class GeoGridIndex {
+    // Geohash precisions of 1 to 6 characters
+    private static final int LEVELS = 6;
+    private static final int BITS_PER_LEVEL = 5;
+    private static final int MAX_CELLS_PER_BOX = 16;
+    private static final int[] EMPTY = new int[0];
+
+    private final ConcurrentHashMap<Long, int[]> cells = new ConcurrentHashMap<>();
+
+    // minLat, maxLat, minLon, maxLon for every id, indexed by id * 4
+    private volatile double[] bounds = new double[64];
+    private volatile int levelsInUse;
+    private int size;
+
+    /**
+     * Registers a bounding box
+     * @param id Non-negative id returned by queries for this box
+     * @param minLat Southern edge in degrees
+     * @param maxLat Northern edge in degrees
+     * @param minLon Western edge in degrees
+     * @param maxLon Eastern edge in degrees
+     */
+    public synchronized void add(int id, double minLat, double maxLat, double minLon, double maxLon) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Id must not be negative");
+        }
+        if (minLat > maxLat) {
+            throw new IllegalArgumentException("Minimum latitude is above maximum latitude");
+        }
+
+        double[] current = bounds;
+        if (id * 4 + 4 > current.length) {
+            current = Arrays.copyOf(current, Math.max(current.length * 2, id * 4 + 4));
+        }
+        current[id * 4] = minLat;
+        current[id * 4 + 1] = maxLat;
+        current[id * 4 + 2] = minLon;
+        current[id * 4 + 3] = maxLon;
+        // Publish the bounds before any cell can hand out the id
+        bounds = current;
+
+        boolean wraps = minLon > maxLon;
+        int level = chooseLevel(minLat, maxLat, minLon, maxLon, wraps);
+        if (wraps) {
+            register(id, level, minLat, maxLat, minLon, 180.0);
+            register(id, level, minLat, maxLat, -180.0, maxLon);
+        } else {
+            register(id, level, minLat, maxLat, minLon, maxLon);
+        }
+        levelsInUse |= 1 << level;
+        size++;
+    }
+
+    /**
+     * Finds the boxes containing a point
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return Ids of the containing boxes in ascending order
+     */
+    public int[] query(double latitude, double longitude) {
+        double[] b = bounds;
+        int levels = levelsInUse;
+        int[] result = EMPTY;
+        int found = 0;
+
+        for (int level = 0; level < LEVELS; level++) {
+            if ((levels & (1 << level)) == 0) {
+                continue;
+            }
+            int bitCount = (level + 1) * BITS_PER_LEVEL;
+            int[] ids = cells.get(key(level, GeoHash.encodeBits(latitude, longitude, bitCount)));
+            if (ids == null) {
+                continue;
+            }
+            for (int id : ids) {
+                if (contains(b, id, latitude, longitude)) {
+                    if (found == result.length) {
+                        result = Arrays.copyOf(result, Math.max(4, found * 2));
+                    }
+                    result[found++] = id;
+                }
+            }
+        }
+
+        result = Arrays.copyOf(result, found);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * @return Number of boxes in the index
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private int chooseLevel(double minLat, double maxLat, double minLon, double maxLon, boolean wraps) {
+        for (int level = LEVELS - 1; level > 0; level--) {
+            int bitCount = (level + 1) * BITS_PER_LEVEL;
+            long covered = wraps
+                    ? cellCount(bitCount, minLat, maxLat, minLon, 180.0) + cellCount(bitCount, minLat, maxLat, -180.0, maxLon)
+                    : cellCount(bitCount, minLat, maxLat, minLon, maxLon);
+            if (covered <= MAX_CELLS_PER_BOX) {
+                return level;
+            }
+        }
+        return 0;
+    }
+
+    private static long cellCount(int bitCount, double minLat, double maxLat, double minLon, double maxLon) {
+        int latBits = GeoHash.latitudeBits(bitCount);
+        int lonBits = GeoHash.longitudeBits(bitCount);
+        long rows = GeoHash.latitudeCell(maxLat, latBits) - GeoHash.latitudeCell(minLat, latBits) + 1;
+        long columns = GeoHash.longitudeCell(maxLon, lonBits) - GeoHash.longitudeCell(minLon, lonBits) + 1;
+        return rows * columns;
+    }
+
+    private void register(int id, int level, double minLat, double maxLat, double minLon, double maxLon) {
+        int bitCount = (level + 1) * BITS_PER_LEVEL;
+        int latBits = GeoHash.latitudeBits(bitCount);
+        int lonBits = GeoHash.longitudeBits(bitCount);
+        long lastRow = GeoHash.latitudeCell(maxLat, latBits);
+        long lastColumn = GeoHash.longitudeCell(maxLon, lonBits);
+
+        for (long row = GeoHash.latitudeCell(minLat, latBits); row <= lastRow; row++) {
+            for (long column = GeoHash.longitudeCell(minLon, lonBits); column <= lastColumn; column++) {
+                Long cellKey = key(level, GeoHash.interleave(row, column, bitCount));
+                int[] ids = cells.get(cellKey);
+                if (ids == null) {
+                    cells.put(cellKey, new int[] { id });
+                } else if (ids[ids.length - 1] != id) {
+                    // Copy on write so concurrent readers always see a complete array
+                    int[] grown = Arrays.copyOf(ids, ids.length + 1);
+                    grown[ids.length] = id;
+                    cells.put(cellKey, grown);
+                }
+            }
+        }
+    }
+
+    private static boolean contains(double[] b, int id, double latitude, double longitude) {
+        int i = id * 4;
+        if (latitude < b[i] || latitude > b[i + 1]) {
+            return false;
+        }
+        double minLon = b[i + 2];
+        double maxLon = b[i + 3];
+        if (minLon <= maxLon) {
+            return longitude >= minLon && longitude <= maxLon;
+        }
+        return longitude >= minLon || longitude <= maxLon;
+    }
+
+    private static Long key(int level, long bits) {
+        return ((long) level << 32) | bits;
+    }
+}
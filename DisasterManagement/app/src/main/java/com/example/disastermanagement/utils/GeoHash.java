@@ -0,0 +1,100 @@
+package com.example.disastermanagement.utils;
+
+/**
+ * Geohash encoding of latitude/longitude pairs.
+ *
+ * A geohash interleaves longitude and latitude bisection bits, starting
+ * with longitude, so every prefix names a rectangular cell that contains
+ * all longer hashes sharing it. Each base-32 character adds 5 bits.
+ */
+public final class GeoHash {
+    public static final int MAX_PRECISION = 12;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private GeoHash() {
+    }
+
+    /**
+     * Encodes a location as a geohash string
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @param precision Number of characters, 1 to MAX_PRECISION
+     * @return Geohash of the cell containing the location
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between 1 and " + MAX_PRECISION);
+        }
+        long bits = encodeBits(latitude, longitude, precision * 5);
+        char[] hash = new char[precision];
+        for (int i = precision - 1; i >= 0; i--) {
+            hash[i] = BASE32[(int) (bits & 31)];
+            bits >>>= 5;
+        }
+        return new String(hash);
+    }
+
+    /**
+     * Encodes a location as the interleaved bits of its geohash
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @param bitCount Number of bits, at most 60
+     * @return Geohash bits, right-aligned
+     */
+    public static long encodeBits(double latitude, double longitude, int bitCount) {
+        int lonBits = longitudeBits(bitCount);
+        int latBits = latitudeBits(bitCount);
+        return interleave(latitudeCell(latitude, latBits), longitudeCell(longitude, lonBits), bitCount);
+    }
+
+    /**
+     * Interleaves a latitude and a longitude cell index into geohash bits
+     * @param latCell Latitude cell index at latitudeBits(bitCount)
+     * @param lonCell Longitude cell index at longitudeBits(bitCount)
+     * @param bitCount Total number of bits
+     * @return Geohash bits, right-aligned
+     */
+    public static long interleave(long latCell, long lonCell, int bitCount) {
+        long bits = 0;
+        int lonShift = longitudeBits(bitCount) - 1;
+        int latShift = latitudeBits(bitCount) - 1;
+        for (int i = 0; i < bitCount; i++) {
+            bits <<= 1;
+            if ((i & 1) == 0) {
+                bits |= (lonCell >>> lonShift--) & 1;
+            } else {
+                bits |= (latCell >>> latShift--) & 1;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * @return Row of the latitude cell containing the value, with 2^bits rows
+     */
+    public static long latitudeCell(double latitude, int bits) {
+        return cell((latitude + 90.0) / 180.0, bits);
+    }
+
+    /**
+     * @return Column of the longitude cell containing the value, with 2^bits columns
+     */
+    public static long longitudeCell(double longitude, int bits) {
+        return cell((longitude + 180.0) / 360.0, bits);
+    }
+
+    public static int longitudeBits(int bitCount) {
+        return (bitCount + 1) / 2;
+    }
+
+    public static int latitudeBits(int bitCount) {
+        return bitCount / 2;
+    }
+
+    private static long cell(double fraction, int bits) {
+        long cells = 1L << bits;
+        long index = (long) Math.floor(fraction * cells);
+        return Math.max(0, Math.min(cells - 1, index));
+    }
+}
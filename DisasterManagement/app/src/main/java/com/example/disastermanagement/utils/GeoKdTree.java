@@ -0,0 +1,655 @@
+package com.example.disastermanagement.utils;
+
+import java.util.Arrays;
+
+/**
+ * k-d tree over points on the Earth's surface for radius and
+ * k-nearest-neighbour queries.
+ *
+ * Points are stored as unit vectors, where straight-line (chord) distance
+ * grows with great-circle distance, so the tree can prune whole subtrees
+ * with plain arithmetic. Only the points that survive pruning get a
+ * haversine distance, computed once per query, and that distance decides
+ * both membership and order. Results are therefore the same as checking
+ * every point with the haversine formula.
+ *
+ * Points added after the last build are kept in a small pending list that
+ * queries scan directly; the tree is rebuilt once that list grows past a
+ * fraction of the tree, which keeps insertion cost logarithmic on average.
+ * Ids are assigned in insertion order starting at 0. Points can be
+ * deactivated and reactivated; queries skip inactive points, and subtrees
+ * with no active points are pruned using per-node live counts.
+ *
+ * Nearest-neighbour search also keeps a bounding box per subtree. From far
+ * away every point of a dense cluster is at about the same distance, so the
+ * split planes alone rule out almost nothing; the distance to a subtree's box
+ * does. Boxes are stored as floats rounded outwards so they never shrink.
+ * All methods are synchronized.
+ */
+public class GeoKdTree {
+    public static final double EARTH_RADIUS_KM = 6371;
+
+    private static final int MIN_PENDING_BEFORE_REBUILD = 64;
+    // Relative slack on chord pruning; the haversine check makes the final decision
+    private static final double CHORD_SLACK = 1e-9;
+
+    private double[] x = new double[16];
+    private double[] y = new double[16];
+    private double[] z = new double[16];
+    private double[] latitudes = new double[16];
+    private double[] longitudes = new double[16];
+    private boolean[] inactive = new boolean[16];
+    private int size;
+    private int activeCount;
+
+    // Point ids in tree order; tree[lo, hi) is a subtree with its root at the midpoint
+    private int[] tree = new int[0];
+    private byte[] splitAxis = new byte[0];
+    // Active points in the subtree rooted at each tree position
+    private int[] liveCount = new int[0];
+    private int[] positionOf = new int[0];
+    // Bounding box of each subtree: min x, y, z then max x, y, z at 6 * position
+    private float[] bounds = new float[0];
+    private int builtSize;
+
+    // Scratch space reused by queries, which all run under the lock
+    private final double[] query = new double[3];
+    private final NearestHeap heap = new NearestHeap();
+
+    /**
+     * Adds a point
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return Id of the new point
+     */
+    public synchronized int add(double latitude, double longitude) {
+        ensureCapacity(size + 1);
+        int id = append(latitude, longitude);
+
+        if (size - builtSize > Math.max(MIN_PENDING_BEFORE_REBUILD, builtSize / 8)) {
+            rebuild();
+        }
+        return id;
+    }
+
+    /**
+     * Adds many points and builds the tree once
+     * @param latitudes Latitudes in degrees
+     * @param longitudes Longitudes in degrees
+     * @param count Number of points to add from the start of the arrays
+     * @return Id of the first added point; the rest follow consecutively
+     */
+    public synchronized int addAll(double[] latitudes, double[] longitudes, int count) {
+        ensureCapacity(size + count);
+        int first = size;
+        for (int i = 0; i < count; i++) {
+            append(latitudes[i], longitudes[i]);
+        }
+        if (size - builtSize > MIN_PENDING_BEFORE_REBUILD) {
+            rebuild();
+        }
+        return first;
+    }
+
+    /**
+     * @return Number of points, active or not
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return Number of active points
+     */
+    public synchronized int activeCount() {
+        return activeCount;
+    }
+
+    /**
+     * Includes or excludes a point from query results
+     * @param id Point id
+     * @param active false to skip the point in queries, true to include it again
+     */
+    public synchronized void setActive(int id, boolean active) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No point with id " + id);
+        }
+        if (inactive[id] != active) {
+            return;
+        }
+        inactive[id] = !active;
+        int delta = active ? 1 : -1;
+        activeCount += delta;
+
+        if (id < builtSize) {
+            // Walk from the root to the point's node, adjusting the counts on the way
+            int position = positionOf[id];
+            int lo = 0;
+            int hi = builtSize;
+            while (true) {
+                int mid = (lo + hi) >>> 1;
+                liveCount[mid] += delta;
+                if (position == mid) {
+                    break;
+                } else if (position < mid) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param id Point id
+     * @return true unless the point was deactivated
+     */
+    public synchronized boolean isActive(int id) {
+        return !inactive[id];
+    }
+
+    /**
+     * Finds all points within a distance
+     * @param latitude Query latitude in degrees
+     * @param longitude Query longitude in degrees
+     * @param radiusKm Maximum great-circle distance in kilometers, inclusive
+     * @return Matching points ordered by distance, then by id
+     */
+    public Neighbors withinRadius(double latitude, double longitude, double radiusKm) {
+        Neighbors result = new Neighbors();
+        withinRadius(latitude, longitude, radiusKm, result);
+        return result;
+    }
+
+    /**
+     * Finds all points within a distance into a reusable result, without allocating
+     * once the result has grown to fit
+     * @param latitude Query latitude in degrees
+     * @param longitude Query longitude in degrees
+     * @param radiusKm Maximum great-circle distance in kilometers, inclusive
+     * @param result Cleared and filled with matching points ordered by distance, then by id
+     */
+    public synchronized void withinRadius(double latitude, double longitude, double radiusKm, Neighbors result) {
+        result.clear();
+        if (radiusKm < 0 || size == 0) {
+            return;
+        }
+
+        double[] q = toUnitVector(latitude, longitude, query);
+        double maxChord2 = chordSquared(radiusKm) * (1 + CHORD_SLACK) + CHORD_SLACK;
+
+        searchRadius(0, builtSize, q, maxChord2, latitude, longitude, radiusKm, result);
+        for (int id = builtSize; id < size; id++) {
+            if (!inactive[id] && distanceSquared(id, q) <= maxChord2) {
+                addIfWithin(id, latitude, longitude, radiusKm, result);
+            }
+        }
+
+        result.sort();
+    }
+
+    /**
+     * Finds the k points closest to a location
+     * @param latitude Query latitude in degrees
+     * @param longitude Query longitude in degrees
+     * @param k Maximum number of points to return
+     * @return Up to k points ordered by distance, then by id
+     */
+    public Neighbors nearest(double latitude, double longitude, int k) {
+        Neighbors result = new Neighbors();
+        nearest(latitude, longitude, k, result);
+        return result;
+    }
+
+    /**
+     * Finds the k points closest to a location into a reusable result
+     * @param latitude Query latitude in degrees
+     * @param longitude Query longitude in degrees
+     * @param k Maximum number of points to return
+     * @param result Cleared and filled with up to k points ordered by distance, then by id
+     */
+    public synchronized void nearest(double latitude, double longitude, int k, Neighbors result) {
+        result.clear();
+        int limit = Math.min(k, activeCount);
+        if (limit <= 0) {
+            return;
+        }
+
+        double[] q = toUnitVector(latitude, longitude, query);
+        heap.reset(limit);
+        searchNearest(0, builtSize, q, heap);
+        for (int id = builtSize; id < size; id++) {
+            if (!inactive[id]) {
+                heap.offer(id, distanceSquared(id, q));
+            }
+        }
+
+        for (int i = 0; i < heap.size; i++) {
+            int id = heap.ids[i];
+            result.add(id, haversine(latitude, longitude, latitudes[id], longitudes[id]));
+        }
+        result.sort();
+    }
+
+    /**
+     * Great-circle distance using the haversine formula
+     * @return Distance in kilometers
+     */
+    public static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(dLat/2) * Math.sin(dLat/2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                        Math.sin(dLon/2) * Math.sin(dLon/2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
+
+        return EARTH_RADIUS_KM * c;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > x.length) {
+            int capacity = Math.max(required, x.length * 2);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            z = Arrays.copyOf(z, capacity);
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            inactive = Arrays.copyOf(inactive, capacity);
+        }
+    }
+
+    private int append(double latitude, double longitude) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        x[size] = Math.cos(lat) * Math.cos(lon);
+        y[size] = Math.cos(lat) * Math.sin(lon);
+        z[size] = Math.sin(lat);
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        activeCount++;
+        return size++;
+    }
+
+    private void searchRadius(int lo, int hi, double[] q, double maxChord2,
+                              double latitude, double longitude, double radiusKm, Neighbors out) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (liveCount[mid] == 0) {
+                return;
+            }
+            int id = tree[mid];
+            if (!inactive[id] && distanceSquared(id, q) <= maxChord2) {
+                addIfWithin(id, latitude, longitude, radiusKm, out);
+            }
+
+            double diff = q[splitAxis[mid]] - coordinate(id, splitAxis[mid]);
+            boolean crossesSplit = diff * diff <= maxChord2;
+            if (diff < 0) {
+                if (crossesSplit) {
+                    searchRadius(mid + 1, hi, q, maxChord2, latitude, longitude, radiusKm, out);
+                }
+                hi = mid;
+            } else {
+                if (crossesSplit) {
+                    searchRadius(lo, mid, q, maxChord2, latitude, longitude, radiusKm, out);
+                }
+                lo = mid + 1;
+            }
+        }
+    }
+
+    private void searchNearest(int lo, int hi, double[] q, NearestHeap heap) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (liveCount[mid] == 0 || (heap.isFull() && boxDistanceSquared(mid, q) > heap.worst())) {
+            return;
+        }
+        int id = tree[mid];
+        if (!inactive[id]) {
+            heap.offer(id, distanceSquared(id, q));
+        }
+
+        double diff = q[splitAxis[mid]] - coordinate(id, splitAxis[mid]);
+        // Visit the side containing the query first so the heap bound tightens early
+        if (diff < 0) {
+            searchNearest(lo, mid, q, heap);
+            if (!heap.isFull() || diff * diff <= heap.worst()) {
+                searchNearest(mid + 1, hi, q, heap);
+            }
+        } else {
+            searchNearest(mid + 1, hi, q, heap);
+            if (!heap.isFull() || diff * diff <= heap.worst()) {
+                searchNearest(lo, mid, q, heap);
+            }
+        }
+    }
+
+    private void addIfWithin(int id, double latitude, double longitude, double radiusKm, Neighbors out) {
+        double distance = haversine(latitude, longitude, latitudes[id], longitudes[id]);
+        if (distance <= radiusKm) {
+            out.add(id, distance);
+        }
+    }
+
+    private void rebuild() {
+        tree = new int[size];
+        for (int i = 0; i < size; i++) {
+            tree[i] = i;
+        }
+        splitAxis = new byte[size];
+        build(0, size);
+        builtSize = size;
+
+        positionOf = new int[size];
+        for (int i = 0; i < size; i++) {
+            positionOf[tree[i]] = i;
+        }
+        liveCount = new int[size];
+        countLive(0, size);
+        bounds = new float[6 * size];
+        computeBounds(0, size);
+    }
+
+    private void computeBounds(int lo, int hi) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int id = tree[mid];
+        int box = 6 * mid;
+        for (int axis = 0; axis < 3; axis++) {
+            double c = coordinate(id, axis);
+            bounds[box + axis] = roundDown(c);
+            bounds[box + 3 + axis] = roundUp(c);
+        }
+        computeBounds(lo, mid);
+        computeBounds(mid + 1, hi);
+        if (lo < mid) {
+            includeBox(box, 6 * ((lo + mid) >>> 1));
+        }
+        if (mid + 1 < hi) {
+            includeBox(box, 6 * ((mid + 1 + hi) >>> 1));
+        }
+    }
+
+    private void includeBox(int box, int child) {
+        for (int axis = 0; axis < 3; axis++) {
+            bounds[box + axis] = Math.min(bounds[box + axis], bounds[child + axis]);
+            bounds[box + 3 + axis] = Math.max(bounds[box + 3 + axis], bounds[child + 3 + axis]);
+        }
+    }
+
+    /**
+     * @return Squared distance from the query to the subtree's box, 0 if inside
+     */
+    private double boxDistanceSquared(int position, double[] q) {
+        int box = 6 * position;
+        double sum = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            double gap = Math.max(bounds[box + axis] - q[axis], q[axis] - bounds[box + 3 + axis]);
+            if (gap > 0) {
+                sum += gap * gap;
+            }
+        }
+        return sum;
+    }
+
+    private static float roundDown(double value) {
+        float rounded = (float) value;
+        return rounded > value ? Math.nextDown(rounded) : rounded;
+    }
+
+    private static float roundUp(double value) {
+        float rounded = (float) value;
+        return rounded < value ? Math.nextUp(rounded) : rounded;
+    }
+
+    private int countLive(int lo, int hi) {
+        if (lo >= hi) {
+            return 0;
+        }
+        int mid = (lo + hi) >>> 1;
+        int live = countLive(lo, mid) + countLive(mid + 1, hi) + (inactive[tree[mid]] ? 0 : 1);
+        liveCount[mid] = live;
+        return live;
+    }
+
+    private void build(int lo, int hi) {
+        while (hi - lo > 1) {
+            // Split on the axis with the widest spread
+            double[] min = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+            double[] max = { -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+            for (int i = lo; i < hi; i++) {
+                for (int axis = 0; axis < 3; axis++) {
+                    double c = coordinate(tree[i], axis);
+                    min[axis] = Math.min(min[axis], c);
+                    max[axis] = Math.max(max[axis], c);
+                }
+            }
+            int axis = 0;
+            for (int a = 1; a < 3; a++) {
+                if (max[a] - min[a] > max[axis] - min[axis]) {
+                    axis = a;
+                }
+            }
+
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi - 1, mid, axis);
+            splitAxis[mid] = (byte) axis;
+            build(lo, mid);
+            lo = mid + 1;
+        }
+        if (lo < hi) {
+            splitAxis[lo] = 0;
+        }
+    }
+
+    // Quickselect: places the k-th smallest coordinate at k, none larger to its left
+    private void select(int left, int right, int k, int axis) {
+        while (right > left) {
+            double pivot = coordinate(tree[(left + right) >>> 1], axis);
+            int i = left;
+            int j = right;
+            // Hoare partition keeps runs of equal coordinates balanced
+            while (i <= j) {
+                while (coordinate(tree[i], axis) < pivot) i++;
+                while (coordinate(tree[j], axis) > pivot) j--;
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        int t = tree[i];
+        tree[i] = tree[j];
+        tree[j] = t;
+    }
+
+    private double coordinate(int id, int axis) {
+        return axis == 0 ? x[id] : axis == 1 ? y[id] : z[id];
+    }
+
+    private double distanceSquared(int id, double[] q) {
+        double dx = x[id] - q[0];
+        double dy = y[id] - q[1];
+        double dz = z[id] - q[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static double[] toUnitVector(double latitude, double longitude, double[] out) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        out[0] = Math.cos(lat) * Math.cos(lon);
+        out[1] = Math.cos(lat) * Math.sin(lon);
+        out[2] = Math.sin(lat);
+        return out;
+    }
+
+    private static double chordSquared(double distanceKm) {
+        double angle = distanceKm / EARTH_RADIUS_KM;
+        if (angle >= Math.PI) {
+            return 4.0; // Diameter of the unit sphere; everything is in range
+        }
+        double chord = 2 * Math.sin(angle / 2);
+        return chord * chord;
+    }
+
+    /**
+     * Query result: point ids with their distances in kilometers
+     */
+    public static final class Neighbors {
+        private int[] ids;
+        private double[] distances;
+        private int size;
+
+        public Neighbors() {
+            this.ids = new int[16];
+            this.distances = new double[16];
+        }
+
+        public int size() { return size; }
+        public int getId(int i) { return ids[i]; }
+        public double getDistanceKm(int i) { return distances[i]; }
+
+        void clear() {
+            size = 0;
+        }
+
+        void add(int id, double distance) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            ids[size] = id;
+            distances[size] = distance;
+            size++;
+        }
+
+        void sort() {
+            sort(0, size - 1);
+        }
+
+        private void sort(int left, int right) {
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                double pivotDistance = distances[mid];
+                int pivotId = ids[mid];
+                int i = left;
+                int j = right;
+                while (i <= j) {
+                    while (before(i, pivotDistance, pivotId)) i++;
+                    while (after(j, pivotDistance, pivotId)) j--;
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                // Recurse into the smaller part to bound stack depth
+                if (j - left < right - i) {
+                    sort(left, j);
+                    left = i;
+                } else {
+                    sort(i, right);
+                    right = j;
+                }
+            }
+        }
+
+        private boolean before(int i, double distance, int id) {
+            return distances[i] < distance || (distances[i] == distance && ids[i] < id);
+        }
+
+        private boolean after(int i, double distance, int id) {
+            return distances[i] > distance || (distances[i] == distance && ids[i] > id);
+        }
+
+        private void swap(int i, int j) {
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+            double distance = distances[i];
+            distances[i] = distances[j];
+            distances[j] = distance;
+        }
+    }
+
+    /**
+     * Bounded max-heap on squared chord distance holding the k best candidates
+     */
+    private static final class NearestHeap {
+        int[] ids = new int[0];
+        double[] keys = new double[0];
+        int capacity;
+        int size;
+
+        void reset(int capacity) {
+            if (ids.length < capacity) {
+                ids = new int[capacity];
+                keys = new double[capacity];
+            }
+            this.capacity = capacity;
+            this.size = 0;
+        }
+
+        boolean isFull() {
+            return size == capacity;
+        }
+
+        double worst() {
+            return keys[0];
+        }
+
+        void offer(int id, double key) {
+            if (!isFull()) {
+                int i = size++;
+                while (i > 0 && compareCandidates(ids[(i - 1) / 2], keys[(i - 1) / 2], id, key) < 0) {
+                    int parent = (i - 1) / 2;
+                    ids[i] = ids[parent];
+                    keys[i] = keys[parent];
+                    i = parent;
+                }
+                ids[i] = id;
+                keys[i] = key;
+            } else if (compareCandidates(id, key, ids[0], keys[0]) < 0) {
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && compareCandidates(ids[child + 1], keys[child + 1], ids[child], keys[child]) > 0) {
+                        child++;
+                    }
+                    if (compareCandidates(ids[child], keys[child], id, key) <= 0) {
+                        break;
+                    }
+                    ids[i] = ids[child];
+                    keys[i] = keys[child];
+                    i = child;
+                }
+                ids[i] = id;
+                keys[i] = key;
+            }
+        }
+
+        // Orders candidates by distance, breaking ties by id like the result order
+        private static int compareCandidates(int id1, double key1, int id2, double key2) {
+            if (key1 != key2) {
+                return key1 < key2 ? -1 : 1;
+            }
+            return Integer.compare(id1, id2);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.disastermanagement.utils;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-memory, mergeable quantile sketch with relative-error guarantees.
+ *
+ * Values are counted in logarithmic buckets, so any quantile is answered
+ * to within the configured relative accuracy of the true value. Sketches
+ * built with the same accuracy can be merged by adding bucket counts,
+ * which makes it possible to combine regional sketches into a state view.
+ * Values beyond the bucket range are clamped into the first or last bucket.
+ */
+public class QuantileSketch {
+    private static final double DEFAULT_ACCURACY = 0.02;
+    private static final int BUCKET_COUNT = 640;
+    // Smallest magnitude kept apart from zero
+    private static final double MIN_MAGNITUDE = 1e-3;
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+    private final int minIndex;
+    // Allocated on first use, so idle sketches stay small
+    private int[] positive;
+    private int[] negative;
+    private long zeroCount;
+    private long count;
+
+    public QuantileSketch() {
+        this(DEFAULT_ACCURACY);
+    }
+
+    /**
+     * @param relativeAccuracy Maximum relative error of quantile estimates, e.g. 0.02 for 2%
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        double gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.minIndex = (int) Math.ceil(Math.log(MIN_MAGNITUDE) / logGamma);
+    }
+
+    /**
+     * Adds a value to the sketch
+     * @param value Value to record
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        count++;
+        if (Math.abs(value) < MIN_MAGNITUDE) {
+            zeroCount++;
+        } else if (value > 0) {
+            if (positive == null) {
+                positive = new int[BUCKET_COUNT];
+            }
+            positive[bucketOf(value)]++;
+        } else {
+            if (negative == null) {
+                negative = new int[BUCKET_COUNT];
+            }
+            negative[bucketOf(-value)]++;
+        }
+    }
+
+    /**
+     * Adds all values recorded by another sketch to this one
+     * @param other Sketch built with the same relative accuracy
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches with different accuracy");
+        }
+        if (other.positive != null) {
+            if (positive == null) {
+                positive = new int[BUCKET_COUNT];
+            }
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                positive[i] += other.positive[i];
+            }
+        }
+        if (other.negative != null) {
+            if (negative == null) {
+                negative = new int[BUCKET_COUNT];
+            }
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                negative[i] += other.negative[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    /**
+     * Estimates a quantile of the recorded values
+     * @param q Quantile between 0 and 1, e.g. 0.95
+     * @return Estimated value, or NaN if the sketch is empty
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(q * (count - 1));
+        long seen = 0;
+
+        if (negative != null) {
+            // Most negative values first
+            for (int i = BUCKET_COUNT - 1; i >= 0; i--) {
+                seen += negative[i];
+                if (seen > rank) {
+                    return -valueOf(i);
+                }
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank || positive == null) {
+            return 0;
+        }
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += positive[i];
+            if (seen > rank) {
+                return valueOf(i);
+            }
+        }
+        return valueOf(BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Forgets every recorded value, keeping the allocated buckets for reuse
+     */
+    public void clear() {
+        if (positive != null) {
+            Arrays.fill(positive, 0);
+        }
+        if (negative != null) {
+            Arrays.fill(negative, 0);
+        }
+        zeroCount = 0;
+        count = 0;
+    }
+
+    public long getCount() { return count; }
+    public double getRelativeAccuracy() { return relativeAccuracy; }
+
+    private int bucketOf(double magnitude) {
+        int index = (int) Math.ceil(Math.log(magnitude) / logGamma) - minIndex;
+        return Math.max(0, Math.min(BUCKET_COUNT - 1, index));
+    }
+
+    private double valueOf(int bucket) {
+        // Midpoint of the bucket in the relative-error sense
+        double upper = Math.exp((bucket + minIndex) * logGamma);
+        return upper * 2 / (1 + Math.exp(logGamma));
+    }
+}
@@ -0,0 +1,585 @@
+package com.example.disastermanagement.utils;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ints in the style of a roaring bitmap.
+ *
+ * Values are split by their high 16 bits into chunks. A chunk with few
+ * values stores them as a sorted char array; once it holds more than
+ * ARRAY_LIMIT values it switches to a 65536-bit bitmap, and back again
+ * when it shrinks. Sparse sets therefore cost two bytes per value and
+ * dense ones one bit, and set operations run chunk by chunk with the
+ * cheapest method for each pair of representations.
+ *
+ * Not thread safe; callers synchronize.
+ */
+public class RoaringBitmap {
+    // Above this many values a chunk is smaller as a bitmap
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    public RoaringBitmap() {
+    }
+
+    /**
+     * @param other Bitmap to copy
+     */
+    public RoaringBitmap(RoaringBitmap other) {
+        this.keys = Arrays.copyOf(other.keys, Math.max(4, other.size));
+        this.containers = new Container[keys.length];
+        for (int i = 0; i < other.size; i++) {
+            containers[i] = other.containers[i].copy();
+        }
+        this.size = other.size;
+    }
+
+    /**
+     * @param value Non-negative value to add
+     */
+    public void add(int value) {
+        checkValue(value);
+        char key = (char) (value >>> 16);
+        int i = indexOfKey(key);
+        if (i >= 0) {
+            containers[i] = containers[i].add((char) value);
+            return;
+        }
+        i = -i - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = new ArrayContainer().add((char) value);
+        size++;
+    }
+
+    /**
+     * @param value Value to remove
+     */
+    public void remove(int value) {
+        if (value < 0) {
+            return;
+        }
+        int i = indexOfKey((char) (value >>> 16));
+        if (i < 0) {
+            return;
+        }
+        Container container = containers[i].remove((char) value);
+        if (container.cardinality() == 0) {
+            removeAt(i);
+        } else {
+            containers[i] = container;
+        }
+    }
+
+    /**
+     * @param value Value to add or remove
+     * @param present true to add the value, false to remove it
+     */
+    public void set(int value, boolean present) {
+        if (present) {
+            add(value);
+        } else {
+            remove(value);
+        }
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int i = indexOfKey((char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality();
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Finds the smallest value in the set at or above a starting point
+     * @param from Value to start from
+     * @return The next value, or -1 if there is none
+     */
+    public int nextSetBit(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        char key = (char) (from >>> 16);
+        int i = indexOfKey(key);
+        if (i >= 0) {
+            int low = containers[i].nextValue(from & 0xFFFF);
+            if (low >= 0) {
+                return (key << 16) | low;
+            }
+            i++;
+        } else {
+            i = -i - 1;
+        }
+        // Containers are never empty, so the next one starts with a value
+        return i < size ? (keys[i] << 16) | containers[i].nextValue(0) : -1;
+    }
+
+    /**
+     * @return All values in ascending order
+     */
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            n = containers[i].copyTo(values, n, keys[i] << 16);
+        }
+        return values;
+    }
+
+    /**
+     * Keeps only the values that are also in another bitmap
+     * @param other Bitmap to intersect with
+     */
+    public void and(RoaringBitmap other) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == keys[i]) {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    keys[kept] = keys[i];
+                    containers[kept++] = container;
+                }
+            }
+        }
+        Arrays.fill(containers, kept, size, null);
+        size = kept;
+    }
+
+    /**
+     * Adds every value of another bitmap
+     * @param other Bitmap to merge in
+     */
+    public void or(RoaringBitmap other) {
+        char[] mergedKeys = new char[size + other.size];
+        Container[] merged = new Container[size + other.size];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                mergedKeys[n] = keys[i];
+                merged[n++] = containers[i++];
+            } else if (i == size || other.keys[j] < keys[i]) {
+                mergedKeys[n] = other.keys[j];
+                merged[n++] = other.containers[j++].copy();
+            } else {
+                mergedKeys[n] = keys[i];
+                merged[n++] = containers[i++].or(other.containers[j++]);
+            }
+        }
+        keys = n < 4 ? Arrays.copyOf(mergedKeys, 4) : mergedKeys;
+        containers = n < 4 ? Arrays.copyOf(merged, 4) : merged;
+        size = n;
+    }
+
+    /**
+     * Removes every value that is in another bitmap
+     * @param other Bitmap of values to remove
+     */
+    public void andNot(RoaringBitmap other) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Container container = j < other.size && other.keys[j] == keys[i]
+                    ? containers[i].andNot(other.containers[j])
+                    : containers[i];
+            if (container.cardinality() > 0) {
+                keys[kept] = keys[i];
+                containers[kept++] = container;
+            }
+        }
+        Arrays.fill(containers, kept, size, null);
+        size = kept;
+    }
+
+    /**
+     * @return Approximate heap size of the set contents in bytes
+     */
+    public long getSizeInBytes() {
+        long bytes = keys.length * 2L + containers.length * 4L;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    private int indexOfKey(char key) {
+        // Chunks are few, so a binary search over the sorted keys is enough
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) {
+                low = mid + 1;
+            } else if (keys[mid] > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        containers[--size] = null;
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+    }
+
+    /**
+     * The low 16 bits of the values in one chunk. Operations may return a
+     * different container, either a converted one or a new result.
+     */
+    private abstract static class Container {
+        abstract Container add(char value);
+        abstract Container remove(char value);
+        abstract boolean contains(char value);
+        abstract int cardinality();
+        abstract int nextValue(int from);
+        abstract int copyTo(int[] out, int offset, int high);
+        abstract Container and(Container other);
+        abstract Container or(Container other);
+        abstract Container andNot(Container other);
+        abstract Container copy();
+        abstract long sizeInBytes();
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] values;
+        int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                return toBitmap().add(value);
+            }
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, cardinality * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int nextValue(int from) {
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) from);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return i < cardinality ? values[i] : -1;
+        }
+
+        @Override
+        int copyTo(int[] out, int offset, int high) {
+            for (int i = 0; i < cardinality; i++) {
+                out[offset++] = high | values[i];
+            }
+            return offset;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[Math.min(cardinality, other.cardinality())];
+            int n = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[n++] = values[i++];
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[n++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            char[] result = new char[cardinality + array.cardinality];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    result[n++] = values[i++];
+                } else if (i == cardinality || array.values[j] < values[i]) {
+                    result[n++] = array.values[j++];
+                } else {
+                    result[n++] = values[i++];
+                    j++;
+                }
+            }
+            ArrayContainer union = new ArrayContainer(result, n);
+            return n > ARRAY_LIMIT ? union.toBitmap() : union;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) {
+                    result[n++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(4, cardinality)), cardinality);
+        }
+
+        @Override
+        long sizeInBytes() {
+            return values.length * 2L + 4;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer(new long[BITMAP_WORDS], 0);
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words;
+        int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) != 0) {
+                words[value >>> 6] &= ~bit;
+                cardinality--;
+            }
+            return cardinality <= ARRAY_LIMIT ? toArray() : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int nextValue(int from) {
+            int w = from >>> 6;
+            if (w >= BITMAP_WORDS) {
+                return -1;
+            }
+            long word = words[w] & (-1L << from);
+            while (word == 0) {
+                if (++w == BITMAP_WORDS) {
+                    return -1;
+                }
+                word = words[w];
+            }
+            return (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        int copyTo(int[] out, int offset, int high) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    out[offset++] = high | ((w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] = words[w] & otherWords[w];
+                count += Long.bitCount(result[w]);
+            }
+            BitmapContainer intersection = new BitmapContainer(result, count);
+            return count <= ARRAY_LIMIT ? intersection.toArray() : intersection;
+        }
+
+        @Override
+        Container or(Container other) {
+            BitmapContainer union = (BitmapContainer) copy();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    union.add(array.values[i]);
+                }
+                return union;
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                union.words[w] |= otherWords[w];
+                count += Long.bitCount(union.words[w]);
+            }
+            union.cardinality = count;
+            return union;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            BitmapContainer difference = (BitmapContainer) copy();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    char value = array.values[i];
+                    long bit = 1L << value;
+                    if ((difference.words[value >>> 6] & bit) != 0) {
+                        difference.words[value >>> 6] &= ~bit;
+                        difference.cardinality--;
+                    }
+                }
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                int count = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    difference.words[w] &= ~otherWords[w];
+                    count += Long.bitCount(difference.words[w]);
+                }
+                difference.cardinality = count;
+            }
+            return difference.cardinality <= ARRAY_LIMIT ? difference.toArray() : difference;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        long sizeInBytes() {
+            return BITMAP_WORDS * 8L + 4;
+        }
+
+        ArrayContainer toArray() {
+            char[] values = new char[Math.max(4, cardinality)];
+            int n = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    values[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+    }
+}
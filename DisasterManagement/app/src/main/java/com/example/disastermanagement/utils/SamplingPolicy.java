@@ -0,0 +1,132 @@
+package com.example.disastermanagement.utils;
+
+/**
+ * Decides how often and how precisely to ask for location fixes.
+ *
+ * Implementations are plain Java so they can be replayed against recorded
+ * traces with SamplingTraceSimulator in the unit tests; the activity maps a
+ * Decision onto a platform location request.
+ */
+public interface SamplingPolicy {
+
+    /**
+     * Power/accuracy trade-off of a location request, in the order of the platform's priorities
+     */
+    enum Priority {
+        HIGH_ACCURACY,
+        BALANCED,
+        LOW_POWER
+    }
+
+    /**
+     * A location fix as the policy sees it
+     */
+    final class Fix {
+        private final long timeMillis;
+        private final double latitude;
+        private final double longitude;
+        private final float accuracyMeters;
+        private final float speedMetersPerSecond;
+
+        /**
+         * @param timeMillis Fix time in epoch milliseconds
+         * @param latitude Latitude in degrees
+         * @param longitude Longitude in degrees
+         * @param accuracyMeters Accuracy radius in meters
+         * @param speedMetersPerSecond Speed reported with the fix, or NaN if there is none
+         */
+        public Fix(long timeMillis, double latitude, double longitude, float accuracyMeters,
+                   float speedMetersPerSecond) {
+            this.timeMillis = timeMillis;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.accuracyMeters = accuracyMeters;
+            this.speedMetersPerSecond = speedMetersPerSecond;
+        }
+
+        public long getTimeMillis() { return timeMillis; }
+        public double getLatitude() { return latitude; }
+        public double getLongitude() { return longitude; }
+        public float getAccuracyMeters() { return accuracyMeters; }
+        public float getSpeedMetersPerSecond() { return speedMetersPerSecond; }
+        public boolean hasSpeed() { return !Float.isNaN(speedMetersPerSecond); }
+    }
+
+    /**
+     * What to ask the location provider for
+     */
+    final class Decision {
+        private final long intervalMillis;
+        private final long fastestIntervalMillis;
+        private final Priority priority;
+
+        public Decision(long intervalMillis, long fastestIntervalMillis, Priority priority) {
+            this.intervalMillis = intervalMillis;
+            this.fastestIntervalMillis = fastestIntervalMillis;
+            this.priority = priority;
+        }
+
+        public long getIntervalMillis() { return intervalMillis; }
+        public long getFastestIntervalMillis() { return fastestIntervalMillis; }
+        public Priority getPriority() { return priority; }
+
+        @Override
+        public String toString() {
+            return priority + " every " + intervalMillis / 1000.0 + " s";
+        }
+    }
+
+    /**
+     * @param fix New fix from the provider
+     * @return true if the fix is good enough to show and send
+     */
+    boolean accept(Fix fix);
+
+    /**
+     * Updates the policy with an accepted fix
+     * @param fix The fix
+     * @return The request to use from now on; the same instance as before if nothing changed
+     */
+    Decision update(Fix fix);
+
+    /**
+     * @param percent Battery level from 0 to 100
+     * @param charging Whether the phone is charging
+     */
+    void setBatteryState(int percent, boolean charging);
+
+    /**
+     * @return The request to use now
+     */
+    Decision getDecision();
+
+    /**
+     * Always asks for the same request and accepts every fix
+     */
+    final class Fixed implements SamplingPolicy {
+        private final Decision decision;
+
+        public Fixed(long intervalMillis, long fastestIntervalMillis, Priority priority) {
+            this.decision = new Decision(intervalMillis, fastestIntervalMillis, priority);
+        }
+
+        @Override
+        public boolean accept(Fix fix) {
+            return true;
+        }
+
+        @Override
+        public Decision update(Fix fix) {
+            return decision;
+        }
+
+        @Override
+        public void setBatteryState(int percent, boolean charging) {
+        }
+
+        @Override
+        public Decision getDecision() {
+            return decision;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.disastermanagement.utils;
+
+/**
+ * Fixed-memory streaming aggregates for one series of sensor readings:
+ * rolling mean over the last N readings, an exponentially weighted moving
+ * average, a smoothed rate of change and rolling quantiles. No raw history
+ * beyond the rolling window is kept.
+ *
+ * Quantiles cover a sliding time window rather than the whole lifetime.
+ * Readings are counted into one quantile sketch per time slice, keyed by
+ * the reading's timestamp; a query merges the sketches of the slices that
+ * fall inside the window and a slice is reused once it slides out. The
+ * window moves in whole slices, so it spans between QUANTILE_SLICES - 1
+ * and QUANTILE_SLICES slices of the most recent readings.
+ *
+ * Instances are thread-safe; each series is guarded by its own lock.
+ */
+public class StreamingStats {
+    private static final long DEFAULT_QUANTILE_WINDOW_MILLIS = 60 * 60 * 1000L;
+    private static final int QUANTILE_SLICES = 6;
+
+    private final double[] window;
+    private final double alpha;
+    private final long sliceMillis;
+    // Ring of per-slice sketches indexed by slice epoch modulo its length; created on first use
+    private final QuantileSketch[] slices = new QuantileSketch[QUANTILE_SLICES];
+    private final long[] sliceEpochs = new long[QUANTILE_SLICES];
+    private long newestEpoch = Long.MIN_VALUE;
+
+    private int windowNext;
+    private int windowFill;
+    private double windowSum;
+
+    private long count;
+    private double ewma = Double.NaN;
+    private double rateOfChange = Double.NaN;
+    private double lastValue = Double.NaN;
+    private long lastTimestamp;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param windowSize Number of most recent readings covered by the rolling mean
+     * @param alpha EWMA smoothing factor between 0 and 1; higher reacts faster
+     */
+    public StreamingStats(int windowSize, double alpha) {
+        this(windowSize, alpha, DEFAULT_QUANTILE_WINDOW_MILLIS);
+    }
+
+    /**
+     * @param windowSize Number of most recent readings covered by the rolling mean
+     * @param alpha EWMA smoothing factor between 0 and 1; higher reacts faster
+     * @param quantileWindowMillis Span of reading time covered by the quantiles
+     */
+    public StreamingStats(int windowSize, double alpha, long quantileWindowMillis) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("EWMA alpha must be in (0, 1]");
+        }
+        if (quantileWindowMillis < QUANTILE_SLICES) {
+            throw new IllegalArgumentException("Quantile window is too short");
+        }
+        this.window = new double[windowSize];
+        this.alpha = alpha;
+        this.sliceMillis = quantileWindowMillis / QUANTILE_SLICES;
+    }
+
+    /**
+     * Records a reading
+     * @param value Reading value
+     * @param timestampMillis Reading time in epoch milliseconds
+     */
+    public synchronized void add(double value, long timestampMillis) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+
+        if (windowFill == window.length) {
+            windowSum -= window[windowNext];
+        } else {
+            windowFill++;
+        }
+        window[windowNext] = value;
+        windowSum += value;
+        windowNext = (windowNext + 1) % window.length;
+
+        ewma = count == 0 ? value : alpha * value + (1 - alpha) * ewma;
+
+        if (count > 0 && timestampMillis > lastTimestamp) {
+            double rate = (value - lastValue) * 1000.0 / (timestampMillis - lastTimestamp);
+            rateOfChange = Double.isNaN(rateOfChange) ? rate : alpha * rate + (1 - alpha) * rateOfChange;
+        }
+        lastValue = value;
+        lastTimestamp = timestampMillis;
+
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        QuantileSketch slice = sliceFor(Math.floorDiv(timestampMillis, sliceMillis));
+        if (slice != null) {
+            slice.add(value);
+        }
+        count++;
+    }
+
+    /**
+     * Folds another series into this one. The quantile slices and count are
+     * merged exactly; means and rates are combined weighted by reading count.
+     * @param other Series to merge, built with the same window size, alpha
+     *              and quantile window
+     */
+    public void merge(StreamingStats other) {
+        if (other == this) {
+            return;
+        }
+        // Lock in a fixed order so concurrent merges cannot deadlock
+        StreamingStats first = System.identityHashCode(this) <= System.identityHashCode(other) ? this : other;
+        StreamingStats second = first == this ? other : this;
+        synchronized (first) {
+            synchronized (second) {
+                mergeLocked(other);
+            }
+        }
+    }
+
+    public synchronized long getCount() { return count; }
+    public synchronized double getEwma() { return ewma; }
+    public synchronized double getMin() { return count == 0 ? Double.NaN : min; }
+    public synchronized double getMax() { return count == 0 ? Double.NaN : max; }
+    public synchronized double getLastValue() { return lastValue; }
+
+    /**
+     * @return Mean of the readings in the rolling window, NaN if empty
+     */
+    public synchronized double getRollingMean() {
+        return windowFill == 0 ? Double.NaN : windowSum / windowFill;
+    }
+
+    /**
+     * @return Smoothed change in value per second, NaN until two readings arrive
+     */
+    public synchronized double getRateOfChange() {
+        return rateOfChange;
+    }
+
+    /**
+     * @param q Quantile between 0 and 1
+     * @return Estimated quantile of the readings in the window ending at the
+     *         newest reading, NaN if there are none
+     */
+    public synchronized double getQuantile(double q) {
+        return windowSketch(newestEpoch).quantile(q);
+    }
+
+    /**
+     * @param q Quantile between 0 and 1
+     * @param nowMillis Current time in epoch milliseconds; the window ends here
+     * @return Estimated quantile of the readings in the window, NaN if there are none
+     */
+    public synchronized double getQuantile(double q, long nowMillis) {
+        return windowSketch(Math.floorDiv(nowMillis, sliceMillis)).quantile(q);
+    }
+
+    /**
+     * @return Span of reading time covered by the quantiles, in milliseconds
+     */
+    public long getQuantileWindowMillis() {
+        return sliceMillis * QUANTILE_SLICES;
+    }
+
+    /**
+     * @param epoch Slice epoch of a reading
+     * @return The emptied or current sketch of that slice, or null if it is
+     *         older than the window
+     */
+    private QuantileSketch sliceFor(long epoch) {
+        if (newestEpoch != Long.MIN_VALUE && epoch <= newestEpoch - QUANTILE_SLICES) {
+            return null;
+        }
+        int index = (int) Math.floorMod(epoch, (long) QUANTILE_SLICES);
+        if (slices[index] == null) {
+            slices[index] = new QuantileSketch();
+            sliceEpochs[index] = epoch;
+        } else if (sliceEpochs[index] != epoch) {
+            // Any other epoch in this slot is at least a whole window older
+            slices[index].clear();
+            sliceEpochs[index] = epoch;
+        }
+        newestEpoch = Math.max(newestEpoch, epoch);
+        return slices[index];
+    }
+
+    private QuantileSketch windowSketch(long endEpoch) {
+        QuantileSketch merged = new QuantileSketch();
+        for (int i = 0; i < QUANTILE_SLICES; i++) {
+            if (slices[i] != null && sliceEpochs[i] <= endEpoch && sliceEpochs[i] > endEpoch - QUANTILE_SLICES) {
+                merged.merge(slices[i]);
+            }
+        }
+        return merged;
+    }
+
+    private void mergeLocked(StreamingStats other) {
+        if (other.sliceMillis != sliceMillis) {
+            throw new IllegalArgumentException("Cannot merge series with different quantile windows");
+        }
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        double weight = (double) other.count / total;
+
+        // Replace the rolling window with the combined mean of both windows
+        double mean = windowFill == 0 ? other.getRollingMean()
+                : (1 - weight) * getRollingMean() + weight * other.getRollingMean();
+        int fill = Math.min(window.length, windowFill + other.windowFill);
+        for (int i = 0; i < fill; i++) {
+            window[i] = mean;
+        }
+        windowFill = fill;
+        windowNext = fill % window.length;
+        windowSum = mean * fill;
+
+        ewma = count == 0 ? other.ewma : (1 - weight) * ewma + weight * other.ewma;
+        if (Double.isNaN(rateOfChange)) {
+            rateOfChange = other.rateOfChange;
+        } else if (!Double.isNaN(other.rateOfChange)) {
+            rateOfChange = (1 - weight) * rateOfChange + weight * other.rateOfChange;
+        }
+        if (other.lastTimestamp > lastTimestamp) {
+            lastTimestamp = other.lastTimestamp;
+            lastValue = other.lastValue;
+        }
+
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        // Newest first, so the window has moved as far as it will before older slices arrive
+        newestEpoch = Math.max(newestEpoch, other.newestEpoch);
+        for (int i = 0; i < QUANTILE_SLICES; i++) {
+            if (other.slices[i] != null && other.slices[i].getCount() > 0) {
+                QuantileSketch slice = sliceFor(other.sliceEpochs[i]);
+                if (slice != null) {
+                    slice.merge(other.slices[i]);
+                }
+            }
+        }
+        count = total;
+    }
+}
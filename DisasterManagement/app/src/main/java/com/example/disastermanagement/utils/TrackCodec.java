@@ -0,0 +1,209 @@
+package com.example.disastermanagement.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding for a batch of location fixes.
+ *
+ * Coordinates are fixed-point microdegrees (about 0.1 m). The first fix is
+ * written in full; every later fix is written as the difference from the
+ * one before it. Differences are zigzag encoded so small negative steps
+ * stay small, then written as base-128 varints, so a walking-pace fix a few
+ * seconds after the last one takes about six bytes.
+ *
+ * Layout:
+ * <pre>
+ * version    u8      currently 1
+ * flags      u8      bit 0: an address follows
+ * count      varint  number of fixes
+ * address    varint length + UTF-8 bytes, if flagged
+ * first fix  time (varint, epoch ms), latitude (zigzag), longitude (zigzag), accuracy (varint, m)
+ * each next  time delta (varint, ms), latitude delta (zigzag), longitude delta (zigzag), accuracy (varint, m)
+ * </pre>
+ * The backend's decoder in flask_backend/app.py must be kept in step with this layout.
+ */
+public final class TrackCodec {
+    public static final int VERSION = 1;
+    private static final int FLAG_ADDRESS = 1;
+
+    private TrackCodec() {
+    }
+
+    /**
+     * Decoded batch of fixes
+     */
+    public static final class Track {
+        private final long[] times;
+        private final int[] latitudesE6;
+        private final int[] longitudesE6;
+        private final int[] accuracies;
+        private final String address;
+
+        Track(long[] times, int[] latitudesE6, int[] longitudesE6, int[] accuracies, String address) {
+            this.times = times;
+            this.latitudesE6 = latitudesE6;
+            this.longitudesE6 = longitudesE6;
+            this.accuracies = accuracies;
+            this.address = address;
+        }
+
+        public int size() { return times.length; }
+        public long getTime(int i) { return times[i]; }
+        public double getLatitude(int i) { return latitudesE6[i] / 1e6; }
+        public double getLongitude(int i) { return longitudesE6[i] / 1e6; }
+        public int getAccuracy(int i) { return accuracies[i]; }
+        public String getAddress() { return address; }
+    }
+
+    /**
+     * @param degrees Angle in degrees
+     * @return The angle in microdegrees, rounded
+     */
+    public static int toE6(double degrees) {
+        return (int) Math.round(degrees * 1e6);
+    }
+
+    /**
+     * Encodes a run of fixes stored in parallel arrays
+     * @param times Fix times in epoch milliseconds, non-decreasing
+     * @param latitudesE6 Latitudes in microdegrees
+     * @param longitudesE6 Longitudes in microdegrees
+     * @param accuracies Accuracy radii in whole meters
+     * @param offset Index of the first fix to encode
+     * @param count Number of fixes to encode
+     * @param address Address to attach, or null
+     * @return Encoded batch
+     */
+    public static byte[] encode(long[] times, int[] latitudesE6, int[] longitudesE6, int[] accuracies,
+                                int offset, int count, String address) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + count * 8);
+        out.write(VERSION);
+        out.write(address != null ? FLAG_ADDRESS : 0);
+        writeVarint(out, count);
+        if (address != null) {
+            byte[] bytes = address.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        long previousTime = 0;
+        int previousLatitude = 0;
+        int previousLongitude = 0;
+        for (int i = offset; i < offset + count; i++) {
+            // The first fix is a delta from zero, i.e. absolute
+            writeVarint(out, times[i] - previousTime);
+            writeVarint(out, zigzag(latitudesE6[i] - previousLatitude));
+            writeVarint(out, zigzag(longitudesE6[i] - previousLongitude));
+            writeVarint(out, Math.max(0, accuracies[i]));
+            previousTime = times[i];
+            previousLatitude = latitudesE6[i];
+            previousLongitude = longitudesE6[i];
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param data Encoded batch
+     * @return The fixes in the batch
+     * @throws IllegalArgumentException if the data is truncated or of an unknown version
+     */
+    public static Track decode(byte[] data) {
+        int[] position = {0};
+        if (data.length < 2 || data[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported track encoding");
+        }
+        int flags = data[1];
+        position[0] = 2;
+        int count = (int) readVarint(data, position);
+
+        String address = null;
+        if ((flags & FLAG_ADDRESS) != 0) {
+            int length = (int) readVarint(data, position);
+            if (position[0] + length > data.length) {
+                throw new IllegalArgumentException("Truncated track data");
+            }
+            address = new String(data, position[0], length, StandardCharsets.UTF_8);
+            position[0] += length;
+        }
+
+        long[] times = new long[count];
+        int[] latitudes = new int[count];
+        int[] longitudes = new int[count];
+        int[] accuracies = new int[count];
+        long time = 0;
+        int latitude = 0;
+        int longitude = 0;
+        for (int i = 0; i < count; i++) {
+            time += readVarint(data, position);
+            latitude += unzigzag(readVarint(data, position));
+            longitude += unzigzag(readVarint(data, position));
+            times[i] = time;
+            latitudes[i] = latitude;
+            longitudes[i] = longitude;
+            accuracies[i] = (int) readVarint(data, position);
+        }
+        return new Track(times, latitudes, longitudes, accuracies, address);
+    }
+
+    /**
+     * Joins two encoded batches into one, e.g. to send a backlog in a single request
+     * @param older Batch with the earlier fixes
+     * @param newer Batch with the later fixes
+     * @return One batch with the fixes of both in order, carrying the newest address
+     * @throws IllegalArgumentException if either batch cannot be decoded
+     */
+    public static byte[] concat(byte[] older, byte[] newer) {
+        Track first = decode(older);
+        Track second = decode(newer);
+        int count = first.size() + second.size();
+        long[] times = new long[count];
+        int[] latitudes = new int[count];
+        int[] longitudes = new int[count];
+        int[] accuracies = new int[count];
+        copy(first, times, latitudes, longitudes, accuracies, 0);
+        copy(second, times, latitudes, longitudes, accuracies, first.size());
+        String address = second.address != null ? second.address : first.address;
+        return encode(times, latitudes, longitudes, accuracies, 0, count, address);
+    }
+
+    private static void copy(Track track, long[] times, int[] latitudes, int[] longitudes, int[] accuracies,
+                             int offset) {
+        int count = track.size();
+        System.arraycopy(track.times, 0, times, offset, count);
+        System.arraycopy(track.latitudesE6, 0, latitudes, offset, count);
+        System.arraycopy(track.longitudesE6, 0, longitudes, offset, count);
+        System.arraycopy(track.accuracies, 0, accuracies, offset, count);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int unzigzag(long value) {
+        return (int) ((value >>> 1) ^ -(value & 1));
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] data, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= data.length) {
+                throw new IllegalArgumentException("Truncated track data");
+            }
+            byte b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in track data");
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.disastermanagement.utils;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a growing breadcrumb trail small enough to redraw on every fix.
+ *
+ * Points are simplified with Douglas-Peucker: a point is kept only if the
+ * trail would otherwise pass more than the tolerance away from it. Running
+ * that over the whole trail on every fix would get slower as the trail
+ * grows, so only the newest points (the tail) are simplified on each add.
+ * When the tail is full its simplified points are frozen and a new tail
+ * starts at its last point. If the frozen part grows past the point limit,
+ * its older half is simplified again with twice the tolerance used there
+ * last time, so a long trail stays bounded and loses detail only far behind
+ * the user.
+ *
+ * Points closer than the tolerance to the last added point are skipped, so
+ * GPS jitter while standing still doesn't add points. Not thread-safe.
+ */
+public class TrackSimplifier {
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    private final double toleranceMeters;
+    private final int maxPoints;
+
+    // Simplified points before the tail
+    private double[] frozenLatitudes;
+    private double[] frozenLongitudes;
+    private int frozen;
+    private double frozenTolerance;
+
+    // Raw points since the last freeze, starting with the point it ended on
+    private final double[] tailLatitudes;
+    private final double[] tailLongitudes;
+    private int tail;
+    // Indices of the tail points the current simplification keeps
+    private final int[] tailKept;
+    private int tailKeptCount;
+    private final boolean[] keep;
+
+    private long added;
+
+    /**
+     * @param toleranceMeters How far the drawn trail may pass from a dropped point
+     * @param tailCapacity Raw points simplified on each add, at least 3
+     * @param maxPoints Simplified points kept before the old part is coarsened, at least twice the tail capacity
+     */
+    public TrackSimplifier(double toleranceMeters, int tailCapacity, int maxPoints) {
+        if (toleranceMeters <= 0) {
+            throw new IllegalArgumentException("Tolerance must be positive");
+        }
+        if (tailCapacity < 3) {
+            throw new IllegalArgumentException("Tail capacity must be at least 3");
+        }
+        if (maxPoints < 2 * tailCapacity) {
+            throw new IllegalArgumentException("Max points must be at least twice the tail capacity");
+        }
+        this.toleranceMeters = toleranceMeters;
+        this.maxPoints = maxPoints;
+        this.frozenTolerance = toleranceMeters;
+        this.frozenLatitudes = new double[Math.min(maxPoints, 64)];
+        this.frozenLongitudes = new double[frozenLatitudes.length];
+        this.tailLatitudes = new double[tailCapacity];
+        this.tailLongitudes = new double[tailCapacity];
+        this.tailKept = new int[tailCapacity];
+        this.keep = new boolean[Math.max(tailCapacity, maxPoints + tailCapacity)];
+    }
+
+    /**
+     * Adds the newest point of the trail
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return true if the simplified trail changed
+     */
+    public boolean add(double latitude, double longitude) {
+        if (tail > 0 && distanceMeters(tailLatitudes[tail - 1], tailLongitudes[tail - 1], latitude, longitude)
+                < toleranceMeters) {
+            return false;
+        }
+        added++;
+        if (tail == tailLatitudes.length) {
+            freezeTail();
+        }
+        tailLatitudes[tail] = latitude;
+        tailLongitudes[tail] = longitude;
+        tail++;
+
+        tailKeptCount = simplify(tailLatitudes, tailLongitudes, 0, tail, toleranceMeters, keep);
+        for (int i = 0, k = 0; i < tail; i++) {
+            if (keep[i]) {
+                tailKept[k++] = i;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Number of points in the simplified trail
+     */
+    public int size() {
+        return frozen + tailKeptCount;
+    }
+
+    /**
+     * @param i Point index, oldest first
+     * @return Latitude of a simplified point in degrees
+     */
+    public double getLatitude(int i) {
+        return i < frozen ? frozenLatitudes[i] : tailLatitudes[tailKept[i - frozen]];
+    }
+
+    /**
+     * @param i Point index, oldest first
+     * @return Longitude of a simplified point in degrees
+     */
+    public double getLongitude(int i) {
+        return i < frozen ? frozenLongitudes[i] : tailLongitudes[tailKept[i - frozen]];
+    }
+
+    /**
+     * @return Number of points added and not skipped as jitter
+     */
+    public long getAdded() { return added; }
+
+    /**
+     * @return Tolerance the oldest part of the trail was last simplified with, in meters
+     */
+    public double getFrozenToleranceMeters() { return frozenTolerance; }
+
+    public void clear() {
+        frozen = 0;
+        tail = 0;
+        tailKeptCount = 0;
+        frozenTolerance = toleranceMeters;
+        added = 0;
+    }
+
+    /**
+     * Moves the simplified tail, except its last point, to the frozen part
+     */
+    private void freezeTail() {
+        int needed = frozen + tailKeptCount;
+        if (needed > frozenLatitudes.length) {
+            int capacity = Math.max(needed, frozenLatitudes.length * 2);
+            frozenLatitudes = Arrays.copyOf(frozenLatitudes, capacity);
+            frozenLongitudes = Arrays.copyOf(frozenLongitudes, capacity);
+        }
+        for (int k = 0; k < tailKeptCount - 1; k++) {
+            frozenLatitudes[frozen] = tailLatitudes[tailKept[k]];
+            frozenLongitudes[frozen] = tailLongitudes[tailKept[k]];
+            frozen++;
+        }
+        int last = tailKept[tailKeptCount - 1];
+        tailLatitudes[0] = tailLatitudes[last];
+        tailLongitudes[0] = tailLongitudes[last];
+        tail = 1;
+        tailKept[0] = 0;
+        tailKeptCount = 1;
+
+        while (frozen > maxPoints) {
+            frozenTolerance *= 2;
+            int older = frozen / 2;
+            simplify(frozenLatitudes, frozenLongitudes, 0, older, frozenTolerance, keep);
+            int k = 0;
+            for (int i = 0; i < frozen; i++) {
+                if (i >= older || keep[i]) {
+                    frozenLatitudes[k] = frozenLatitudes[i];
+                    frozenLongitudes[k] = frozenLongitudes[i];
+                    k++;
+                }
+            }
+            frozen = k;
+        }
+    }
+
+    /**
+     * Douglas-Peucker over part of a path
+     * @param latitudes Latitudes in degrees
+     * @param longitudes Longitudes in degrees
+     * @param from First index of the part
+     * @param count Number of points in the part
+     * @param toleranceMeters How far the simplified path may pass from a dropped point
+     * @param keep Set to whether each point is kept, at the same indices as the path
+     * @return Number of points kept
+     */
+    public static int simplify(double[] latitudes, double[] longitudes, int from, int count,
+                               double toleranceMeters, boolean[] keep) {
+        if (count <= 2) {
+            Arrays.fill(keep, from, from + count, true);
+            return count;
+        }
+        Arrays.fill(keep, from, from + count, false);
+        int to = from + count - 1;
+        keep[from] = true;
+        keep[to] = true;
+        int kept = 2;
+
+        // Project to meters around the first point; fine over a trail's extent
+        double scale = Math.cos(Math.toRadians(latitudes[from]));
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = from;
+        stack[top++] = to;
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+            double ax = longitudes[start] * scale;
+            double ay = latitudes[start];
+            double dx = longitudes[end] * scale - ax;
+            double dy = latitudes[end] - ay;
+            double lengthSquared = dx * dx + dy * dy;
+
+            double farthest = -1;
+            int index = -1;
+            for (int i = start + 1; i < end; i++) {
+                double px = longitudes[i] * scale - ax;
+                double py = latitudes[i] - ay;
+                double t = lengthSquared > 0 ? Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared)) : 0;
+                double ex = px - t * dx;
+                double ey = py - t * dy;
+                double distance = ex * ex + ey * ey;
+                if (distance > farthest) {
+                    farthest = distance;
+                    index = i;
+                }
+            }
+            if (index >= 0 && Math.sqrt(farthest) * METERS_PER_DEGREE > toleranceMeters) {
+                keep[index] = true;
+                kept++;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = start;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = end;
+            }
+        }
+        return kept;
+    }
+
+    private static double distanceMeters(double latitude1, double longitude1, double latitude2, double longitude2) {
+        return GeoKdTree.haversine(latitude1, longitude1, latitude2, longitude2) * 1000;
+    }
+}
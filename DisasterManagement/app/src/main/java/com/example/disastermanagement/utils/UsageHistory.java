@@ -0,0 +1,107 @@
+package com.example.disastermanagement.utils;
+
+/**
+ * Fixed-size ring buffer of timestamped consumption for burn-rate
+ * estimation. Keeps the most recent samples that are also younger than a
+ * maximum age, together with their running sum, so recording a sample and
+ * reading the rate are both O(1) amortized.
+ *
+ * Quantities are net consumption: allocations are positive, returned
+ * stock is negative. Instances are thread-safe.
+ */
+public class UsageHistory {
+    // Floor on the observed span so a burst right after a quiet period doesn't read as an extreme rate
+    private static final long MIN_SPAN_MILLIS = 60_000;
+    private static final double MILLIS_PER_HOUR = 3_600_000.0;
+
+    private final long[] timestamps;
+    private final int[] quantities;
+    private final long maxAgeMillis;
+
+    private int oldest;
+    private int size;
+    private long sum;
+
+    /**
+     * @param capacity Number of most recent samples kept
+     * @param maxAgeMillis Samples older than this are dropped
+     */
+    public UsageHistory(int capacity, long maxAgeMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        if (maxAgeMillis <= 0) {
+            throw new IllegalArgumentException("Maximum age must be positive");
+        }
+        this.timestamps = new long[capacity];
+        this.quantities = new int[capacity];
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Records consumption
+     * @param quantity Quantity consumed, negative if returned
+     * @param timestampMillis Time in epoch milliseconds
+     */
+    public synchronized void record(int quantity, long timestampMillis) {
+        evictBefore(timestampMillis - maxAgeMillis);
+        if (size == timestamps.length) {
+            sum -= quantities[oldest];
+            oldest = (oldest + 1) % timestamps.length;
+            size--;
+        }
+        int next = (oldest + size) % timestamps.length;
+        timestamps[next] = timestampMillis;
+        quantities[next] = quantity;
+        sum += quantity;
+        size++;
+    }
+
+    /**
+     * @param nowMillis Current time in epoch milliseconds
+     * @return Net consumption per hour over the kept samples, 0 if there are none
+     */
+    public synchronized double getRatePerHour(long nowMillis) {
+        evictBefore(nowMillis - maxAgeMillis);
+        if (size == 0) {
+            return 0;
+        }
+        long span = Math.max(nowMillis - timestamps[oldest], MIN_SPAN_MILLIS);
+        return sum * MILLIS_PER_HOUR / span;
+    }
+
+    /**
+     * @param nowMillis Current time in epoch milliseconds
+     * @return Number of samples kept
+     */
+    public synchronized int size(long nowMillis) {
+        evictBefore(nowMillis - maxAgeMillis);
+        return size;
+    }
+
+    /**
+     * Predicts how long a stock lasts at a burn rate
+     * @param available Quantity left
+     * @param ratePerHour Net consumption per hour
+     * @return Milliseconds until the stock runs out, 0 if already out, or
+     *         Long.MAX_VALUE if it is not being consumed
+     */
+    public static long timeToDepletionMillis(long available, double ratePerHour) {
+        if (available <= 0) {
+            return 0;
+        }
+        if (ratePerHour <= 0) {
+            return Long.MAX_VALUE;
+        }
+        double millis = available / ratePerHour * MILLIS_PER_HOUR;
+        return millis >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) millis;
+    }
+
+    private void evictBefore(long cutoffMillis) {
+        while (size > 0 && timestamps[oldest] < cutoffMillis) {
+            sum -= quantities[oldest];
+            oldest = (oldest + 1) % timestamps.length;
+            size--;
+        }
+    }
+}
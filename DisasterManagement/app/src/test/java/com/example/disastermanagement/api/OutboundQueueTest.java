@@ -0,0 +1,316 @@
+package com.example.disastermanagement.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OutboundQueueTest {
+    private File directory;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("outbound").toFile();
+        file = new File(directory, "queue.log");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void sendsInOrderAcrossRestart() throws Exception {
+        OutboundQueue queue = open(unreachable());
+        for (int i = 0; i < 50; i++) {
+            queue.enqueue(request("api/item", "first-" + i));
+        }
+        queue.close();
+
+        RecordingTransport transport = new RecordingTransport(100);
+        queue = open(transport);
+        assertEquals(50, queue.getPendingCount());
+        for (int i = 0; i < 50; i++) {
+            queue.enqueue(request("api/item", "second-" + i));
+        }
+        queue.start();
+        assertTrue(transport.await());
+        queue.close();
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            expected.add("first-" + i);
+        }
+        for (int i = 0; i < 50; i++) {
+            expected.add("second-" + i);
+        }
+        assertEquals(expected, transport.bodies);
+
+        queue = open(unreachable());
+        assertEquals(0, queue.getPendingCount());
+        queue.close();
+    }
+
+    @Test
+    public void tornTailIsCutOffAndAppendsContinue() throws Exception {
+        OutboundQueue queue = open(unreachable());
+        for (int i = 0; i < 10; i++) {
+            queue.enqueue(request("api/item", "body-" + i));
+        }
+        queue.close();
+
+        // A crash halfway through the last record
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+        queue = open(unreachable());
+        assertEquals(9, queue.getPendingCount());
+        queue.enqueue(request("api/item", "after-crash"));
+        queue.close();
+
+        RecordingTransport transport = new RecordingTransport(10);
+        queue = open(transport);
+        queue.start();
+        assertTrue(transport.await());
+        queue.close();
+        assertEquals("body-8", transport.bodies.get(8));
+        assertEquals("after-crash", transport.bodies.get(9));
+    }
+
+    @Test
+    public void corruptTailIsCutOff() throws Exception {
+        OutboundQueue queue = open(unreachable());
+        for (int i = 0; i < 10; i++) {
+            queue.enqueue(request("api/item", "body-" + i));
+        }
+        queue.close();
+
+        // Flip a byte of the last body, and leave some garbage behind it
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long position = raf.length() - 20;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xff);
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[] {0, 0, 0, 3, 1});
+        }
+        queue = open(unreachable());
+        assertEquals(9, queue.getPendingCount());
+        queue.close();
+    }
+
+    @Test
+    public void coalescedRequestsDrainAsOne() throws Exception {
+        OutboundQueue queue = open(unreachable());
+        OutboundQueue.Coalescer concat = (older, newer) -> {
+            byte[] merged = new byte[older.length + newer.length];
+            System.arraycopy(older, 0, merged, 0, older.length);
+            System.arraycopy(newer, 0, merged, older.length, newer.length);
+            return merged;
+        };
+        queue.enqueue(request("api/other", "x"));
+        for (int i = 0; i < 5; i++) {
+            queue.enqueue(request("api/track", String.valueOf(i)).coalesce("track", concat));
+        }
+        // A different key or endpoint is not merged
+        queue.enqueue(request("api/track", "y").coalesce("other", concat));
+        assertEquals(3, queue.getPendingCount());
+        assertEquals(4, queue.getCoalesced());
+        queue.close();
+
+        RecordingTransport transport = new RecordingTransport(3);
+        queue = open(transport);
+        assertEquals(3, queue.getPendingCount());
+        queue.start();
+        assertTrue(transport.await());
+        queue.close();
+        assertEquals(Arrays.asList("x", "01234", "y"), transport.bodies);
+    }
+
+    @Test
+    public void backoffDoublesUpToTheCap() {
+        for (int failures = 0; failures < 30; failures++) {
+            long delay = Math.min(5 * 60_000L, 1000L << Math.min(failures, 20));
+            assertEquals(delay / 2, OutboundQueue.backoffMillis(failures, 0));
+            assertTrue(OutboundQueue.backoffMillis(failures, 0.999) <= delay);
+            assertTrue(OutboundQueue.backoffMillis(failures, 0.999) > delay * 0.99);
+        }
+    }
+
+    @Test
+    public void networkErrorsRetryAfterBackoff() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        List<Long> times = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch delivered = new CountDownLatch(1);
+        OutboundQueue queue = open((method, endpoint, contentType, body) -> {
+            times.add(System.nanoTime());
+            if (attempts.incrementAndGet() <= 2) {
+                throw new IOException("offline");
+            }
+            delivered.countDown();
+            return new OutboundQueue.Reply(200, "{}");
+        });
+        queue.enqueue(request("api/item", "a"));
+        queue.start();
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        queue.close();
+
+        assertEquals(2, queue.getRetries());
+        assertEquals(1, queue.getDelivered());
+        // Half of 1 s, then half of 2 s at least
+        assertTrue(times.get(1) - times.get(0) >= TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(times.get(2) - times.get(1) >= TimeUnit.MILLISECONDS.toNanos(1000));
+    }
+
+    @Test
+    public void wakeRetriesAtOnce() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch delivered = new CountDownLatch(1);
+        OutboundQueue queue = open((method, endpoint, contentType, body) -> {
+            if (attempts.incrementAndGet() <= 5) {
+                throw new IOException("offline");
+            }
+            delivered.countDown();
+            return new OutboundQueue.Reply(200, "{}");
+        });
+        queue.enqueue(request("api/item", "a"));
+        queue.start();
+        long start = System.nanoTime();
+        while (delivered.getCount() > 0 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+            queue.wake();
+            Thread.sleep(5);
+        }
+        assertTrue(delivered.await(0, TimeUnit.SECONDS));
+        queue.close();
+    }
+
+    @Test
+    public void permanentFailuresAreDroppedAndDoNotBlockTheQueue() throws Exception {
+        List<String> dropped = Collections.synchronizedList(new ArrayList<>());
+        RecordingTransport delivered = new RecordingTransport(1);
+        OutboundQueue queue = open((method, endpoint, contentType, body) -> {
+            if (endpoint.equals("api/broken")) {
+                throw new IllegalStateException("no base URL");
+            }
+            if (endpoint.equals("api/missing")) {
+                return new OutboundQueue.Reply(404, "");
+            }
+            return delivered.send(method, endpoint, contentType, body);
+        });
+        queue.addListener(new OutboundQueue.Listener() {
+            @Override
+            public void onDelivered(OutboundQueue.Request request, OutboundQueue.Reply reply) {
+            }
+
+            @Override
+            public void onDropped(OutboundQueue.Request request, OutboundQueue.Reply reply) {
+                dropped.add(request.getEndpoint() + ":" + (reply != null ? reply.getCode() : "none"));
+            }
+        });
+        queue.enqueue(request("api/broken", "a"));
+        queue.enqueue(request("api/missing", "b"));
+        queue.enqueue(request("api/{unknown}", "c"));
+        queue.enqueue(request("api/item", "d"));
+        queue.start();
+        assertTrue(delivered.await());
+        queue.close();
+
+        assertEquals(Arrays.asList("api/broken:none", "api/missing:404", "api/{unknown}:none"), dropped);
+        assertEquals(3, queue.getDropped());
+        assertEquals(0, queue.getRetries());
+
+        queue = open(unreachable());
+        assertEquals(0, queue.getPendingCount());
+        queue.close();
+    }
+
+    @Test
+    public void capturedVariableFillsLaterEndpoint() throws Exception {
+        RecordingTransport transport = new RecordingTransport(2) {
+            @Override
+            public OutboundQueue.Reply send(String method, String endpoint, String contentType, byte[] body) {
+                super.send(method, endpoint, contentType, body);
+                return new OutboundQueue.Reply(200, "{\"location_id\":\"abc\"}");
+            }
+        };
+        OutboundQueue queue = open(transport);
+        queue.enqueue(request("api/session", "create").captureResponseField("location_id", "session"));
+        queue.enqueue(request("api/session/{session}/batch", "fixes"));
+        queue.start();
+        assertTrue(transport.await());
+        queue.close();
+        assertEquals(Arrays.asList("api/session", "api/session/abc/batch"), transport.endpoints);
+
+        queue = open(unreachable());
+        assertEquals("abc", queue.getVariable("session"));
+        assertNull(queue.getVariable("other"));
+        queue.close();
+    }
+
+    private OutboundQueue open(OutboundQueue.Transport transport) throws IOException {
+        OutboundQueue queue = new OutboundQueue(file, transport);
+        queue.open();
+        return queue;
+    }
+
+    private static OutboundQueue.Request request(String endpoint, String body) {
+        return new OutboundQueue.Request("POST", endpoint, "text/plain", body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static OutboundQueue.Transport unreachable() {
+        return (method, endpoint, contentType, body) -> {
+            throw new IOException("offline");
+        };
+    }
+
+    /**
+     * Accepts every request and remembers what was sent
+     */
+    private static class RecordingTransport implements OutboundQueue.Transport {
+        final List<String> bodies = Collections.synchronizedList(new ArrayList<>());
+        final List<String> endpoints = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch done;
+
+        RecordingTransport(int expected) {
+            done = new CountDownLatch(expected);
+        }
+
+        @Override
+        public OutboundQueue.Reply send(String method, String endpoint, String contentType, byte[] body) {
+            bodies.add(new String(body, StandardCharsets.UTF_8));
+            endpoints.add(endpoint);
+            done.countDown();
+            return new OutboundQueue.Reply(200, "{}");
+        }
+
+        boolean await() throws InterruptedException {
+            return done.await(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.disastermanagement.modules;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AlertDispatchQueueTest {
+
+    @Test
+    public void producerBlocksWhileFullUntilConsumerTakes() throws Exception {
+        AlertDispatchQueue queue = new AlertDispatchQueue(2);
+        MonitoringDashboard.Alert first = alert("LOW");
+        assertTrue(queue.offer(first));
+        assertTrue(queue.offer(alert("LOW")));
+
+        final MonitoringDashboard.Alert waiting = alert("HIGH");
+        final AtomicBoolean queued = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        Thread producer = new Thread(() -> {
+            try {
+                queued.set(queue.offer(waiting, 10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            } finally {
+                done.countDown();
+            }
+        });
+        producer.setUncaughtExceptionHandler((thread, e) -> failures.add(e));
+        producer.start();
+
+        // The producer is parked, not displacing the queued LOW alerts
+        waitForWaiter(producer);
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(2, queue.getDepth());
+        assertEquals(2, queue.getDepth("LOW"));
+        assertEquals(1, queue.getProducerWaitCount());
+
+        assertSame(first, queue.poll(1, TimeUnit.SECONDS));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        producer.join();
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertTrue(queued.get());
+        assertEquals(0, queue.getDisplacedCount());
+        // Delivered ahead of the LOW alert still queued
+        assertSame(waiting, queue.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void blockedProducerGivesUpAfterTimeout() throws Exception {
+        AlertDispatchQueue queue = new AlertDispatchQueue(1);
+        assertTrue(queue.offer(alert("LOW")));
+
+        long started = System.nanoTime();
+        assertFalse(queue.offer(alert("HIGH"), 50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, queue.getRejectedCount());
+        assertEquals(1, queue.getDepth("LOW"));
+    }
+
+    @Test
+    public void closeReleasesBlockedProducer() throws Exception {
+        AlertDispatchQueue queue = new AlertDispatchQueue(1);
+        assertTrue(queue.offer(alert("LOW")));
+        final AtomicBoolean queued = new AtomicBoolean(true);
+        Thread producer = new Thread(() -> {
+            try {
+                queued.set(queue.offer(alert("HIGH"), 10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        });
+        producer.start();
+        waitForWaiter(producer);
+
+        queue.close();
+        producer.join(10_000);
+        assertFalse(producer.isAlive());
+        assertFalse(queued.get());
+    }
+
+    @Test
+    public void nonBlockingOfferDisplacesLowerPriority() throws Exception {
+        AlertDispatchQueue queue = new AlertDispatchQueue(2);
+        assertTrue(queue.offer(alert("LOW")));
+        assertTrue(queue.offer(alert("MEDIUM")));
+
+        MonitoringDashboard.Alert high = alert("HIGH");
+        assertTrue(queue.offer(high));
+        assertEquals(1, queue.getDisplacedCount());
+        assertEquals(0, queue.getDepth("LOW"));
+        // Nothing below LOW to displace
+        assertFalse(queue.offer(alert("LOW")));
+        assertSame(high, queue.poll(1, TimeUnit.SECONDS));
+    }
+
+    private static void waitForWaiter(Thread producer) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (producer.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue("Producer never blocked", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static MonitoringDashboard.Alert alert(String priority) {
+        return new MonitoringDashboard.Alert("TEST", "Test alert", priority, "Region", null);
+    }
+}
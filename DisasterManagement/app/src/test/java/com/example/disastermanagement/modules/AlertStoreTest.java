@@ -0,0 +1,255 @@
+package com.example.disastermanagement.modules;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AlertStoreTest {
+    private static final long BUCKET_MILLIS = 60_000;
+    private static final long WINDOW_MILLIS = 10 * BUCKET_MILLIS;
+    private static final String[] PRIORITIES = {"HIGH", "MEDIUM", "LOW"};
+    private static final int PRODUCERS = 4;
+    private static final int ALERTS_PER_PRODUCER = 5000;
+    private static final int REGIONS = 8;
+    private static final int BENCHMARK_ALERTS = 200_000;
+
+    @Test
+    public void countersMatchRecountAfterConcurrentAddsResolvesAndEvictions() throws Exception {
+        // Room for a few hundred alerts, so the memory cap keeps dropping buckets
+        AlertStore store = new AlertStore(WINDOW_MILLIS, BUCKET_MILLIS, 300 * 384L);
+        ConcurrentLinkedQueue<MonitoringDashboard.Alert> added = new ConcurrentLinkedQueue<>();
+        AtomicBoolean producing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+
+        for (int p = 0; p < PRODUCERS; p++) {
+            final long seed = p;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                await(start);
+                for (int i = 0; i < ALERTS_PER_PRODUCER; i++) {
+                    // Some alerts are older than the window and must be rejected
+                    long ageMillis = (long) (random.nextDouble() * (WINDOW_MILLIS + 2 * BUCKET_MILLIS));
+                    MonitoringDashboard.Alert alert = newAlert(random, LocalDateTime.now().minusNanos(ageMillis * 1_000_000));
+                    if (store.add(alert)) {
+                        added.add(alert);
+                    }
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            await(start);
+            while (producing.get()) {
+                MonitoringDashboard.Alert alert = added.poll();
+                if (alert != null) {
+                    store.resolve(alert);
+                    // Resolving twice must not count twice
+                    assertFalse(store.resolve(alert));
+                    added.add(alert);
+                }
+                store.expire();
+            }
+        }));
+        for (Thread thread : threads) {
+            thread.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+            thread.start();
+        }
+
+        start.countDown();
+        for (int i = 0; i < PRODUCERS; i++) {
+            threads.get(i).join();
+        }
+        producing.set(false);
+        threads.get(PRODUCERS).join();
+        assertTrue(failures.toString(), failures.isEmpty());
+
+        assertCountersMatchRecount(store, added);
+        assertTrue("memory cap never dropped a bucket", store.getEvictedBucketCount() > 0);
+    }
+
+    @Test
+    public void rejectsAlertsOlderThanWindow() {
+        AlertStore store = new AlertStore(WINDOW_MILLIS, BUCKET_MILLIS, Long.MAX_VALUE);
+        MonitoringDashboard.Alert old = new MonitoringDashboard.Alert("FLOOD", "old", "HIGH", "north",
+                new HashMap<>(), LocalDateTime.now().minusNanos((WINDOW_MILLIS + 2 * BUCKET_MILLIS) * 1_000_000));
+
+        assertFalse(store.add(old));
+        assertEquals(0, store.size());
+        assertEquals(1, store.getEvictedAlertCount());
+    }
+
+    @Test
+    public void futureAlertDoesNotEvictBucketInsideWindow() {
+        AlertStore store = new AlertStore(WINDOW_MILLIS, BUCKET_MILLIS, Long.MAX_VALUE);
+        MonitoringDashboard.Alert recent = new MonitoringDashboard.Alert("FLOOD", "rising", "HIGH", "north",
+                new HashMap<>(), LocalDateTime.now().minusNanos(BUCKET_MILLIS * 1_000_000));
+        // One ring length ahead lands in the slot of the recent alert's bucket
+        MonitoringDashboard.Alert future = new MonitoringDashboard.Alert("FLOOD", "skewed clock", "HIGH", "north",
+                new HashMap<>(), LocalDateTime.now().plusNanos(WINDOW_MILLIS * 1_000_000));
+
+        assertTrue(store.add(recent));
+        assertTrue(store.add(future));
+        assertTrue(store.isStored(recent));
+        assertTrue(store.isStored(future));
+        assertEquals(2, store.getActiveCount("north"));
+        assertEquals(0, store.getEvictedBucketCount());
+        assertEquals(1, store.getFutureAlertCount());
+    }
+
+    @Test
+    public void addingTwiceCountsOnce() {
+        AlertStore store = new AlertStore(WINDOW_MILLIS, BUCKET_MILLIS, Long.MAX_VALUE);
+        MonitoringDashboard.Alert alert = new MonitoringDashboard.Alert("FLOOD", "rising", "HIGH", "north",
+                new HashMap<>());
+
+        assertTrue(store.add(alert));
+        assertFalse(store.add(alert));
+        assertEquals(1, store.size());
+        assertEquals(1, store.getActiveCount("north"));
+        assertTrue(store.resolve(alert));
+        assertEquals(0, store.size());
+        assertEquals(0, store.getAlerts("north").size());
+    }
+
+    /**
+     * Add throughput against the single map under one lock the dashboard
+     * used before, at 1, 4 and 16 producer threads. Each run adds the same
+     * number of alerts in total. Run with -Dbenchmark=true.
+     */
+    @Test
+    public void addThroughputAgainstLockedMap() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        for (int producers : new int[] {1, 4, 16}) {
+            long storeBest = Long.MAX_VALUE;
+            long lockedBest = Long.MAX_VALUE;
+            for (int run = 0; run < 3; run++) {
+                AlertStore store = new AlertStore(WINDOW_MILLIS, BUCKET_MILLIS, Long.MAX_VALUE);
+                storeBest = Math.min(storeBest, timeProducers(producers, alert -> assertTrue(store.add(alert))));
+                assertEquals(BENCHMARK_ALERTS, store.size());
+
+                Map<String, List<MonitoringDashboard.Alert>> locked = new HashMap<>();
+                lockedBest = Math.min(lockedBest, timeProducers(producers, alert -> {
+                    synchronized (locked) {
+                        List<MonitoringDashboard.Alert> alerts = locked.get(alert.getRegion());
+                        if (alerts == null) {
+                            alerts = new ArrayList<>();
+                            locked.put(alert.getRegion(), alerts);
+                        }
+                        alerts.add(alert);
+                    }
+                }));
+            }
+            System.out.printf("%2d producers: AlertStore %6.1f alerts/us, locked map %6.1f alerts/us%n", producers,
+                    BENCHMARK_ALERTS / (storeBest / 1000.0), BENCHMARK_ALERTS / (lockedBest / 1000.0));
+        }
+    }
+
+    /**
+     * @return Nanoseconds the producers took to add their share of the alerts
+     */
+    private static long timeProducers(int producers, Consumer<MonitoringDashboard.Alert> add) throws Exception {
+        int perProducer = BENCHMARK_ALERTS / producers;
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch ready = new CountDownLatch(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        LocalDateTime now = LocalDateTime.now();
+        for (int p = 0; p < producers; p++) {
+            final long seed = p;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                MonitoringDashboard.Alert[] alerts = new MonitoringDashboard.Alert[perProducer];
+                for (int i = 0; i < perProducer; i++) {
+                    alerts[i] = newAlert(random, now);
+                }
+                ready.countDown();
+                await(start);
+                for (MonitoringDashboard.Alert alert : alerts) {
+                    add.accept(alert);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+            thread.start();
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        assertTrue(failures.toString(), failures.isEmpty());
+        return elapsed;
+    }
+
+    private static void assertCountersMatchRecount(AlertStore store, Iterable<MonitoringDashboard.Alert> added) {
+        Map<String, Integer> byPriority = new HashMap<>();
+        int total = 0;
+        for (String region : store.getRegions()) {
+            List<MonitoringDashboard.Alert> alerts = store.getAlerts(region);
+            assertEquals("active count of " + region, alerts.size(), store.getActiveCount(region));
+            for (MonitoringDashboard.Alert alert : alerts) {
+                assertTrue(store.isStored(alert));
+                Integer count = byPriority.get(alert.getPriority());
+                byPriority.put(alert.getPriority(), count == null ? 1 : count + 1);
+            }
+            total += alerts.size();
+        }
+        assertEquals(total, store.size());
+        for (String priority : PRIORITIES) {
+            Integer expected = byPriority.get(priority);
+            Integer actual = store.getActiveCountsByPriority().get(priority);
+            assertEquals("active " + priority, expected == null ? 0 : expected, actual == null ? 0 : actual);
+        }
+
+        // Resident bytes cover every alert, resolved or not, in a bucket that is still held
+        Set<AlertStore.Bucket> retained = Collections.newSetFromMap(new IdentityHashMap<>());
+        long bytes = 0;
+        for (MonitoringDashboard.Alert alert : added) {
+            AlertStore.Bucket bucket = alert.getStoreBucket();
+            if (!bucket.evicted) {
+                retained.add(bucket);
+                bytes += 320 + 64L * alert.getDetails().size();
+            }
+        }
+        assertEquals(bytes, store.getResidentBytes());
+        assertTrue(store.getResidentBytes() <= 300 * 384L);
+        assertFalse(retained.isEmpty());
+    }
+
+    private static MonitoringDashboard.Alert newAlert(Random random, LocalDateTime timestamp) {
+        Map<String, Object> details = new HashMap<>();
+        details.put("value", random.nextDouble());
+        return new MonitoringDashboard.Alert("SENSOR", "reading out of range",
+                PRIORITIES[random.nextInt(PRIORITIES.length)], "region-" + random.nextInt(REGIONS),
+                details, timestamp);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
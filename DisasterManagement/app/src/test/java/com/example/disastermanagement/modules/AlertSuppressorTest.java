@@ -0,0 +1,97 @@
+package com.example.disastermanagement.modules;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AlertSuppressorTest {
+    private static final long BUCKET_MILLIS = 60_000;
+    private static final long RETENTION_MILLIS = 60 * BUCKET_MILLIS;
+    private static final long WINDOW_MILLIS = 5 * 60_000;
+
+    @Test
+    public void repeatsWithinTheWindowAreCoalesced() {
+        AlertSuppressor suppressor = new AlertSuppressor(newStore(), WINDOW_MILLIS);
+        LocalDateTime now = LocalDateTime.now();
+
+        assertTrue(suppressor.admit(alert("north", now.minusMinutes(2))));
+        assertFalse(suppressor.admit(alert("north", now.minusMinutes(1))));
+        assertTrue(suppressor.admit(alert("south", now.minusMinutes(1))));
+        assertEquals(1, suppressor.getSuppressedCount());
+        assertEquals(2, suppressor.getOpenCount());
+    }
+
+    @Test
+    public void resolvedAlertIsForgotten() {
+        AlertSuppressor suppressor = new AlertSuppressor(newStore(), WINDOW_MILLIS);
+        LocalDateTime now = LocalDateTime.now();
+        MonitoringDashboard.Alert open = alert("north", now);
+        assertTrue(suppressor.admit(open));
+
+        assertTrue(suppressor.resolve(open));
+        assertEquals(0, suppressor.getOpenCount());
+        assertFalse(suppressor.resolve(open));
+
+        // The next occurrence raises a fresh alert
+        assertTrue(suppressor.admit(alert("north", now)));
+        assertEquals(1, suppressor.getOpenCount());
+    }
+
+    @Test
+    public void pruneDropsQuietAndEvictedAlerts() {
+        // Room for about one alert, so every new region's bucket evicts the last one
+        AlertStore store = new AlertStore(RETENTION_MILLIS, BUCKET_MILLIS, 400);
+        AlertSuppressor suppressor = new AlertSuppressor(store, WINDOW_MILLIS);
+        LocalDateTime now = LocalDateTime.now();
+
+        assertTrue(suppressor.admit(alert("quiet", now.minusMinutes(10))));
+        assertTrue(suppressor.admit(alert("evicted", now.minusMinutes(2))));
+        assertTrue(suppressor.admit(alert("recent", now.minusMinutes(1))));
+        assertEquals(3, suppressor.getOpenCount());
+
+        suppressor.prune(now);
+        // "quiet" went a full window without a repeat and "evicted" left the store
+        assertEquals(1, suppressor.getOpenCount());
+        assertFalse(suppressor.admit(alert("recent", now)));
+    }
+
+    @Test
+    public void pruneKeepsAlertsThatStillAbsorbRepeats() {
+        AlertSuppressor suppressor = new AlertSuppressor(newStore(), WINDOW_MILLIS);
+        LocalDateTime now = LocalDateTime.now();
+        assertTrue(suppressor.admit(alert("north", now.minusMinutes(8))));
+        // A repeat keeps the original open past its own window
+        assertFalse(suppressor.admit(alert("north", now.minusMinutes(4))));
+
+        suppressor.prune(now);
+        assertEquals(1, suppressor.getOpenCount());
+        assertFalse(suppressor.admit(alert("north", now)));
+    }
+
+    @Test
+    public void pruneRunsAtMostOncePerWindow() {
+        AlertSuppressor suppressor = new AlertSuppressor(newStore(), WINDOW_MILLIS);
+        LocalDateTime now = LocalDateTime.now();
+        suppressor.prune(now);
+
+        assertTrue(suppressor.admit(alert("north", now.minusMinutes(10))));
+        suppressor.prune(now.plusMinutes(1));
+        assertEquals(1, suppressor.getOpenCount());
+
+        suppressor.prune(now.plusMinutes(5));
+        assertEquals(0, suppressor.getOpenCount());
+    }
+
+    private static AlertStore newStore() {
+        return new AlertStore(RETENTION_MILLIS, BUCKET_MILLIS, 8 * 1024 * 1024L);
+    }
+
+    private static MonitoringDashboard.Alert alert(String region, LocalDateTime timestamp) {
+        return new MonitoringDashboard.Alert("WATER_LEVEL_EXCEEDED", "Water level has exceeded the threshold",
+                "HIGH", region, null, timestamp);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.disastermanagement.modules;
+
+import com.example.disastermanagement.utils.RoaringBitmap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CapabilityIndexTest {
+    private static final String[] CAPABILITIES = {
+            "SWIFT_WATER", "MEDICAL", "SEARCH", "HEAVY_LIFT", "AIRLIFT", "HAZMAT", "K9", "SHELTER",
+            "COMMS", "FIREFIGHTING", "BOATS", "TRIAGE", "LOGISTICS", "POWER", "WATER_PURIFICATION",
+            "STRUCTURAL", "ROPE_RESCUE", "DIVING", "MORTUARY", "CHILD_CARE"
+    };
+
+    @Test
+    public void lookupsMatchLinearFilter() {
+        Random random = new Random(23);
+        CapabilityIndex index = new CapabilityIndex();
+        List<Set<String>> teams = new ArrayList<>();
+        // Enough teams that common capabilities are stored as dense containers
+        for (int slot = 0; slot < 12_000; slot++) {
+            Set<String> capabilities = new HashSet<>();
+            for (int c = 0; c < CAPABILITIES.length; c++) {
+                // Earlier capabilities are more common
+                if (random.nextDouble() < 0.8 / (c + 1)) {
+                    capabilities.add(CAPABILITIES[c]);
+                }
+            }
+            teams.add(capabilities);
+            index.add(slot, random.nextInt(20) == 0 && capabilities.isEmpty() ? null : capabilities);
+        }
+
+        for (int q = 0; q < 500; q++) {
+            List<String> wanted = new ArrayList<>();
+            int size = random.nextInt(4);
+            for (int i = 0; i < size; i++) {
+                wanted.add(random.nextInt(25) == 0 ? "UNKNOWN" : CAPABILITIES[random.nextInt(CAPABILITIES.length)]);
+            }
+
+            List<Integer> all = new ArrayList<>();
+            List<Integer> any = new ArrayList<>();
+            for (int slot = 0; slot < teams.size(); slot++) {
+                if (teams.get(slot).containsAll(wanted)) {
+                    all.add(slot);
+                }
+                if (!Collections.disjoint(teams.get(slot), wanted)) {
+                    any.add(slot);
+                }
+            }
+            assertArrayEquals("all of " + wanted, toArray(all), index.withAll(wanted).toArray());
+            assertArrayEquals("any of " + wanted, toArray(any), index.withAny(wanted).toArray());
+
+            long[] required = index.encode(wanted);
+            int slot = random.nextInt(teams.size());
+            Set<String> missing = new HashSet<>(wanted);
+            missing.removeAll(teams.get(slot));
+            missing.remove("UNKNOWN");
+            assertEquals(missing.size(), CapabilityIndex.countMissing(required, index.getCapabilities(slot)));
+            assertEquals(teams.get(slot).size(), CapabilityIndex.count(index.getCapabilities(slot)));
+        }
+    }
+
+    @Test
+    public void withAllReturnsACopy() {
+        CapabilityIndex index = new CapabilityIndex();
+        index.add(0, Arrays.asList("MEDICAL", "SEARCH"));
+        index.add(1, Collections.singletonList("MEDICAL"));
+
+        RoaringBitmap medical = index.withAll(Collections.singletonList("MEDICAL"));
+        medical.remove(0);
+        assertArrayEquals(new int[] {0, 1}, index.withAll(Collections.singletonList("MEDICAL")).toArray());
+        assertArrayEquals(new int[] {0, 1}, index.withAll(Collections.<String>emptyList()).toArray());
+        assertEquals(2, index.size());
+        assertEquals("SEARCH", index.nameOf(index.idOf("SEARCH")));
+        assertEquals(-1, index.idOf("AIRLIFT"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void slotsMustBeAddedInOrder() {
+        CapabilityIndex index = new CapabilityIndex();
+        index.add(0, null);
+        index.add(2, null);
+    }
+
+    private static int[] toArray(List<Integer> slots) {
+        int[] values = new int[slots.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = slots.get(i);
+        }
+        return values;
+    }
+}
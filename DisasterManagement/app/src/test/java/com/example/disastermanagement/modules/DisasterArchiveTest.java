@@ -0,0 +1,239 @@
+package com.example.disastermanagement.modules;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DisasterArchiveTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("archive").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void reopensWithEveryRecord() throws IOException {
+        appendEvents(70);
+
+        try (DisasterArchive archive = new DisasterArchive(directory)) {
+            assertEquals(70, archive.size());
+            List<MonitoringDashboard.DisasterEvent> events = archive.query(START, START.plusHours(100));
+            assertEquals(70, events.size());
+            assertEquals("event-69", events.get(69).getId());
+            assertEquals("value-69", events.get(69).getDetails().get("key"));
+        }
+    }
+
+    @Test
+    public void recoveryStopsAtCorruptRecord() throws IOException {
+        long[] ends = appendEvents(70);
+
+        // Flip a payload byte of the third record after the indexed block
+        try (RandomAccessFile data = new RandomAccessFile(new File(directory, "disasters.dat"), "rw")) {
+            long position = ends[65] + 20;
+            data.seek(position);
+            int value = data.read();
+            data.seek(position);
+            data.write(value ^ 0xFF);
+        }
+
+        try (DisasterArchive archive = new DisasterArchive(directory)) {
+            assertEquals(66, archive.size());
+            assertEquals(66, archive.query(START, START.plusHours(100)).size());
+        }
+        assertEquals(ends[65], new File(directory, "disasters.dat").length());
+    }
+
+    @Test
+    public void recoveryStopsAtImpossibleLengths() throws IOException {
+        for (int length : new int[]{0, -4, -100, 7, Integer.MAX_VALUE}) {
+            tearDown();
+            setUp();
+            long[] ends = appendEvents(3);
+            try (RandomAccessFile data = new RandomAccessFile(new File(directory, "disasters.dat"), "rw")) {
+                data.seek(data.length());
+                data.writeInt(length);
+                data.writeInt(0);
+                data.write(new byte[16]);
+            }
+
+            try (DisasterArchive archive = new DisasterArchive(directory)) {
+                assertEquals("length " + length, 3, archive.size());
+            }
+            assertEquals(ends[2], new File(directory, "disasters.dat").length());
+        }
+    }
+
+    @Test
+    public void queryChecksRecordsDamagedAfterRecovery() throws IOException {
+        long[] ends = appendEvents(70);
+
+        try (DisasterArchive archive = new DisasterArchive(directory)) {
+            // Flip a payload byte of the eleventh record of the indexed block
+            try (RandomAccessFile data = new RandomAccessFile(new File(directory, "disasters.dat"), "rw")) {
+                long position = ends[9] + 20;
+                data.seek(position);
+                int value = data.read();
+                data.seek(position);
+                data.write(value ^ 0xFF);
+            }
+
+            List<MonitoringDashboard.DisasterEvent> events = archive.query(START, START.plusHours(100));
+            // The rest of the damaged block is skipped; the open block still reads
+            assertEquals(16, events.size());
+            assertEquals("event-9", events.get(9).getId());
+            assertEquals("event-64", events.get(10).getId());
+        }
+    }
+
+    @Test
+    public void keepsNullsAndLongStrings() throws IOException {
+        StringBuilder longText = new StringBuilder();
+        while (longText.length() < 100_000) {
+            longText.append("Überflutung ");
+        }
+        Map<String, Object> details = new HashMap<>();
+        details.put("report", longText.toString());
+        details.put("missing", null);
+        MonitoringDashboard.DisasterEvent event = new MonitoringDashboard.DisasterEvent(
+                "event-0", "FLOOD", null, 3, START, details);
+        event.setResolved(true);
+        event.setResolutionTime(START.plusHours(1));
+        event.setResolutionDetails(null);
+
+        try (DisasterArchive archive = new DisasterArchive(directory)) {
+            archive.append(event);
+        }
+        try (DisasterArchive archive = new DisasterArchive(directory)) {
+            MonitoringDashboard.DisasterEvent read = archive.query(START, START.plusHours(2)).get(0);
+            assertNull(read.getRegion());
+            assertEquals(longText.toString(), read.getDetails().get("report"));
+            assertTrue(read.getDetails().containsKey("missing"));
+            assertNull(read.getDetails().get("missing"));
+            assertTrue(read.getResolutionDetails().isEmpty());
+        }
+    }
+
+    @Test
+    public void rejectsRecordsRecoveryWouldDrop() throws IOException {
+        Map<String, Object> details = new HashMap<>();
+        details.put("report", new String(new char[2 * 1024 * 1024]).replace('\0', 'x'));
+        MonitoringDashboard.DisasterEvent huge = new MonitoringDashboard.DisasterEvent(
+                "huge", "FLOOD", "north", 3, START, details);
+        huge.setResolved(true);
+        huge.setResolutionTime(START.plusHours(1));
+
+        try (DisasterArchive archive = new DisasterArchive(directory)) {
+            archive.append(event(0));
+            try {
+                archive.append(huge);
+                fail("Expected the oversized record to be rejected");
+            } catch (IOException expected) {
+                // Rejected before anything was written
+            }
+            archive.append(event(1));
+        }
+        try (DisasterArchive archive = new DisasterArchive(directory)) {
+            assertEquals(2, archive.size());
+        }
+    }
+
+    @Test
+    public void appendsContinueAfterRecovery() throws IOException {
+        appendEvents(5);
+        try (RandomAccessFile data = new RandomAccessFile(new File(directory, "disasters.dat"), "rw")) {
+            // A torn record: header and part of the payload
+            data.seek(data.length());
+            data.writeInt(100);
+            data.writeInt(12345);
+            data.write(new byte[30]);
+        }
+
+        try (DisasterArchive archive = new DisasterArchive(directory)) {
+            archive.append(event(5));
+        }
+        try (DisasterArchive archive = new DisasterArchive(directory)) {
+            assertEquals(6, archive.size());
+            assertEquals("event-5", archive.query(START, START.plusHours(100)).get(5).getId());
+        }
+    }
+
+    @Test
+    public void appendAfterTornAppendIsKept() throws IOException {
+        try (DisasterArchive archive = new DisasterArchive(directory)) {
+            for (int i = 0; i < 3; i++) {
+                archive.append(event(i));
+            }
+            // What a write that failed half way leaves behind
+            try (RandomAccessFile data = new RandomAccessFile(new File(directory, "disasters.dat"), "rw")) {
+                data.seek(data.length());
+                data.writeInt(100);
+                data.writeInt(12345);
+                data.write(new byte[30]);
+            }
+            for (int i = 3; i < 70; i++) {
+                archive.append(event(i));
+            }
+            assertEquals(70, archive.query(START, START.plusHours(100)).size());
+        }
+        try (DisasterArchive archive = new DisasterArchive(directory)) {
+            assertEquals(70, archive.size());
+            List<MonitoringDashboard.DisasterEvent> events = archive.query(START, START.plusHours(100));
+            assertEquals(70, events.size());
+            assertEquals("event-3", events.get(3).getId());
+        }
+    }
+
+    /**
+     * @return File length after each appended event
+     */
+    private long[] appendEvents(int count) throws IOException {
+        long[] ends = new long[count];
+        try (DisasterArchive archive = new DisasterArchive(directory)) {
+            for (int i = 0; i < count; i++) {
+                archive.append(event(i));
+                ends[i] = new File(directory, "disasters.dat").length();
+            }
+        }
+        return ends;
+    }
+
+    private static MonitoringDashboard.DisasterEvent event(int i) {
+        Map<String, Object> details = new HashMap<>();
+        details.put("key", "value-" + i);
+        MonitoringDashboard.DisasterEvent event = new MonitoringDashboard.DisasterEvent(
+                "event-" + i, "FLOOD", "north", 3, START.plusHours(i), details);
+        event.setResolved(true);
+        event.setResolutionTime(START.plusHours(i + 1));
+        event.setResolutionDetails(new HashMap<>());
+        return event;
+    }
+}
@@ -0,0 +1,405 @@
+package com.example.disastermanagement.modules;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EmergencyResponseTest {
+    private static final int RESOURCES = 6;
+    private static final int QUANTITY = 40;
+    private static final int THREADS = 8;
+    private static final int REQUESTS_PER_THREAD = 20_000;
+
+    @Test
+    public void concurrentReservationsNeverOverAllocate() throws Exception {
+        Map<String, EmergencyResponse.Resource> resources = new ConcurrentHashMap<>();
+        for (int r = 0; r < RESOURCES; r++) {
+            resources.put("r" + r, new EmergencyResponse.Resource("r" + r, "Resource " + r, "water", QUANTITY, "units"));
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<List<EmergencyResponse.Reservation>> held = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            final long seed = t;
+            List<EmergencyResponse.Reservation> mine = new ArrayList<>();
+            held.add(mine);
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                await(start);
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    boolean valid = random.nextInt(10) != 0;
+                    EmergencyResponse.Reservation reservation =
+                            EmergencyResponse.reserve(resources, newRequest(random, valid));
+                    if (reservation != null) {
+                        assertTrue("invalid request was reserved", valid);
+                        mine.add(reservation);
+                    }
+                    // Give some back so the resources keep changing hands
+                    if (!mine.isEmpty() && random.nextInt(3) == 0) {
+                        mine.remove(random.nextInt(mine.size())).cancel();
+                    }
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            await(start);
+            while (running.get()) {
+                for (EmergencyResponse.Resource resource : resources.values()) {
+                    int allocated = resource.getAllocatedQuantity();
+                    assertTrue(resource.getId() + " allocated " + allocated,
+                            allocated >= 0 && allocated <= resource.getTotalQuantity());
+                }
+            }
+        }));
+
+        for (Thread thread : threads) {
+            thread.setUncaughtExceptionHandler((th, e) -> failures.add(e));
+            thread.start();
+        }
+        start.countDown();
+        for (int t = 0; t < THREADS; t++) {
+            threads.get(t).join();
+        }
+        running.set(false);
+        threads.get(THREADS).join();
+        assertTrue(failures.toString(), failures.isEmpty());
+
+        Map<String, Integer> expected = new HashMap<>();
+        for (List<EmergencyResponse.Reservation> mine : held) {
+            for (EmergencyResponse.Reservation reservation : mine) {
+                for (int i = 0; i < reservation.resources.length; i++) {
+                    expected.merge(reservation.resources[i].getId(), reservation.quantities[i], Integer::sum);
+                }
+            }
+        }
+        for (EmergencyResponse.Resource resource : resources.values()) {
+            int allocated = expected.containsKey(resource.getId()) ? expected.get(resource.getId()) : 0;
+            assertEquals(resource.getId(), allocated, resource.getAllocatedQuantity());
+        }
+    }
+
+    @Test
+    public void invalidEntryReservesNothing() {
+        Map<String, EmergencyResponse.Resource> resources = new HashMap<>();
+        resources.put("a", new EmergencyResponse.Resource("a", "Blankets", "shelter", 10, "units"));
+        resources.put("c", new EmergencyResponse.Resource("c", "Tents", "shelter", 10, "units"));
+
+        Map<String, Integer> nullQuantity = new HashMap<>();
+        nullQuantity.put("a", 3);
+        nullQuantity.put("c", null);
+        assertNull(EmergencyResponse.reserve(resources, nullQuantity));
+
+        Map<String, Integer> unknown = new HashMap<>();
+        unknown.put("a", 3);
+        unknown.put("b", 1);
+        assertNull(EmergencyResponse.reserve(resources, unknown));
+
+        Map<String, Integer> negative = new HashMap<>();
+        negative.put("a", 3);
+        negative.put("c", -1);
+        assertNull(EmergencyResponse.reserve(resources, negative));
+
+        Map<String, Integer> tooMuch = new HashMap<>();
+        tooMuch.put("a", 3);
+        tooMuch.put("c", 11);
+        assertNull(EmergencyResponse.reserve(resources, tooMuch));
+
+        assertEquals(0, resources.get("a").getAllocatedQuantity());
+        assertEquals(0, resources.get("c").getAllocatedQuantity());
+
+        Map<String, Integer> fits = new HashMap<>();
+        fits.put("a", 3);
+        fits.put("c", 10);
+        assertNotNull(EmergencyResponse.reserve(resources, fits));
+        assertEquals(3, resources.get("a").getAllocatedQuantity());
+        assertEquals(10, resources.get("c").getAllocatedQuantity());
+    }
+
+    @Test
+    public void onlyCommittedReservationsCountAsUsage() {
+        EmergencyResponse.ResourceTypeTotals totals = new EmergencyResponse.ResourceTypeTotals("shelter");
+        Map<String, EmergencyResponse.Resource> resources = new HashMap<>();
+        for (String id : new String[] {"a", "c"}) {
+            EmergencyResponse.Resource resource = new EmergencyResponse.Resource(id, id, "shelter", 10, "units");
+            resource.setTypeTotals(totals);
+            resources.put(id, resource);
+        }
+
+        // "a" is reserved before "c" turns out to be short, then rolled back
+        Map<String, Integer> tooMuch = new HashMap<>();
+        tooMuch.put("a", 3);
+        tooMuch.put("c", 11);
+        assertNull(EmergencyResponse.reserve(resources, tooMuch));
+        assertEquals(0, totals.usage.size(System.currentTimeMillis()));
+        assertEquals(20, totals.available.get());
+
+        Map<String, Integer> fits = new HashMap<>();
+        fits.put("a", 3);
+        fits.put("c", 4);
+        EmergencyResponse.Reservation cancelled = EmergencyResponse.reserve(resources, fits);
+        assertNotNull(cancelled);
+        cancelled.cancel();
+        assertEquals(0, totals.usage.size(System.currentTimeMillis()));
+        assertEquals(20, totals.available.get());
+
+        EmergencyResponse.Reservation committed = EmergencyResponse.reserve(resources, fits);
+        assertNotNull(committed);
+        committed.commit();
+        assertEquals(2, totals.usage.size(System.currentTimeMillis()));
+        assertEquals(13, totals.available.get());
+    }
+
+    @Test
+    public void addResourceRejectsNonPositiveQuantities() {
+        EmergencyResponse response = EmergencyResponse.detached();
+        for (int quantity : new int[] {0, -5}) {
+            try {
+                response.addResource("w", "Water", "water", quantity, "litres");
+                fail("Expected quantity " + quantity + " to be rejected");
+            } catch (IllegalArgumentException expected) {
+                // Nothing is added
+            }
+        }
+        assertNull(response.getResource("w"));
+
+        assertTrue(response.addResource("w", "Water", "water", 10, "litres"));
+        assertTrue(response.addResource("w", "Water", "water", 5, "litres"));
+        assertEquals(15, response.getResource("w").getTotalQuantity());
+    }
+
+    @Test
+    public void typeTotalsMatchResourcesUnderConcurrentChanges() throws Exception {
+        String[] types = {"water", "food", "shelter"};
+        // Ids past the first RESOURCES are created by the workers while others use the rest
+        int resourceIds = RESOURCES * 2;
+        EmergencyResponse response = EmergencyResponse.detached();
+        for (int r = 0; r < RESOURCES; r++) {
+            response.addResource("r" + r, "Resource " + r, types[r % types.length], QUANTITY, "units");
+        }
+        Map<String, Double> location = new HashMap<>();
+        location.put("latitude", 0.0);
+        location.put("longitude", 0.0);
+        String[] operations = new String[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            response.registerTeam("team" + t, "Team " + t, "rescue", 4, Collections.singletonList("rescue"));
+            operations[t] = response.deployTeam("team" + t, "disaster", location, null);
+            assertNotNull(operations[t]);
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<List<Map<String, Integer>>> held = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int worker = t;
+            List<Map<String, Integer>> mine = new ArrayList<>();
+            held.add(mine);
+            Thread thread = new Thread(() -> {
+                Random random = new Random(worker);
+                await(start);
+                for (int i = 0; i < 5_000; i++) {
+                    int action = random.nextInt(10);
+                    if (action < 5) {
+                        Map<String, Integer> request = new HashMap<>();
+                        for (int e = 1 + random.nextInt(2); e > 0; e--) {
+                            request.put("r" + random.nextInt(RESOURCES), 1 + random.nextInt(5));
+                        }
+                        if (response.allocateResources(operations[worker], request)) {
+                            mine.add(request);
+                        }
+                    } else if (action < 8) {
+                        if (!mine.isEmpty()) {
+                            Map<String, Integer> allocation = mine.remove(random.nextInt(mine.size()));
+                            for (Map.Entry<String, Integer> entry : allocation.entrySet()) {
+                                response.getResource(entry.getKey()).deallocate(entry.getValue());
+                            }
+                        }
+                    } else {
+                        int r = random.nextInt(resourceIds);
+                        response.addResource("r" + r, "Resource " + r, types[r % types.length],
+                                1 + random.nextInt(3), "units");
+                    }
+                }
+            });
+            thread.setUncaughtExceptionHandler((th, e) -> failures.add(e));
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(failures.toString(), failures.isEmpty());
+
+        Map<String, Integer> allocated = new HashMap<>();
+        for (List<Map<String, Integer>> mine : held) {
+            for (Map<String, Integer> allocation : mine) {
+                for (Map.Entry<String, Integer> entry : allocation.entrySet()) {
+                    allocated.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                }
+            }
+        }
+        Map<String, Integer> availableByType = new HashMap<>();
+        for (int r = 0; r < resourceIds; r++) {
+            EmergencyResponse.Resource resource = response.getResource("r" + r);
+            if (resource == null) {
+                continue;
+            }
+            int expected = allocated.containsKey(resource.getId()) ? allocated.get(resource.getId()) : 0;
+            assertEquals(resource.getId(), expected, resource.getAllocatedQuantity());
+            availableByType.merge(resource.getType(), resource.getAvailableQuantity(), Integer::sum);
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Integer> reported = (Map<String, Integer>) response.getStatusReport().get("resourcesByType");
+        assertEquals(availableByType, reported);
+    }
+
+    @Test
+    public void statusReportDoesNotAlertListeners() {
+        EmergencyResponse response = EmergencyResponse.detached();
+        List<EmergencyResponse.DepletionForecast> forecasts = new ArrayList<>();
+        response.addDepletionListener(forecasts::add, Runnable::run);
+        response.addResource("w", "Water", "water", 100, "litres");
+        Map<String, Double> location = new HashMap<>();
+        location.put("latitude", 0.0);
+        location.put("longitude", 0.0);
+        response.registerTeam("team", "Team", "rescue", 4, Collections.singletonList("rescue"));
+        String operation = response.deployTeam("team", "disaster", location, null);
+
+        Map<String, Integer> request = Collections.singletonMap("w", 10);
+        // With a tiny horizon nothing is at risk yet
+        response.setDepletionHorizon(1, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(response.allocateResources(operation, request));
+        }
+        assertTrue(forecasts.isEmpty());
+
+        // Now the same burn rate is a risk; reading the report shows it but alerts no one
+        response.setDepletionHorizon(24, TimeUnit.HOURS);
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> report = response.getStatusReport();
+            assertEquals(Collections.singletonList("water"), report.get("depletionRiskTypes"));
+        }
+        assertTrue(forecasts.isEmpty());
+
+        // The next change is what alerts the listeners
+        assertTrue(response.allocateResources(operation, request));
+        assertEquals(1, forecasts.size());
+        assertTrue(forecasts.get(0).isAtRisk());
+    }
+
+    /**
+     * Allocation throughput through allocateResources at 1 to 64 threads,
+     * each allocating from the shared inventory and giving half of it back.
+     * Run with -Dbenchmark=true.
+     */
+    @Test
+    public void allocationThroughputAcrossThreadCounts() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        final long durationMillis = 1000;
+        for (int threadCount : new int[] {1, 4, 16, 64}) {
+            EmergencyResponse response = EmergencyResponse.detached();
+            for (int r = 0; r < RESOURCES; r++) {
+                response.addResource("r" + r, "Resource " + r, "water", 1_000_000, "units");
+            }
+            Map<String, Double> location = new HashMap<>();
+            location.put("latitude", 0.0);
+            location.put("longitude", 0.0);
+
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicLong operations = new AtomicLong();
+            List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                response.registerTeam("team" + t, "Team " + t, "rescue", 4, Collections.singletonList("rescue"));
+                String operation = response.deployTeam("team" + t, "disaster", location, null);
+                final long seed = t;
+                Thread thread = new Thread(() -> {
+                    Random random = new Random(seed);
+                    long done = 0;
+                    await(start);
+                    while (running.get()) {
+                        Map<String, Integer> request = newRequest(random, true);
+                        request.values().removeIf(quantity -> quantity == 0);
+                        if (response.allocateResources(operation, request) && random.nextBoolean()) {
+                            for (Map.Entry<String, Integer> entry : request.entrySet()) {
+                                response.getResource(entry.getKey()).deallocate(entry.getValue());
+                            }
+                        }
+                        done++;
+                    }
+                    operations.addAndGet(done);
+                });
+                thread.setUncaughtExceptionHandler((th, e) -> failures.add(e));
+                threads.add(thread);
+                thread.start();
+            }
+
+            long started = System.nanoTime();
+            start.countDown();
+            Thread.sleep(durationMillis);
+            running.set(false);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            assertTrue(failures.toString(), failures.isEmpty());
+            for (int r = 0; r < RESOURCES; r++) {
+                EmergencyResponse.Resource resource = response.getResource("r" + r);
+                assertTrue(resource.getAllocatedQuantity() <= resource.getTotalQuantity());
+            }
+            System.out.printf("allocateResources, %d threads: %.0f ops/sec%n", threadCount, operations.get() / seconds);
+        }
+    }
+
+    private static Map<String, Integer> newRequest(Random random, boolean valid) {
+        Map<String, Integer> request = new HashMap<>();
+        int entries = 1 + random.nextInt(3);
+        for (int e = 0; e < entries; e++) {
+            request.put("r" + random.nextInt(RESOURCES), random.nextInt(8));
+        }
+        if (!valid) {
+            switch (random.nextInt(3)) {
+                case 0:
+                    request.put("missing", 1);
+                    break;
+                case 1:
+                    request.put("r" + random.nextInt(RESOURCES), null);
+                    break;
+                default:
+                    request.put("r" + random.nextInt(RESOURCES), -1);
+                    break;
+            }
+        }
+        return request;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.disastermanagement.modules;
+
+import com.example.disastermanagement.utils.GeoKdTree;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EvacuationAssignerTest {
+    private static final int CENTERS = 500;
+    private static final int EVACUEES = 50_000;
+    private static final long BUDGET_MILLIS = 1000;
+
+    @Test
+    public void matchesGreedyOverAllPairs() {
+        Random random = new Random(7);
+        EvacuationCenterStore store = new EvacuationCenterStore();
+        int centers = 40;
+        int count = 3000;
+        for (int c = 0; c < centers; c++) {
+            store.add("c" + c, 19 + random.nextDouble(), 72 + random.nextDouble(), 1 + random.nextInt(60));
+        }
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        fillClusters(random, latitudes, longitudes, 3);
+
+        int[] expected = greedyOverAllPairs(store, latitudes, longitudes);
+        EvacuationAssigner.Result result = new EvacuationAssigner(store).assign(latitudes, longitudes, count);
+
+        int placed = 0;
+        for (int i = 0; i < count; i++) {
+            assertEquals("evacuee " + i, expected[i], result.getCenterIndex(i));
+            if (expected[i] >= 0) {
+                placed++;
+            }
+        }
+        assertEquals(placed, result.getAssignedCount());
+        for (int c = 0; c < centers; c++) {
+            assertTrue(store.getOccupancy(c) <= store.getCapacity(c));
+        }
+    }
+
+    /**
+     * Everyone in one dense cluster, with centers spread around it, makes
+     * every center query the same cluster from far away over and over.
+     * Run with -Dbenchmark=true.
+     */
+    @Test
+    public void assignsOneClusterWithinBudget() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        for (double capacityFactor : new double[] {0.5, 1.0, 1.5}) {
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run < 3; run++) {
+                Random random = new Random(42);
+                EvacuationCenterStore store = new EvacuationCenterStore();
+                int capacity = (int) Math.ceil(EVACUEES * capacityFactor / CENTERS);
+                for (int c = 0; c < CENTERS; c++) {
+                    store.add("c" + c, 19 + random.nextDouble(), 72 + random.nextDouble(), capacity);
+                }
+                double[] latitudes = new double[EVACUEES];
+                double[] longitudes = new double[EVACUEES];
+                fillClusters(random, latitudes, longitudes, 1);
+
+                long start = System.nanoTime();
+                new EvacuationAssigner(store).assign(latitudes, longitudes, EVACUEES);
+                best = Math.min(best, (System.nanoTime() - start) / 1_000_000);
+            }
+            System.out.println("One cluster, capacity x" + capacityFactor + ": " + best + " ms");
+            assertTrue("took " + best + " ms", best < BUDGET_MILLIS);
+        }
+    }
+
+    private static void fillClusters(Random random, double[] latitudes, double[] longitudes, int clusters) {
+        double[] clusterLatitudes = new double[clusters];
+        double[] clusterLongitudes = new double[clusters];
+        for (int k = 0; k < clusters; k++) {
+            clusterLatitudes[k] = 19 + random.nextDouble();
+            clusterLongitudes[k] = 72 + random.nextDouble();
+        }
+        for (int i = 0; i < latitudes.length; i++) {
+            int k = random.nextInt(clusters);
+            latitudes[i] = clusterLatitudes[k] + random.nextGaussian() * 0.01;
+            longitudes[i] = clusterLongitudes[k] + random.nextGaussian() * 0.01;
+        }
+    }
+
+    /**
+     * Takes every (center, evacuee) pair in order of distance while the center has room
+     */
+    private static int[] greedyOverAllPairs(EvacuationCenterStore store, double[] latitudes, double[] longitudes) {
+        List<double[]> pairs = new ArrayList<>();
+        for (int c = 0; c < store.size(); c++) {
+            for (int i = 0; i < latitudes.length; i++) {
+                double distance = GeoKdTree.haversine(store.getLatitude(c), store.getLongitude(c),
+                        latitudes[i], longitudes[i]);
+                pairs.add(new double[] {distance, c, i});
+            }
+        }
+        Collections.sort(pairs, (a, b) -> {
+            for (int f = 0; f < 3; f++) {
+                int byField = Double.compare(a[f], b[f]);
+                if (byField != 0) {
+                    return byField;
+                }
+            }
+            return 0;
+        });
+
+        int[] free = new int[store.size()];
+        for (int c = 0; c < free.length; c++) {
+            free[c] = store.getCapacity(c) - store.getOccupancy(c);
+        }
+        int[] assigned = new int[latitudes.length];
+        Arrays.fill(assigned, -1);
+        for (double[] pair : pairs) {
+            int c = (int) pair[1];
+            int i = (int) pair[2];
+            if (assigned[i] < 0 && free[c] > 0) {
+                assigned[i] = c;
+                free[c]--;
+            }
+        }
+        return assigned;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.disastermanagement.modules;
+
+import com.example.disastermanagement.utils.GeoKdTree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EvacuationCenterStoreTest {
+    private static final int CENTERS = 200;
+    private static final int THREADS = 4;
+    private static final int CHANGES_PER_THREAD = 50_000;
+    private static final int MIN_FREE_BEDS = 20;
+
+    @Test
+    public void totalsMatchRecomputeAfterConcurrentChurn() throws Exception {
+        Random setup = new Random(1);
+        EvacuationCenterStore store = new EvacuationCenterStore();
+        OccupancyMonitor monitor = new OccupancyMonitor(store);
+        store.setChangeListener(monitor);
+        for (int c = 0; c < CENTERS; c++) {
+            store.add("c" + c, 19 + setup.nextDouble(), 72 + setup.nextDouble(), setup.nextInt(100));
+        }
+        double queryLatitude = 19.5;
+        double queryLongitude = 72.5;
+        OccupancyMonitor.StandingQuery query = monitor.watchNearestFree(queryLatitude, queryLongitude,
+                MIN_FREE_BEDS, (centerId, distanceKm) -> { }, Runnable::run);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final long seed = 100 + t;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                await(start);
+                for (int i = 0; i < CHANGES_PER_THREAD; i++) {
+                    int index = random.nextInt(CENTERS);
+                    // Some changes are rejected: occupancy over capacity, capacity under occupancy
+                    if (random.nextBoolean()) {
+                        store.setOccupancy(index, random.nextInt(120) - 5);
+                    } else {
+                        store.setCapacity(index, random.nextInt(120));
+                    }
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            await(start);
+            while (running.get()) {
+                synchronized (store) {
+                    assertTotals(store);
+                }
+            }
+        }));
+
+        for (Thread thread : threads) {
+            thread.setUncaughtExceptionHandler((th, e) -> failures.add(e));
+            thread.start();
+        }
+        start.countDown();
+        for (int t = 0; t < THREADS; t++) {
+            threads.get(t).join();
+        }
+        running.set(false);
+        threads.get(THREADS).join();
+        assertTrue(failures.toString(), failures.isEmpty());
+
+        synchronized (store) {
+            assertTotals(store);
+            for (int c = 0; c < CENTERS; c++) {
+                assertTrue(store.getOccupancy(c) >= 0);
+                assertTrue(store.getOccupancy(c) <= store.getCapacity(c));
+            }
+            assertEquals(nearestWithFreeBeds(store, queryLatitude, queryLongitude, MIN_FREE_BEDS),
+                    query.getCenterId());
+        }
+    }
+
+    @Test
+    public void capacityBelowOccupancyIsRejected() {
+        EvacuationCenterStore store = new EvacuationCenterStore();
+        int index = store.add("school", 19.0, 72.8, 50);
+        assertTrue(store.setOccupancy(index, 30));
+
+        assertFalse(store.setCapacity(index, 29));
+        assertEquals(50, store.getCapacity(index));
+        assertEquals(50, store.getTotalCapacity());
+
+        assertTrue(store.setCapacity(index, 30));
+        assertEquals(30, store.getTotalCapacity());
+        assertFalse(store.setOccupancy(index, 31));
+    }
+
+    @Test
+    public void capacityChangeMovesStandingQuery() {
+        EvacuationCenterStore store = new EvacuationCenterStore();
+        OccupancyMonitor monitor = new OccupancyMonitor(store);
+        store.setChangeListener(monitor);
+        int near = store.add("near", 19.00, 72.80, 10);
+        store.add("far", 19.10, 72.80, 50);
+
+        OccupancyMonitor.StandingQuery query = monitor.watchNearestFree(19.0, 72.8, 20,
+                (centerId, distanceKm) -> { }, Runnable::run);
+        assertEquals("far", query.getCenterId());
+
+        assertTrue(store.setCapacity(near, 40));
+        assertEquals("near", query.getCenterId());
+
+        assertTrue(store.setCapacity(near, 15));
+        assertEquals("far", query.getCenterId());
+    }
+
+    private static void assertTotals(EvacuationCenterStore store) {
+        long capacity = 0;
+        long occupancy = 0;
+        for (int c = 0; c < store.size(); c++) {
+            capacity += store.getCapacity(c);
+            occupancy += store.getOccupancy(c);
+        }
+        assertEquals(capacity, store.getTotalCapacity());
+        assertEquals(occupancy, store.getTotalOccupancy());
+    }
+
+    private static String nearestWithFreeBeds(EvacuationCenterStore store, double latitude, double longitude,
+                                              int minFreeBeds) {
+        String best = null;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int c = 0; c < store.size(); c++) {
+            if (store.getCapacity(c) - store.getOccupancy(c) < minFreeBeds) {
+                continue;
+            }
+            double distance = GeoKdTree.haversine(latitude, longitude, store.getLatitude(c), store.getLongitude(c));
+            if (distance < bestDistance) {
+                best = store.getId(c);
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.disastermanagement.modules;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OperationLogTest {
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("oplog").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        deleteTree(directory);
+    }
+
+    @Test
+    public void replaysEventsAfterRestart() throws Exception {
+        OperationLog log = open(directory, 1000, new Recorder());
+        for (int i = 1; i <= 50; i++) {
+            assertEquals(i, log.append("count", event(i)));
+        }
+        log.close();
+
+        Recorder replayed = new Recorder();
+        log = open(directory, 1000, replayed);
+        assertNull(replayed.snapshot);
+        assertEquals(50, replayed.events.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i + 1, replayed.events.get(i).intValue());
+        }
+        assertEquals(50, log.getReplayedEvents());
+        assertEquals(50, log.getLastSequence());
+
+        // Numbering carries on from the replayed history
+        assertEquals(51, log.append("count", event(51)));
+        log.close();
+        assertEquals(51, open(directory, 1000, new Recorder()).getLastSequence());
+    }
+
+    @Test
+    public void snapshotReplacesOlderSegments() throws Exception {
+        OperationLog log = open(directory, 10, new Recorder());
+        for (int i = 1; i <= 20; i++) {
+            log.append("count", event(i));
+        }
+        assertTrue(log.isSnapshotDue());
+        log.writeSnapshot(new JSONObject().put("upTo", 20));
+        assertFalse(log.isSnapshotDue());
+        for (int i = 21; i <= 25; i++) {
+            log.append("count", event(i));
+        }
+        log.close();
+
+        List<String> segments = segmentNames(directory);
+        assertEquals(Collections.singletonList("operations-21.log"), segments);
+        assertTrue(new File(directory, "snapshot.json").exists());
+
+        Recorder replayed = new Recorder();
+        log = open(directory, 10, replayed);
+        assertEquals(20, replayed.snapshot.getInt("upTo"));
+        assertEquals(5, replayed.events.size());
+        assertEquals(21, replayed.events.get(0).intValue());
+        assertEquals(5, log.getReplayedEvents());
+        assertEquals(25, log.getLastSequence());
+        log.close();
+    }
+
+    @Test
+    public void tornTailIsCutOffAndAppendsContinue() throws Exception {
+        OperationLog log = open(directory, 1000, new Recorder());
+        for (int i = 1; i <= 10; i++) {
+            log.append("count", event(i));
+        }
+        log.close();
+
+        File segment = new File(directory, segmentNames(directory).get(0));
+        long goodLength = segment.length();
+        // Half a header and a few payload bytes, as a crash mid-write leaves them
+        try (FileOutputStream out = new FileOutputStream(segment, true)) {
+            out.write(new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 0, 0, 0});
+        }
+
+        Recorder replayed = new Recorder();
+        log = open(directory, 1000, replayed);
+        assertEquals(10, replayed.events.size());
+        assertEquals(goodLength, segment.length());
+
+        log.append("count", event(11));
+        log.close();
+
+        replayed = new Recorder();
+        open(directory, 1000, replayed).close();
+        assertEquals(11, replayed.events.size());
+        assertEquals(11, replayed.events.get(10).intValue());
+    }
+
+    @Test
+    public void strayFilesAreNotTakenForSegments() throws Exception {
+        OperationLog log = open(directory, 1000, new Recorder());
+        log.append("count", event(1));
+        log.close();
+        assertTrue(new File(directory, "operations-old.log").createNewFile());
+
+        Recorder replayed = new Recorder();
+        log = open(directory, 1000, replayed);
+        assertEquals(1, replayed.events.size());
+        log.append("count", event(2));
+        log.close();
+        assertEquals(2, segmentNames(directory).size());
+        assertTrue(new File(directory, "operations-1.log").length() > 0);
+    }
+
+    @Test
+    public void groupCommitMakesConcurrentAppendsDurable() throws Exception {
+        final int threads = 8;
+        final int perThread = 500;
+        final OperationLog log = open(directory, 1_000_000, new Recorder());
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int base = t * perThread;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        log.append("count", event(base + i));
+                    }
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            });
+            worker.setUncaughtExceptionHandler((thread, e) -> failures.add(e));
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertTrue(failures.toString(), failures.isEmpty());
+
+        int total = threads * perThread;
+        assertEquals(total, log.getLastSequence());
+        assertTrue(log.awaitDurable(total, 30, TimeUnit.SECONDS));
+        assertEquals(total, log.getDurableSequence());
+        // Events share syncs rather than paying one each
+        assertTrue(log.getCommitCount() <= total);
+        assertTrue(log.getLargestBatch() >= 1);
+        assertEquals((double) total / log.getCommitCount(), log.getAverageBatchSize(), 1e-9);
+
+        // Copy the files while the log is still open, as if the process died here
+        File crashed = Files.createTempDirectory("oplog-crash").toFile();
+        try {
+            File[] files = directory.listFiles();
+            for (File file : files) {
+                Files.copy(file.toPath(), new File(crashed, file.getName()).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            Recorder replayed = new Recorder();
+            open(crashed, 1_000_000, replayed).close();
+            assertEquals(total, replayed.events.size());
+            boolean[] seen = new boolean[total];
+            for (int value : replayed.events) {
+                assertFalse(seen[value]);
+                seen[value] = true;
+            }
+        } finally {
+            deleteTree(crashed);
+            log.close();
+        }
+    }
+
+    private static OperationLog open(File directory, int snapshotInterval, Recorder recorder) throws IOException {
+        OperationLog log = new OperationLog(directory, snapshotInterval);
+        log.open(recorder);
+        return log;
+    }
+
+    private static JSONObject event(int value) {
+        try {
+            return new JSONObject().put("value", value);
+        } catch (JSONException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static List<String> segmentNames(File directory) {
+        List<String> names = new ArrayList<>();
+        for (String name : directory.list()) {
+            if (name.startsWith("operations-")) {
+                names.add(name);
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private static void deleteTree(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static class Recorder implements OperationLog.Replayer {
+        JSONObject snapshot;
+        final List<Integer> events = new ArrayList<>();
+
+        @Override
+        public void restoreSnapshot(JSONObject state) {
+            snapshot = state;
+        }
+
+        @Override
+        public void apply(String type, JSONObject data) throws JSONException {
+            assertEquals("count", type);
+            events.add(data.getInt("value"));
+        }
+    }
+}
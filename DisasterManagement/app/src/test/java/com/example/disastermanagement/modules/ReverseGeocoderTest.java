@@ -0,0 +1,213 @@
+package com.example.disastermanagement.modules;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReverseGeocoderTest {
+    // About 1.1 km apart, so each point is its own cell and too far to reuse an address
+    private static final double STEP = 0.01;
+
+    @Test
+    public void evictsLeastRecentlyUsedCell() {
+        FakeLookup lookup = new FakeLookup();
+        ReverseGeocoder geocoder = new ReverseGeocoder(lookup, Runnable::run, Runnable::run,
+                ReverseGeocoder.DEFAULT_PRECISION, 2);
+        Recorder recorder = new Recorder();
+
+        geocoder.resolve(point(0), 72, recorder);
+        geocoder.resolve(point(1), 72, recorder);
+        // Touch the first cell so the second one is now the eldest
+        geocoder.resolve(point(0), 72, recorder);
+        geocoder.resolve(point(2), 72, recorder);
+        assertEquals(3, lookup.calls);
+        assertEquals(2, geocoder.getCachedCells());
+
+        geocoder.resolve(point(0), 72, recorder);
+        assertEquals(3, lookup.calls);
+        geocoder.resolve(point(1), 72, recorder);
+        assertEquals(4, lookup.calls);
+        assertEquals(2, geocoder.getCachedCells());
+        // Cell 1 came back in place of cell 2, which was the eldest
+        geocoder.resolve(point(0), 72, recorder);
+        geocoder.resolve(point(2), 72, recorder);
+        assertEquals(5, lookup.calls);
+
+        assertEquals(8, recorder.addresses.size());
+        assertEquals(address(point(1)), recorder.addresses.get(5));
+    }
+
+    @Test
+    public void skipsLookupsOvertakenBeforeTheyStart() {
+        FakeLookup lookup = new FakeLookup();
+        ManualExecutor background = new ManualExecutor();
+        ManualExecutor callbacks = new ManualExecutor();
+        ReverseGeocoder geocoder = new ReverseGeocoder(lookup, background, callbacks,
+                ReverseGeocoder.DEFAULT_PRECISION, ReverseGeocoder.DEFAULT_CAPACITY);
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+        Recorder third = new Recorder();
+        Recorder sameCell = new Recorder();
+
+        geocoder.resolve(point(0), 72, first);
+        geocoder.resolve(point(1), 72, second);
+        geocoder.resolve(point(2), 72, third);
+        // Joins the lookup already queued for its cell
+        geocoder.resolve(point(2) + 0.00001, 72, sameCell);
+        assertEquals(3, background.size());
+
+        background.runAll();
+        callbacks.runAll();
+        assertEquals(1, lookup.calls);
+        assertEquals(2, geocoder.getSkipped());
+        assertTrue(first.addresses.isEmpty());
+        assertTrue(second.addresses.isEmpty());
+        assertEquals(address(point(2)), third.addresses.get(0));
+        assertEquals(address(point(2)), sameCell.addresses.get(0));
+
+        // A skipped cell is looked up again on its next request
+        geocoder.resolve(point(0), 72, first);
+        background.runAll();
+        callbacks.runAll();
+        assertEquals(2, lookup.calls);
+        assertEquals(address(point(0)), first.addresses.get(0));
+    }
+
+    @Test
+    public void lookupAlreadyRunningIsNotSkipped() {
+        ManualExecutor background = new ManualExecutor();
+        ReverseGeocoder[] geocoder = new ReverseGeocoder[1];
+        Recorder overtaken = new Recorder();
+        FakeLookup lookup = new FakeLookup() {
+            @Override
+            public String lookup(double latitude, double longitude) throws IOException {
+                if (calls == 0) {
+                    // A newer miss arrives while this lookup is in flight
+                    geocoder[0].resolve(point(1), 72, new Recorder());
+                }
+                return super.lookup(latitude, longitude);
+            }
+        };
+        geocoder[0] = new ReverseGeocoder(lookup, background, Runnable::run,
+                ReverseGeocoder.DEFAULT_PRECISION, ReverseGeocoder.DEFAULT_CAPACITY);
+
+        geocoder[0].resolve(point(0), 72, overtaken);
+        background.runAll();
+        assertEquals(2, lookup.calls);
+        assertEquals(0, geocoder[0].getSkipped());
+        assertEquals(address(point(0)), overtaken.addresses.get(0));
+    }
+
+    @Test
+    public void countsHitsMissesAndFailures() {
+        FakeLookup lookup = new FakeLookup();
+        ReverseGeocoder geocoder = new ReverseGeocoder(lookup, Runnable::run, Runnable::run,
+                ReverseGeocoder.DEFAULT_PRECISION, ReverseGeocoder.DEFAULT_CAPACITY);
+        Recorder recorder = new Recorder();
+
+        geocoder.resolve(point(0), 72, recorder);
+        geocoder.resolve(point(0), 72, recorder);
+        // A few meters away in the next cell still reuses the last address
+        geocoder.resolve(point(0) + 0.00005, 72, recorder);
+        assertEquals(1, geocoder.getMisses());
+        assertEquals(2, geocoder.getHits());
+        assertEquals(1, geocoder.getLookups());
+
+        // "No address" is cached; errors are not
+        lookup.noAddress = true;
+        geocoder.resolve(point(1), 72, recorder);
+        geocoder.resolve(point(1), 72, recorder);
+        lookup.noAddress = false;
+        lookup.failing = true;
+        geocoder.resolve(point(2), 72, recorder);
+        lookup.failing = false;
+        geocoder.resolve(point(2), 72, recorder);
+
+        assertEquals(6, recorder.addresses.size());
+        assertNull(recorder.addresses.get(3));
+        assertNull(recorder.addresses.get(4));
+        assertEquals(address(point(2)), recorder.addresses.get(5));
+        assertEquals(1, recorder.errors);
+        assertEquals(4, geocoder.getLookups());
+        assertEquals(1, geocoder.getFailures());
+        assertEquals(3, geocoder.getHits());
+        assertEquals(4, geocoder.getMisses());
+        assertEquals(0, geocoder.getSkipped());
+        assertEquals(3 / 7.0, geocoder.getHitRate(), 1e-9);
+        assertEquals(3, geocoder.getCachedCells());
+        assertTrue(geocoder.getStats(), geocoder.getStats().startsWith("7 requests, 42.9% cache hits, 4 lookups"));
+        assertTrue(geocoder.getMaxBlockMicros() >= geocoder.getMeanBlockMicros());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroCapacity() {
+        new ReverseGeocoder(new FakeLookup(), Runnable::run, Runnable::run, ReverseGeocoder.DEFAULT_PRECISION, 0);
+    }
+
+    private static double point(int index) {
+        return 19 + index * STEP;
+    }
+
+    private static String address(double latitude) {
+        return String.format("%.3f", latitude);
+    }
+
+    private static class FakeLookup implements ReverseGeocoder.Lookup {
+        int calls;
+        boolean noAddress;
+        boolean failing;
+
+        @Override
+        public String lookup(double latitude, double longitude) throws IOException {
+            calls++;
+            if (failing) {
+                throw new IOException("offline");
+            }
+            return noAddress ? null : address(latitude);
+        }
+    }
+
+    private static class Recorder implements ReverseGeocoder.Callback {
+        final List<String> addresses = new ArrayList<>();
+        int errors;
+
+        @Override
+        public void onAddress(String address) {
+            addresses.add(address);
+        }
+
+        @Override
+        public void onError(IOException e) {
+            errors++;
+        }
+    }
+
+    private static class ManualExecutor implements Executor {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        int size() {
+            return tasks.size();
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.disastermanagement.modules;
+
+import com.example.disastermanagement.utils.TrackCodec;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SosUplinkBufferTest {
+    private static final int FIXES = 200;
+    private static final long FIX_INTERVAL_MILLIS = 5000;
+    private static final String ADDRESS = "Station Road, Andheri West, Mumbai, Maharashtra 400058";
+
+    @Test
+    public void failedBatchIsSentAgain() {
+        SosUplinkBuffer buffer = filled();
+        SosUplinkBuffer.Batch batch = buffer.take();
+        assertNotNull(batch);
+
+        buffer.finish(batch, false);
+        assertEquals(FIXES, buffer.getPendingCount());
+        assertEquals(batch.getFixCount(), buffer.take().getFixCount());
+    }
+
+    @Test
+    public void discardedBatchIsNotSentAgain() {
+        SosUplinkBuffer buffer = filled();
+        SosUplinkBuffer.Batch rejected = buffer.take();
+        assertNotNull(rejected);
+
+        buffer.discard(rejected);
+        assertEquals(FIXES - rejected.getFixCount(), buffer.getPendingCount());
+        assertEquals(rejected.getFixCount(), buffer.getFixesDropped());
+        assertEquals(1, buffer.getBatchesRejected());
+        assertEquals(0, buffer.getBatchesSent());
+
+        SosUplinkBuffer.Batch next = buffer.take();
+        assertEquals(FIXES - rejected.getFixCount(), next.getFixCount());
+        buffer.finish(next, true);
+        assertEquals(0, buffer.getPendingCount());
+        assertEquals(1, buffer.getBatchesSent());
+    }
+
+    /**
+     * Requests and bytes for an hour of 5 s fixes, batched, against the one
+     * JSON update per fix sent before. Run with -Dbenchmark=true.
+     */
+    @Test
+    public void uplinkCostPerHour() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        // Speeds in meters per second
+        String[] names = {"stationary", "walking", "driving"};
+        double[] speeds = {0, 1.4, 15};
+        for (int t = 0; t < names.length; t++) {
+            for (int battery : new int[] {80, 15}) {
+                SosUplinkBuffer buffer = new SosUplinkBuffer();
+                buffer.setBatteryState(battery, false);
+                buffer.setAddress(ADDRESS);
+                Random random = new Random(t);
+                long start = 1_700_000_000_000L;
+                double latitude = 19.1136;
+                double longitude = 72.8697;
+                long jsonBytes = 0;
+                int jsonRequests = 0;
+                int decodedFixes = 0;
+                for (long time = start; time < start + 3_600_000; time += FIX_INTERVAL_MILLIS) {
+                    double step = speeds[t] * FIX_INTERVAL_MILLIS / 1000;
+                    double heading = random.nextDouble() * Math.PI / 4;
+                    // GPS noise of a few meters on top of the movement
+                    latitude += (step * Math.cos(heading) + random.nextGaussian() * 3) / 111_320;
+                    longitude += (step * Math.sin(heading) + random.nextGaussian() * 3) / 105_000;
+                    buffer.add(time, latitude, longitude, 5 + random.nextInt(10));
+                    jsonBytes += jsonUpdate(latitude, longitude).length;
+                    jsonRequests++;
+                    if (buffer.isFlushDue(time)) {
+                        decodedFixes += send(buffer);
+                    }
+                }
+                decodedFixes += send(buffer);
+
+                assertEquals(jsonRequests, decodedFixes);
+                assertEquals(0, buffer.getPendingCount());
+                System.out.printf(Locale.US, "%-10s battery %2d%%: %3d requests / %5.1f KB batched,"
+                                + " %3d requests / %5.1f KB one per fix%n", names[t], battery,
+                        buffer.getBatchesSent(), buffer.getBytesSent() / 1024.0, jsonRequests, jsonBytes / 1024.0);
+                assertTrue(buffer.getBatchesSent() * 5 < jsonRequests);
+                assertTrue(buffer.getBytesSent() * 2 < jsonBytes);
+            }
+        }
+    }
+
+    /**
+     * Sends the waiting fixes as one batch
+     * @return Number of fixes in the batch
+     */
+    private static int send(SosUplinkBuffer buffer) {
+        SosUplinkBuffer.Batch batch = buffer.take();
+        if (batch == null) {
+            return 0;
+        }
+        int fixes = TrackCodec.decode(batch.getPayload()).size();
+        assertEquals(batch.getFixCount(), fixes);
+        buffer.finish(batch, true);
+        return fixes;
+    }
+
+    private static byte[] jsonUpdate(double latitude, double longitude) {
+        return ("{\"latitude\":" + latitude + ",\"longitude\":" + longitude + ",\"address\":\"" + ADDRESS + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static SosUplinkBuffer filled() {
+        SosUplinkBuffer buffer = new SosUplinkBuffer();
+        long start = 1_700_000_000_000L;
+        for (int i = 0; i < FIXES; i++) {
+            buffer.add(start + i * 1000L, 19.0 + i * 1e-4, 72.8, 10f);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.disastermanagement.modules;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TeamDispatcherTest {
+    private static final String[] TYPES = {"RESCUE", "MEDICAL", "FIRE"};
+    private static final String[] CAPABILITIES = {"SWIFT_WATER", "TRIAGE", "HEAVY_LIFT", "HAZMAT"};
+    // Every team has it, so the dispatcher's capability prefilter never narrows the pool
+    // and each request can use any available team of its type
+    private static final String SHARED_CAPABILITY = "FIRST_AID";
+
+    @Test
+    public void selectAllMatchesBruteForce() {
+        Random random = new Random(29);
+        for (int round = 0; round < 400; round++) {
+            List<EmergencyResponse.EmergencyTeam> teams = new ArrayList<>();
+            TeamDispatcher dispatcher = new TeamDispatcher();
+            Set<String> unavailable = new HashSet<>();
+            int teamCount = random.nextInt(7);
+            for (int t = 0; t < teamCount; t++) {
+                EmergencyResponse.EmergencyTeam team = randomTeam(random, "t" + t);
+                teams.add(team);
+                dispatcher.register(team);
+                if (random.nextInt(5) == 0) {
+                    dispatcher.setAvailable(team.getId(), false);
+                    unavailable.add(team.getId());
+                }
+            }
+            // Often more requests than teams, so some go unassigned
+            int requestCount = 1 + random.nextInt(6);
+            List<TeamDispatcher.Request> requests = new ArrayList<>();
+            for (int r = 0; r < requestCount; r++) {
+                requests.add(randomRequest(random));
+            }
+
+            double[][] costs = new double[requestCount][teamCount];
+            for (int r = 0; r < requestCount; r++) {
+                for (int t = 0; t < teamCount; t++) {
+                    EmergencyResponse.EmergencyTeam team = teams.get(t);
+                    String type = requests.get(r).getTeamType();
+                    boolean eligible = !unavailable.contains(team.getId())
+                            && (type == null || type.equals(team.getType()));
+                    costs[r][t] = eligible ? dispatcher.cost(team, requests.get(r)) : Double.NaN;
+                }
+            }
+            double[] best = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+            bruteForce(costs, 0, new boolean[teamCount], 0, 0, best);
+
+            EmergencyResponse.EmergencyTeam[] chosen = dispatcher.selectAll(requests);
+            assertEquals(requestCount, chosen.length);
+            Set<String> used = new HashSet<>();
+            int unassigned = 0;
+            double total = 0;
+            for (int r = 0; r < requestCount; r++) {
+                if (chosen[r] == null) {
+                    unassigned++;
+                    continue;
+                }
+                int t = teams.indexOf(chosen[r]);
+                assertTrue("round " + round + " request " + r + " got an ineligible team", !Double.isNaN(costs[r][t]));
+                assertTrue("round " + round + " team used twice", used.add(chosen[r].getId()));
+                total += costs[r][t];
+            }
+            assertEquals("round " + round + " unassigned", best[0], unassigned, 0);
+            assertEquals("round " + round + " total cost", best[1], total, 1e-6 * Math.max(1, best[1]));
+        }
+    }
+
+    @Test
+    public void selectPicksCheapestTeam() {
+        Random random = new Random(31);
+        for (int round = 0; round < 200; round++) {
+            TeamDispatcher dispatcher = new TeamDispatcher();
+            List<EmergencyResponse.EmergencyTeam> teams = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                EmergencyResponse.EmergencyTeam team = randomTeam(random, "t" + t);
+                teams.add(team);
+                dispatcher.register(team);
+            }
+            TeamDispatcher.Request request = randomRequest(random);
+
+            double cheapest = Double.POSITIVE_INFINITY;
+            for (EmergencyResponse.EmergencyTeam team : teams) {
+                if (request.getTeamType() == null || request.getTeamType().equals(team.getType())) {
+                    cheapest = Math.min(cheapest, dispatcher.cost(team, request));
+                }
+            }
+            EmergencyResponse.EmergencyTeam chosen = dispatcher.select(request);
+            if (Double.isInfinite(cheapest)) {
+                assertNull(chosen);
+            } else {
+                assertEquals(cheapest, dispatcher.cost(chosen, request), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void fewerTeamsThanRequests() {
+        TeamDispatcher dispatcher = new TeamDispatcher();
+        dispatcher.register(team("near", "RESCUE", 6, 19.0, 72.0));
+        dispatcher.register(team("far", "RESCUE", 6, 20.0, 72.0));
+
+        // The middle incident is listed first but is equally far from both
+        // teams; the batch is cheapest with the two outer incidents staffed
+        List<TeamDispatcher.Request> requests = Arrays.asList(
+                request(19.5, 72.0, "RESCUE"),
+                request(19.0, 72.0, "RESCUE"),
+                request(20.0, 72.0, "RESCUE"));
+        EmergencyResponse.EmergencyTeam[] chosen = dispatcher.selectAll(requests);
+        assertNull(chosen[0]);
+        assertEquals("near", chosen[1].getId());
+        assertEquals("far", chosen[2].getId());
+    }
+
+    @Test
+    public void requestsWithoutCandidatesStayUnassigned() {
+        TeamDispatcher dispatcher = new TeamDispatcher();
+        dispatcher.register(team("rescue", "RESCUE", 6, 19.0, 72.0));
+        dispatcher.register(team("medic", "MEDICAL", 4, 19.0, 72.0));
+        dispatcher.setAvailable("medic", false);
+
+        EmergencyResponse.EmergencyTeam[] chosen = dispatcher.selectAll(Arrays.asList(
+                request(19.0, 72.0, "MEDICAL"),
+                request(19.0, 72.0, "FIRE"),
+                request(19.0, 72.0, "RESCUE")));
+        assertNull(chosen[0]);
+        assertNull(chosen[1]);
+        assertNotNull(chosen[2]);
+        assertEquals("rescue", chosen[2].getId());
+        assertEquals(0, dispatcher.selectAll(new ArrayList<TeamDispatcher.Request>()).length);
+    }
+
+    /**
+     * Tries every assignment of distinct teams to requests, NaN marking
+     * pairs that may not be matched. best holds the fewest unassigned
+     * requests and, among those, the lowest total cost.
+     */
+    private static void bruteForce(double[][] costs, int request, boolean[] used, int unassigned,
+                                   double total, double[] best) {
+        if (request == costs.length) {
+            if (unassigned < best[0] || (unassigned == best[0] && total < best[1])) {
+                best[0] = unassigned;
+                best[1] = total;
+            }
+            return;
+        }
+        bruteForce(costs, request + 1, used, unassigned + 1, total, best);
+        for (int t = 0; t < used.length; t++) {
+            if (!used[t] && !Double.isNaN(costs[request][t])) {
+                used[t] = true;
+                bruteForce(costs, request + 1, used, unassigned, total + costs[request][t], best);
+                used[t] = false;
+            }
+        }
+    }
+
+    private static EmergencyResponse.EmergencyTeam randomTeam(Random random, String id) {
+        List<String> capabilities = new ArrayList<>();
+        capabilities.add(SHARED_CAPABILITY);
+        for (String capability : CAPABILITIES) {
+            if (random.nextBoolean()) {
+                capabilities.add(capability);
+            }
+        }
+        // Some teams have no known base
+        Map<String, Double> base = null;
+        if (random.nextInt(6) != 0) {
+            base = new HashMap<>();
+            base.put("latitude", 18 + random.nextDouble() * 3);
+            base.put("longitude", 72 + random.nextDouble() * 3);
+        }
+        return new EmergencyResponse.EmergencyTeam(id, id, TYPES[random.nextInt(TYPES.length)],
+                2 + random.nextInt(10), capabilities, base);
+    }
+
+    private static TeamDispatcher.Request randomRequest(Random random) {
+        List<String> required = new ArrayList<>();
+        required.add(SHARED_CAPABILITY);
+        for (String capability : CAPABILITIES) {
+            if (random.nextInt(3) == 0) {
+                required.add(capability);
+            }
+        }
+        if (random.nextInt(8) == 0) {
+            required.add("DIVING"); // No team has it
+        }
+        // A type nobody has leaves the request without candidates
+        int type = random.nextInt(TYPES.length + 2);
+        String teamType = type < TYPES.length ? TYPES[type] : type == TYPES.length ? null : "AIRLIFT";
+        return new TeamDispatcher.Request(18 + random.nextDouble() * 3, 72 + random.nextDouble() * 3,
+                teamType, required, 2 + random.nextInt(10));
+    }
+
+    private static EmergencyResponse.EmergencyTeam team(String id, String type, int members,
+                                                        double latitude, double longitude) {
+        Map<String, Double> base = new HashMap<>();
+        base.put("latitude", latitude);
+        base.put("longitude", longitude);
+        return new EmergencyResponse.EmergencyTeam(id, id, type, members, new ArrayList<String>(), base);
+    }
+
+    private static TeamDispatcher.Request request(double latitude, double longitude, String teamType) {
+        return new TeamDispatcher.Request(latitude, longitude, teamType, null, 6);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.disastermanagement.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveSamplingPolicyTest {
+    private static final long SEED = 1;
+    private static final int BATTERY_PERCENT = 80;
+
+    // One-hour traces under src/test/resources/traces, with the figures measured on them at 80% battery:
+    // trace, fixes per hour and mean track error in meters for fixed 5 s sampling, then for the adaptive policy
+    private static final Object[][] TRACES = {
+            {"sheltering", 720, 5.6, 64, 5.3},
+            {"walking", 720, 5.4, 122, 6.6},
+            {"driving", 720, 6.0, 585, 7.4},
+            {"mixed", 720, 5.6, 270, 6.1},
+    };
+
+    @Test
+    public void tracesMatchMeasuredFixRateAndAccuracy() throws IOException {
+        for (Object[] row : TRACES) {
+            String name = (String) row[0];
+            SamplingTraceSimulator.Trace trace = trace(name);
+
+            SamplingTraceSimulator.Result fixed = SamplingTraceSimulator.run("fixed 5 s",
+                    new SamplingPolicy.Fixed(5000, 3000, SamplingPolicy.Priority.HIGH_ACCURACY),
+                    trace, BATTERY_PERCENT, false, SEED);
+            SamplingTraceSimulator.Result adaptive = SamplingTraceSimulator.run("adaptive",
+                    new AdaptiveSamplingPolicy(), trace, BATTERY_PERCENT, false, SEED);
+
+            assertEquals(name, (Integer) row[1], fixed.getFixesPerHour(), 1);
+            assertEquals(name, (Double) row[2], fixed.getMeanTrackErrorMeters(), 0.05);
+            assertEquals(name, (Integer) row[3], adaptive.getFixesPerHour(), 1);
+            assertEquals(name, (Double) row[4], adaptive.getMeanTrackErrorMeters(), 0.05);
+            assertEquals(name, 0, adaptive.getRejected());
+            // Every fix stays high accuracy above the critical battery level
+            assertEquals(name, adaptive.getFixesPerHour(), adaptive.getHighAccuracyFixesPerHour(), 0.01);
+        }
+    }
+
+    @Test
+    public void decisionChangesStayRare() throws IOException {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy();
+        SamplingTraceSimulator.Trace trace = trace("mixed");
+        SamplingTraceSimulator.run("adaptive", policy, trace, BATTERY_PERCENT, false, SEED);
+        assertTrue(String.valueOf(policy.getDecisionChanges()),
+                policy.getDecisionChanges() / trace.getDurationHours() <= 30);
+    }
+
+    @Test
+    public void batteryStateScalesFixRate() throws IOException {
+        SamplingTraceSimulator.Trace trace = trace("mixed");
+        double normal = SamplingTraceSimulator.run("normal", new AdaptiveSamplingPolicy(), trace,
+                BATTERY_PERCENT, false, SEED).getFixesPerHour();
+        double charging = SamplingTraceSimulator.run("charging", new AdaptiveSamplingPolicy(), trace,
+                50, true, SEED).getFixesPerHour();
+        double low = SamplingTraceSimulator.run("low", new AdaptiveSamplingPolicy(), trace,
+                15, false, SEED).getFixesPerHour();
+        SamplingTraceSimulator.Result critical = SamplingTraceSimulator.run("critical", new AdaptiveSamplingPolicy(),
+                trace, 3, false, SEED);
+
+        assertTrue(charging > normal);
+        assertTrue(low < normal);
+        // Only the three acquisition fixes are high accuracy once the battery is critical
+        assertEquals(3, critical.getHighAccuracyFixesPerHour() * trace.getDurationHours(), 1e-6);
+    }
+
+    @Test
+    public void rejectsImpossibleAndStaleFixes() {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy();
+        SamplingPolicy.Fix first = new SamplingPolicy.Fix(0, 12.97, 77.59, 8, Float.NaN);
+        assertTrue(policy.accept(first));
+        policy.update(first);
+
+        // 1.1 km in 5 s
+        assertFalse(policy.accept(new SamplingPolicy.Fix(5_000, 12.98, 77.59, 8, Float.NaN)));
+        // Coarse while a recent precise fix exists
+        assertFalse(policy.accept(new SamplingPolicy.Fix(10_000, 12.97, 77.59, 800, Float.NaN)));
+        // Out of order
+        assertFalse(policy.accept(new SamplingPolicy.Fix(-1, 12.97, 77.59, 8, Float.NaN)));
+        // Coarse is better than nothing once the last precise fix is old
+        assertTrue(policy.accept(new SamplingPolicy.Fix(120_000, 12.97, 77.59, 800, Float.NaN)));
+    }
+
+    private static SamplingTraceSimulator.Trace trace(String name) throws IOException {
+        try (InputStream in = AdaptiveSamplingPolicyTest.class.getResourceAsStream("/traces/" + name + ".csv")) {
+            assertNotNull(name, in);
+            return SamplingTraceSimulator.Trace.fromCsv(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+    }
+}
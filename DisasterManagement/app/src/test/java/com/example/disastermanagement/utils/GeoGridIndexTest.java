@@ -0,0 +1,127 @@
+package com.example.disastermanagement.utils;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GeoGridIndexTest {
+    private static final int BENCHMARK_REGIONS = 10_000;
+    private static final int BENCHMARK_QUERIES = 20_000;
+
+    @Test
+    public void matchesLinearScan() {
+        Random random = new Random(3);
+        double[] boxes = randomBoxes(random, 2000);
+        GeoGridIndex index = index(boxes);
+
+        for (int q = 0; q < 20_000; q++) {
+            double latitude, longitude;
+            if (q % 2 == 0) {
+                // Near a box corner, where cell edges and box edges meet
+                int id = random.nextInt(boxes.length / 4);
+                latitude = boxes[id * 4 + random.nextInt(2)] + (random.nextDouble() - 0.5) * 1e-6;
+                longitude = boxes[id * 4 + 2 + random.nextInt(2)] + (random.nextDouble() - 0.5) * 1e-6;
+                latitude = Math.max(-90, Math.min(90, latitude));
+                longitude = Math.max(-180, Math.min(180, longitude));
+            } else {
+                latitude = random.nextDouble() * 180 - 90;
+                longitude = random.nextDouble() * 360 - 180;
+            }
+            assertArrayEquals(latitude + "," + longitude, scan(boxes, latitude, longitude),
+                    index.query(latitude, longitude));
+        }
+    }
+
+    /**
+     * Point lookups over 10k regions against a linear scan of their boxes.
+     * Run with -Dbenchmark=true.
+     */
+    @Test
+    public void lookupBenchmark() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        Random random = new Random(42);
+        double[] boxes = randomBoxes(random, BENCHMARK_REGIONS);
+        GeoGridIndex index = index(boxes);
+        double[] latitudes = new double[BENCHMARK_QUERIES];
+        double[] longitudes = new double[BENCHMARK_QUERIES];
+        for (int q = 0; q < BENCHMARK_QUERIES; q++) {
+            latitudes[q] = random.nextDouble() * 180 - 90;
+            longitudes[q] = random.nextDouble() * 360 - 180;
+        }
+
+        long indexBest = Long.MAX_VALUE;
+        long scanBest = Long.MAX_VALUE;
+        long found = 0;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            for (int q = 0; q < BENCHMARK_QUERIES; q++) {
+                found += index.query(latitudes[q], longitudes[q]).length;
+            }
+            indexBest = Math.min(indexBest, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int q = 0; q < BENCHMARK_QUERIES; q++) {
+                found -= scan(boxes, latitudes[q], longitudes[q]).length;
+            }
+            scanBest = Math.min(scanBest, System.nanoTime() - start);
+        }
+        double indexMicros = indexBest / 1000.0 / BENCHMARK_QUERIES;
+        double scanMicros = scanBest / 1000.0 / BENCHMARK_QUERIES;
+        System.out.printf("%d regions: grid %.2f us per lookup, linear scan %.2f us%n",
+                BENCHMARK_REGIONS, indexMicros, scanMicros);
+        assertTrue("index and scan disagree", found == 0);
+        assertTrue("grid " + indexMicros + " us, scan " + scanMicros + " us", indexMicros * 5 < scanMicros);
+    }
+
+    /**
+     * @return minLat, maxLat, minLon, maxLon per box, from a few meters to
+     * tens of degrees across, some crossing the antimeridian
+     */
+    private static double[] randomBoxes(Random random, int count) {
+        double[] boxes = new double[count * 4];
+        for (int id = 0; id < count; id++) {
+            double height = Math.pow(10, random.nextDouble() * 4.5 - 3);
+            double width = Math.pow(10, random.nextDouble() * 4.5 - 3);
+            double minLat = -90 + random.nextDouble() * (180 - Math.min(height, 180));
+            double minLon = random.nextDouble() * 360 - 180;
+            double maxLon = minLon + width;
+            boxes[id * 4] = minLat;
+            boxes[id * 4 + 1] = Math.min(90, minLat + height);
+            boxes[id * 4 + 2] = minLon;
+            boxes[id * 4 + 3] = maxLon > 180 ? maxLon - 360 : maxLon;
+        }
+        return boxes;
+    }
+
+    private static GeoGridIndex index(double[] boxes) {
+        GeoGridIndex index = new GeoGridIndex();
+        for (int id = 0; id < boxes.length / 4; id++) {
+            index.add(id, boxes[id * 4], boxes[id * 4 + 1], boxes[id * 4 + 2], boxes[id * 4 + 3]);
+        }
+        return index;
+    }
+
+    private static int[] scan(double[] boxes, double latitude, double longitude) {
+        int[] result = new int[8];
+        int found = 0;
+        for (int id = 0; id < boxes.length / 4; id++) {
+            double minLon = boxes[id * 4 + 2];
+            double maxLon = boxes[id * 4 + 3];
+            boolean inLongitude = minLon <= maxLon
+                    ? longitude >= minLon && longitude <= maxLon
+                    : longitude >= minLon || longitude <= maxLon;
+            if (inLongitude && latitude >= boxes[id * 4] && latitude <= boxes[id * 4 + 1]) {
+                if (found == result.length) {
+                    result = Arrays.copyOf(result, found * 2);
+                }
+                result[found++] = id;
+            }
+        }
+        return Arrays.copyOf(result, found);
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.disastermanagement.utils;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GeoKdTreeTest {
+    private static final double RADIUS_KM = 25;
+    private static final int NEAREST = 10;
+
+    @Test
+    public void matchesBruteForce() {
+        Random random = new Random(5);
+        int count = 3000;
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        fillCenters(random, latitudes, longitudes);
+        GeoKdTree tree = new GeoKdTree();
+        // Most points in the built tree, the rest still pending
+        tree.addAll(latitudes, longitudes, count - 200);
+        for (int id = count - 200; id < count; id++) {
+            tree.add(latitudes[id], longitudes[id]);
+        }
+        boolean[] inactive = new boolean[count];
+        for (int i = 0; i < count / 10; i++) {
+            int id = random.nextInt(count);
+            inactive[id] = true;
+            tree.setActive(id, false);
+        }
+
+        for (int q = 0; q < 200; q++) {
+            double latitude = 8 + random.nextDouble() * 27;
+            double longitude = 68 + random.nextDouble() * 29;
+            double radiusKm = random.nextDouble() * 200;
+            assertSame(bruteForceWithinRadius(latitudes, longitudes, inactive, latitude, longitude, radiusKm),
+                    tree.withinRadius(latitude, longitude, radiusKm));
+            int k = 1 + random.nextInt(20);
+            assertSame(bruteForceNearest(latitudes, longitudes, inactive, latitude, longitude, k),
+                    tree.nearest(latitude, longitude, k));
+        }
+    }
+
+    /**
+     * Radius and nearest-10 queries against checking every center, at 100,
+     * 10k and 1M centers. Run with -Dbenchmark=true.
+     */
+    @Test
+    public void queryBenchmark() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        for (int count : new int[] {100, 10_000, 1_000_000}) {
+            Random random = new Random(42);
+            double[] latitudes = new double[count];
+            double[] longitudes = new double[count];
+            fillCenters(random, latitudes, longitudes);
+            GeoKdTree tree = new GeoKdTree();
+            tree.addAll(latitudes, longitudes, count);
+            boolean[] inactive = new boolean[count];
+
+            // Brute force gets fewer queries at 1M so the run stays short
+            int queries = 2000;
+            int bruteForceQueries = Math.max(5, Math.min(queries, 1_000_000 / count));
+            double[] queryLatitudes = new double[queries];
+            double[] queryLongitudes = new double[queries];
+            for (int q = 0; q < queries; q++) {
+                queryLatitudes[q] = 8 + random.nextDouble() * 27;
+                queryLongitudes[q] = 68 + random.nextDouble() * 29;
+            }
+
+            long treeBest = Long.MAX_VALUE;
+            long bruteForceBest = Long.MAX_VALUE;
+            GeoKdTree.Neighbors radius = new GeoKdTree.Neighbors();
+            GeoKdTree.Neighbors nearest = new GeoKdTree.Neighbors();
+            for (int run = 0; run < 3; run++) {
+                long start = System.nanoTime();
+                for (int q = 0; q < queries; q++) {
+                    tree.withinRadius(queryLatitudes[q], queryLongitudes[q], RADIUS_KM, radius);
+                    tree.nearest(queryLatitudes[q], queryLongitudes[q], NEAREST, nearest);
+                }
+                treeBest = Math.min(treeBest, (System.nanoTime() - start) / queries);
+
+                start = System.nanoTime();
+                for (int q = 0; q < bruteForceQueries; q++) {
+                    double[] within = bruteForceWithinRadius(latitudes, longitudes, inactive,
+                            queryLatitudes[q], queryLongitudes[q], RADIUS_KM);
+                    double[] closest = bruteForceNearest(latitudes, longitudes, inactive,
+                            queryLatitudes[q], queryLongitudes[q], NEAREST);
+                    if (run == 0) {
+                        assertSame(within, tree.withinRadius(queryLatitudes[q], queryLongitudes[q], RADIUS_KM));
+                        assertSame(closest, tree.nearest(queryLatitudes[q], queryLongitudes[q], NEAREST));
+                    }
+                }
+                bruteForceBest = Math.min(bruteForceBest, (System.nanoTime() - start) / bruteForceQueries);
+            }
+            System.out.printf("%7d centers: tree %8.3f ms per radius + nearest query, brute force %8.3f ms%n",
+                    count, treeBest / 1e6, bruteForceBest / 1e6);
+            if (count >= 10_000) {
+                assertTrue("tree " + treeBest + " ns, brute force " + bruteForceBest + " ns",
+                        treeBest * 10 < bruteForceBest);
+            }
+        }
+    }
+
+    /**
+     * Centers spread over a country-sized area
+     */
+    private static void fillCenters(Random random, double[] latitudes, double[] longitudes) {
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = 8 + random.nextDouble() * 27;
+            longitudes[i] = 68 + random.nextDouble() * 29;
+        }
+    }
+
+    /**
+     * @return Id and distance pairs ordered by distance, then by id
+     */
+    private static double[] bruteForceWithinRadius(double[] latitudes, double[] longitudes, boolean[] inactive,
+                                                   double latitude, double longitude, double radiusKm) {
+        double[][] all = sortedByDistance(latitudes, longitudes, inactive, latitude, longitude);
+        int n = 0;
+        while (n < all.length && all[n][1] <= radiusKm) {
+            n++;
+        }
+        return flatten(all, n);
+    }
+
+    private static double[] bruteForceNearest(double[] latitudes, double[] longitudes, boolean[] inactive,
+                                              double latitude, double longitude, int k) {
+        double[][] all = sortedByDistance(latitudes, longitudes, inactive, latitude, longitude);
+        return flatten(all, Math.min(k, all.length));
+    }
+
+    private static double[][] sortedByDistance(double[] latitudes, double[] longitudes, boolean[] inactive,
+                                               double latitude, double longitude) {
+        double[][] all = new double[latitudes.length][];
+        int n = 0;
+        for (int id = 0; id < latitudes.length; id++) {
+            if (!inactive[id]) {
+                all[n++] = new double[] {id,
+                        GeoKdTree.haversine(latitude, longitude, latitudes[id], longitudes[id])};
+            }
+        }
+        all = Arrays.copyOf(all, n);
+        Arrays.sort(all, (a, b) -> a[1] != b[1] ? Double.compare(a[1], b[1]) : Double.compare(a[0], b[0]));
+        return all;
+    }
+
+    private static double[] flatten(double[][] pairs, int n) {
+        double[] flat = new double[n * 2];
+        for (int i = 0; i < n; i++) {
+            flat[i * 2] = pairs[i][0];
+            flat[i * 2 + 1] = pairs[i][1];
+        }
+        return flat;
+    }
+
+    private static void assertSame(double[] expected, GeoKdTree.Neighbors actual) {
+        assertEquals(expected.length / 2, actual.size());
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals(expected[i * 2], actual.getId(i), 0);
+            assertEquals(expected[i * 2 + 1], actual.getDistanceKm(i), 0);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.disastermanagement.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuantileSketchTest {
+    private static final double[] QUANTILES = {0.0, 0.5, 0.95, 0.99, 1.0};
+
+    @Test
+    public void quantilesAreWithinRelativeErrorOfExactSort() {
+        Random random = new Random(11);
+        for (int distribution = 0; distribution < 4; distribution++) {
+            double[] values = new double[20_000];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = sample(random, distribution);
+            }
+            QuantileSketch sketch = new QuantileSketch();
+            for (double value : values) {
+                sketch.add(value);
+            }
+            assertWithinBound("distribution " + distribution, sketch, values);
+        }
+    }
+
+    @Test
+    public void mergeMatchesSingleSketch() {
+        Random random = new Random(5);
+        double[] values = new double[10_000];
+        QuantileSketch whole = new QuantileSketch();
+        QuantileSketch[] parts = new QuantileSketch[4];
+        for (int p = 0; p < parts.length; p++) {
+            parts[p] = new QuantileSketch();
+        }
+        for (int i = 0; i < values.length; i++) {
+            // Each part sees a different range, so the merge has to interleave them
+            int part = i % parts.length;
+            values[i] = part == 0 ? -random.nextDouble() * 50 : part * 100 + random.nextGaussian() * 30;
+            whole.add(values[i]);
+            parts[part].add(values[i]);
+        }
+
+        QuantileSketch merged = new QuantileSketch();
+        for (QuantileSketch part : parts) {
+            merged.merge(part);
+        }
+        assertEquals(whole.getCount(), merged.getCount());
+        for (int i = 0; i <= 100; i++) {
+            assertEquals(whole.quantile(i / 100.0), merged.quantile(i / 100.0), 0);
+        }
+        assertWithinBound("merged", merged, values);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mergeRejectsDifferentAccuracy() {
+        new QuantileSketch(0.02).merge(new QuantileSketch(0.01));
+    }
+
+    @Test
+    public void clearForgetsValues() {
+        QuantileSketch sketch = new QuantileSketch();
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        for (int i = 1; i <= 100; i++) {
+            sketch.add(-i);
+            sketch.add(i);
+        }
+        sketch.clear();
+        assertEquals(0, sketch.getCount());
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+
+        sketch.add(42);
+        assertEquals(42, sketch.quantile(0.99), 42 * sketch.getRelativeAccuracy());
+    }
+
+    private static double sample(Random random, int distribution) {
+        switch (distribution) {
+            case 0:
+                // Uniform water levels
+                return random.nextDouble() * 10;
+            case 1:
+                // Heavy-tailed latencies
+                return Math.exp(random.nextGaussian() * 2);
+            case 2:
+                // Temperatures around zero, with exact zeros
+                return random.nextInt(10) == 0 ? 0 : random.nextGaussian() * 15;
+            default:
+                // Mostly negative with a wide spread
+                return -Math.exp(random.nextDouble() * 12) + random.nextDouble() * 100;
+        }
+    }
+
+    private static void assertWithinBound(String label, QuantileSketch sketch, double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double q : QUANTILES) {
+            double exact = sorted[(int) Math.floor(q * (sorted.length - 1))];
+            double estimate = sketch.quantile(q);
+            // Values closer to zero than the smallest bucket are reported as zero
+            double bound = sketch.getRelativeAccuracy() * Math.abs(exact) * (1 + 1e-9) + 1e-3;
+            assertTrue(label + " q=" + q + " exact=" + exact + " estimate=" + estimate,
+                    Math.abs(estimate - exact) <= bound);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.disastermanagement.utils;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RoaringBitmapTest {
+    // Four chunks, so values spread over several containers
+    private static final int RANGE = 4 << 16;
+
+    @Test
+    public void setOperationsMatchBitSet() {
+        Random random = new Random(17);
+        for (int round = 0; round < 60; round++) {
+            BitSet expectedA = new BitSet();
+            BitSet expectedB = new BitSet();
+            RoaringBitmap a = randomBitmap(random, expectedA);
+            RoaringBitmap b = randomBitmap(random, expectedB);
+
+            RoaringBitmap and = new RoaringBitmap(a);
+            and.and(b);
+            BitSet expectedAnd = (BitSet) expectedA.clone();
+            expectedAnd.and(expectedB);
+            assertMatches("and " + round, expectedAnd, and);
+
+            RoaringBitmap or = new RoaringBitmap(a);
+            or.or(b);
+            BitSet expectedOr = (BitSet) expectedA.clone();
+            expectedOr.or(expectedB);
+            assertMatches("or " + round, expectedOr, or);
+
+            RoaringBitmap andNot = new RoaringBitmap(a);
+            andNot.andNot(b);
+            BitSet expectedAndNot = (BitSet) expectedA.clone();
+            expectedAndNot.andNot(expectedB);
+            assertMatches("andNot " + round, expectedAndNot, andNot);
+
+            // The operands are left untouched
+            assertMatches("a " + round, expectedA, a);
+            assertMatches("b " + round, expectedB, b);
+        }
+    }
+
+    @Test
+    public void containersConvertBothWays() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        BitSet expected = new BitSet();
+        // Grow one chunk past the array limit into a bitmap container
+        for (int value = 0; value < 10_000; value++) {
+            bitmap.add(value * 3);
+            expected.set(value * 3);
+        }
+        assertMatches("grown", expected, bitmap);
+
+        // Shrink it back below the limit
+        for (int value = 0; value < 30_000; value += 2) {
+            bitmap.remove(value);
+            expected.clear(value);
+        }
+        assertMatches("shrunk", expected, bitmap);
+
+        // Empty it and make sure the chunk is dropped
+        for (int value = 0; value < 30_000; value++) {
+            bitmap.set(value, false);
+        }
+        assertTrue(bitmap.isEmpty());
+        assertEquals(-1, bitmap.nextSetBit(0));
+    }
+
+    @Test
+    public void operationsAcrossDenseAndSparseChunks() {
+        BitSet dense = new BitSet();
+        BitSet sparse = new BitSet();
+        RoaringBitmap denseBitmap = new RoaringBitmap();
+        RoaringBitmap sparseBitmap = new RoaringBitmap();
+        for (int value = 0; value < 6000; value++) {
+            denseBitmap.add(value);
+            dense.set(value);
+        }
+        for (int value = 0; value < 6000; value += 7) {
+            sparseBitmap.add(value);
+            sparse.set(value);
+        }
+        // A dense minus a sparse chunk stays dense; the reverse empties out
+        RoaringBitmap difference = new RoaringBitmap(denseBitmap);
+        difference.andNot(sparseBitmap);
+        BitSet expected = (BitSet) dense.clone();
+        expected.andNot(sparse);
+        assertMatches("dense - sparse", expected, difference);
+
+        difference = new RoaringBitmap(sparseBitmap);
+        difference.andNot(denseBitmap);
+        assertTrue(difference.isEmpty());
+
+        // Two dense chunks whose intersection is sparse
+        RoaringBitmap evens = new RoaringBitmap();
+        RoaringBitmap lowHalf = new RoaringBitmap();
+        for (int value = 0; value < 20_000; value++) {
+            if (value % 2 == 0) {
+                evens.add(value);
+            }
+            if (value < 7000) {
+                lowHalf.add(value);
+            }
+        }
+        RoaringBitmap intersection = new RoaringBitmap(evens);
+        intersection.and(lowHalf);
+        assertEquals(3500, intersection.cardinality());
+        assertEquals(6998, intersection.toArray()[3499]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeValues() {
+        new RoaringBitmap().add(-1);
+    }
+
+    /**
+     * Builds a bitmap whose chunks are empty, sparse, near the array limit
+     * or dense, chosen at random
+     */
+    private static RoaringBitmap randomBitmap(Random random, BitSet expected) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int chunk = 0; chunk < RANGE >>> 16; chunk++) {
+            int count;
+            switch (random.nextInt(4)) {
+                case 0:
+                    continue;
+                case 1:
+                    count = random.nextInt(100) + 1;
+                    break;
+                case 2:
+                    count = 4096 + random.nextInt(11) - 5;
+                    break;
+                default:
+                    count = random.nextInt(30_000) + 5000;
+                    break;
+            }
+            for (int i = 0; i < count; i++) {
+                // Narrow ranges make overlaps between operands likely
+                int value = (chunk << 16) | random.nextInt(random.nextBoolean() ? 8192 : 65536);
+                bitmap.add(value);
+                expected.set(value);
+            }
+        }
+        return bitmap;
+    }
+
+    private static void assertMatches(String label, BitSet expected, RoaringBitmap actual) {
+        assertEquals(label, expected.cardinality(), actual.cardinality());
+        assertEquals(label, expected.isEmpty(), actual.isEmpty());
+        assertArrayEquals(label, expected.stream().toArray(), actual.toArray());
+        for (int from = 0; from < RANGE; from += 4099) {
+            assertEquals(label + " from " + from, expected.nextSetBit(from), actual.nextSetBit(from));
+            assertEquals(label + " at " + from, expected.get(from), actual.contains(from));
+        }
+    }
+}
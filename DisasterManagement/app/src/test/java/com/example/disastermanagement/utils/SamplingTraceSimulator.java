@@ -0,0 +1,299 @@
+package com.example.disastermanagement.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Replays a recorded location trace against a sampling policy.
+ *
+ * The trace is taken as the true path. At each point the policy asks for a
+ * fix, the simulator takes the trace position at that time and adds error
+ * for the requested priority: high accuracy uses the recorded accuracy,
+ * balanced behaves like a Wi-Fi/cell fix of about 40 m, low power like a
+ * coarse cell fix. The policy then accepts or rejects the fix and picks the
+ * next request, as on a phone.
+ *
+ * The result gives the cost (fixes and high-accuracy fixes per hour) next
+ * to the quality: the error of each delivered fix, and the track error,
+ * i.e. how far the path drawn through the delivered fixes is from the true
+ * path at every trace point.
+ */
+public final class SamplingTraceSimulator {
+    private static final float HIGH_ACCURACY_FLOOR_METERS = 5;
+    private static final float BALANCED_ACCURACY_METERS = 40;
+    private static final float LOW_POWER_ACCURACY_METERS = 1000;
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    private SamplingTraceSimulator() {
+    }
+
+    /**
+     * A recorded path, in time order
+     */
+    public static final class Trace {
+        private final long[] times;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final float[] accuracies;
+        private final float[] speeds;
+
+        /**
+         * @param times Sample times in epoch milliseconds, increasing
+         * @param latitudes Latitudes in degrees
+         * @param longitudes Longitudes in degrees
+         * @param accuracies Recorded accuracy radii in meters
+         * @param speeds Recorded speeds in meters per second, NaN where unknown
+         */
+        public Trace(long[] times, double[] latitudes, double[] longitudes, float[] accuracies, float[] speeds) {
+            int n = times.length;
+            if (latitudes.length != n || longitudes.length != n || accuracies.length != n || speeds.length != n) {
+                throw new IllegalArgumentException("Trace columns differ in length");
+            }
+            if (n < 2) {
+                throw new IllegalArgumentException("Trace needs at least two points");
+            }
+            this.times = times;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.accuracies = accuracies;
+            this.speeds = speeds;
+        }
+
+        /**
+         * Reads a trace from CSV lines of time_ms,latitude,longitude,accuracy_m[,speed_mps].
+         * Blank lines, lines starting with # and a header line are skipped.
+         * @param reader CSV text
+         * @return The trace
+         * @throws IOException if reading fails or a line is malformed
+         */
+        public static Trace fromCsv(Reader reader) throws IOException {
+            BufferedReader in = new BufferedReader(reader);
+            int n = 0;
+            long[] times = new long[256];
+            double[] latitudes = new double[256];
+            double[] longitudes = new double[256];
+            float[] accuracies = new float[256];
+            float[] speeds = new float[256];
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || Character.isLetter(line.charAt(0))) {
+                    continue;
+                }
+                String[] parts = line.split(",");
+                if (parts.length < 4) {
+                    throw new IOException("Line " + lineNumber + ": expected at least 4 columns");
+                }
+                if (n == times.length) {
+                    times = Arrays.copyOf(times, n * 2);
+                    latitudes = Arrays.copyOf(latitudes, n * 2);
+                    longitudes = Arrays.copyOf(longitudes, n * 2);
+                    accuracies = Arrays.copyOf(accuracies, n * 2);
+                    speeds = Arrays.copyOf(speeds, n * 2);
+                }
+                try {
+                    times[n] = Long.parseLong(parts[0].trim());
+                    latitudes[n] = Double.parseDouble(parts[1].trim());
+                    longitudes[n] = Double.parseDouble(parts[2].trim());
+                    accuracies[n] = Float.parseFloat(parts[3].trim());
+                    speeds[n] = parts.length > 4 && !parts[4].trim().isEmpty()
+                            ? Float.parseFloat(parts[4].trim()) : Float.NaN;
+                } catch (NumberFormatException e) {
+                    throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+                }
+                if (n > 0 && times[n] <= times[n - 1]) {
+                    continue; // Duplicate or out-of-order sample
+                }
+                n++;
+            }
+            return new Trace(Arrays.copyOf(times, n), Arrays.copyOf(latitudes, n), Arrays.copyOf(longitudes, n),
+                    Arrays.copyOf(accuracies, n), Arrays.copyOf(speeds, n));
+        }
+
+        public int size() { return times.length; }
+        public long getTime(int i) { return times[i]; }
+        public double getLatitude(int i) { return latitudes[i]; }
+        public double getLongitude(int i) { return longitudes[i]; }
+        public float getAccuracy(int i) { return accuracies[i]; }
+        public float getSpeed(int i) { return speeds[i]; }
+
+        public double getDurationHours() {
+            return (times[times.length - 1] - times[0]) / 3_600_000.0;
+        }
+    }
+
+    /**
+     * Cost and quality of one policy on one trace
+     */
+    public static final class Result {
+        private final String name;
+        private final double hours;
+        private final int fixes;
+        private final int highAccuracyFixes;
+        private final int rejected;
+        private final double meanAccuracy;
+        private final double meanError;
+        private final double meanTrackError;
+        private final double p95TrackError;
+        private final double maxGapSeconds;
+
+        Result(String name, double hours, int fixes, int highAccuracyFixes, int rejected, double meanAccuracy,
+               double meanError, double meanTrackError, double p95TrackError, double maxGapSeconds) {
+            this.name = name;
+            this.hours = hours;
+            this.fixes = fixes;
+            this.highAccuracyFixes = highAccuracyFixes;
+            this.rejected = rejected;
+            this.meanAccuracy = meanAccuracy;
+            this.meanError = meanError;
+            this.meanTrackError = meanTrackError;
+            this.p95TrackError = p95TrackError;
+            this.maxGapSeconds = maxGapSeconds;
+        }
+
+        public String getName() { return name; }
+        public int getFixes() { return fixes; }
+        public double getFixesPerHour() { return fixes / hours; }
+        public double getHighAccuracyFixesPerHour() { return highAccuracyFixes / hours; }
+        public int getRejected() { return rejected; }
+        public double getMeanAccuracyMeters() { return meanAccuracy; }
+        public double getMeanErrorMeters() { return meanError; }
+        public double getMeanTrackErrorMeters() { return meanTrackError; }
+        public double getP95TrackErrorMeters() { return p95TrackError; }
+        public double getMaxGapSeconds() { return maxGapSeconds; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-10s %6.0f fixes/h (%5.0f high-accuracy), %3d rejected,"
+                            + " accuracy %5.1f m, error %5.1f m, track error %5.1f m mean / %6.1f m p95, max gap %4.0f s",
+                    name, getFixesPerHour(), getHighAccuracyFixesPerHour(), rejected, meanAccuracy, meanError,
+                    meanTrackError, p95TrackError, maxGapSeconds);
+        }
+    }
+
+    /**
+     * Replays a trace
+     * @param name Label for the result
+     * @param policy Fresh policy to replay
+     * @param trace The trace
+     * @param batteryPercent Battery level for the whole replay
+     * @param charging Whether the phone is charging
+     * @param seed Seed for the simulated fix errors
+     * @return Cost and quality of the policy on the trace
+     */
+    public static Result run(String name, SamplingPolicy policy, Trace trace, int batteryPercent, boolean charging,
+                             long seed) {
+        Random random = new Random(seed);
+        policy.setBatteryState(batteryPercent, charging);
+
+        int n = trace.size();
+        long[] fixTimes = new long[64];
+        double[] fixLatitudes = new double[64];
+        double[] fixLongitudes = new double[64];
+        int fixes = 0;
+        int highAccuracy = 0;
+        int rejected = 0;
+        double accuracySum = 0;
+        double errorSum = 0;
+
+        long next = trace.getTime(0);
+        int i = 0;
+        while (true) {
+            while (i < n && trace.getTime(i) < next) {
+                i++;
+            }
+            if (i == n) {
+                break;
+            }
+            SamplingPolicy.Decision decision = policy.getDecision();
+            SamplingPolicy.Priority priority = decision.getPriority();
+            float accuracy;
+            switch (priority) {
+                case HIGH_ACCURACY:
+                    accuracy = Math.max(HIGH_ACCURACY_FLOOR_METERS, trace.getAccuracy(i));
+                    break;
+                case BALANCED:
+                    accuracy = Math.max(BALANCED_ACCURACY_METERS, trace.getAccuracy(i));
+                    break;
+                default:
+                    accuracy = Math.max(LOW_POWER_ACCURACY_METERS, trace.getAccuracy(i));
+                    break;
+            }
+            // Accuracy is a 68% radius; spread it over two axes
+            float sigma = accuracy / 1.5f;
+            double latitude = trace.getLatitude(i) + random.nextGaussian() * sigma / METERS_PER_DEGREE;
+            double longitude = trace.getLongitude(i) + random.nextGaussian() * sigma
+                    / (METERS_PER_DEGREE * Math.cos(Math.toRadians(trace.getLatitude(i))));
+            float speed = priority == SamplingPolicy.Priority.HIGH_ACCURACY ? trace.getSpeed(i) : Float.NaN;
+            SamplingPolicy.Fix fix = new SamplingPolicy.Fix(trace.getTime(i), latitude, longitude, accuracy, speed);
+
+            if (policy.accept(fix)) {
+                policy.update(fix);
+                if (fixes == fixTimes.length) {
+                    fixTimes = Arrays.copyOf(fixTimes, fixes * 2);
+                    fixLatitudes = Arrays.copyOf(fixLatitudes, fixes * 2);
+                    fixLongitudes = Arrays.copyOf(fixLongitudes, fixes * 2);
+                }
+                fixTimes[fixes] = fix.getTimeMillis();
+                fixLatitudes[fixes] = latitude;
+                fixLongitudes[fixes] = longitude;
+                fixes++;
+                if (priority == SamplingPolicy.Priority.HIGH_ACCURACY) {
+                    highAccuracy++;
+                }
+                accuracySum += accuracy;
+                errorSum += GeoKdTree.haversine(latitude, longitude, trace.getLatitude(i), trace.getLongitude(i)) * 1000;
+            } else {
+                rejected++;
+            }
+            next = trace.getTime(i) + policy.getDecision().getIntervalMillis();
+            i++;
+        }
+
+        // Track error: the delivered path, interpolated, against every trace point
+        double[] trackErrors = new double[n];
+        int measured = 0;
+        int segment = 0;
+        double maxGap = fixes > 0 ? (fixTimes[0] - trace.getTime(0)) / 1000.0 : trace.getDurationHours() * 3600;
+        for (int k = 1; k < fixes; k++) {
+            maxGap = Math.max(maxGap, (fixTimes[k] - fixTimes[k - 1]) / 1000.0);
+        }
+        if (fixes > 0) {
+            maxGap = Math.max(maxGap, (trace.getTime(n - 1) - fixTimes[fixes - 1]) / 1000.0);
+        }
+        for (int k = 0; k < n && fixes > 0; k++) {
+            long time = trace.getTime(k);
+            if (time < fixTimes[0]) {
+                continue;
+            }
+            while (segment + 1 < fixes && fixTimes[segment + 1] <= time) {
+                segment++;
+            }
+            double latitude = fixLatitudes[segment];
+            double longitude = fixLongitudes[segment];
+            if (segment + 1 < fixes) {
+                double f = (double) (time - fixTimes[segment]) / (fixTimes[segment + 1] - fixTimes[segment]);
+                latitude += f * (fixLatitudes[segment + 1] - latitude);
+                longitude += f * (fixLongitudes[segment + 1] - longitude);
+            }
+            trackErrors[measured++] = GeoKdTree.haversine(latitude, longitude,
+                    trace.getLatitude(k), trace.getLongitude(k)) * 1000;
+        }
+        double trackSum = 0;
+        for (int k = 0; k < measured; k++) {
+            trackSum += trackErrors[k];
+        }
+        Arrays.sort(trackErrors, 0, measured);
+        double p95 = measured > 0 ? trackErrors[Math.min(measured - 1, (int) (measured * 0.95))] : Double.NaN;
+
+        return new Result(name, trace.getDurationHours(), fixes, highAccuracy, rejected,
+                fixes > 0 ? accuracySum / fixes : Double.NaN, fixes > 0 ? errorSum / fixes : Double.NaN,
+                measured > 0 ? trackSum / measured : Double.NaN, p95, maxGap);
+    }
+}
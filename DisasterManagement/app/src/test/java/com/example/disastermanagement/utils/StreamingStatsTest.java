@@ -0,0 +1,117 @@
+package com.example.disastermanagement.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingStatsTest {
+    private static final long MINUTE = 60_000;
+    // Six slices of ten minutes
+    private static final long WINDOW_MILLIS = 60 * MINUTE;
+    private static final long START = 1_700_000_000_000L / WINDOW_MILLIS * WINDOW_MILLIS;
+
+    @Test
+    public void quantilesCoverOnlyTheRecentWindow() {
+        StreamingStats stats = new StreamingStats(16, 0.3, WINDOW_MILLIS);
+        // A flood peak first, then an hour and a half of calm readings
+        for (int minute = 0; minute < 10; minute++) {
+            stats.add(900, START + minute * MINUTE);
+        }
+        assertNear(900, stats.getQuantile(0.99));
+
+        for (int minute = 10; minute < 100; minute++) {
+            stats.add(10 + minute % 5, START + minute * MINUTE);
+        }
+        assertNear(14, stats.getQuantile(0.99));
+        assertNear(12, stats.getQuantile(0.5));
+        // The lifetime aggregates still see the peak
+        assertEquals(900, stats.getMax(), 0);
+        assertEquals(100, stats.getCount());
+    }
+
+    @Test
+    public void windowEndsAtNewestReading() {
+        StreamingStats stats = new StreamingStats(16, 0.3, WINDOW_MILLIS);
+        for (int minute = 0; minute < 60; minute++) {
+            stats.add(minute < 10 ? 100 : 1, START + minute * MINUTE);
+        }
+        // Minutes 0-9 are still one of the six slices
+        assertNear(100, stats.getQuantile(1.0));
+
+        stats.add(1, START + 60 * MINUTE);
+        assertNear(1, stats.getQuantile(1.0));
+    }
+
+    @Test
+    public void idleSeriesAgesOutByClock() {
+        StreamingStats stats = new StreamingStats(16, 0.3, WINDOW_MILLIS);
+        for (int minute = 0; minute < 30; minute++) {
+            stats.add(minute, START + minute * MINUTE);
+        }
+        assertEquals(stats.getQuantile(0.5), stats.getQuantile(0.5, START + 30 * MINUTE), 0);
+        // Only minutes 20-29 remain an hour after minute 10
+        assertNear(24, stats.getQuantile(0.5, START + 79 * MINUTE));
+        assertTrue(Double.isNaN(stats.getQuantile(0.5, START + 90 * MINUTE)));
+    }
+
+    @Test
+    public void lateReadingsOutsideWindowAreIgnoredByQuantiles() {
+        StreamingStats stats = new StreamingStats(16, 0.3, WINDOW_MILLIS);
+        stats.add(5, START + 120 * MINUTE);
+        stats.add(5000, START);
+
+        assertNear(5, stats.getQuantile(1.0));
+        assertEquals(2, stats.getCount());
+    }
+
+    @Test
+    public void mergeCombinesSlicesByTime() {
+        StreamingStats north = new StreamingStats(16, 0.3, WINDOW_MILLIS);
+        StreamingStats south = new StreamingStats(16, 0.3, WINDOW_MILLIS);
+        StreamingStats both = new StreamingStats(16, 0.3, WINDOW_MILLIS);
+        for (int minute = 0; minute < 50; minute++) {
+            north.add(minute, START + minute * MINUTE);
+            both.add(minute, START + minute * MINUTE);
+        }
+        for (int minute = 40; minute < 100; minute++) {
+            south.add(1000 + minute, START + minute * MINUTE);
+            both.add(1000 + minute, START + minute * MINUTE);
+        }
+
+        StreamingStats merged = new StreamingStats(16, 0.3, WINDOW_MILLIS);
+        merged.merge(north);
+        merged.merge(south);
+        assertEquals(110, merged.getCount());
+        for (int i = 0; i <= 20; i++) {
+            assertEquals(both.getQuantile(i / 20.0), merged.getQuantile(i / 20.0), 0);
+        }
+        // North's first four slices are older than the window
+        assertNear(40, merged.getQuantile(0.0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mergeRejectsDifferentQuantileWindows() {
+        StreamingStats stats = new StreamingStats(16, 0.3, WINDOW_MILLIS);
+        StreamingStats other = new StreamingStats(16, 0.3, 2 * WINDOW_MILLIS);
+        other.add(1, START);
+        stats.merge(other);
+    }
+
+    @Test
+    public void rollingMeanCoversLastReadings() {
+        StreamingStats stats = new StreamingStats(4, 1.0);
+        assertTrue(Double.isNaN(stats.getRollingMean()));
+        for (int i = 1; i <= 10; i++) {
+            stats.add(i, START + i * 1000);
+        }
+        assertEquals(8.5, stats.getRollingMean(), 1e-9);
+        assertEquals(10, stats.getEwma(), 0);
+        assertEquals(1, stats.getRateOfChange(), 1e-9);
+    }
+
+    private static void assertNear(double expected, double actual) {
+        // Within the sketch's default relative accuracy
+        assertEquals(expected, actual, expected * 0.02 * (1 + 1e-9));
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.disastermanagement.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrackSimplifierTest {
+    private static final double METERS_PER_DEGREE = 111_320;
+    private static final double TOLERANCE_METERS = 10;
+
+    @Test
+    public void simplifyKeepsEndpointsAndDropsOnlyNearbyPoints() {
+        Random random = new Random(37);
+        for (int round = 0; round < 200; round++) {
+            int count = 2 + random.nextInt(400);
+            double[][] track = randomWalk(random, count);
+            double[] latitudes = track[0];
+            double[] longitudes = track[1];
+            int from = random.nextInt(3);
+            double[] shiftedLatitudes = new double[from + count];
+            double[] shiftedLongitudes = new double[from + count];
+            System.arraycopy(latitudes, 0, shiftedLatitudes, from, count);
+            System.arraycopy(longitudes, 0, shiftedLongitudes, from, count);
+            boolean[] keep = new boolean[from + count];
+
+            int kept = TrackSimplifier.simplify(shiftedLatitudes, shiftedLongitudes, from, count,
+                    TOLERANCE_METERS, keep);
+            assertTrue(keep[from]);
+            assertTrue(keep[from + count - 1]);
+
+            int[] keptIndices = new int[kept];
+            int k = 0;
+            for (int i = 0; i < count; i++) {
+                if (keep[from + i]) {
+                    keptIndices[k++] = i;
+                }
+            }
+            assertEquals("round " + round, kept, k);
+
+            // Same projection as the simplifier, so the bound holds exactly
+            double scale = Math.cos(Math.toRadians(latitudes[0]));
+            for (int s = 0; s + 1 < kept; s++) {
+                int start = keptIndices[s];
+                int end = keptIndices[s + 1];
+                for (int i = start + 1; i < end; i++) {
+                    double distance = segmentDistanceMeters(latitudes[i], longitudes[i], latitudes[start],
+                            longitudes[start], latitudes[end], longitudes[end], scale);
+                    assertTrue("round " + round + " point " + i + " is " + distance + " m away",
+                            distance <= TOLERANCE_METERS + 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void streamedTrailStaysWithinTolerance() {
+        Random random = new Random(41);
+        for (int round = 0; round < 50; round++) {
+            // No coarsening: every added point is within the tolerance
+            TrackSimplifier simplifier = new TrackSimplifier(TOLERANCE_METERS, 3 + random.nextInt(40), 1_000_000);
+            double[][] track = randomWalk(random, 1 + random.nextInt(2000));
+            boolean[] accepted = addAll(simplifier, track);
+            assertEquals(TOLERANCE_METERS, simplifier.getFrozenToleranceMeters(), 0);
+            assertTrailCovers(simplifier, track, accepted, TOLERANCE_METERS, 2 * TOLERANCE_METERS);
+        }
+    }
+
+    @Test
+    public void coarsenedTrailStaysBoundedAndWithinItsTolerance() {
+        Random random = new Random(43);
+        for (int round = 0; round < 20; round++) {
+            int tailCapacity = 3 + random.nextInt(20);
+            int maxPoints = 2 * tailCapacity + random.nextInt(100);
+            TrackSimplifier simplifier = new TrackSimplifier(TOLERANCE_METERS, tailCapacity, maxPoints);
+            double[][] track = randomWalk(random, 20_000);
+            boolean[] accepted = addAll(simplifier, track);
+
+            assertTrue(simplifier.size() <= maxPoints + tailCapacity);
+            assertTrue(simplifier.getFrozenToleranceMeters() > TOLERANCE_METERS);
+            // Each coarsening doubled the tolerance, so the errors it stacked
+            // up sum to less than twice the last one
+            double bound = 2 * simplifier.getFrozenToleranceMeters();
+            assertTrailCovers(simplifier, track, accepted, bound, bound + TOLERANCE_METERS);
+        }
+    }
+
+    @Test
+    public void jitterIsSkippedAndClearStartsOver() {
+        TrackSimplifier simplifier = new TrackSimplifier(TOLERANCE_METERS, 8, 16);
+        assertTrue(simplifier.add(19.0, 72.0));
+        assertFalse(simplifier.add(19.00003, 72.00003));
+        assertEquals(1, simplifier.size());
+        assertEquals(1, simplifier.getAdded());
+
+        // Straight line: only the endpoints remain
+        for (int i = 1; i <= 20; i++) {
+            assertTrue(simplifier.add(19.0 + i * 0.001, 72.0));
+        }
+        assertEquals(21, simplifier.getAdded());
+        assertEquals(19.0, simplifier.getLatitude(0), 0);
+        assertEquals(19.02, simplifier.getLatitude(simplifier.size() - 1), 0);
+        assertTrue(simplifier.size() <= 4);
+
+        simplifier.clear();
+        assertEquals(0, simplifier.size());
+        assertTrue(simplifier.add(20.0, 73.0));
+        assertEquals(20.0, simplifier.getLatitude(0), 0);
+        assertEquals(73.0, simplifier.getLongitude(0), 0);
+    }
+
+    private static boolean[] addAll(TrackSimplifier simplifier, double[][] track) {
+        boolean[] accepted = new boolean[track[0].length];
+        for (int i = 0; i < accepted.length; i++) {
+            accepted[i] = simplifier.add(track[0][i], track[1][i]);
+        }
+        return accepted;
+    }
+
+    /**
+     * Checks the simplified trail starts and ends with the first and last
+     * accepted points and passes within a bound of every point
+     * @param acceptedBound Bound for points the simplifier accepted
+     * @param skippedBound Bound for points skipped as jitter
+     */
+    private static void assertTrailCovers(TrackSimplifier simplifier, double[][] track, boolean[] accepted,
+                                          double acceptedBound, double skippedBound) {
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < accepted.length; i++) {
+            if (accepted[i]) {
+                first = first < 0 ? i : first;
+                last = i;
+            }
+        }
+        assertEquals(0, first);
+        int size = simplifier.size();
+        assertEquals(track[0][first], simplifier.getLatitude(0), 0);
+        assertEquals(track[1][first], simplifier.getLongitude(0), 0);
+        assertEquals(track[0][last], simplifier.getLatitude(size - 1), 0);
+        assertEquals(track[1][last], simplifier.getLongitude(size - 1), 0);
+
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            latitudes[i] = simplifier.getLatitude(i);
+            longitudes[i] = simplifier.getLongitude(i);
+        }
+        for (int i = 0; i < accepted.length; i++) {
+            double distance = pathDistanceMeters(track[0][i], track[1][i], latitudes, longitudes);
+            double bound = accepted[i] ? acceptedBound : skippedBound;
+            // The simplifier projects around a different origin per pass; allow for that
+            assertTrue("point " + i + " is " + distance + " m away, bound " + bound,
+                    distance <= bound * 1.01);
+        }
+    }
+
+    private static double pathDistanceMeters(double latitude, double longitude,
+                                             double[] latitudes, double[] longitudes) {
+        double scale = Math.cos(Math.toRadians(latitude));
+        if (latitudes.length == 1) {
+            return segmentDistanceMeters(latitude, longitude, latitudes[0], longitudes[0],
+                    latitudes[0], longitudes[0], scale);
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (int s = 0; s + 1 < latitudes.length; s++) {
+            best = Math.min(best, segmentDistanceMeters(latitude, longitude, latitudes[s], longitudes[s],
+                    latitudes[s + 1], longitudes[s + 1], scale));
+        }
+        return best;
+    }
+
+    private static double segmentDistanceMeters(double latitude, double longitude,
+                                                double startLatitude, double startLongitude,
+                                                double endLatitude, double endLongitude, double scale) {
+        double ax = startLongitude * scale;
+        double dx = endLongitude * scale - ax;
+        double dy = endLatitude - startLatitude;
+        double px = longitude * scale - ax;
+        double py = latitude - startLatitude;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared > 0 ? Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared)) : 0;
+        double ex = px - t * dx;
+        double ey = py - t * dy;
+        return Math.sqrt(ex * ex + ey * ey) * METERS_PER_DEGREE;
+    }
+
+    /**
+     * A walk with turns, straight stretches and pauses where GPS jitter
+     * moves the fix by a few meters
+     */
+    private static double[][] randomWalk(Random random, int count) {
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        double latitude = 19 + random.nextDouble();
+        double longitude = 72 + random.nextDouble();
+        double heading = random.nextDouble() * 2 * Math.PI;
+        int pause = 0;
+        for (int i = 0; i < count; i++) {
+            double meters;
+            if (pause > 0) {
+                pause--;
+                meters = random.nextDouble() * 4;
+                heading = random.nextDouble() * 2 * Math.PI;
+            } else {
+                if (random.nextInt(50) == 0) {
+                    pause = random.nextInt(20);
+                }
+                meters = 3 + random.nextDouble() * 30;
+                heading += random.nextGaussian() * (random.nextInt(10) == 0 ? 1.5 : 0.15);
+            }
+            latitude += Math.cos(heading) * meters / METERS_PER_DEGREE;
+            longitude += Math.sin(heading) * meters / (METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude)));
+            latitudes[i] = latitude;
+            longitudes[i] = longitude;
+        }
+        return new double[][] {latitudes, longitudes};
+    }
+}
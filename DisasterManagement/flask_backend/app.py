@@ -516,8 +516,131 @@ def update_sos_location(location_id):
             'message': str(e)
         }), 500
 
+# Layout written by TrackCodec.java in the app; keep the two in step
+TRACK_CODEC_VERSION = 1
+TRACK_FLAG_ADDRESS = 1
+
+def _read_varint(data, pos):
+    value = 0
+    shift = 0
+    while True:
+        if pos >= len(data) or shift >= 64:
+            raise ValueError('Truncated track data')
+        b = data[pos]
+        pos += 1
+        value |= (b & 0x7F) << shift
+        if not b & 0x80:
+            return value, pos
+        shift += 7
+
+def _unzigzag(value):
+    return (value >> 1) ^ -(value & 1)
+
+def decode_track(data):
+    """Decode a batch of delta/varint encoded location fixes sent by the app"""
+    if len(data) < 2 or data[0] != TRACK_CODEC_VERSION:
+        raise ValueError('Unsupported track encoding')
+    flags = data[1]
+    count, pos = _read_varint(data, 2)
+
+    address = None
+    if flags & TRACK_FLAG_ADDRESS:
+        length, pos = _read_varint(data, pos)
+        if pos + length > len(data):
+            raise ValueError('Truncated track data')
+        address = data[pos:pos + length].decode('utf-8')
+        pos += length
+
+    fixes = []
+    time_ms = lat_e6 = lng_e6 = 0
+    for _ in range(count):
+        delta, pos = _read_varint(data, pos)
+        # Times are unsigned varints of a wrapping 64-bit delta
+        time_ms = (time_ms + delta) & 0xFFFFFFFFFFFFFFFF
+        value, pos = _read_varint(data, pos)
+        lat_e6 += _unzigzag(value)
+        value, pos = _read_varint(data, pos)
+        lng_e6 += _unzigzag(value)
+        accuracy, pos = _read_varint(data, pos)
+        try:
+            time = datetime.fromtimestamp(time_ms / 1000.0)
+        except (OverflowError, OSError) as e:
+            raise ValueError('Fix time out of range') from e
+        fixes.append({
+            'time': time,
+            'latitude': lat_e6 / 1e6,
+            'longitude': lng_e6 / 1e6,
+            'accuracy': accuracy
+        })
+    return fixes, address
+
+@app.route('/api/emergency/sos/location/<location_id>/batch', methods=['POST'])
+def update_sos_location_batch(location_id):
+    # Bad ids and payloads are answered with 400, which the app drops instead of retrying
+    if not ObjectId.is_valid(location_id):
+        return jsonify({
+            'success': False,
+            'message': 'Invalid location id'
+        }), 400
+    try:
+        try:
+            fixes, address = decode_track(request.get_data())
+        except ValueError as e:
+            return jsonify({
+                'success': False,
+                'message': str(e)
+            }), 400
+        if not fixes:
+            return jsonify({
+                'success': False,
+                'message': 'No fixes in batch'
+            }), 400
+
+        # The newest fix becomes the current location; all of them extend the track
+        latest = fixes[-1]
+        update_data = {
+            'latitude': latest['latitude'],
+            'longitude': latest['longitude'],
+            'accuracy': latest['accuracy'],
+            'location': {
+                'type': 'Point',
+                'coordinates': [latest['longitude'], latest['latitude']]
+            },
+            'updated_at': datetime.now()
+        }
+        if address:
+            update_data['address'] = address
+
+        result = customer_location_collection.update_one(
+            {'_id': ObjectId(location_id)},
+            {'$set': update_data, '$push': {'track': {'$each': fixes}}}
+        )
+
+        if result.matched_count:
+            return jsonify({
+                'success': True,
+                'received': len(fixes),
+                'message': 'Location updated successfully'
+            })
+        else:
+            return jsonify({
+                'success': False,
+                'message': 'Location not found'
+            }), 404
+    except Exception as e:
+        logger.error(f"Error updating SOS location batch: {str(e)}")
+        return jsonify({
+            'success': False,
+            'message': str(e)
+        }), 500
+
 @app.route('/api/emergency/sos/location/<location_id>/end', methods=['PUT'])
 def end_sos_location_sharing(location_id):
+    if not ObjectId.is_valid(location_id):
+        return jsonify({
+            'success': False,
+            'message': 'Invalid location id'
+        }), 400
     try:
         result = customer_location_collection.update_one(
             {'_id': ObjectId(location_id)},